@@ -0,0 +1,399 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Performs detections using a {@link Provider} on a separate executor so 
+ * that threads which must not block, such as event loop threads, can 
+ * request a detection without waiting for the data file to be read.
+ * <p>
+ * When the result for a User-Agent is already in the provider's cache the
+ * returned future is complete and any callback is called before the method 
+ * returns. Otherwise the detection is queued on the executor.
+ * <p>
+ * The time detections wait in the executor's queue is recorded separately 
+ * from the time taken to perform them so that an undersized executor can be
+ * told apart from slow detections.
+ * <p>
+ * The default executor has a fixed number of daemon threads and a bounded 
+ * queue. When the queue is full further requests are rejected with a
+ * {@link RejectedExecutionException} rather than using more memory.
+ */
+public class AsyncProvider implements Closeable {
+
+    /**
+     * Default number of requests waiting to be detected before further 
+     * requests are rejected.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /**
+     * The provider used to perform detections.
+     */
+    public final Provider provider;
+
+    /**
+     * Executor detections are performed on.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * True if the executor was created by this instance and should be shut 
+     * down when it is closed.
+     */
+    private final boolean ownsExecutor;
+
+    private final AtomicLong inlineCount = new AtomicLong();
+    private final AtomicLong queuedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong queueNanos = new AtomicLong();
+    private final AtomicLong detectionNanos = new AtomicLong();
+
+    /**
+     * Constructs a new instance with a thread per available processor and 
+     * the default queue size.
+     * 
+     * @param provider used to perform detections.
+     */
+    public AsyncProvider(Provider provider) {
+        this(provider, Runtime.getRuntime().availableProcessors(), 
+                DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Constructs a new instance with a fixed number of daemon threads and a
+     * bounded queue.
+     * 
+     * @param provider used to perform detections.
+     * @param threads number of threads performing detections.
+     * @param queueSize most detections waiting to be performed.
+     */
+    public AsyncProvider(Provider provider, int threads, int queueSize) {
+        this(provider, createExecutor(threads, queueSize), true);
+    }
+
+    /**
+     * Constructs a new instance using the executor provided. The executor 
+     * is not shut down when this instance is closed.
+     * 
+     * @param provider used to perform detections.
+     * @param executor to perform detections on.
+     */
+    public AsyncProvider(Provider provider, ExecutorService executor) {
+        this(provider, executor, false);
+    }
+
+    private AsyncProvider(Provider provider, ExecutorService executor,
+            boolean ownsExecutor) {
+        if (provider == null) {
+            throw new IllegalArgumentException("Provider must not be null.");
+        }
+        if (executor == null) {
+            throw new IllegalArgumentException("Executor must not be null.");
+        }
+        this.provider = provider;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * Returns a future for the result of detecting the User-Agent.
+     * 
+     * @param targetUserAgent User-Agent string to be identified.
+     * @return future result of the detection.
+     * @throws RejectedExecutionException if the executor's queue is full.
+     */
+    public Future<Match> matchAsync(String targetUserAgent) {
+        return matchAsync(targetUserAgent, null);
+    }
+
+    /**
+     * Detects the User-Agent calling the callback with the result.
+     * 
+     * @param targetUserAgent User-Agent string to be identified.
+     * @param callback to receive the result, or null.
+     * @return future result of the detection.
+     * @throws RejectedExecutionException if the executor's queue is full.
+     */
+    public Future<Match> matchAsync(final String targetUserAgent, 
+            IMatchCallback callback) {
+        MatchResult cached = provider.getCachedResult(targetUserAgent);
+        if (cached != null) {
+            final Match match = provider.createMatch();
+            match.setResult(cached);
+            return completeInline(match, callback);
+        }
+        return submit(new Callable<Match>() {
+            @Override
+            public Match call() throws IOException {
+                return provider.match(targetUserAgent);
+            }
+        }, callback);
+    }
+
+    /**
+     * Returns a future for the result of detecting the HTTP headers.
+     * 
+     * @param headers List of HTTP headers to use for the detection.
+     * @return future result of the detection.
+     * @throws RejectedExecutionException if the executor's queue is full.
+     */
+    public Future<Match> matchAsync(Map<String, String> headers) {
+        return matchAsync(headers, null);
+    }
+
+    /**
+     * Detects the HTTP headers calling the callback with the result. When 
+     * only one of the headers is used for detection and its result is 
+     * cached the detection completes inline.
+     * 
+     * @param headers List of HTTP headers to use for the detection.
+     * @param callback to receive the result, or null.
+     * @return future result of the detection.
+     * @throws RejectedExecutionException if the executor's queue is full.
+     */
+    public Future<Match> matchAsync(final Map<String, String> headers, 
+            IMatchCallback callback) {
+        if (headers != null) {
+            String single = provider.getSingleHeader(headers);
+            MatchResult cached = single != null ? 
+                    provider.getCachedResult(single) : null;
+            if (cached != null) {
+                Match match = provider.createMatch();
+                match.setResult(cached);
+                match.cookie = headers.get("Cookie");
+                return completeInline(match, callback);
+            }
+        }
+        return submit(new Callable<Match>() {
+            @Override
+            public Match call() throws IOException {
+                return provider.match(headers);
+            }
+        }, callback);
+    }
+
+    /**
+     * @return number of detections completed inline from the cache.
+     */
+    public long getInlineCount() {
+        return inlineCount.get();
+    }
+
+    /**
+     * @return number of detections performed on the executor.
+     */
+    public long getQueuedCount() {
+        return queuedCount.get();
+    }
+
+    /**
+     * @return number of detections rejected by the executor.
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * @return total nanoseconds detections waited in the executor's queue.
+     */
+    public long getQueueTime() {
+        return queueNanos.get();
+    }
+
+    /**
+     * @return total nanoseconds taken performing detections on the 
+     * executor.
+     */
+    public long getDetectionTime() {
+        return detectionNanos.get();
+    }
+
+    /**
+     * @return average milliseconds detections waited in the executor's 
+     * queue.
+     */
+    public double getAverageQueueTime() {
+        long count = queuedCount.get();
+        return count == 0 ? 0 : (queueNanos.doubleValue() / 1000000) / count;
+    }
+
+    /**
+     * @return average milliseconds taken performing detections on the 
+     * executor.
+     */
+    public double getAverageDetectionTime() {
+        long count = queuedCount.get();
+        return count == 0 ? 0 : 
+                (detectionNanos.doubleValue() / 1000000) / count;
+    }
+
+    /**
+     * Shuts down the executor if it was created by this instance. Detections
+     * already queued are completed.
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns a future that has already completed with the match.
+     */
+    private Future<Match> completeInline(final Match match, 
+            IMatchCallback callback) {
+        inlineCount.incrementAndGet();
+        MatchTask task = new MatchTask(new Callable<Match>() {
+            @Override
+            public Match call() {
+                return match;
+            }
+        }, callback, false);
+        task.run();
+        return task;
+    }
+
+    /**
+     * Queues the detection on the executor.
+     */
+    private Future<Match> submit(Callable<Match> detection,
+            IMatchCallback callback) {
+        MatchTask task = new MatchTask(detection, callback, true);
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            rejectedCount.incrementAndGet();
+            throw ex;
+        }
+        return task;
+    }
+
+    /**
+     * A detection which records its timings and calls the callback when 
+     * done.
+     */
+    private class MatchTask extends FutureTask<Match> {
+
+        private final IMatchCallback callback;
+        private final boolean queued;
+        private final long created = System.nanoTime();
+
+        MatchTask(Callable<Match> detection, IMatchCallback callback,
+                boolean queued) {
+            super(detection);
+            this.callback = callback;
+            this.queued = queued;
+        }
+
+        private long started;
+
+        @Override
+        public void run() {
+            if (queued) {
+                started = System.nanoTime();
+                queueNanos.addAndGet(started - created);
+            }
+            super.run();
+        }
+
+        /**
+         * Records the detection before the future completes so that callers
+         * waiting on the future see the updated counts.
+         */
+        @Override
+        protected void set(Match match) {
+            recordDetection();
+            super.set(match);
+        }
+
+        @Override
+        protected void setException(Throwable cause) {
+            recordDetection();
+            super.setException(cause);
+        }
+
+        private void recordDetection() {
+            if (queued) {
+                detectionNanos.addAndGet(System.nanoTime() - started);
+                queuedCount.incrementAndGet();
+            }
+        }
+
+        @Override
+        protected void done() {
+            if (callback != null && isCancelled() == false) {
+                try {
+                    callback.completed(get());
+                } catch (ExecutionException ex) {
+                    callback.failed(ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates a fixed size executor of daemon threads with a bounded queue.
+     */
+    private static ExecutorService createExecutor(int threads, 
+            int queueSize) {
+        if (threads <= 0) {
+            throw new IllegalArgumentException(
+                    "Threads must be greater than zero.");
+        }
+        if (queueSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Queue size must be greater than zero.");
+        }
+        return new ThreadPoolExecutor(threads, threads, 0, 
+                TimeUnit.MILLISECONDS, 
+                new ArrayBlockingQueue<Runnable>(queueSize),
+                new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, 
+                        "51Degrees-Detection-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -22,19 +22,26 @@ package fiftyone.mobile.detection;
 
 import static fiftyone.mobile.detection.AutoUpdateStatus.*;
 import fiftyone.mobile.detection.entities.Modes;
+import fiftyone.mobile.detection.entities.headers.Header;
 import fiftyone.mobile.detection.factories.CommonFactory;
-import fiftyone.mobile.detection.factories.StreamFactory;
 import fiftyone.mobile.detection.readers.BinaryReader;
+import fiftyone.mobile.detection.telemetry.EventType;
+import fiftyone.mobile.detection.telemetry.Events;
+import fiftyone.mobile.detection.telemetry.IEventListener;
 import fiftyone.properties.DetectionConstants;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.security.DigestInputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -44,7 +51,6 @@ import java.util.Locale;
 import java.util.UUID;
 import java.util.concurrent.Semaphore;
 import java.util.regex.Matcher;
-import java.util.zip.DataFormatException;
 import java.util.zip.GZIPInputStream;
 import javax.net.ssl.HttpsURLConnection;
 
@@ -102,6 +108,16 @@ public class AutoUpdate {
          */
         final String md5hash;
         
+        /**
+         * The MD5 hash of the compressed data received.
+         */
+        final String downloadHash;
+        
+        /**
+         * Set if the data received could not be decompressed.
+         */
+        final IOException decompressError;
+        
         /**
          * The status of the download operation.
          */
@@ -117,10 +133,16 @@ public class AutoUpdate {
          * Constructs a new instance of DownloadAttributes with an MD5 hash 
          * indicating a successful download.
          * @param md5hash hash for the downloaded data file.
+         * @param downloadHash hash of the compressed data received.
+         * @param lastModified value of the Last-Modified header.
+         * @param decompressError set if the data could not be decompressed.
          */
-        DownloadAttributes(final String md5hash, final long lastModified) {
+        DownloadAttributes(final String md5hash, final String downloadHash,
+                final long lastModified, final IOException decompressError) {
             this.md5hash = md5hash;
+            this.downloadHash = downloadHash;
             this.lastModified = lastModified;
+            this.decompressError = decompressError;
             this.status = AUTO_UPDATE_IN_PROGRESS;
         }
         
@@ -131,15 +153,17 @@ public class AutoUpdate {
         DownloadAttributes(final AutoUpdateStatus status) {
             this.status = status;
             this.md5hash = null;
+            this.downloadHash = null;
             this.lastModified = 0;
+            this.decompressError = null;
         }
     }
     
     /**
      * Stores critical data set attributes used to determine if the downloaded
-     * data should be used to replace the current data file. Using this class
-     * avoids the need for two Stream generated data sets to be held at
-     * the same time reducing memory consumption.
+     * data should be used to replace the current data file. Only the header 
+     * of the data file is read so that validating a download does not read
+     * the whole of the new and current data files.
      */
     private static class DataSetAttributes {
         /**
@@ -150,25 +174,46 @@ public class AutoUpdate {
          * Number of properties contained in the data set.
          */
         final int propertyCount;
+        /**
+         * Position of the end of the last section listed in the header.
+         */
+        final long endPosition;
         /**
          * Constructs a new instance of CriticalDataSetAttributes using the 
-         * data set provided. Assumes the file passed to the constructor 
-         * exists.
+         * header of the data file provided. Assumes the file passed to the 
+         * constructor exists.
          * @param dataFile whose attributes should be copied.
+         * @throws IOException if the header can not be read.
          */
         DataSetAttributes(File dataFile) throws IOException {
-            Dataset dataSet = null;
+            Dataset dataSet = new Dataset(
+                new Date(dataFile.lastModified()),
+                Modes.FILE);
             try {
-                dataSet = StreamFactory.create(
-                        dataFile.getAbsolutePath(), 
-                        false);
+                BinaryReader reader = readHeader(dataFile);
+                CommonFactory.loadHeader(dataSet, reader);
+                int sectionCount = dataSet.versionEnum == 
+                        DetectionConstants.FORMAT_VERSIONS.PatternV32 ?
+                        V32_SECTION_COUNT : V31_SECTION_COUNT;
+                Header properties = null;
+                Header last = null;
+                for (int i = 0; i < sectionCount; i++) {
+                    last = new Header(reader);
+                    if (i == PROPERTIES_SECTION) {
+                        properties = last;
+                    }
+                }
+                endPosition = last.getLongStartPosition() + last.getLength();
                 published = dataSet.published;
-                propertyCount = dataSet.properties.size();
+                propertyCount = properties.getCount();
+            }
+            catch (BufferUnderflowException ex) {
+                throw new IOException(String.format(
+                        "Data file '%s' is too short to contain a header.",
+                        dataFile));
             }
             finally {
-                if (dataSet != null) {
-                    dataSet.close();
-                }
+                dataSet.close();
             }
         }
     }
@@ -179,9 +224,25 @@ public class AutoUpdate {
     private static final Semaphore autoUpdateSignal = new Semaphore(1, true);
     
     /**
-     * Size for the buffers used in this class.
+     * Size for the buffers used in this class. Large buffers reduce the 
+     * number of reads and writes needed to download and decompress the data 
+     * file.
+     */
+    private static final int INPUT_BUFFER = 64 * 1024;
+    
+    /**
+     * Number of bytes read from the start of a data file which is enough for
+     * the header and the section headers of any supported version.
      */
-    private static final int INPUT_BUFFER = 4096;
+    private static final int HEADER_BUFFER = 1024;
+    
+    /**
+     * Number of sections in each version of the data file and the index of 
+     * the properties section which is the same in both.
+     */
+    private static final int V31_SECTION_COUNT = 11;
+    private static final int V32_SECTION_COUNT = 13;
+    private static final int PROPERTIES_SECTION = 3;
     
     /**
      * Uses the given license key to perform a device data update, writing the
@@ -232,7 +293,7 @@ public class AutoUpdate {
                 "https://51degrees.com/compare-data-options to acquire valid " +
                 "licence keys.");
         }
-        return download(validKeys, binaryFilePath);
+        return download(fullUrl(validKeys), binaryFilePath);
     }
     
     /**
@@ -248,50 +309,49 @@ public class AutoUpdate {
             dataSet = new Dataset(
                 new Date(binaryFile.lastModified()),
                 Modes.FILE);
-            FileInputStream fileInputStream = new FileInputStream(binaryFile);
-            try {
-                BinaryReader reader = new BinaryReader(fileInputStream);
-                try {
-                    CommonFactory.loadHeader(dataSet, reader);
-                }
-                finally {
-                    reader.close();
-                }
-            }
-            finally {
-                fileInputStream.close();
-            }
+            CommonFactory.loadHeader(dataSet, readHeader(binaryFile));
         }  
-        
-        // Java does not provide a method to explicitly unmap the buffer from 
-        // the underlying file. The implementation of memory mapped files varies
-        // across operating systems. As such there is no reliable way of 
-        // guaranteeing the lock on the underlying file is released. For this
-        // reason System.gc() is called when the SourceFile class is closed
-        // to attempt to free the underlying file. The alternative would be to
-        // not use memory mapped files which removes a performance advantage.
-        System.gc();
-
         return dataSet;
     }    
     
+    /**
+     * Reads the start of the data file into memory rather than mapping the
+     * file so that the file is not locked once the header has been read.
+     * @param binaryFile path to a binary data file uncompressed
+     * @return a reader positioned at the start of the header.
+     * @throws IOException 
+     */
+    private static BinaryReader readHeader(File binaryFile) 
+            throws IOException {
+        byte[] data = new byte[(int)Math.min(
+                binaryFile.length(), HEADER_BUFFER)];
+        FileInputStream fileInputStream = new FileInputStream(binaryFile);
+        try {
+            new DataInputStream(fileInputStream).readFully(data);
+        }
+        finally {
+            fileInputStream.close();
+        }
+        return new BinaryReader(data);
+    }
+    
     /**
      * Downloads and updates the premium data file.
      * 
-     * @param licenseKeys the licence key to use for the update request.
+     * @param url to download the data file from.
      * @param binaryFilePath where the original data file is located.
      * @return the result of the download to enable user reporting
      */
-    private static AutoUpdateStatus download(
-            String[] licenceKeys, 
+    static AutoUpdateStatus download(
+            URL url, 
             String binaryFilePath) 
             throws IOException, InterruptedException, Exception {
         AutoUpdateStatus result = AutoUpdateStatus.AUTO_UPDATE_IN_PROGRESS;
         
-        // Set the three files needed to support the download, verification
-        // and eventual activation.
+        // Set the two files needed to support the download, verification
+        // and eventual activation. The download is hashed and decompressed
+        // as it is received so the compressed data is never written.
         File binaryFile = new File(binaryFilePath);
-        File compressedTempFile = getTempFileName(binaryFilePath);
         File uncompressedTempFile = getTempFileName(binaryFilePath);
 
         try {
@@ -325,44 +385,60 @@ public class AutoUpdate {
             
             // Download the device data, decompress, check validity and finally
             // replace the existing data file if all okay.
-            HttpURLConnection client = (HttpURLConnection)fullUrl(
-                    licenceKeys).openConnection();
+            HttpURLConnection client = 
+                    (HttpURLConnection)url.openConnection();
+            
+            // Report the phases if a listener is set.
+            IEventListener listener = Events.getListener();
+            Object event = null;
             
             // Download the data file before performing the checks.
+            if (listener != null) {
+                event = listener.begin(EventType.AUTO_UPDATE_DOWNLOAD);
+            }
             DownloadAttributes attrs = downloadFile(
                     binaryFile, 
-                    compressedTempFile, 
+                    uncompressedTempFile, 
                     client);
             client.disconnect();
             result = attrs.status;
-            
-            if (result == AutoUpdateStatus.AUTO_UPDATE_IN_PROGRESS) {
-                result = checkedDownloadedFileMD5(
-                    attrs, 
-                    compressedTempFile);
+            if (listener != null) {
+                listener.end(event, EventType.AUTO_UPDATE_DOWNLOAD, 
+                        result.name(), 0, 0);
             }
             
             if (result == AutoUpdateStatus.AUTO_UPDATE_IN_PROGRESS) {
-                result = decompress(compressedTempFile, uncompressedTempFile);
-            }
+                if (listener != null) {
+                    event = listener.begin(EventType.AUTO_UPDATE_VALIDATE);
+                }
+                result = checkedDownloadedFileMD5(attrs);
 
-            if (result == AutoUpdateStatus.AUTO_UPDATE_IN_PROGRESS) {
-               result = validateDownloadedFile(
-                       binaryFile, 
-                       uncompressedTempFile);
+                if (result == AutoUpdateStatus.AUTO_UPDATE_IN_PROGRESS) {
+                   result = validateDownloadedFile(
+                           binaryFile, 
+                           uncompressedTempFile);
+                }
+                if (listener != null) {
+                    listener.end(event, EventType.AUTO_UPDATE_VALIDATE, 
+                            result.name(), 0, 0);
+                }
             }
             
             if (result == AutoUpdateStatus.AUTO_UPDATE_IN_PROGRESS) {
+                if (listener != null) {
+                    event = listener.begin(EventType.AUTO_UPDATE_ACTIVATE);
+                }
                 result = activateDownloadedFile(
                         attrs, 
                         binaryFile, 
                         uncompressedTempFile);
+                if (listener != null) {
+                    listener.end(event, EventType.AUTO_UPDATE_ACTIVATE, 
+                            result.name(), 0, 0);
+                }
             }
         } finally {
             try {
-                if (compressedTempFile.exists()) {
-                    compressedTempFile.delete();
-                }
                 if (uncompressedTempFile.exists()) {
                     uncompressedTempFile.delete();
                 }
@@ -378,15 +454,16 @@ public class AutoUpdate {
      * Method performs the actual download by setting up and sending request and 
      * processing the response.
      * @param dataFile File object of the current data file.
-     * @param compressedTempFile File object to write compressed downloaded 
-     * content into.
+     * @param uncompressedTempFile File object to write the decompressed 
+     * downloaded content into.
      * @param client HTTP client configured with the download URL.
      * @return The current status of the overall process.
      */
     private static DownloadAttributes downloadFile(
             final File binaryFile, 
-            final File compressedTempFile, 
-            final HttpURLConnection client) throws IOException {
+            final File uncompressedTempFile, 
+            final HttpURLConnection client) 
+            throws IOException, NoSuchAlgorithmException {
 
         DownloadAttributes result;
         
@@ -406,12 +483,17 @@ public class AutoUpdate {
             InputStream inputStream = client.getInputStream();
             try {
                 FileOutputStream outputStream = new FileOutputStream(
-                    compressedTempFile);
+                    uncompressedTempFile);
                 try {
-                    downloadFile(inputStream, outputStream);
+                    MessageDigest md5 = MessageDigest.getInstance("MD5");
+                    IOException decompressError = decompress(
+                            new DigestInputStream(inputStream, md5), 
+                            outputStream);
                     result = new DownloadAttributes(
                             client.getHeaderField("Content-MD5"),
-                            client.getLastModified());
+                            getMd5Hash(md5),
+                            client.getLastModified(),
+                            decompressError);
                 }
                 finally {
                     outputStream.close();
@@ -431,7 +513,7 @@ public class AutoUpdate {
                             client.getHeaderField("Location")).openConnection();
                     result = downloadFile(
                                     binaryFile, 
-                                    compressedTempFile, 
+                                    uncompressedTempFile, 
                                     redirect);
                     redirect.disconnect();
                     break;
@@ -463,59 +545,60 @@ public class AutoUpdate {
      * hash off the downloaded data with one taken before the data was sent,
      * which is stored in a response header.
      *
-     * @param client The Premium data download connection.
-     * @param pathToFile path to compressed data file that has been downloaded.
-     * @return True if the hashes match, else false.
+     * @param attrs of the download including both hashes.
+     * @return current state of the update process
+     * @throws IOException if the hashes match but the data could not be 
+     * decompressed.
      */
     private static AutoUpdateStatus checkedDownloadedFileMD5(
-            final DownloadAttributes attrs, final File compressedTempFile) 
-            throws NoSuchAlgorithmException, IOException {
+            final DownloadAttributes attrs) throws IOException {
         AutoUpdateStatus status = AUTO_UPDATE_IN_PROGRESS;
-        final String downloadHash = getMd5Hash(compressedTempFile);
         if (attrs.md5hash == null ||
-            downloadHash.equals(attrs.md5hash) == false) {
+            attrs.downloadHash.equals(attrs.md5hash) == false) {
             status = AUTO_UPDATE_ERR_MD5_VALIDATION_FAILED;
+        } else if (attrs.decompressError != null) {
+            throw attrs.decompressError;
         }
         return status;
     }
     
     /**
-     * Reads a source GZip file and writes the uncompressed data to destination 
-     * file.
-     * @param sourcePath path to GZip file to load from.
-     * @param destinationPath path to file to write the uncompressed data to.
-     * @returns current state of the update process
-     * @throws IOException
-     * @throws DataFormatException 
+     * Reads GZip data from the source stream and writes the uncompressed data
+     * to the destination. The source is always read to the end so that a 
+     * digest calculated from it covers all the data received.
+     * @param source stream of GZip data.
+     * @param destination to write the uncompressed data to.
+     * @returns the error if the data could not be decompressed, otherwise 
+     * null.
+     * @throws IOException if the source could not be read or the destination
+     * could not be written.
      */
-    private static AutoUpdateStatus decompress(
-            File sourcePath, 
-            File destinationPath) throws IOException {
-        AutoUpdateStatus status = AUTO_UPDATE_IN_PROGRESS;
-        FileInputStream fis = new FileInputStream(sourcePath);
+    private static IOException decompress(
+            InputStream source, 
+            OutputStream destination) throws IOException {
+        IOException error = null;
+        byte[] buffer = new byte[INPUT_BUFFER];
+        GZIPInputStream gzis = null;
         try {
-            FileOutputStream fos = new FileOutputStream(destinationPath);
-            try {
-                GZIPInputStream gzis = new GZIPInputStream(fis);
-                try {
-                    byte[] buffer = new byte[INPUT_BUFFER];
-                    int len;
-                    while ((len = gzis.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
-                    }
-                }
-                finally {
-                    gzis.close();
-                }
-            }
-            finally {
-                fos.close();
+            gzis = new GZIPInputStream(source, INPUT_BUFFER);
+            int len;
+            while ((len = gzis.read(buffer)) > 0) {
+                destination.write(buffer, 0, len);
             }
         }
-        finally {
-            fis.close();
+        catch (IOException ex) {
+            // Includes the EOFException thrown by the GZIPInputStream 
+            // constructor when the source is empty.
+            error = ex;
         }
-        return status;
+        
+        // Read anything left after the compressed data.
+        while (source.read(buffer) != -1) {
+        }
+        if (gzis != null) {
+            gzis.close();
+        }
+        return error;
     }
     
    /**
@@ -545,6 +628,13 @@ public class AutoUpdate {
             // part of the validation process.
             DataSetAttributes tempAttrs = new DataSetAttributes(
                     decompressedTempFile);
+            if (decompressedTempFile.length() < tempAttrs.endPosition) {
+                throw new IOException(String.format(
+                        "Downloaded data file is %d bytes but the header " +
+                        "expects at least %d bytes.",
+                        decompressedTempFile.length(),
+                        tempAttrs.endPosition));
+            }
             
             // If the current binary file exists then compare the two for the
             // same published date and same properties. If either value is 
@@ -553,7 +643,8 @@ public class AutoUpdate {
             if (binaryFile.exists()) {
                 DataSetAttributes binaryAttrs = new DataSetAttributes(
                     binaryFile);
-                if (binaryAttrs.published != tempAttrs.published ||
+                if (binaryAttrs.published.equals(
+                        tempAttrs.published) == false ||
                     binaryAttrs.propertyCount != tempAttrs.propertyCount) {
                     status = AUTO_UPDATE_IN_PROGRESS;
                 } else {
@@ -624,22 +715,6 @@ public class AutoUpdate {
         return status;
     }
     
-    /**
-     * Uses the provided input and output streams to download the device data.
-     * @param inputStream connected to the input data source
-     * @param outputStream connected to the output data destination
-     * @throws IOException 
-     */
-    private static void downloadFile(
-            InputStream inputStream,
-            FileOutputStream outputStream) throws IOException {
-        byte[] buffer = new byte[INPUT_BUFFER];
-        int bytesRead;
-        while ((bytesRead = inputStream.read(buffer)) != -1) {
-            outputStream.write(buffer, 0, bytesRead);
-        }        
-    }
-    
     /**
      * Validate the supplied keys to exclude keys from 3rd party products from 
      * being used.
@@ -678,38 +753,21 @@ public class AutoUpdate {
     }
     
     /**
-     * Calculates the MD5 hash of the given data array.
+     * Formats the MD5 hash of the data passed to the digest.
      *
-     * @param fileToCheck calculate MD5 of this file.
+     * @param md5 digest which has been updated with all the data.
      * @return The MD5 hash of the given data.
      */
-    private static String getMd5Hash(File fileToCheck) 
-            throws FileNotFoundException, NoSuchAlgorithmException, 
-                   IOException {
-        FileInputStream fis = new FileInputStream(fileToCheck);
-        try {
-            MessageDigest md5 = MessageDigest.getInstance("MD5");
-            byte[] buffer = new byte[INPUT_BUFFER];
-            int bytesRead;
-
-            //Get the md5 and format as a string.
-            while((bytesRead = fis.read(buffer)) != -1) {
-                md5.update(buffer, 0, bytesRead);
-            }
-            byte[] md5Bytes = md5.digest();
-            StringBuilder hashBuilder = new StringBuilder();
-            for (int i = 0; i < md5Bytes.length; i++) {
-                hashBuilder.append(String.format("%02X ", md5Bytes[i]));
-            }
-
-            // The hash retrived from the responce header is in lower case with 
-            // no spaces, must make sure this hash conforms to the scheme too.
-            return hashBuilder.toString().toLowerCase(Locale.ENGLISH)
-                    .replaceAll(" ", "");            
-        }
-        finally {
-            fis.close();
+    private static String getMd5Hash(MessageDigest md5) {
+        byte[] md5Bytes = md5.digest();
+        StringBuilder hashBuilder = new StringBuilder();
+        for (int i = 0; i < md5Bytes.length; i++) {
+            hashBuilder.append(String.format("%02X", md5Bytes[i]));
         }
+
+        // The hash retrived from the responce header is in lower case, must 
+        // make sure this hash conforms to the scheme too.
+        return hashBuilder.toString().toLowerCase(Locale.ENGLISH);
     }
     
     /**
@@ -42,7 +42,7 @@ abstract class BaseScore {
         state.setLowestScore(Integer.MAX_VALUE);
         int lastNodeCharacter = 
                 state.getNodesList().get(state.getNodesList().size() - 1).
-                                                            getRoot().position;
+                                                            getRootPosition();
         while (closestSignatures.hasNext() &&
                count < state.getDataSet().maxSignatures) {
             rankedSignatureIndex = closestSignatures.next();
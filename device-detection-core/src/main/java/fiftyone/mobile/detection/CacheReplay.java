@@ -0,0 +1,242 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.detection.entities.Profile;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carries the User-Agents cached by a provider over to the provider for a
+ * new data set so that replacing the data set does not start with an empty
+ * cache.
+ * <p>
+ * When run the User-Agents in the old provider's cache are matched by the new
+ * provider, which adds the results to its own cache. Most User-Agents return
+ * the same profiles from consecutive data files. The number of User-Agents
+ * whose profiles changed is recorded.
+ * <p>
+ * Until the replay is complete requests should be passed to the match
+ * methods of this class. A result already in the new provider's cache is
+ * returned first, then a result still in the old provider's cache, and only
+ * if neither is cached is a detection performed by the new provider. Matches
+ * returned from the old provider's cache relate to the old data set which
+ * must not be closed until the replay is complete.
+ * <p>
+ * The old provider must use an {@link fiftyone.mobile.detection.cache.LruCache}
+ * on its own or behind a
+ * {@link fiftyone.mobile.detection.cache.ThreadLocalCache}. Nothing is
+ * replayed from a compact cache as it does not store the User-Agents.
+ * <p>
+ * For example:
+ * <pre>
+ * CacheReplay replay = new CacheReplay(oldProvider, newProvider);
+ * new Thread(replay).start();
+ * // Use replay.match(userAgent) until replay.isComplete().
+ * </pre>
+ */
+public class CacheReplay implements Runnable {
+
+    /**
+     * Provider for the data set being replaced.
+     */
+    public final Provider oldProvider;
+
+    /**
+     * Provider for the new data set.
+     */
+    public final Provider newProvider;
+
+    /**
+     * The User-Agents in the old provider's cache when the instance was
+     * created.
+     */
+    private final List<String> userAgents;
+
+    private final AtomicInteger replayed = new AtomicInteger();
+    private final AtomicInteger changed = new AtomicInteger();
+    private volatile boolean complete = false;
+    private volatile boolean cancelled = false;
+
+    /**
+     * Constructs a new instance taking a snapshot of the User-Agents in the
+     * old provider's cache.
+     *
+     * @param oldProvider provider for the data set being replaced.
+     * @param newProvider provider for the new data set.
+     */
+    public CacheReplay(Provider oldProvider, Provider newProvider) {
+        if (oldProvider == null || newProvider == null) {
+            throw new IllegalArgumentException(
+                    "Old and new providers must not be null.");
+        }
+        this.oldProvider = oldProvider;
+        this.newProvider = newProvider;
+        this.userAgents = oldProvider.getCachedUserAgents();
+    }
+
+    /**
+     * Matches each of the User-Agents from the old provider's cache with the
+     * new provider. Errors matching a User-Agent are ignored as the
+     * User-Agent will be matched again when it is next requested.
+     */
+    @Override
+    public void run() {
+        try {
+            Match match = newProvider.createMatch();
+            for (String userAgent : userAgents) {
+                if (cancelled) {
+                    break;
+                }
+                try {
+                    MatchResult oldResult =
+                            oldProvider.peekCachedResult(userAgent);
+                    MatchResult newResult =
+                            newProvider.load(userAgent, match.state);
+                    if (oldResult != null &&
+                        sameProfiles(oldResult, newResult) == false) {
+                        changed.incrementAndGet();
+                    }
+                } catch (IOException ex) {
+                    // Nothing to do as the User-Agent will be matched when
+                    // it is requested.
+                }
+                replayed.incrementAndGet();
+            }
+        } finally {
+            complete = true;
+        }
+    }
+
+    /**
+     * Stops the replay before the next User-Agent is matched.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * @return true once the replay has finished or has been cancelled.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return number of User-Agents to be replayed.
+     */
+    public int getCount() {
+        return userAgents.size();
+    }
+
+    /**
+     * @return number of User-Agents replayed so far.
+     */
+    public int getReplayed() {
+        return replayed.get();
+    }
+
+    /**
+     * @return number of replayed User-Agents whose profiles were different
+     * with the new data set.
+     */
+    public int getChanged() {
+        return changed.get();
+    }
+
+    /**
+     * For a given User-Agent returns a match from the new provider's cache,
+     * the old provider's cache or a new detection by the new provider.
+     *
+     * @param targetUserAgent The User-Agent string to use as the target
+     * @return a match containing information about the capabilities of the
+     * device and it's components
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public Match match(String targetUserAgent) throws IOException {
+        Match match = complete ? null : matchCached(targetUserAgent);
+        return match != null ? match : newProvider.match(targetUserAgent);
+    }
+
+    /**
+     * For a given collection of HTTP headers returns a match from the new
+     * provider's cache, the old provider's cache or a new detection by the
+     * new provider. Cached results are only used when a single header is
+     * relevant to detection.
+     *
+     * @param headers List of HTTP headers to use for the detection
+     * @return a match for the target headers provided
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public Match match(Map<String, String> headers) throws IOException {
+        Match match = null;
+        if (complete == false && headers != null) {
+            String single = newProvider.getSingleHeader(headers);
+            if (single != null) {
+                match = matchCached(single);
+                if (match != null) {
+                    match.cookie = headers.get("Cookie");
+                }
+            }
+        }
+        return match != null ? match : newProvider.match(headers);
+    }
+
+    /**
+     * Returns a match for the result cached by the new provider, or if not
+     * cached by the old provider, otherwise null.
+     */
+    private Match matchCached(String targetUserAgent) {
+        Provider provider = newProvider;
+        MatchResult result = newProvider.getCachedResult(targetUserAgent);
+        if (result == null) {
+            provider = oldProvider;
+            result = oldProvider.getCachedResult(targetUserAgent);
+        }
+        if (result == null) {
+            return null;
+        }
+        Match match = provider.createMatch();
+        match.setResult(result);
+        return match;
+    }
+
+    /**
+     * Returns true if both results contain profiles with the same ids in
+     * the same order.
+     */
+    private static boolean sameProfiles(MatchResult oldResult,
+            MatchResult newResult) throws IOException {
+        Profile[] oldProfiles = oldResult.getProfiles();
+        Profile[] newProfiles = newResult.getProfiles();
+        if (oldProfiles.length != newProfiles.length) {
+            return false;
+        }
+        for (int i = 0; i < oldProfiles.length; i++) {
+            if (oldProfiles[i].profileId != newProfiles[i].profileId) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
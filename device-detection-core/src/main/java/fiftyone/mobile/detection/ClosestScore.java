@@ -20,6 +20,7 @@
  * ********************************************************************* */
 package fiftyone.mobile.detection;
 
+import fiftyone.mobile.detection.entities.AsciiString;
 import fiftyone.mobile.detection.entities.BaseEntity;
 import java.io.IOException;
 import fiftyone.mobile.detection.entities.Node;
@@ -52,7 +53,12 @@ class ClosestScore extends BaseScore {
     @Override
     protected int getScore(MatchState state, Node node) throws IOException {
         int score = 0;
-        int nodeIndex = node.getCharacters().length - 1, 
+        // Score directly against the string's characters, which for data 
+        // sets held in memory are in the strings arena, to avoid a copy.
+        AsciiString string = node.getCharacterString();
+        byte[] source = string.getSource();
+        int start = string.getStart();
+        int nodeIndex = string.getLength() - 1, 
             targetIndex = node.position + node.getLength();
 
         // Adjust the score and indexes if the node is too long.
@@ -65,7 +71,7 @@ class ClosestScore extends BaseScore {
         while (nodeIndex >= 0 && score < state.getLowestScore()) {
             int difference = Math.abs(
                     state.getTargetUserAgentArray()[targetIndex] -
-                    node.getCharacters()[nodeIndex]);
+                    source[start + nodeIndex]);
             if (difference != 0) {
                 int numericDifference = 0;
 
@@ -78,7 +84,7 @@ class ClosestScore extends BaseScore {
                        BaseEntity.getIsNumeric(
                                state.getTargetUserAgentArray()[newTargetIndex]) &&
                        BaseEntity.getIsNumeric(
-                               node.getCharacters()[newNodeIndex])) {
+                               source[start + newNodeIndex])) {
                     newNodeIndex++;
                     newTargetIndex++;
                 }
@@ -91,7 +97,7 @@ class ClosestScore extends BaseScore {
                        BaseEntity.getIsNumeric(
                                state.getTargetUserAgentArray()[targetIndex]) &&
                        BaseEntity.getIsNumeric(
-                               node.getCharacters()[nodeIndex])) {
+                               source[start + nodeIndex])) {
                     nodeIndex--;
                     targetIndex--;
                     characters++;
@@ -106,8 +112,8 @@ class ClosestScore extends BaseScore {
                                     targetIndex + 1, 
                                     characters) -
                             BaseEntity.getNumber(
-                                    node.getCharacters(), 
-                                    nodeIndex + 1, 
+                                    source, 
+                                    start + nodeIndex + 1, 
                                     characters));
                 }
 
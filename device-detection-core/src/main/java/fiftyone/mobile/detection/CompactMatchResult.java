@@ -0,0 +1,172 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.detection.cache.CompactCache;
+import fiftyone.mobile.detection.entities.Node;
+import fiftyone.mobile.detection.entities.Profile;
+import fiftyone.mobile.detection.entities.Signature;
+import fiftyone.properties.MatchMethods;
+import java.io.IOException;
+
+/**
+ * A match result recreated from an entry in a {@link CompactCache}.
+ * <p>
+ * Only the information needed to return property values and the device Id is
+ * stored in the cache. The method, difference and signature index are packed
+ * into a single long and the profiles are stored as an array of profile Ids.
+ * The nodes and the counters relating to the work performed by the original
+ * detection are not retained, as no work is performed when the result is
+ * returned from the cache.
+ * <p>
+ * This class should not be called as it is part of the internal logic.
+ */
+class CompactMatchResult extends MatchResult {
+
+    /**
+     * Number of bits used for the match method.
+     */
+    private static final int METHOD_BITS = 8;
+
+    /**
+     * Number of bits used for the signature index. The index is stored
+     * incremented by one so that zero can represent no signature.
+     */
+    private static final int SIGNATURE_BITS = 24;
+
+    /**
+     * The largest signature index that can be packed.
+     */
+    private static final int MAX_SIGNATURE_INDEX = (1 << SIGNATURE_BITS) - 2;
+
+    /**
+     * Used to convert the packed method back to the enum.
+     */
+    private static final MatchMethods[] METHODS = MatchMethods.values();
+
+    /**
+     * Empty array returned as the nodes are not stored.
+     */
+    private static final Node[] NO_NODES = new Node[0];
+
+    /**
+     * Creates the cache entry for the match result provided.
+     *
+     * @param source result of a detection for a single User-Agent.
+     * @return entry to be stored in a compact cache, or null if the result
+     * can not be packed.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    static CompactCache.Entry createEntry(MatchResult source)
+            throws IOException {
+        int signatureIndex = -1;
+        Signature signature = source.getSignature();
+        if (signature != null) {
+            if (signature.index > MAX_SIGNATURE_INDEX) {
+                return null;
+            }
+            signatureIndex = signature.index;
+        }
+        Profile[] profiles = source.getProfiles();
+        int[] profileIds = new int[profiles.length];
+        for (int i = 0; i < profiles.length; i++) {
+            profileIds[i] = profiles[i].profileId;
+        }
+        long meta = ((long)source.getLowestScore() << 32) |
+                    ((long)(signatureIndex + 1) << METHOD_BITS) |
+                    source.getMethod().ordinal();
+        return new CompactCache.Entry(meta, profileIds);
+    }
+
+    /**
+     * The data set used to resolve the profiles and signature.
+     */
+    private final Dataset dataSet;
+
+    /**
+     * Index of the signature, or -1 if there is no signature.
+     */
+    private final int signatureIndex;
+
+    /**
+     * Ids of the profiles found by the original detection.
+     */
+    private final int[] profileIds;
+
+    /**
+     * Constructs a new instance of the result from the cache entry.
+     *
+     * @param dataSet used to resolve the profiles and signature.
+     * @param targetUserAgent the User-Agent used as the cache key.
+     * @param entry retrieved from the cache.
+     */
+    CompactMatchResult(Dataset dataSet, String targetUserAgent,
+            CompactCache.Entry entry) {
+        super(dataSet);
+        this.dataSet = dataSet;
+        long meta = entry.getMeta();
+        this.method = METHODS[(int)(meta & ((1 << METHOD_BITS) - 1))];
+        this.signatureIndex = (int)((meta >>> METHOD_BITS) &
+                ((1 << SIGNATURE_BITS) - 1)) - 1;
+        this.lowestScore = (int)(meta >> 32);
+        this.targetUserAgent = targetUserAgent;
+        this.profileIds = entry.getValues();
+    }
+
+    /**
+     * @return the signature found by the original detection, or null if
+     * there was no signature.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    @Override
+    public Signature getSignature() throws IOException {
+        Signature result = signature;
+        if (result == null && signatureIndex >= 0) {
+            result = signature = dataSet.signatures.get(signatureIndex);
+        }
+        return result;
+    }
+
+    /**
+     * @return the profiles found by the original detection.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    @Override
+    public Profile[] getProfiles() throws IOException {
+        Profile[] result = profiles;
+        if (result == null) {
+            result = new Profile[profileIds.length];
+            for (int i = 0; i < profileIds.length; i++) {
+                result[i] = dataSet.findProfile(profileIds[i]);
+            }
+            profiles = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return an empty array as the nodes are not stored in the cache.
+     */
+    @Override
+    Node[] getNodes() {
+        return NO_NODES;
+    }
+}
@@ -26,6 +26,9 @@ import java.io.IOException;
 import fiftyone.properties.MatchMethods;
 import fiftyone.mobile.detection.entities.Node;
 import fiftyone.mobile.detection.search.SearchResult;
+import fiftyone.mobile.detection.telemetry.EventType;
+import fiftyone.mobile.detection.telemetry.Events;
+import fiftyone.mobile.detection.telemetry.IEventListener;
 import java.util.Comparator;
 import java.util.List;
 
@@ -149,10 +152,20 @@ class Controller {
             // Set the default values.
             matchDefault(state);
         } else {
+            // Report the stages if a listener is set.
+            IEventListener listener = Events.getListener();
+            Object event = null;
+
             // Starting at the far right evaluate the nodes in the data
             // set recording matched nodes. Continue until all character
             // positions have been checked.
+            if (listener != null) {
+                event = listener.begin(EventType.MATCH_EVALUATE);
+            }
             evaluate(state);
+            if (listener != null) {
+                end(listener, event, EventType.MATCH_EVALUATE, state);
+            }
             
             /// Can a precise match be found based on the nodes?
             int signatureIndex = getExactSignatureIndex(state);
@@ -166,7 +179,14 @@ class Controller {
             } else {
                 // No. So find any other nodes that match if numeric differences
                 // are considered.
+                if (listener != null) {
+                    event = listener.begin(EventType.MATCH_EVALUATE_NUMERIC);
+                }
                 evaluateNumeric(state);
+                if (listener != null) {
+                    end(listener, event, EventType.MATCH_EVALUATE_NUMERIC, 
+                            state);
+                }
 
                 // Can a precise match be found based on the nodes?
                 signatureIndex = getExactSignatureIndex(state);
@@ -178,6 +198,10 @@ class Controller {
                     state.setMethod(MatchMethods.NUMERIC);
                 } else if (state.getNodesList().size() > 0) {
 
+                    if (listener != null) {
+                        event = listener.begin(EventType.MATCH_NEAREST);
+                    }
+
                     // Get the signatures that are closest to the target.
                     RankedSignatureIterator closestSignatures =
                             getClosestSignatures(state);
@@ -186,6 +210,10 @@ class Controller {
                     // exactly the same place.
                     nearest.evaluateSignatures(state, closestSignatures);
 
+                    if (listener != null) {
+                        end(listener, event, EventType.MATCH_NEAREST, state);
+                    }
+
                     if (state.getSignature() != null) {
                         // All the sub strings matched, just in different 
                         // character positions.
@@ -194,7 +222,14 @@ class Controller {
                         // Find the closest signatures and compare them
                         // to the target looking at the smallest character
                         // difference.
+                        if (listener != null) {
+                            event = listener.begin(EventType.MATCH_CLOSEST);
+                        }
                         closest.evaluateSignatures(state, closestSignatures);
+                        if (listener != null) {
+                            end(listener, event, EventType.MATCH_CLOSEST, 
+                                    state);
+                        }
                         state.setMethod(MatchMethods.CLOSEST);
                     }
                 }
@@ -220,7 +255,7 @@ class Controller {
         int existingNodeIndex = state.getNodesList().size() - 1;
         while (state.nextCharacterPositionIndex > 0) {
             if (existingNodeIndex < 0
-                    || state.getNodesList().get(existingNodeIndex).getRoot().position
+                    || state.getNodesList().get(existingNodeIndex).getRootPosition()
                     < state.nextCharacterPositionIndex) {
                 state.incrRootNodesEvaluated();
                 Node node = state.getDataSet().rootNodes.
@@ -306,11 +341,33 @@ class Controller {
      */
     private static int getExactSignatureIndex(MatchState state) 
                                                             throws IOException {
+        IEventListener listener = Events.getListener();
+        Object event = null;
+        if (listener != null) {
+            event = listener.begin(EventType.MATCH_EXACT_SEARCH);
+        }
         SearchResult result = state.match.getDataSet().getSignatureSearch().
             binarySearchResults(state.getNodesList());
         state.signaturesRead += result.getIterations();
+        if (listener != null) {
+            end(listener, event, EventType.MATCH_EXACT_SEARCH, state);
+        }
         return result.getIndex();
     }
+
+    /**
+     * Reports the end of a stage of the detection to the listener.
+     * 
+     * @param listener to report the end of the stage to
+     * @param event returned from the listener when the stage began
+     * @param type of the stage
+     * @param state current working state of the matching process
+     */
+    private static void end(IEventListener listener, Object event, 
+            EventType type, MatchState state) {
+        listener.end(event, type, null, state.getNodesEvaluated(), 
+                state.getSignaturesCompared());
+    }
     
     /**
      * Returns a distinct list of signatures which most closely match the target
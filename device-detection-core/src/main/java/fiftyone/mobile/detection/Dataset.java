@@ -24,6 +24,7 @@ import fiftyone.mobile.detection.DatasetBuilder.CacheType;
 import fiftyone.mobile.detection.entities.*;
 import fiftyone.mobile.detection.entities.memory.MemoryFixedList;
 import fiftyone.mobile.detection.entities.memory.PropertiesList;
+import fiftyone.mobile.detection.query.ProfileIndex;
 import fiftyone.mobile.detection.search.SearchBase;
 import fiftyone.mobile.detection.search.SearchResult;
 import fiftyone.properties.DetectionConstants;
@@ -517,40 +518,36 @@ public class Dataset implements Closeable {
      * 
      * @return search instance connected to the list of signatures
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     SearchSignatureByNodes getSignatureSearch() {
         SearchSignatureByNodes result = sigantureSearch;
         if (result == null) {
-            synchronized (this) {
-                result = sigantureSearch;
-                if (result == null) {
-                    sigantureSearch = result = new SearchSignatureByNodes(
-                        signatures);
-                }
-            }
+            sigantureSearch = result = new SearchSignatureByNodes(
+                signatures);
         }
         return result;
     }
     private volatile SearchSignatureByNodes sigantureSearch;
 
     /**
-     * @return an instance of the profile offset search.
+     * The index reads every profile offset so is only built once, by the
+     * first thread to need it.
+     * 
+     * @return an instance of the profile id index.
+     * @throws IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
-    private SearchProfileOffsetByProfileId getProfileOffsetSearch() {
-        SearchProfileOffsetByProfileId result = profileOffsetSearch;
+    private ProfileIdIndex getProfileIdIndex() throws IOException {
+        ProfileIdIndex result = profileIdIndex;
         if (result == null) {
             synchronized (this) {
-                result = profileOffsetSearch;
+                result = profileIdIndex;
                 if (result == null) {
-                    profileOffsetSearch = result = 
-                            new SearchProfileOffsetByProfileId(profileOffsets);
+                    profileIdIndex = result = ProfileIdIndex.create(this);
                 }
             }
         }
         return result;
     }
-    private volatile SearchProfileOffsetByProfileId profileOffsetSearch;
+    private volatile ProfileIdIndex profileIdIndex;
 
     /**
      * Get the profiles associated with the {@link Property} name and
@@ -596,6 +593,60 @@ public class Dataset implements Closeable {
         return property.findProfiles(valueName, filterProfiles);
     }
 
+    /**
+     * Returns the inverted index of values to profiles used to find profiles
+     * matching one or more property values. Use with 
+     * {@link fiftyone.mobile.detection.query.ProfileQuery} to combine 
+     * conditions across the properties of a component.
+     * 
+     * @return the profile index for the data set.
+     */
+    @SuppressWarnings("DoubleCheckedLocking")
+    public ProfileIndex getProfileIndex() {
+        ProfileIndex result = profileIndex;
+        if (result == null) {
+            synchronized (this) {
+                result = profileIndex;
+                if (result == null) {
+                    profileIndex = result = new ProfileIndex(this);
+                }
+            }
+        }
+        return result;
+    }
+    private volatile ProfileIndex profileIndex;
+
+    /**
+     * Returns the table of node and signature metadata used when scoring, or
+     * null if {@link #initNodeTable()} has not been called.
+     * 
+     * @return the node table for the data set, or null.
+     */
+    public NodeTable getNodeTable() {
+        return nodeTable;
+    }
+
+    /**
+     * Builds the table of node and signature metadata so that the lengths
+     * of signatures and nodes can be found during detection without fetching
+     * nodes from the data set. Mainly useful when nodes and signatures are 
+     * streamed from the data file, at the expense of memory.
+     * <p>
+     * This method should not be called as it is part of the internal logic.
+     * 
+     * @throws java.io.IOException if there was a problem accessing data file.
+     */
+    public void initNodeTable() throws IOException {
+        if (nodeTable == null) {
+            synchronized (this) {
+                if (nodeTable == null) {
+                    nodeTable = new NodeTable(this);
+                }
+            }
+        }
+    }
+    private volatile NodeTable nodeTable;
+
     /**
      * Returns an iterable of all {@link Component Components} in the current 
      * data file.
@@ -822,6 +873,7 @@ public class Dataset implements Closeable {
         initProfiles();
         initNodes();
         initSignatures();
+        getProfileIndex().build();
 
         // We no longer need the strings data structure as all dependent
         // data has been taken from it.
@@ -980,17 +1032,15 @@ public class Dataset implements Closeable {
     }
 
     /**
-     * Searches the list of profile IDs and returns the profile if the profile
-     * id is valid.
+     * Returns the profile if the profile id is valid. The profile ids are
+     * indexed the first time the method is called.
      *
      * @param profileId Id of the profile to be found, not negative.
      * @return Profile related to the id, or null if none found.
      * @throws IOException signals an I/O exception occurred
      */
     public Profile findProfile(int profileId) throws IOException {
-        int index = getProfileOffsetSearch().binarySearch(profileId);
-        return index < 0 ? null : profiles.get(
-                profileOffsets.get(index).getOffset());
+        return getProfileIdIndex().find(profileId, profiles);
     }
 
     /**
@@ -1046,43 +1096,6 @@ public class Dataset implements Closeable {
         }
     }
     
-    /**
-     * Used to search for a profile offset from a profile id.
-     */
-    private static class SearchProfileOffsetByProfileId 
-        extends SearchBase<ProfileOffset, Integer, IReadonlyList<ProfileOffset>> {
-
-        private final IReadonlyList<ProfileOffset> profileOffsets;
-        
-        SearchProfileOffsetByProfileId(
-                IReadonlyList<ProfileOffset> profileOffsets) {
-            this.profileOffsets = profileOffsets;
-        }
-        
-        @Override
-        protected int getCount(IReadonlyList<ProfileOffset> list) {
-            return list.size();
-        }
-
-        @Override
-        protected ProfileOffset getValue(
-                IReadonlyList<ProfileOffset> list, 
-                int index) 
-                throws IOException {
-            return list.get(index);
-        }
-
-        @Override
-        protected int compareTo(ProfileOffset item, Integer profileId) 
-                throws IOException {
-            return item.getProfileId() - profileId;
-        }
-        
-        int binarySearch(Integer profileId) throws IOException {
-            return super.binarySearch(profileOffsets, profileId);
-        }
-    }
-
     /**
      * Reset any caches in use for this Dataset. Only {@link IndirectDataset}
      * contains caches.
@@ -32,6 +32,9 @@ import fiftyone.mobile.detection.factories.stream.NodeStreamFactoryV31;
 import fiftyone.mobile.detection.factories.stream.NodeStreamFactoryV32;
 import fiftyone.mobile.detection.factories.stream.ProfileStreamFactory;
 import fiftyone.mobile.detection.readers.BinaryReader;
+import fiftyone.mobile.detection.telemetry.EventType;
+import fiftyone.mobile.detection.telemetry.Events;
+import fiftyone.mobile.detection.telemetry.IEventListener;
 
 
 import java.io.File;
@@ -227,6 +230,11 @@ public class DatasetBuilder {
     }
     
     private java.util.Map<CacheType, ICacheOptions> cacheMap = new EnumMap<CacheType, ICacheOptions>(CacheType.class);
+    private boolean initNodeTable = false;
+    private WarmUp.Section[] pretouchSections = null;
+    private Iterable<String> warmUpUserAgents = null;
+    private String warmUpFileName = null;
+    private int warmUpMaxUserAgents = 0;
 
     // prevent direct construction
     private DatasetBuilder() {
@@ -381,6 +389,71 @@ public class DatasetBuilder {
             //noinspection unchecked
 			return (T) this;
         }
+
+        /**
+         * Build the data set's {@link fiftyone.mobile.detection.entities.NodeTable}
+         * when the data set is created so that signature and node lengths 
+         * can be found without fetching nodes during detection. Increases 
+         * the time taken to create the data set and the memory used.
+         */
+        public T initNodeTable() {
+            return initNodeTable(true);
+        }
+
+        /**
+         * Build the data set's {@link fiftyone.mobile.detection.entities.NodeTable}
+         * when the data set is created.
+         * @param isInit if true, build the table
+         */
+        public T initNodeTable(boolean isInit) {
+            initNodeTable = isInit;
+            //noinspection unchecked
+            return (T) this;
+        }
+
+        /**
+         * Pre-touch the sections of the data file used for matching in a
+         * background thread once the data set is created.
+         * See {@link WarmUp#MATCH_SECTIONS}.
+         */
+        public T pretouch() {
+            return pretouch(WarmUp.MATCH_SECTIONS);
+        }
+
+        /**
+         * Pre-touch sections of the data file in a background thread once
+         * the data set is created.
+         * @param sections the sections to read in order
+         */
+        public T pretouch(WarmUp.Section... sections) {
+            pretouchSections = sections;
+            //noinspection unchecked
+            return (T) this;
+        }
+
+        /**
+         * Match the User-Agents before the data set is returned so that the
+         * entities they need are in the caches.
+         * @param userAgents sample of User-Agents to match
+         */
+        public T warmUp(Iterable<String> userAgents) {
+            warmUpUserAgents = userAgents;
+            //noinspection unchecked
+            return (T) this;
+        }
+
+        /**
+         * Match the User-Agents in a file, one per line, before the data set
+         * is returned so that the entities they need are in the caches.
+         * @param fileName UTF-8 file of User-Agents
+         * @param maxUserAgents the most User-Agents to match
+         */
+        public T warmUp(String fileName, int maxUserAgents) {
+            warmUpFileName = fileName;
+            warmUpMaxUserAgents = maxUserAgents;
+            //noinspection unchecked
+            return (T) this;
+        }
     }
 
     /**
@@ -400,6 +473,7 @@ public class DatasetBuilder {
         public IndirectDataset build(byte[] buffer) throws IOException {
             IndirectDataset dataSet = new IndirectDataset(buffer, Modes.MEMORY_MAPPED);
             loadForStreaming(dataSet, cacheMap);
+            prepare(dataSet);
             return dataSet;
         }
     }
@@ -455,6 +529,7 @@ public class DatasetBuilder {
             }
             IndirectDataset dataSet = new IndirectDataset(filename, modDate, Modes.FILE, isTempFile);
             loadForStreaming(dataSet, cacheMap);
+            prepare(dataSet);
             return dataSet;
         }
     }
@@ -508,12 +583,14 @@ public class DatasetBuilder {
         final IndirectDataset dataset;
         final BaseEntityFactory<V> entityFactory;
         final Header header;
+        final CacheType cacheType;
         boolean fixedLength = false;
 
-        EntityLoader(Header header, IndirectDataset dataset, BaseEntityFactory<V> entityFactory) {
+        EntityLoader(Header header, IndirectDataset dataset, BaseEntityFactory<V> entityFactory, CacheType cacheType) {
             this.dataset = dataset;
             this.entityFactory = entityFactory;
             this.header = header;
+            this.cacheType = cacheType;
             try {
                 getEntityFactory().getLength();
                 fixedLength = true;
@@ -526,20 +603,43 @@ public class DatasetBuilder {
 
         @Override
         public V load(Integer key) throws IOException {
+            IEventListener listener = Events.getListener();
+            Object event = null;
+            if (listener != null) {
+                event = listener.begin(EventType.ENTITY_LOAD);
+            }
             BinaryReader reader = dataset.pool.getReader();
             try {
-                if (fixedLength) {
-                    reader.setPos(header.getStartPosition()
-                            + (getEntityFactory().getLength() * key));
-                } else {
-                    reader.setPos(header.getStartPosition() + key);
+                V result = read(key, reader);
+                if (listener != null) {
+                    listener.end(event, EventType.ENTITY_LOAD,
+                            cacheType.name(), 0, 0);
                 }
-                return entityFactory.create(dataset, key, reader);
+                return result;
             } finally {
                 dataset.pool.release(reader);
             }
         }
 
+        /**
+         * Creates the entity at the index or offset provided using the reader
+         * without reference to any cache.
+         *
+         * @param key index or offset of the entity.
+         * @param reader positioned by the method before the entity is read.
+         * @return the entity.
+         * @throws IOException if there was a problem accessing data file.
+         */
+        final V read(int key, BinaryReader reader) throws IOException {
+            if (fixedLength) {
+                reader.setPos(header.getLongStartPosition()
+                        + (getEntityFactory().getLength() * key));
+            } else {
+                reader.setPos(header.getLongStartPosition() + key);
+            }
+            return entityFactory.create(dataset, key, reader);
+        }
+
         @SuppressWarnings("WeakerAccess")
         public int nextPosition(int position, V result) throws IOException {
             if (fixedLength) {
@@ -570,10 +670,10 @@ public class DatasetBuilder {
 
         private LruCache<Integer, V> cache;
 
-        LruEntityLoader(final Header header, final IndirectDataset dataset, final BaseEntityFactory<V> entityFactory, LruCache<Integer, V> cache) {
-            super(header, dataset, entityFactory);
+        LruEntityLoader(final Header header, final IndirectDataset dataset, final BaseEntityFactory<V> entityFactory, final CacheType cacheType, LruCache<Integer, V> cache) {
+            super(header, dataset, entityFactory, cacheType);
             this.cache = cache;
-            this.cache.setCacheLoader(new EntityLoader<V>(header, dataset, entityFactory));
+            this.cache.setCacheLoader(new EntityLoader<V>(header, dataset, entityFactory, cacheType));
         }
 
         @Override
@@ -592,8 +692,8 @@ public class DatasetBuilder {
 
         private IPutCache<Integer, V> cache;
 
-        CachedEntityLoader(Header header, IndirectDataset dataset, BaseEntityFactory<V> entityFactory, IPutCache<Integer, V> cache) {
-            super(header, dataset, entityFactory);
+        CachedEntityLoader(Header header, IndirectDataset dataset, BaseEntityFactory<V> entityFactory, CacheType cacheType, IPutCache<Integer, V> cache) {
+            super(header, dataset, entityFactory, cacheType);
             this.cache = cache;
         }
 
@@ -616,7 +716,14 @@ public class DatasetBuilder {
      *
      * @param <T> type of entity
      */
-    private static class StreamList<T extends BaseEntity> implements IReadonlyList<T> {
+    private static class StreamList<T extends BaseEntity> implements IScannableList<T> {
+
+        /**
+         * Number of entities read each time a reader is taken from the pool
+         * during a scan. Returning the reader between batches means a scan
+         * that is abandoned part way through does not hold a reader.
+         */
+        private static final int SCAN_BATCH_SIZE = 256;
 
         private EntityLoader<T> loader;
 
@@ -677,27 +784,115 @@ public class DatasetBuilder {
                 }
             };
         }
+
+        @Override
+        public Iterable<T> scan() {
+            return scan(0, size());
+        }
+
+        @Override
+        public Iterable<T> scan(final int index, final int count) {
+            if (index < 0) {
+                throw new IllegalArgumentException(
+                        "Index must be a positive integer.");
+            }
+            if (count < 0 || (loader.fixedLength && index + count > size())) {
+                throw new IllegalArgumentException(String.format(
+                        "Count '%d' from index '%d' exceeds size '%d'.",
+                        count, index, size()));
+            }
+            return new Iterable<T>() {
+                @Override
+                public Iterator<T> iterator() {
+                    return new ScanIterator(index, count);
+                }
+            };
+        }
+
+        /**
+         * Reads entities sequentially in batches bypassing the cache of the
+         * loader.
+         */
+        private class ScanIterator implements Iterator<T> {
+            // entities read in the current batch
+            final List<T> batch = new ArrayList<T>(SCAN_BATCH_SIZE);
+            // the next entity in the batch to return
+            int batchIndex = 0;
+            // entities remaining to be read from the data source
+            int remaining;
+            // the position of the next entity to read
+            int position;
+
+            ScanIterator(int position, int count) {
+                this.position = position;
+                this.remaining = count;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return batchIndex < batch.size() || remaining > 0;
+            }
+
+            @Override
+            public T next() {
+                if (batchIndex >= batch.size()) {
+                    if (remaining <= 0) {
+                        throw new NoSuchElementException();
+                    }
+                    try {
+                        readBatch();
+                    } catch (IOException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return batch.get(batchIndex++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException("remove not supported");
+            }
+
+            private void readBatch() throws IOException {
+                batch.clear();
+                batchIndex = 0;
+                int size = Math.min(SCAN_BATCH_SIZE, remaining);
+                BinaryReader reader = loader.dataset.pool.getReader();
+                try {
+                    for (int i = 0; i < size; i++) {
+                        T result = loader.read(position, reader);
+                        batch.add(result);
+                        position = loader.nextPosition(position, result);
+                    }
+                } finally {
+                    loader.dataset.pool.release(reader);
+                }
+                remaining -= size;
+            }
+        }
     }
 
     /**
      * helper to create an appropriate loader for a cached list given the cache type
      *
-     * @param header  the header defining the list this will create the loader for
-     * @param cache   the cache, or null
-     * @param dataset the dataset
-     * @param factory the factory for the type
-     * @param <T>     the type
+     * @param header    the header defining the list this will create the loader for
+     * @param cacheMap  the caches available
+     * @param cacheType the type of cache to use
+     * @param dataset   the dataset
+     * @param factory   the factory for the type
+     * @param <T>       the type
      * @return an entity loader
      */
     @SuppressWarnings("unchecked")
-    private static <T> EntityLoader<T> getLoaderFor(Header header, ICache cache, IndirectDataset dataset, BaseEntityFactory factory) {
+    private static <T> EntityLoader<T> getLoaderFor(Header header, java.util.Map<CacheType, ICache> cacheMap, CacheType cacheType, IndirectDataset dataset, BaseEntityFactory factory) {
         EntityLoader loader;
+        ICache cache = cacheMap.get(cacheType);
         if (cache == null) {
-            loader = new EntityLoader(header, dataset, factory);
+            loader = new EntityLoader(header, dataset, factory, cacheType);
         } else if (cache instanceof LruCache) {
-            loader = new LruEntityLoader(header, dataset, factory, (LruCache) cache);
+            loader = new LruEntityLoader(header, dataset, factory, cacheType, (LruCache) cache);
         } else if (cache instanceof IPutCache) {
-            loader = new CachedEntityLoader(header, dataset, factory, (IPutCache) cache);
+            loader = new CachedEntityLoader(header, dataset, factory, cacheType, (IPutCache) cache);
         } else {
             throw new IllegalStateException("Cache must be null, LruCache or IPutCache");
         }
@@ -715,6 +910,11 @@ public class DatasetBuilder {
      */
     @SuppressWarnings("null")
     private static void loadForStreaming(IndirectDataset dataSet, java.util.Map<CacheType, ICacheOptions> cacheConfiguration) throws IOException {
+        IEventListener listener = Events.getListener();
+        Object event = null;
+        if (listener != null) {
+            event = listener.begin(EventType.DATASET_LOAD);
+        }
         BinaryReader reader = dataSet.pool.getReader();
         try {
             java.util.Map<CacheType, ICache> cacheMap = buildCaches(cacheConfiguration);
@@ -724,7 +924,7 @@ public class DatasetBuilder {
             //Load headers that are common for both V31 and V32.
             CommonFactory.loadHeader(dataSet, reader);
 
-            EntityLoader<AsciiString> loader = getLoaderFor(new Header(reader), cacheMap.get(StringsCache), dataSet, new AsciiStringFactory());
+            EntityLoader<AsciiString> loader = getLoaderFor(new Header(reader), cacheMap, StringsCache, dataSet, new AsciiStringFactory());
             dataSet.strings = new StreamList<AsciiString>(loader);
 
             MemoryFixedList<Component> components;
@@ -751,40 +951,57 @@ public class DatasetBuilder {
                     dataSet, reader, new PropertyFactory());
             dataSet.properties = properties;
 
-            EntityLoader<Value> valueLoader = getLoaderFor(new Header(reader), cacheMap.get(ValuesCache),
+            Header valuesHeader = new Header(reader);
+            dataSet.setSection(WarmUp.Section.VALUES, valuesHeader);
+            EntityLoader<Value> valueLoader = getLoaderFor(valuesHeader, cacheMap, ValuesCache,
                     dataSet, new ValueFactory());
             dataSet.values = new StreamList<Value>(valueLoader);
 
-            EntityLoader<Profile> profileLoader = getLoaderFor(new Header(reader), cacheMap.get(ProfilesCache),
+            Header profilesHeader = new Header(reader);
+            dataSet.setSection(WarmUp.Section.PROFILES, profilesHeader);
+            EntityLoader<Profile> profileLoader = getLoaderFor(profilesHeader, cacheMap, ProfilesCache,
                     dataSet, new ProfileStreamFactory());
             dataSet.profiles = new StreamList<Profile>(profileLoader);
 
+            Header signaturesHeader = new Header(reader);
+            dataSet.setSection(WarmUp.Section.SIGNATURES, signaturesHeader);
             switch (dataSet.versionEnum) {
                 case PatternV31:
-                    EntityLoader<Signature> signature31Loader = getLoaderFor(new Header(reader), cacheMap.get(SignaturesCache),
+                    EntityLoader<Signature> signature31Loader = getLoaderFor(signaturesHeader, cacheMap, SignaturesCache,
                             dataSet, new SignatureFactoryV31(dataSet));
                     dataSet.signatures = new StreamList<Signature>(signature31Loader);
                     break;
                 case PatternV32:
-                    EntityLoader<Signature> signature32Loader = getLoaderFor(new Header(reader), cacheMap.get(SignaturesCache),
+                    EntityLoader<Signature> signature32Loader = getLoaderFor(signaturesHeader, cacheMap, SignaturesCache,
                             dataSet, new SignatureFactoryV32(dataSet));
                     dataSet.signatures = new StreamList<Signature>(signature32Loader);
-                    dataSet.signatureNodeOffsets =
+                    IntegerList signatureNodeOffsets =
                             new IntegerList(dataSet, reader);
-                    dataSet.nodeRankedSignatureIndexes =
+                    dataSet.setSection(WarmUp.Section.SIGNATURE_NODE_OFFSETS,
+                            signatureNodeOffsets.header);
+                    dataSet.signatureNodeOffsets = signatureNodeOffsets;
+                    IntegerList nodeRankedSignatureIndexes =
                             new IntegerList(dataSet, reader);
+                    dataSet.setSection(WarmUp.Section.NODE_RANKED_SIGNATURE_INDEXES,
+                            nodeRankedSignatureIndexes.header);
+                    dataSet.nodeRankedSignatureIndexes = nodeRankedSignatureIndexes;
                     break;
             }
-            dataSet.rankedSignatureIndexes = new IntegerList(dataSet, reader);
+            IntegerList rankedSignatureIndexes = new IntegerList(dataSet, reader);
+            dataSet.setSection(WarmUp.Section.RANKED_SIGNATURE_INDEXES,
+                    rankedSignatureIndexes.header);
+            dataSet.rankedSignatureIndexes = rankedSignatureIndexes;
 
+            Header nodesHeader = new Header(reader);
+            dataSet.setSection(WarmUp.Section.NODES, nodesHeader);
             switch (dataSet.versionEnum) {
                 case PatternV31:
-                    EntityLoader<Node> node31Loader = getLoaderFor(new Header(reader), cacheMap.get(NodesCache),
+                    EntityLoader<Node> node31Loader = getLoaderFor(nodesHeader, cacheMap, NodesCache,
                             dataSet, new NodeStreamFactoryV31());
                     dataSet.nodes = new StreamList<Node>(node31Loader);
                     break;
                 case PatternV32:
-                    EntityLoader<Node> node32Loader = getLoaderFor(new Header(reader), cacheMap.get(NodesCache),
+                    EntityLoader<Node> node32Loader = getLoaderFor(nodesHeader, cacheMap, NodesCache,
                             dataSet, new NodeStreamFactoryV32());
                     dataSet.nodes = new StreamList<Node>(node32Loader);
                     break;
@@ -793,6 +1010,7 @@ public class DatasetBuilder {
             MemoryFixedList<Node> rootNodes = new MemoryFixedList<Node>(
                     dataSet, reader, new RootNodeFactory());
             dataSet.rootNodes = rootNodes;
+            dataSet.setSection(WarmUp.Section.ROOT_NODES, rootNodes.header);
 
             MemoryFixedList<ProfileOffset> profileOffsets =
                     new MemoryFixedList<ProfileOffset>(dataSet, reader,
@@ -800,17 +1018,21 @@ public class DatasetBuilder {
             dataSet.profileOffsets = profileOffsets;
 
             //Read into memory all small lists which are frequently accessed.
-            reader.setPos(components.header.getStartPosition());
+            reader.setPos(components.header.getLongStartPosition());
             components.read(reader);
-            reader.setPos(maps.header.getStartPosition());
+            reader.setPos(maps.header.getLongStartPosition());
             maps.read(reader);
-            reader.setPos(properties.header.getStartPosition());
+            reader.setPos(properties.header.getLongStartPosition());
             properties.read(reader);
-            reader.setPos(rootNodes.header.getStartPosition());
+            reader.setPos(rootNodes.header.getLongStartPosition());
             rootNodes.read(reader);
-            reader.setPos(profileOffsets.header.getStartPosition());
+            reader.setPos(profileOffsets.header.getLongStartPosition());
             profileOffsets.read(reader);
 
+            if (listener != null) {
+                listener.end(event, EventType.DATASET_LOAD,
+                        dataSet.mode.name(), 0, 0);
+            }
         } finally {
             if (reader != null) {
                 dataSet.pool.release(reader);
@@ -818,6 +1040,27 @@ public class DatasetBuilder {
         }
     }
 
+    /**
+     * Completes the optional steps configured for the builder once the data
+     * set has been loaded.
+     * @param dataSet the data set that has been loaded
+     * @throws IOException if there was a problem accessing data file
+     */
+    private void prepare(IndirectDataset dataSet) throws IOException {
+        if (initNodeTable) {
+            dataSet.initNodeTable();
+        }
+        if (pretouchSections != null) {
+            WarmUp.pretouchInBackground(dataSet, pretouchSections);
+        }
+        if (warmUpUserAgents != null) {
+            WarmUp.replay(dataSet, warmUpUserAgents);
+        }
+        if (warmUpFileName != null) {
+            WarmUp.replay(dataSet, warmUpFileName, warmUpMaxUserAgents);
+        }
+    }
+
     /**
      * Build caches using the specified configuration.
      * The caches are returned in a map of CacheType to the cache instance
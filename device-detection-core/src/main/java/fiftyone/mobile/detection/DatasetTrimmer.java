@@ -0,0 +1,769 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.detection.entities.Modes;
+import fiftyone.mobile.detection.entities.headers.Header;
+import fiftyone.mobile.detection.factories.CommonFactory;
+import fiftyone.mobile.detection.readers.BinaryReader;
+import fiftyone.properties.DetectionConstants;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Writes a copy of a version 3.2 data file which only contains the
+ * properties needed by an application.
+ * <p>
+ * Properties can be selected by name or by component, in which case all the
+ * properties of the component are kept. The values of the other properties
+ * are removed from the values list and from the profiles, and any strings
+ * which are no longer referenced are removed. The remaining values and
+ * strings are renumbered. The nodes, signatures and profiles are kept so
+ * that every User-Agent returns the same device id from the trimmed file as
+ * from the original. Profiles of components without any selected properties
+ * are kept with no values.
+ * <p>
+ * The trimmed file can be used with any of the factories. It uses less
+ * memory when loaded with the {@link fiftyone.mobile.detection.factories.MemoryFactory}
+ * and less of the file is read when streamed.
+ * <p>
+ * For example:
+ * <pre>
+ * new DatasetTrimmer()
+ *     .addProperties("IsMobile", "DeviceType")
+ *     .addComponents("HardwarePlatform")
+ *     .trim("51Degrees-PremiumV3.2.dat", "51Degrees-Trimmed.dat");
+ * </pre>
+ */
+public class DatasetTrimmer {
+
+    /**
+     * Positions of the string offsets in the header of a version 3.2 file.
+     */
+    private static final int COPYRIGHT_OFFSET_POSITION = 48;
+    private static final int NAME_OFFSET_POSITION = 58;
+    private static final int FORMAT_OFFSET_POSITION = 62;
+
+    /**
+     * Indexes of the sections in the order they appear in the file.
+     */
+    private static final int STRINGS = 0;
+    private static final int COMPONENTS = 1;
+    private static final int MAPS = 2;
+    private static final int PROPERTIES = 3;
+    private static final int VALUES = 4;
+    private static final int PROFILES = 5;
+    private static final int SIGNATURES = 6;
+    private static final int SIGNATURE_NODE_OFFSETS = 7;
+    private static final int NODE_RANKED_SIGNATURE_INDEXES = 8;
+    private static final int RANKED_SIGNATURE_INDEXES = 9;
+    private static final int NODES = 10;
+    private static final int ROOT_NODES = 11;
+    private static final int PROFILE_OFFSETS = 12;
+    private static final int SECTION_COUNT = 13;
+
+    /**
+     * Bytes used by a section header and by fixed length records.
+     */
+    private static final int SECTION_HEADER_LENGTH = 12;
+    private static final int PROPERTY_LENGTH = 44;
+    private static final int VALUE_LENGTH = 14;
+    private static final int PROFILE_MIN_LENGTH = 13;
+    private static final int NODE_MIN_LENGTH = 18;
+    private static final int NODE_INDEX_LENGTH = 8;
+    private static final int NODE_NUMERIC_INDEX_LENGTH = 6;
+
+    /**
+     * Number of bytes copied at a time for unchanged sections.
+     */
+    private static final int COPY_BUFFER_LENGTH = 1024 * 1024;
+
+    private final Set<String> propertyNames = new HashSet<String>();
+    private final Set<String> componentNames = new HashSet<String>();
+
+    /**
+     * Adds properties to be kept in the trimmed file.
+     *
+     * @param names of the properties to keep.
+     * @return this trimmer.
+     */
+    public DatasetTrimmer addProperties(String... names) {
+        propertyNames.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * Adds components whose properties are all kept in the trimmed file.
+     *
+     * @param names of the components to keep.
+     * @return this trimmer.
+     */
+    public DatasetTrimmer addComponents(String... names) {
+        componentNames.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * Writes a trimmed copy of the source data file to the destination,
+     * replacing any existing file.
+     *
+     * @param sourceFileName version 3.2 data file to trim.
+     * @param destinationFileName of the trimmed file.
+     * @throws IOException if there was a problem reading or writing a file.
+     * @throws IllegalArgumentException if no properties or components have
+     * been added, a property or component is not in the source file, or the
+     * source file is not version 3.2.
+     */
+    public void trim(String sourceFileName, String destinationFileName)
+            throws IOException {
+        if (propertyNames.isEmpty() && componentNames.isEmpty()) {
+            throw new IllegalArgumentException(
+                    "At least one property or component must be added.");
+        }
+        File sourceFile = new File(sourceFileName);
+        FileInputStream fileInputStream = new FileInputStream(sourceFile);
+        try {
+            BinaryReader reader = new BinaryReader(fileInputStream);
+            try {
+                new Source(reader, new Date(sourceFile.lastModified()))
+                        .write(destinationFileName);
+            } finally {
+                reader.close();
+            }
+        } finally {
+            fileInputStream.close();
+        }
+    }
+
+    /**
+     * The records of the source file that are changed by trimming. The node
+     * tree, signatures and ranked indexes are read again when written.
+     */
+    private class Source {
+
+        private final BinaryReader reader;
+        private final Dataset dataSet;
+        private final byte[] header;
+        private final Header[] sections = new Header[SECTION_COUNT];
+
+        private final List<ComponentRecord> components =
+                new ArrayList<ComponentRecord>();
+        private final int[] mapNames;
+        private final List<PropertyRecord> properties =
+                new ArrayList<PropertyRecord>();
+        private final List<ValueRecord> values = new ArrayList<ValueRecord>();
+
+        /**
+         * New index of each property and value, or -1 if not kept.
+         */
+        private int[] propertyMap;
+        private int[] valueMap;
+
+        /**
+         * Old profile offsets in ascending order with their new offsets.
+         */
+        private int[] oldProfileOffsets;
+        private int[] newProfileOffsets;
+        private int profilesLength;
+
+        /**
+         * Old string offsets in ascending order with their new offsets.
+         */
+        private int[] oldStringOffsets;
+        private int[] newStringOffsets;
+        private int stringsLength;
+
+        Source(BinaryReader reader, Date lastModified) throws IOException {
+            this.reader = reader;
+            this.dataSet = new Dataset(lastModified, Modes.FILE);
+            CommonFactory.loadHeader(dataSet, reader);
+            if (dataSet.versionEnum !=
+                    DetectionConstants.FORMAT_VERSIONS.PatternV32) {
+                throw new IllegalArgumentException(String.format(
+                        "Data file version '%s' can not be trimmed. Only " +
+                        "version 3.2 data files are supported.",
+                        dataSet.version));
+            }
+            int headerLength = reader.getPos();
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                sections[i] = new Header(reader);
+            }
+            reader.setPos(0);
+            header = reader.readBytes(headerLength);
+            readComponents();
+            mapNames = readIntegers(MAPS);
+            readProperties();
+            readValues();
+            selectProperties();
+            readProfileOffsets();
+            readStringOffsets();
+        }
+
+        private void readComponents() {
+            reader.setPos(sections[COMPONENTS].getLongStartPosition());
+            for (int i = 0; i < sections[COMPONENTS].getCount(); i++) {
+                components.add(new ComponentRecord(reader));
+            }
+        }
+
+        private void readProperties() {
+            reader.setPos(sections[PROPERTIES].getLongStartPosition());
+            for (int i = 0; i < sections[PROPERTIES].getCount(); i++) {
+                properties.add(new PropertyRecord(reader));
+            }
+        }
+
+        private void readValues() {
+            reader.setPos(sections[VALUES].getLongStartPosition());
+            for (int i = 0; i < sections[VALUES].getCount(); i++) {
+                values.add(new ValueRecord(reader));
+            }
+        }
+
+        private int[] readIntegers(int section) {
+            reader.setPos(sections[section].getLongStartPosition());
+            int[] result = new int[sections[section].getCount()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = reader.readInt32();
+            }
+            return result;
+        }
+
+        /**
+         * Works out the new index of each property and value based on the
+         * property and component names added to the trimmer.
+         */
+        private void selectProperties() {
+            Set<String> missingProperties = new HashSet<String>(propertyNames);
+            Set<String> missingComponents =
+                    new HashSet<String>(componentNames);
+            Set<Integer> selectedComponents = new HashSet<Integer>();
+            for (int i = 0; i < components.size(); i++) {
+                String name = readString(components.get(i).nameOffset);
+                if (missingComponents.remove(name)) {
+                    selectedComponents.add(i);
+                }
+            }
+            propertyMap = new int[properties.size()];
+            int propertyCount = 0;
+            for (int i = 0; i < properties.size(); i++) {
+                PropertyRecord property = properties.get(i);
+                String name = readString(property.nameOffset);
+                missingProperties.remove(name);
+                boolean selected = propertyNames.contains(name) ||
+                        selectedComponents.contains(property.componentIndex);
+                propertyMap[i] = selected ? propertyCount++ : -1;
+            }
+            if (missingProperties.isEmpty() == false ||
+                missingComponents.isEmpty() == false) {
+                missingProperties.addAll(missingComponents);
+                throw new IllegalArgumentException(String.format(
+                        "Properties or components '%s' are not in the data " +
+                        "file.", missingProperties));
+            }
+            valueMap = new int[values.size()];
+            int valueCount = 0;
+            for (int i = 0; i < values.size(); i++) {
+                valueMap[i] = propertyMap[values.get(i).propertyIndex] >= 0 ?
+                        valueCount++ : -1;
+            }
+        }
+
+        /**
+         * Works out the new offset of each profile once the values of the
+         * properties not kept have been removed.
+         */
+        private void readProfileOffsets() {
+            int count = sections[PROFILES].getCount();
+            oldProfileOffsets = new int[count];
+            newProfileOffsets = new int[count];
+            int newOffset = 0;
+            reader.setPos(sections[PROFILES].getLongStartPosition());
+            for (int i = 0; i < count; i++) {
+                oldProfileOffsets[i] = (int)(reader.getLongPos() -
+                        sections[PROFILES].getLongStartPosition());
+                newProfileOffsets[i] = newOffset;
+                reader.readByte();
+                reader.readInt32();
+                int valueCount = reader.readInt32();
+                int signatureCount = reader.readInt32();
+                int keptValues = 0;
+                for (int v = 0; v < valueCount; v++) {
+                    if (valueMap[reader.readInt32()] >= 0) {
+                        keptValues++;
+                    }
+                }
+                reader.setPos(reader.getLongPos() +
+                        signatureCount * DetectionConstants.SIZE_OF_INT);
+                newOffset += PROFILE_MIN_LENGTH +
+                        (keptValues + signatureCount) *
+                        DetectionConstants.SIZE_OF_INT;
+            }
+            profilesLength = newOffset;
+        }
+
+        /**
+         * Finds the strings still referenced and works out their offsets in
+         * the trimmed strings list.
+         */
+        private void readStringOffsets() {
+            TreeSet<Integer> offsets = new TreeSet<Integer>();
+            offsets.add(dataSet.copyrightOffset);
+            offsets.add(dataSet.nameOffset);
+            offsets.add(dataSet.formatOffset);
+            for (ComponentRecord component : components) {
+                offsets.add(component.nameOffset);
+                for (int offset : component.httpHeaderOffsets) {
+                    offsets.add(offset);
+                }
+            }
+            for (int offset : mapNames) {
+                offsets.add(offset);
+            }
+            for (int i = 0; i < properties.size(); i++) {
+                if (propertyMap[i] >= 0) {
+                    properties.get(i).addStringOffsets(offsets);
+                }
+            }
+            for (int i = 0; i < values.size(); i++) {
+                if (valueMap[i] >= 0) {
+                    values.get(i).addStringOffsets(offsets);
+                }
+            }
+            reader.setPos(sections[NODES].getLongStartPosition());
+            for (int i = 0; i < sections[NODES].getCount(); i++) {
+                addNodeStringOffsets(offsets);
+            }
+            offsets.remove(-1);
+            oldStringOffsets = new int[offsets.size()];
+            newStringOffsets = new int[offsets.size()];
+            int newOffset = 0;
+            int index = 0;
+            for (int offset : offsets) {
+                oldStringOffsets[index] = offset;
+                newStringOffsets[index] = newOffset;
+                reader.setPos(
+                        sections[STRINGS].getLongStartPosition() + offset);
+                newOffset += reader.readInt16() + DetectionConstants.SIZE_OF_SHORT;
+                index++;
+            }
+            stringsLength = newOffset;
+        }
+
+        /**
+         * Adds the strings referenced by the node at the current position
+         * and moves to the next node.
+         */
+        private void addNodeStringOffsets(Set<Integer> offsets) {
+            reader.readInt16();
+            reader.readInt16();
+            reader.readInt32();
+            offsets.add(reader.readInt32());
+            int childrenCount = reader.readInt16();
+            int numericChildrenCount = reader.readInt16();
+            int rankedSignatureCount = reader.readUInt16();
+            for (int i = 0; i < childrenCount; i++) {
+                int index = reader.readInt32();
+                int value = reader.readInt32();
+                if (index < 0) {
+                    offsets.add(value);
+                }
+            }
+            reader.setPos(reader.getLongPos() +
+                    numericChildrenCount * NODE_NUMERIC_INDEX_LENGTH +
+                    (rankedSignatureCount > 0 ?
+                        DetectionConstants.SIZE_OF_INT : 0));
+        }
+
+        private String readString(int offset) {
+            reader.setPos(
+                    sections[STRINGS].getLongStartPosition() + offset);
+            int length = reader.readInt16();
+            try {
+                return new String(reader.readBytes(length - 1), "US-ASCII");
+            } catch (UnsupportedEncodingException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        private int mapString(int offset) {
+            return offset < 0 ? offset :
+                newStringOffsets[Arrays.binarySearch(oldStringOffsets, offset)];
+        }
+
+        private int mapProfile(int offset) {
+            return offset < 0 ? offset :
+                newProfileOffsets[Arrays.binarySearch(oldProfileOffsets, offset)];
+        }
+
+        /**
+         * Writes the trimmed file. The sections are written in the same
+         * order as the source file.
+         */
+        void write(String destinationFileName) throws IOException {
+            Output output = new Output(new BufferedOutputStream(
+                    new FileOutputStream(destinationFileName)));
+            try {
+                writeHeader(output);
+                writeStrings(output);
+                writeComponents(output);
+                writeMaps(output);
+                writeProperties(output);
+                writeValues(output);
+                writeProfiles(output);
+                writeSignatures(output);
+                copy(output, SIGNATURE_NODE_OFFSETS);
+                copy(output, NODE_RANKED_SIGNATURE_INDEXES);
+                copy(output, RANKED_SIGNATURE_INDEXES);
+                writeNodes(output);
+                copy(output, ROOT_NODES);
+                writeProfileOffsets(output);
+            } finally {
+                output.close();
+            }
+        }
+
+        private void writeHeader(Output output) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(header.clone())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(COPYRIGHT_OFFSET_POSITION,
+                    mapString(dataSet.copyrightOffset));
+            buffer.putInt(NAME_OFFSET_POSITION, mapString(dataSet.nameOffset));
+            buffer.putInt(FORMAT_OFFSET_POSITION,
+                    mapString(dataSet.formatOffset));
+            output.write(buffer.array());
+            int[] lengths = new int[SECTION_COUNT];
+            int[] counts = new int[SECTION_COUNT];
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                lengths[i] = sections[i].getLength();
+                counts[i] = sections[i].getCount();
+            }
+            lengths[STRINGS] = stringsLength;
+            counts[STRINGS] = oldStringOffsets.length;
+            counts[PROPERTIES] = countKept(propertyMap);
+            lengths[PROPERTIES] = counts[PROPERTIES] * PROPERTY_LENGTH;
+            counts[VALUES] = countKept(valueMap);
+            lengths[VALUES] = counts[VALUES] * VALUE_LENGTH;
+            lengths[PROFILES] = profilesLength;
+            long position = header.length +
+                    SECTION_COUNT * SECTION_HEADER_LENGTH;
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                output.writeInt32((int)position);
+                output.writeInt32(lengths[i]);
+                output.writeInt32(counts[i]);
+                position += lengths[i];
+            }
+        }
+
+        private int countKept(int[] map) {
+            int count = 0;
+            for (int index : map) {
+                if (index >= 0) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        private void writeStrings(Output output) throws IOException {
+            for (int offset : oldStringOffsets) {
+                reader.setPos(
+                        sections[STRINGS].getLongStartPosition() + offset);
+                int length = reader.readInt16();
+                output.writeInt16(length);
+                output.write(reader.readBytes(length));
+            }
+        }
+
+        private void writeComponents(Output output) throws IOException {
+            for (ComponentRecord component : components) {
+                output.writeByte(component.componentId);
+                output.writeInt32(mapString(component.nameOffset));
+                output.writeInt32(mapProfile(component.defaultProfileOffset));
+                output.writeInt16(component.httpHeaderOffsets.length);
+                for (int offset : component.httpHeaderOffsets) {
+                    output.writeInt32(mapString(offset));
+                }
+            }
+        }
+
+        private void writeMaps(Output output) throws IOException {
+            for (int offset : mapNames) {
+                output.writeInt32(mapString(offset));
+            }
+        }
+
+        private void writeProperties(Output output) throws IOException {
+            for (int i = 0; i < properties.size(); i++) {
+                if (propertyMap[i] >= 0) {
+                    properties.get(i).write(output);
+                }
+            }
+        }
+
+        private void writeValues(Output output) throws IOException {
+            for (int i = 0; i < values.size(); i++) {
+                if (valueMap[i] >= 0) {
+                    ValueRecord value = values.get(i);
+                    output.writeInt16(propertyMap[value.propertyIndex]);
+                    output.writeInt32(mapString(value.nameOffset));
+                    output.writeInt32(mapString(value.descriptionOffset));
+                    output.writeInt32(mapString(value.urlOffset));
+                }
+            }
+        }
+
+        private void writeProfiles(Output output) throws IOException {
+            reader.setPos(sections[PROFILES].getLongStartPosition());
+            for (int i = 0; i < sections[PROFILES].getCount(); i++) {
+                output.writeByte(reader.readByte());
+                output.writeInt32(reader.readInt32());
+                int valueCount = reader.readInt32();
+                int signatureCount = reader.readInt32();
+                int[] kept = new int[valueCount];
+                int keptCount = 0;
+                for (int v = 0; v < valueCount; v++) {
+                    int index = valueMap[reader.readInt32()];
+                    if (index >= 0) {
+                        kept[keptCount++] = index;
+                    }
+                }
+                output.writeInt32(keptCount);
+                output.writeInt32(signatureCount);
+                for (int v = 0; v < keptCount; v++) {
+                    output.writeInt32(kept[v]);
+                }
+                output.write(reader.readBytes(
+                        signatureCount * DetectionConstants.SIZE_OF_INT));
+            }
+        }
+
+        private void writeSignatures(Output output) throws IOException {
+            reader.setPos(sections[SIGNATURES].getLongStartPosition());
+            for (int i = 0; i < sections[SIGNATURES].getCount(); i++) {
+                for (int p = 0; p < dataSet.signatureProfilesCount; p++) {
+                    output.writeInt32(mapProfile(reader.readInt32()));
+                }
+                output.writeByte(reader.readByte());
+                output.writeInt32(reader.readInt32());
+                output.writeInt32(reader.readInt32());
+                output.writeByte(reader.readByte());
+            }
+        }
+
+        /**
+         * Writes the nodes with their string offsets changed. The length of
+         * every node is unchanged so the node offsets remain valid.
+         */
+        private void writeNodes(Output output) throws IOException {
+            reader.setPos(sections[NODES].getLongStartPosition());
+            for (int i = 0; i < sections[NODES].getCount(); i++) {
+                long start = reader.getLongPos();
+                reader.setPos(start + NODE_MIN_LENGTH - 6);
+                int childrenCount = reader.readInt16();
+                int numericChildrenCount = reader.readInt16();
+                int rankedSignatureCount = reader.readUInt16();
+                int length = NODE_MIN_LENGTH +
+                        childrenCount * NODE_INDEX_LENGTH +
+                        numericChildrenCount * NODE_NUMERIC_INDEX_LENGTH +
+                        (rankedSignatureCount > 0 ?
+                            DetectionConstants.SIZE_OF_INT : 0);
+                reader.setPos(start);
+                ByteBuffer node = ByteBuffer.wrap(reader.readBytes(length))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                node.putInt(8, mapString(node.getInt(8)));
+                for (int c = 0; c < childrenCount; c++) {
+                    int position = NODE_MIN_LENGTH + c * NODE_INDEX_LENGTH;
+                    if (node.getInt(position) < 0) {
+                        node.putInt(position + DetectionConstants.SIZE_OF_INT,
+                                mapString(node.getInt(position +
+                                        DetectionConstants.SIZE_OF_INT)));
+                    }
+                }
+                output.write(node.array());
+            }
+        }
+
+        private void writeProfileOffsets(Output output) throws IOException {
+            reader.setPos(sections[PROFILE_OFFSETS].getLongStartPosition());
+            for (int i = 0; i < sections[PROFILE_OFFSETS].getCount(); i++) {
+                output.writeInt32(reader.readInt32());
+                output.writeInt32(mapProfile(reader.readInt32()));
+            }
+        }
+
+        /**
+         * Copies a section which is not changed by trimming.
+         */
+        private void copy(Output output, int section) throws IOException {
+            reader.setPos(sections[section].getLongStartPosition());
+            int remaining = sections[section].getLength();
+            while (remaining > 0) {
+                int length = Math.min(remaining, COPY_BUFFER_LENGTH);
+                output.write(reader.readBytes(length));
+                remaining -= length;
+            }
+        }
+
+        private class PropertyRecord {
+            final int componentIndex;
+            final byte[] flags;
+            final int defaultValueIndex;
+            final int nameOffset;
+            final int descriptionOffset;
+            final int categoryOffset;
+            final int urlOffset;
+            final int firstValueIndex;
+            final int lastValueIndex;
+            final int mapCount;
+            final int firstMapIndex;
+
+            PropertyRecord(BinaryReader reader) {
+                componentIndex = reader.readByte();
+                flags = reader.readBytes(7);
+                defaultValueIndex = reader.readInt32();
+                nameOffset = reader.readInt32();
+                descriptionOffset = reader.readInt32();
+                categoryOffset = reader.readInt32();
+                urlOffset = reader.readInt32();
+                firstValueIndex = reader.readInt32();
+                lastValueIndex = reader.readInt32();
+                mapCount = reader.readInt32();
+                firstMapIndex = reader.readInt32();
+            }
+
+            void addStringOffsets(Set<Integer> offsets) {
+                offsets.add(nameOffset);
+                offsets.add(descriptionOffset);
+                offsets.add(categoryOffset);
+                offsets.add(urlOffset);
+            }
+
+            void write(Output output) throws IOException {
+                output.writeByte(componentIndex);
+                output.write(flags);
+                output.writeInt32(mapValue(defaultValueIndex));
+                output.writeInt32(mapString(nameOffset));
+                output.writeInt32(mapString(descriptionOffset));
+                output.writeInt32(mapString(categoryOffset));
+                output.writeInt32(mapString(urlOffset));
+                output.writeInt32(mapValue(firstValueIndex));
+                output.writeInt32(mapValue(lastValueIndex));
+                output.writeInt32(mapCount);
+                output.writeInt32(firstMapIndex);
+            }
+
+            private int mapValue(int index) {
+                return index < 0 ? index : valueMap[index];
+            }
+        }
+    }
+
+    private static class ComponentRecord {
+        final int componentId;
+        final int nameOffset;
+        final int defaultProfileOffset;
+        final int[] httpHeaderOffsets;
+
+        ComponentRecord(BinaryReader reader) {
+            componentId = reader.readByte();
+            nameOffset = reader.readInt32();
+            defaultProfileOffset = reader.readInt32();
+            httpHeaderOffsets = new int[reader.readUInt16()];
+            for (int i = 0; i < httpHeaderOffsets.length; i++) {
+                httpHeaderOffsets[i] = reader.readInt32();
+            }
+        }
+    }
+
+    private static class ValueRecord {
+        final int propertyIndex;
+        final int nameOffset;
+        final int descriptionOffset;
+        final int urlOffset;
+
+        ValueRecord(BinaryReader reader) {
+            propertyIndex = reader.readInt16();
+            nameOffset = reader.readInt32();
+            descriptionOffset = reader.readInt32();
+            urlOffset = reader.readInt32();
+        }
+
+        void addStringOffsets(Set<Integer> offsets) {
+            offsets.add(nameOffset);
+            offsets.add(descriptionOffset);
+            offsets.add(urlOffset);
+        }
+    }
+
+    /**
+     * Writes little endian values to a stream.
+     */
+    private static class Output {
+
+        private final OutputStream stream;
+        private final byte[] buffer = new byte[DetectionConstants.SIZE_OF_INT];
+
+        Output(OutputStream stream) {
+            this.stream = stream;
+        }
+
+        void writeByte(int value) throws IOException {
+            stream.write(value);
+        }
+
+        void writeInt16(int value) throws IOException {
+            buffer[0] = (byte)value;
+            buffer[1] = (byte)(value >>> 8);
+            stream.write(buffer, 0, 2);
+        }
+
+        void writeInt32(int value) throws IOException {
+            buffer[0] = (byte)value;
+            buffer[1] = (byte)(value >>> 8);
+            buffer[2] = (byte)(value >>> 16);
+            buffer[3] = (byte)(value >>> 24);
+            stream.write(buffer, 0, 4);
+        }
+
+        void write(byte[] bytes) throws IOException {
+            stream.write(bytes);
+        }
+
+        void close() throws IOException {
+            stream.close();
+        }
+    }
+}
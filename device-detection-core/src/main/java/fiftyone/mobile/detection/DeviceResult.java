@@ -0,0 +1,166 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.detection.entities.Profile;
+import fiftyone.mobile.detection.entities.Property;
+import fiftyone.mobile.detection.entities.Value;
+import fiftyone.mobile.detection.entities.Values;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The values of every property for a combination of profiles, resolved once
+ * and never changed.
+ * <p>
+ * Many User-Agents return the same profiles. When a provider has a device
+ * cache, see {@link Provider#setDeviceCacheSize(int)}, the matches for all
+ * of those User-Agents share a single instance keyed on the device id so
+ * the values are only found once for each device.
+ * <p>
+ * The arrays returned from {@link #getResults()} are shared and must not be
+ * modified.
+ */
+public class DeviceResult {
+
+    private final Dataset dataSet;
+    private final String deviceId;
+    private final Profile[] profiles;
+
+    /**
+     * Values for each property indexed by the property's index.
+     */
+    private final Values[] values;
+
+    /**
+     * Names of the values for each property name.
+     */
+    private final Map<String, String[]> results;
+
+    /**
+     * Constructs a new instance resolving the values of every property in
+     * the data set from the profiles. If the profiles do not contain a
+     * value for a property the component's default profile is used.
+     *
+     * @param dataSet the profiles relate to.
+     * @param deviceId of the profiles.
+     * @param profiles one for each component.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    DeviceResult(Dataset dataSet, String deviceId, Profile[] profiles)
+            throws IOException {
+        this.dataSet = dataSet;
+        this.deviceId = deviceId;
+        this.profiles = profiles.clone();
+        int maxIndex = -1;
+        for (Property property : dataSet.getProperties()) {
+            maxIndex = Math.max(maxIndex, property.index);
+        }
+        this.values = new Values[maxIndex + 1];
+        Map<String, String[]> map = new HashMap<String, String[]>();
+        for (Property property : dataSet.getProperties()) {
+            Values propertyValues = findValues(property);
+            values[property.index] = propertyValues;
+            List<String> strings = new ArrayList<String>();
+            if (propertyValues != null) {
+                for (Value value : propertyValues.getAll()) {
+                    if (value.getProperty() == property) {
+                        strings.add(value.getName());
+                    }
+                }
+            }
+            map.put(property.getName(),
+                    strings.toArray(new String[strings.size()]));
+        }
+        this.results = Collections.unmodifiableMap(map);
+    }
+
+    /**
+     * @return the device id of the profiles.
+     */
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * @return a copy of the profiles the values were resolved from.
+     */
+    public Profile[] getProfiles() {
+        return profiles.clone();
+    }
+
+    /**
+     * Gets the {@link Values} associated with the property.
+     *
+     * @param property The property whose values are required.
+     * @return the values associated with the property, or null if the
+     * property is not part of the data set.
+     */
+    public Values getValues(Property property) {
+        return property != null && property.index < values.length ?
+                values[property.index] :
+                null;
+    }
+
+    /**
+     * Gets the {@link Values} associated with the property name.
+     *
+     * @param propertyName The property name whose values are required.
+     * @return the values associated with the property, or null if the
+     * property does not exist.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public Values getValues(String propertyName) throws IOException {
+        return getValues(dataSet.get(propertyName));
+    }
+
+    /**
+     * @return unmodifiable map of property names to the names of their
+     * values.
+     */
+    public Map<String, String[]> getResults() {
+        return results;
+    }
+
+    /**
+     * Returns the values of the property from the profile for the
+     * property's component, or the component's default profile.
+     */
+    private Values findValues(Property property) throws IOException {
+        Values result = null;
+        for (Profile profile : profiles) {
+            if (profile.getComponent().getComponentId() ==
+                    property.getComponent().getComponentId()) {
+                result = profile.getValues(property);
+                break;
+            }
+        }
+        if (result == null) {
+            result = property.getComponent().getDefaultProfile()
+                    .getValues(property);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,47 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+/**
+ * Receives the result of a detection requested from an 
+ * {@link AsyncProvider} so that the caller does not need to wait for the 
+ * detection to complete.
+ * <p>
+ * The methods are called by the thread that performed the detection, or by
+ * the calling thread when the result was already in the provider's cache. 
+ * They should return quickly and not block.
+ */
+public interface IMatchCallback {
+
+    /**
+     * Called when the detection completes.
+     * 
+     * @param match result of the detection.
+     */
+    void completed(Match match);
+
+    /**
+     * Called when the detection fails.
+     * 
+     * @param cause the exception thrown by the detection.
+     */
+    void failed(Throwable cause);
+}
@@ -0,0 +1,59 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.detection.entities.BaseEntity;
+
+/**
+ * A read-only list whose items can be read sequentially without being added
+ * to any cache used by the list.
+ * <p>
+ * Lists used by stream data sets place every entity requested via
+ * {@link #get(int)} or the iterator into a cache. Operations that read all,
+ * or a large range, of the entities in a list would otherwise replace the
+ * entities used for device detection with entities that are unlikely to be
+ * requested again. Use {@link Utilities#scan(IReadonlyList)} to scan any list,
+ * using this interface where available.
+ *
+ * @param <T> The type of BaseEntity the list will contain.
+ */
+public interface IScannableList<T extends BaseEntity> extends IReadonlyList<T> {
+
+    /**
+     * Returns all the items in the list in order. Items are read from the
+     * source data structure sequentially and are not added to, or retrieved
+     * from, the cache.
+     *
+     * @return all the items in the list.
+     */
+    Iterable<T> scan();
+
+    /**
+     * Returns a range of the items in the list in order. Items are read from
+     * the source data structure sequentially and are not added to, or
+     * retrieved from, the cache.
+     *
+     * @param index Index or offset of the first entity required.
+     * @param count Number of entities required.
+     * @return the items in the range requested.
+     */
+    Iterable<T> scan(int index, int count);
+}
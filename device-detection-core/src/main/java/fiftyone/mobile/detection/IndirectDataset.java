@@ -23,6 +23,7 @@ package fiftyone.mobile.detection;
 import fiftyone.mobile.detection.DatasetBuilder.CacheType;
 import fiftyone.mobile.detection.cache.ICache;
 import fiftyone.mobile.detection.entities.Modes;
+import fiftyone.mobile.detection.entities.headers.Header;
 import fiftyone.mobile.detection.entities.stream.Pool;
 import fiftyone.mobile.detection.readers.SourceBase;
 import fiftyone.mobile.detection.readers.SourceFile;
@@ -30,6 +31,7 @@ import fiftyone.mobile.detection.readers.SourceMemory;
 
 import java.io.IOException;
 import java.util.Date;
+import java.util.EnumMap;
 import java.util.HashMap;
 
 /**
@@ -148,5 +150,29 @@ public class IndirectDataset extends fiftyone.mobile.detection.Dataset {
         this.cacheMap = cacheMap;
     }
 
+    private final java.util.Map<WarmUp.Section, Header> sections =
+            new EnumMap<WarmUp.Section, Header>(WarmUp.Section.class);
+    /**
+     * Returns the header of a section of the data file. Used to locate the
+     * section when warming up the data set.
+     *
+     * @param section of the data file.
+     * @return the section's header, or null if the data set does not
+     * contain the section.
+     */
+    public Header getSection(WarmUp.Section section) {
+        return sections.get(section);
+    }
+
+    /**
+     * Records the header of a section of the data file.
+     *
+     * @param section of the data file.
+     * @param header of the section.
+     */
+    void setSection(WarmUp.Section section, Header header) {
+        sections.put(section, header);
+    }
+
 
 }
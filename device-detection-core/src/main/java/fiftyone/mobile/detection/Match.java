@@ -117,6 +117,7 @@ public class Match {
      */
     void setResult(MatchResult value) {
         matchResult = value;
+        deviceResult = null;
     }
     MatchResult getResult() {
         return matchResult;
@@ -278,6 +279,33 @@ public class Match {
     }
     @SuppressWarnings("VolatileArrayField")
     private volatile Profile[] overriddenProfiles;       
+    
+    /**
+     * The values of every property for the profiles of the match. If the 
+     * provider has a device cache the instance is shared by all the matches
+     * with the same device id, unless the profiles have been overridden.
+     * 
+     * @return the resolved property values for the match's profiles.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public DeviceResult getDeviceResult() throws IOException {
+        DeviceResult result = deviceResult;
+        if (result == null) {
+            deviceResult = result = overriddenProfiles == null ?
+                    provider.getDeviceResult(getDeviceId(), getProfiles()) :
+                    new DeviceResult(getDataSet(), getDeviceId(), 
+                            getProfiles());
+        }
+        return result;
+    }
+    private volatile DeviceResult deviceResult;
+    
+    /**
+     * @return true if values should be taken from the shared device result.
+     */
+    private boolean useDeviceResult() {
+        return overriddenProfiles == null && provider.hasDeviceCache();
+    }
         
     /**
      * The numeric difference between the target User-Agent and the match. 
@@ -367,20 +395,30 @@ public class Match {
      */
     @Deprecated
     public Map<String, String[]> getResults() throws IOException {
-        Map<String, String[]> results = new HashMap<String, String[]>();
+        Map<String, String[]> results;
 
-        // Add the properties and values first.
-        for (Property property : getDataSet().getProperties()) {
-            Values values = getValues(property);
-            List<String> strings = new ArrayList<String>();
-            for (Value value : values.getAll()) {
-                if (value.getProperty() == property) {
-                    strings.add(value.getName());
+        // Add the properties and values first. Use the shared device result 
+        // unless values could be overridden by this match.
+        if (useDeviceResult() && this.cookie == null) {
+            results = new HashMap<String, String[]>();
+            for (Map.Entry<String, String[]> entry : 
+                    getDeviceResult().getResults().entrySet()) {
+                results.put(entry.getKey(), entry.getValue().clone());
+            }
+        } else {
+            results = new HashMap<String, String[]>();
+            for (Property property : getDataSet().getProperties()) {
+                Values values = getValues(property);
+                List<String> strings = new ArrayList<String>();
+                for (Value value : values.getAll()) {
+                    if (value.getProperty() == property) {
+                        strings.add(value.getName());
+                    }
                 }
+                results.put(
+                    property.getName(),
+                    strings.toArray(new String[strings.size()]));
             }
-            results.put(
-                property.getName(),
-                strings.toArray(new String[strings.size()]));
         }
 
         results.put(DetectionConstants.DIFFERENCE_PROPERTY,
@@ -429,6 +467,11 @@ public class Match {
                 }
             }
 
+            if (value == null && useDeviceResult()) {
+                // Get the property value from the shared device result.
+                value = getDeviceResult().getValues(property);
+            }
+
             if (value == null) {
                 // Get the property value from the profile returned
                 // from the match.
@@ -537,6 +580,7 @@ public class Match {
     void reset() {
         this.state.reset();
         this.overriddenProfiles = null;
+        this.deviceResult = null;
         this.cookie = null;
         this.propertyValueOverridesCookies = null;
     }
@@ -560,6 +604,7 @@ public class Match {
                 if (getOverriddenProfiles()[i].getComponent().getComponentId()
                         == newProfile.getComponent().getComponentId()) {
                     getOverriddenProfiles()[i] = newProfile;
+                    deviceResult = null;
                     break;
                 }
             }
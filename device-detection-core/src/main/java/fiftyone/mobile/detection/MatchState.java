@@ -21,9 +21,13 @@
 package fiftyone.mobile.detection;
 
 import fiftyone.mobile.detection.cache.IValueLoader;
+import fiftyone.mobile.detection.entities.AsciiString;
 import fiftyone.mobile.detection.entities.Node;
 import fiftyone.mobile.detection.entities.Profile;
 import fiftyone.mobile.detection.entities.Signature;
+import fiftyone.mobile.detection.telemetry.EventType;
+import fiftyone.mobile.detection.telemetry.Events;
+import fiftyone.mobile.detection.telemetry.IEventListener;
 import fiftyone.properties.MatchMethods;
 
 import java.io.IOException;
@@ -172,24 +176,18 @@ public class MatchState extends MatchResult
      * @return profiles associated with the match state.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public ArrayList<Profile> getExplicitProfiles() throws IOException {
         ArrayList<Profile> result = explicitProfiles;
         if (result == null) {
-            synchronized(this) {
-                result = explicitProfiles;
-                if (result == null) {
-                    if (getSignature() != null) {
-                        result = new ArrayList<Profile>();
-                        result.addAll(Arrays.asList(
-                                getSignature().getProfiles()));
-                    }
-                    else {
-                        result = new ArrayList<Profile>();
-                    }
-                    explicitProfiles = result;
-                }
+            if (getSignature() != null) {
+                result = new ArrayList<Profile>();
+                result.addAll(Arrays.asList(
+                        getSignature().getProfiles()));
+            }
+            else {
+                result = new ArrayList<Profile>();
             }
+            explicitProfiles = result;
         }
         return result;
     }
@@ -330,13 +328,16 @@ public class MatchState extends MatchResult
      * @throws IOException
      */
     int getIndexOf(Node node) throws IOException {
-        byte[] characters = node.getCharacters();
-        int finalIndex = characters.length - 1;
-        for (int index = 0; index < getTargetUserAgentArray().length - characters.length; index++) {
+        AsciiString string = node.getCharacterString();
+        byte[] characters = string.getSource();
+        int start = string.getStart();
+        int length = string.getLength();
+        int finalIndex = length - 1;
+        for (int index = 0; index < getTargetUserAgentArray().length - length; index++) {
             for (int nodeIndex = 0, targetIndex = index;
-                    nodeIndex < characters.length && targetIndex < getTargetUserAgentArray().length;
+                    nodeIndex < length && targetIndex < getTargetUserAgentArray().length;
                     nodeIndex++, targetIndex++) {
-                if (characters[nodeIndex] != getTargetUserAgentArray()[targetIndex]) {
+                if (characters[start + nodeIndex] != getTargetUserAgentArray()[targetIndex]) {
                     break;
                 } else if (nodeIndex == finalIndex) {
                     return index;
@@ -372,7 +373,16 @@ public class MatchState extends MatchResult
 
     @Override
     public MatchResult load(String key) throws IOException {
+        IEventListener listener = Events.getListener();
+        Object event = null;
+        if (listener != null) {
+            event = listener.begin(EventType.USER_AGENT_CACHE_LOAD);
+        }
         match.provider.matchNoCache(key, this);
+        if (listener != null) {
+            listener.end(event, EventType.USER_AGENT_CACHE_LOAD, null,
+                    getNodesEvaluated(), getSignaturesCompared());
+        }
         return new MatchResult(this);
     }
 }
\ No newline at end of file
@@ -0,0 +1,191 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.detection.entities.Profile;
+import fiftyone.mobile.detection.entities.ProfileOffset;
+import fiftyone.mobile.detection.entities.memory.MemoryVariableList;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Finds profiles from their profile id in constant time without creating
+ * any objects.
+ * <p>
+ * When the profile ids are dense enough the position of each profile offset
+ * is held in an array indexed by profile id. Otherwise an open addressing
+ * hash table is used, whichever needs less memory. If the data set's
+ * profiles are held in memory the profiles themselves are referenced so
+ * that the offset does not need to be searched for.
+ */
+final class ProfileIdIndex {
+
+    /**
+     * Profile ids in each hash table slot, or null if the positions are
+     * indexed directly by profile id.
+     */
+    private final int[] keys;
+
+    /**
+     * Position of the profile offset for each slot, or -1 if empty.
+     */
+    private final int[] positions;
+
+    /**
+     * Mask applied to the hash to get a slot in the hash table.
+     */
+    private final int mask;
+
+    /**
+     * Offset of the profile at each position.
+     */
+    private final int[] offsets;
+
+    /**
+     * Profile at each position, or null if the profiles are not held in
+     * memory.
+     */
+    private final Profile[] profiles;
+
+    /**
+     * Constructs a new index for the profile offsets of the data set. If
+     * the profiles are held in memory they are all loaded into the index.
+     *
+     * @param dataSet to index.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    static ProfileIdIndex create(Dataset dataSet) throws IOException {
+        IReadonlyList<ProfileOffset> profileOffsets = dataSet.profileOffsets;
+        int count = profileOffsets.size();
+        int[] profileIds = new int[count];
+        int[] offsets = new int[count];
+        for (int i = 0; i < count; i++) {
+            ProfileOffset profileOffset = profileOffsets.get(i);
+            profileIds[i] = profileOffset.getProfileId();
+            offsets[i] = profileOffset.getOffset();
+        }
+        Profile[] profiles = null;
+        if (dataSet.profiles instanceof MemoryVariableList) {
+            profiles = new Profile[count];
+            for (int i = 0; i < count; i++) {
+                profiles[i] = dataSet.profiles.get(offsets[i]);
+            }
+        }
+        return new ProfileIdIndex(profileIds, offsets, profiles);
+    }
+
+    /**
+     * Constructs a new index.
+     *
+     * @param profileIds id of the profile at each position, not negative.
+     * @param offsets offset of the profile at each position.
+     * @param profiles profile at each position, or null if not in memory.
+     */
+    ProfileIdIndex(int[] profileIds, int[] offsets, Profile[] profiles) {
+        int maxProfileId = -1;
+        for (int profileId : profileIds) {
+            if (profileId < 0) {
+                throw new IllegalArgumentException(String.format(
+                        "Profile id '%d' must not be negative.", profileId));
+            }
+            maxProfileId = Math.max(maxProfileId, profileId);
+        }
+        // Size the hash table so that it is at most half full.
+        int tableSize = Integer.highestOneBit(
+                Math.max(1, profileIds.length) * 2 - 1) << 1;
+        if (maxProfileId < tableSize * 2) {
+            keys = null;
+            mask = 0;
+            positions = new int[maxProfileId + 1];
+            Arrays.fill(positions, -1);
+            for (int i = 0; i < profileIds.length; i++) {
+                positions[profileIds[i]] = i;
+            }
+        } else {
+            keys = new int[tableSize];
+            mask = tableSize - 1;
+            positions = new int[tableSize];
+            Arrays.fill(positions, -1);
+            for (int i = 0; i < profileIds.length; i++) {
+                int slot = hash(profileIds[i]) & mask;
+                while (positions[slot] >= 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = profileIds[i];
+                positions[slot] = i;
+            }
+        }
+        this.offsets = offsets;
+        this.profiles = profiles;
+    }
+
+    /**
+     * Returns the position of the profile id in the data set's profile
+     * offsets.
+     *
+     * @param profileId to find.
+     * @return position of the profile id, or -1 if not found.
+     */
+    int indexOf(int profileId) {
+        if (profileId < 0) {
+            return -1;
+        }
+        if (keys == null) {
+            return profileId < positions.length ? positions[profileId] : -1;
+        }
+        int slot = hash(profileId) & mask;
+        int position;
+        while ((position = positions[slot]) >= 0) {
+            if (keys[slot] == profileId) {
+                return position;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the profile for the profile id.
+     *
+     * @param profileId to find.
+     * @param list the data set's profiles used if not held in the index.
+     * @return the profile, or null if the profile id is not found.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    Profile find(int profileId, IReadonlyList<Profile> list)
+            throws IOException {
+        int position = indexOf(profileId);
+        if (position < 0) {
+            return null;
+        }
+        return profiles != null ? profiles[position] :
+                list.get(offsets[position]);
+    }
+
+    /**
+     * Spreads the bits of the profile id so that consecutive ids do not
+     * fill consecutive slots.
+     */
+    private static int hash(int profileId) {
+        int hash = profileId * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
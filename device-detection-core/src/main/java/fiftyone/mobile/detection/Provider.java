@@ -20,16 +20,21 @@
  * ********************************************************************* */
 package fiftyone.mobile.detection;
 
+import fiftyone.mobile.detection.cache.CompactCache;
+import fiftyone.mobile.detection.cache.ICache;
 import fiftyone.mobile.detection.cache.ILoadingCache;
+import fiftyone.mobile.detection.cache.IValueLoader;
 import fiftyone.mobile.detection.cache.LruCache;
+import fiftyone.mobile.detection.cache.ThreadLocalCache;
+import fiftyone.mobile.detection.telemetry.DetectionTracker;
 import fiftyone.properties.MatchMethods;
 import fiftyone.mobile.detection.entities.Component;
 import fiftyone.mobile.detection.entities.Profile;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
@@ -70,6 +75,12 @@ public class Provider {
      */
     private ILoadingCache<String, MatchResult> userAgentCache = null;
 
+    /**
+     * A compact cache for User-Agents if required. Used in place of the 
+     * userAgentCache when large numbers of User-Agents need to be cached.
+     */
+    private final CompactCache compactUserAgentCache;
+
     /**
      * True if the detection time should be recorded in the Elapsed property
      * of the DetectionMatch object.
@@ -122,6 +133,24 @@ public class Provider {
         this(dataSet, false, cacheSize > 0 ? new LruCache<String, MatchResult>(cacheSize) : null);
     }
 
+    /**
+     * Constructs a new Provider using the data set, with a shared cache of the
+     * size provided and a small cache for each thread in front of it. Hot 
+     * User-Agents are returned from the thread's own cache without accessing 
+     * memory shared with other threads.
+     * @param dataSet to use for device detection
+     * @param cacheSize to be used with the provider, 0 for no cache
+     * @param threadCacheSize number of User-Agents cached by each thread, 0 
+     * for no thread cache
+     */
+    public Provider(Dataset dataSet, int cacheSize, int threadCacheSize) {
+        this(dataSet, false, cacheSize <= 0 ? null : threadCacheSize <= 0 ?
+                new LruCache<String, MatchResult>(cacheSize) :
+                new ThreadLocalCache<String, MatchResult>(
+                    new LruCache<String, MatchResult>(cacheSize), 
+                    threadCacheSize));
+    }
+
     /**
      * Constructs a new Provider using the data set, with a cache provided by the caller
      * @param dataSet to use for device detection
@@ -131,6 +160,18 @@ public class Provider {
         this(dataSet, false, cache);
     }
 
+    /**
+     * Constructs a new Provider using the data set, with a compact cache 
+     * provided by the caller. The compact cache stores a hash of the 
+     * User-Agent and the profile Ids found rather than the full match result 
+     * enabling many more User-Agents to be cached for the same memory.
+     * @param dataSet to use for device detection
+     * @param cache to be used with the provider, null for no cache
+     */
+    public Provider(Dataset dataSet, CompactCache cache) {
+        this(dataSet, false, null, cache);
+    }
+
     /**
      * Constructs a new Provider using the data set, with a cache of the size 
      * provided, and recording detection time if flag set.
@@ -138,7 +179,23 @@ public class Provider {
      * @param recordDetectionTime true if the detection time should be recorded
      * @param cache to be used with the provider - null for no cache
      */
+    @SuppressWarnings("unchecked")
     Provider(Dataset dataSet, boolean recordDetectionTime, ILoadingCache cache) {
+        this(dataSet, recordDetectionTime, cache, null);
+    }
+
+    /**
+     * Constructs a new Provider using the data set with either a cache or a
+     * compact cache.
+     * @param dataSet to use for device detection
+     * @param recordDetectionTime true if the detection time should be recorded
+     * @param cache to be used with the provider - null for no cache
+     * @param compactCache to be used with the provider - null for no cache
+     */
+    private Provider(Dataset dataSet, boolean recordDetectionTime, 
+            ILoadingCache<String, MatchResult> cache, 
+            CompactCache compactCache) {
+        this.compactUserAgentCache = compactCache;
         this.recordDetectionTime = recordDetectionTime;
         this.dataSet = dataSet;
 
@@ -152,6 +209,12 @@ public class Provider {
         this.methodCounts[MatchMethods.NONE.ordinal()] = new AtomicLong();
         
         userAgentCache = cache;
+        if (cache instanceof ThreadLocalCache) {
+            // Any results held by a two tier cache relate to the data set of 
+            // a previous provider. Invalidate the per thread caches and 
+            // reset the shared one so they are not returned.
+            cache.resetCache();
+        }
     }
 
     /**
@@ -159,13 +222,41 @@ public class Provider {
      * contained in the cache.
      */
     public double getPercentageCacheMisses() {
-        if (userAgentCache != null) {
-            return userAgentCache.getPercentageMisses();
+        ICache<String, ?> cache = getUserAgentCache();
+        if (cache != null) {
+            return cache.getPercentageMisses();
         } else {
             return 0;
         }
     }
     
+    /**
+     * @return the percentage of requests for User-Agents that were served by
+     * the cache of the requesting thread, or -1 if a thread cache is not used.
+     */
+    public double getPercentageThreadCacheHits() {
+        if (userAgentCache instanceof ThreadLocalCache) {
+            return ((ThreadLocalCache<String, MatchResult>)userAgentCache)
+                    .getPercentageLocalHits();
+        } else {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the percentage of requests for User-Agents not found in the
+     * cache of the requesting thread that were served by the shared cache, or
+     * -1 if a thread cache is not used.
+     */
+    public double getPercentageSharedCacheHits() {
+        if (userAgentCache instanceof ThreadLocalCache) {
+            return ((ThreadLocalCache<String, MatchResult>)userAgentCache)
+                    .getPercentageSharedHits();
+        } else {
+            return -1;
+        }
+    }
+    
     /**
      * @return the number of times the User-Agents cache was switched.
      * 
@@ -180,8 +271,9 @@ public class Provider {
      * @return number of requests to the cache - -1 if no cache provided
      */
     public double getCacheRequests() {
-        if (userAgentCache != null) {
-            return userAgentCache.getCacheRequests();
+        ICache<String, ?> cache = getUserAgentCache();
+        if (cache != null) {
+            return cache.getCacheRequests();
         } else {
             return -1;
         }
@@ -191,13 +283,94 @@ public class Provider {
      * @return number of cache misses  - -1 if no cache provided
      */
     public long getCacheMisses() {
-        if (userAgentCache != null) {
-            return userAgentCache.getCacheMisses();
+        ICache<String, ?> cache = getUserAgentCache();
+        if (cache != null) {
+            return cache.getCacheMisses();
         } else {
             return -1;
         }
     }
+
+    /**
+     * @return the cache used for User-Agents, or null if no cache is used.
+     */
+    private ICache<String, ?> getUserAgentCache() {
+        return userAgentCache != null ? 
+                userAgentCache : 
+                compactUserAgentCache;
+    }
     
+    /**
+     * Sets the number of devices whose property values are cached. Matches 
+     * which return the same profiles, and so the same device id, share a 
+     * single {@link DeviceResult} from the cache rather than finding the 
+     * values of each property again. Set to 0 to stop caching.
+     * 
+     * @param cacheSize number of devices to cache, or 0 for no cache.
+     */
+    public void setDeviceCacheSize(int cacheSize) {
+        deviceCache = cacheSize > 0 ? 
+                new LruCache<String, DeviceResult>(cacheSize) : 
+                null;
+    }
+    
+    /**
+     * @return the cache of device results, or null if devices are not 
+     * cached.
+     */
+    public ICache<String, DeviceResult> getDeviceCache() {
+        return deviceCache;
+    }
+    private volatile LruCache<String, DeviceResult> deviceCache = null;
+    
+    /**
+     * @return true if device results are cached.
+     */
+    boolean hasDeviceCache() {
+        return deviceCache != null;
+    }
+    
+    /**
+     * Returns the device result for the profiles from the device cache, or 
+     * a new device result if not cached.
+     * 
+     * @param deviceId of the profiles.
+     * @param profiles one for each component.
+     * @return the resolved values for the profiles.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    DeviceResult getDeviceResult(String deviceId, final Profile[] profiles) 
+            throws IOException {
+        LruCache<String, DeviceResult> cache = deviceCache;
+        if (cache == null) {
+            return new DeviceResult(dataSet, deviceId, profiles);
+        }
+        return cache.get(deviceId, new IValueLoader<String, DeviceResult>() {
+            @Override
+            public DeviceResult load(String key) throws IOException {
+                return new DeviceResult(dataSet, key, profiles);
+            }
+        });
+    }
+    
+    /**
+     * Sets the tracker used to record the User-Agents requested and the 
+     * slowest detections. Set to null to stop recording.
+     * @param tracker to record requests and detections, or null
+     */
+    public void setDetectionTracker(DetectionTracker tracker) {
+        this.detectionTracker = tracker;
+    }
+
+    /**
+     * @return the tracker recording requests and detections, or null if 
+     * requests are not being recorded.
+     */
+    public DetectionTracker getDetectionTracker() {
+        return detectionTracker;
+    }
+    private volatile DetectionTracker detectionTracker = null;
+
     /**
      * Creates a new match instance to be used for matching.
      * @return a match instance ready to be used with the Match methods.
@@ -365,15 +538,9 @@ public class Provider {
         if (match == null) {
             throw new IllegalArgumentException("Match object can not be null");
         }
-        ArrayList<Integer> profileIds = new ArrayList<Integer>();
-        for (int i =0; i < deviceIdArray.length; i += 4) {
-            // Get the relevant 4 bytes.
-            byte[] byteId = Arrays.copyOfRange(deviceIdArray, i, i+4);
-            // Convert relevant bytes to integer.
-            Integer tempId = new BigInteger(byteId).intValue();
-            profileIds.add(tempId);
-        }
-        return matchForDeviceId(profileIds, match);
+        match.reset();
+        addProfiles(deviceIdArray, match.state.getExplicitProfiles());
+        return match;
     }
     
     /**
@@ -395,12 +562,9 @@ public class Provider {
         if (match == null) {
             throw new IllegalArgumentException("Match object can not be null.");
         }
-        String[] profileIdStrings = deviceId.split("-");
-        ArrayList<Integer> profileIds = new ArrayList<Integer>();
-        for (String profileIdString : profileIdStrings) {
-            profileIds.add(Integer.parseInt(profileIdString));
-        }
-        return matchForDeviceId(profileIds, match);
+        match.reset();
+        addProfiles(deviceId, match.state.getExplicitProfiles());
+        return match;
     }
     
     /**
@@ -432,6 +596,145 @@ public class Provider {
         return match;
     }
 
+    /**
+     * Returns the profiles for each of the device Ids returned from previous
+     * match operations. Intended for jobs which resolve large numbers of
+     * stored device Ids.
+     * 
+     * @param deviceIds String representations of the device Ids.
+     * @return the profiles for the device Id at the same index, or null if
+     * the device Id is null or can not be parsed.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public Profile[][] resolveDeviceIds(String[] deviceIds) 
+                                                            throws IOException {
+        Profile[][] results = new Profile[deviceIds.length][];
+        ArrayList<Profile> profiles = new ArrayList<Profile>();
+        for (int i = 0; i < deviceIds.length; i++) {
+            if (deviceIds[i] != null) {
+                profiles.clear();
+                try {
+                    addProfiles(deviceIds[i], profiles);
+                    results[i] = profiles.toArray(
+                            new Profile[profiles.size()]);
+                } catch (NumberFormatException ex) {
+                    // Leave the result null as the device Id is invalid.
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Returns the profiles for each of the device Ids returned from previous
+     * match operations. Intended for jobs which resolve large numbers of
+     * stored device Ids.
+     * 
+     * @param deviceIds Byte array representations of the device Ids.
+     * @return the profiles for the device Id at the same index, or null if
+     * the device Id is null.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public Profile[][] resolveDeviceIds(byte[][] deviceIds) 
+                                                            throws IOException {
+        Profile[][] results = new Profile[deviceIds.length][];
+        ArrayList<Profile> profiles = new ArrayList<Profile>();
+        for (int i = 0; i < deviceIds.length; i++) {
+            if (deviceIds[i] != null) {
+                profiles.clear();
+                addProfiles(deviceIds[i], profiles);
+                results[i] = profiles.toArray(new Profile[profiles.size()]);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Adds the profiles for the profile Ids in the byte array to the list. 
+     * Each profile Id is 4 bytes in big endian order.
+     * 
+     * @param deviceId Byte array representation of the device Id.
+     * @param profiles list to add the profiles to.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    private void addProfiles(byte[] deviceId, List<Profile> profiles) 
+                                                            throws IOException {
+        for (int index = 0; index < deviceId.length; index += 4) {
+            int profileId = 0;
+            for (int i = index; i < index + 4; i++) {
+                profileId = (profileId << 8) | 
+                        (i < deviceId.length ? deviceId[i] & 0xFF : 0);
+            }
+            Profile profile = dataSet.findProfile(profileId);
+            if (profile != null) {
+                profiles.add(profile);
+            }
+        }
+    }
+    
+    /**
+     * Adds the profiles for the profile Ids in the string to the list. The
+     * profile Ids are parsed from the characters of the string which avoids
+     * creating a string and boxed integer for each one.
+     * 
+     * @param deviceId String representation of the device Id with profile 
+     * Ids separated by hyphens.
+     * @param profiles list to add the profiles to.
+     * @throws IOException if there was a problem accessing data file.
+     * @throws NumberFormatException if a profile Id is not a valid integer.
+     */
+    private void addProfiles(String deviceId, List<Profile> profiles) 
+                                                            throws IOException {
+        // Trailing separators are ignored.
+        int end = deviceId.length();
+        while (end > 0 && deviceId.charAt(end - 1) == '-') {
+            end--;
+        }
+        int start = 0;
+        while (start < end) {
+            int next = deviceId.indexOf('-', start);
+            if (next < 0 || next > end) {
+                next = end;
+            }
+            Profile profile = dataSet.findProfile(
+                    parseProfileId(deviceId, start, next));
+            if (profile != null) {
+                profiles.add(profile);
+            }
+            start = next + 1;
+        }
+    }
+    
+    /**
+     * Parses the digits between the start and end as a profile Id.
+     * 
+     * @param deviceId containing the profile Id.
+     * @param start index of the first digit.
+     * @param end index after the last digit.
+     * @return the profile Id.
+     * @throws NumberFormatException if the characters are not a valid 
+     * integer.
+     */
+    private static int parseProfileId(String deviceId, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException(String.format(
+                    "Device Id '%s' contains an empty profile Id.", 
+                    deviceId));
+        }
+        int profileId = 0;
+        for (int i = start; i < end; i++) {
+            int digit = deviceId.charAt(i) - '0';
+            if (digit < 0 || digit > 9 ||
+                profileId > (Integer.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException(String.format(
+                        "Device Id '%s' contains an invalid profile Id.", 
+                        deviceId));
+            }
+            profileId = profileId * 10 + digit;
+        }
+        return profileId;
+    }
+
     /**
      * Sets the state to the result of the match for the target User-Agent.
      * 
@@ -443,10 +746,11 @@ public class Provider {
             throws IOException {
         
         long startNanoseconds = 0;
+        DetectionTracker tracker = detectionTracker;
         
         state.reset(targetUserAgent);
 
-        if (recordDetectionTime) {
+        if (recordDetectionTime || tracker != null) {
             startNanoseconds = System.nanoTime();
         }
         
@@ -455,6 +759,15 @@ public class Provider {
         if (recordDetectionTime) {
             state.setElapsed(System.nanoTime() - startNanoseconds);
         }
+        if (tracker != null) {
+            tracker.recordDetection(
+                    targetUserAgent, 
+                    System.nanoTime() - startNanoseconds,
+                    state.getMethod(),
+                    state.getSignaturesCompared(),
+                    state.getNodesEvaluated(),
+                    state.getClosestSignaturesCount());
+        }
         
         // Update the counts for the provider.
         detectionCount.incrementAndGet();
@@ -509,20 +822,185 @@ public class Provider {
      */
     private MatchResult match(String targetUserAgent, MatchState state) 
             throws IOException {
-        MatchResult result;
         if (targetUserAgent == null) {
             targetUserAgent = "";
         }
+        MatchResult result = load(targetUserAgent, state);
+        DetectionTracker tracker = detectionTracker;
+        if (tracker != null) {
+            tracker.recordRequest(targetUserAgent);
+        }
+        return result;
+    }   
+
+    /**
+     * Returns the result for the User-Agent from the cache, performing the 
+     * match and adding the result to the cache if it is not present. The 
+     * request is not recorded by the detection tracker.
+     *
+     * @param targetUserAgent The User-Agent string to use as the target
+     * @param state information used to process the match
+     * @return a match containing information about the capabilities of the 
+     * device and it's components
+     * @throws IOException if there was a problem accessing data file.
+     */
+    MatchResult load(String targetUserAgent, MatchState state) 
+            throws IOException {
+        MatchResult result;
         if (userAgentCache != null) {
             // Fetch the item using the cache.
             result = userAgentCache.get(targetUserAgent, state);
+        } else if (compactUserAgentCache != null) {
+            // Fetch the item using the compact cache.
+            result = matchCompact(targetUserAgent, state);
         } else {
             // The cache does not exist so call the non caching method.
             matchNoCache(targetUserAgent, state);
             result = state;
         }
         return result;
-    }   
+    }
+
+    /**
+     * Returns the result for the User-Agent only if it is already in the 
+     * provider's cache. A detection is never performed. A hit is recorded in
+     * the cache statistics but a miss is not, as the User-Agent is expected
+     * to be passed to a match method which records it.
+     *
+     * @param targetUserAgent The User-Agent string to use as the target
+     * @return the cached result, or null if the User-Agent is not cached
+     */
+    MatchResult getCachedResult(String targetUserAgent) {
+        if (targetUserAgent == null) {
+            targetUserAgent = "";
+        }
+        MatchResult result = peekCachedResult(targetUserAgent, true);
+        if (result != null) {
+            DetectionTracker tracker = detectionTracker;
+            if (tracker != null) {
+                tracker.recordRequest(targetUserAgent);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the result for the User-Agent only if it is already in the 
+     * provider's cache without recording the request with the detection 
+     * tracker or in the cache statistics.
+     *
+     * @param targetUserAgent The User-Agent string to use as the target
+     * @return the cached result, or null if the User-Agent is not cached
+     */
+    MatchResult peekCachedResult(String targetUserAgent) {
+        return peekCachedResult(targetUserAgent, false);
+    }
+
+    /**
+     * Returns the result for the User-Agent only if it is already in the 
+     * provider's cache without recording the request with the detection 
+     * tracker.
+     *
+     * @param targetUserAgent The User-Agent string to use as the target
+     * @param recordHit true if a hit should be recorded in the cache 
+     * statistics. Misses are never recorded.
+     * @return the cached result, or null if the User-Agent is not cached
+     */
+    @SuppressWarnings("unchecked")
+    private MatchResult peekCachedResult(String targetUserAgent, 
+            boolean recordHit) {
+        MatchResult result = null;
+        if (userAgentCache instanceof LruCache) {
+            result = ((LruCache<String, MatchResult>)userAgentCache).
+                    getIfPresent(targetUserAgent, recordHit);
+        } else if (userAgentCache instanceof ThreadLocalCache) {
+            result = ((ThreadLocalCache<String, MatchResult>)userAgentCache).
+                    getIfPresent(targetUserAgent, recordHit);
+        } else if (compactUserAgentCache != null) {
+            CompactCache.Entry entry = compactUserAgentCache.getIfPresent(
+                    targetUserAgent, recordHit);
+            if (entry != null) {
+                result = new CompactMatchResult(
+                        dataSet, targetUserAgent, entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the User-Agents currently held in the provider's cache. The 
+     * compact cache only stores hashes of the User-Agents so none are 
+     * returned if it is used.
+     *
+     * @return a snapshot of the cached User-Agents in no particular order.
+     */
+    List<String> getCachedUserAgents() {
+        ICache<String, MatchResult> cache = userAgentCache;
+        if (cache instanceof ThreadLocalCache) {
+            cache = ((ThreadLocalCache<String, MatchResult>)cache)
+                    .getSharedCache();
+        }
+        if (cache instanceof LruCache) {
+            return ((LruCache<String, MatchResult>)cache).getKeys();
+        }
+        return Collections.<String>emptyList();
+    }
+
+    /**
+     * Returns the value of the only header used for detection if there is
+     * exactly one, otherwise null. Any error reading the headers is left for
+     * the full detection to report.
+     *
+     * @param headers List of HTTP headers to use for the detection.
+     * @return the value of the single relevant header, or null.
+     */
+    String getSingleHeader(Map<String, String> headers) {
+        String[] httpHeaders;
+        try {
+            httpHeaders = dataSet.getHttpHeaders();
+        } catch (IOException ex) {
+            return null;
+        }
+        String result = null;
+        for (String header : httpHeaders) {
+            String value = headers.get(header);
+            if (value != null) {
+                if (result != null) {
+                    return null;
+                }
+                result = value;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the result for the User-Agent from the compact cache if 
+     * present. If not then the match is performed and the compact form of 
+     * the result added to the cache.
+     *
+     * @param targetUserAgent The User-Agent string to use as the target
+     * @param state information used to process the match
+     * @return a match containing information about the capabilities of the 
+     * device and it's components
+     * @throws IOException if there was a problem accessing data file.
+     */
+    private MatchResult matchCompact(String targetUserAgent, MatchState state) 
+            throws IOException {
+        MatchResult result;
+        CompactCache.Entry entry = compactUserAgentCache.get(targetUserAgent);
+        if (entry != null) {
+            result = new CompactMatchResult(dataSet, targetUserAgent, entry);
+        } else {
+            matchNoCache(targetUserAgent, state);
+            entry = CompactMatchResult.createEntry(state);
+            if (entry != null) {
+                compactUserAgentCache.put(targetUserAgent, entry);
+            }
+            result = state;
+        }
+        return result;
+    }
     
     /**
      * See if any of the headers can be used for this components profile. As
@@ -20,6 +20,11 @@
  * ********************************************************************* */
 package fiftyone.mobile.detection;
 
+import fiftyone.mobile.detection.entities.BaseEntity;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
 /**
  * Utility methods shared across 51Degrees packages.
  */
@@ -45,4 +50,70 @@ public class Utilities {
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns all the items in the list without adding them to any cache
+     * used by the list. Used where every item in a list is needed once, for
+     * example to build metadata, so that the items used for device detection
+     * are not replaced in the cache.
+     *
+     * @param <T> type of entity in the list.
+     * @param list to read the items from.
+     * @return all the items in the list in order.
+     */
+    public static <T extends BaseEntity> Iterable<T> scan(
+            final IReadonlyList<T> list) {
+        if (list instanceof IScannableList) {
+            return ((IScannableList<T>)list).scan();
+        }
+        return list;
+    }
+
+    /**
+     * Returns a range of the items in a list of fixed length entities
+     * without adding them to any cache used by the list.
+     *
+     * @param <T> type of entity in the list.
+     * @param list to read the items from.
+     * @param index of the first item required.
+     * @param count number of items required.
+     * @return the items in the range requested in order.
+     */
+    public static <T extends BaseEntity> Iterable<T> scan(
+            final IReadonlyList<T> list, final int index, final int count) {
+        if (list instanceof IScannableList) {
+            return ((IScannableList<T>)list).scan(index, count);
+        }
+        return new Iterable<T>() {
+            @Override
+            public Iterator<T> iterator() {
+                return new Iterator<T>() {
+                    int current = index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return current < index + count;
+                    }
+
+                    @Override
+                    public T next() {
+                        if (hasNext() == false) {
+                            throw new NoSuchElementException();
+                        }
+                        try {
+                            return list.get(current++);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException(
+                                "remove not supported");
+                    }
+                };
+            }
+        };
+    }
+}
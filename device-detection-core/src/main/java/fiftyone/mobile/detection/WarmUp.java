@@ -0,0 +1,228 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.detection.entities.headers.Header;
+import fiftyone.mobile.detection.readers.BinaryReader;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Prepares a data set for device detection before it is used by a
+ * {@link Provider}.
+ * <p>
+ * When a data set is streamed from a memory mapped file the first
+ * detections take page faults as each region of the file is read for the
+ * first time. Warming up reduces the slow detections that would otherwise
+ * follow creating or reloading a data set in two ways:
+ * <ol>
+ *  <li>pre-touching reads one byte from every page of the selected
+ *  sections of the file in order so that the operating system loads them
+ *  into memory, usually in a background thread.
+ *  <li>replaying matches a sample of User-Agents so that the nodes,
+ *  signatures and profiles most likely to be needed are loaded into the
+ *  data set's caches.
+ * </ol>
+ * Both can be configured on the {@link DatasetBuilder} used to create a
+ * stream data set, or used directly with any data set.
+ */
+public class WarmUp {
+
+    private static final Logger logger = 
+            Logger.getLogger(WarmUp.class.getName());
+
+    /**
+     * Number of bytes between the bytes read when pre-touching a section.
+     */
+    public static final int PAGE_SIZE = 4096;
+
+    /**
+     * Sections of the data file that can be pre-touched.
+     */
+    public enum Section {
+        /**
+         * The offsets of the root node for each character position.
+         */
+        ROOT_NODES,
+        /**
+         * The node tree.
+         */
+        NODES,
+        /**
+         * The signatures.
+         */
+        SIGNATURES,
+        /**
+         * The node offsets of every signature. Version 3.2 only.
+         */
+        SIGNATURE_NODE_OFFSETS,
+        /**
+         * The ranked signature indexes of every node. Version 3.2 only.
+         */
+        NODE_RANKED_SIGNATURE_INDEXES,
+        /**
+         * The signature indexes in order of rank.
+         */
+        RANKED_SIGNATURE_INDEXES,
+        /**
+         * The profiles.
+         */
+        PROFILES,
+        /**
+         * The values.
+         */
+        VALUES
+    }
+
+    /**
+     * The sections read when matching a User-Agent.
+     */
+    public static final Section[] MATCH_SECTIONS = new Section[] {
+        Section.ROOT_NODES,
+        Section.NODES,
+        Section.SIGNATURE_NODE_OFFSETS,
+        Section.NODE_RANKED_SIGNATURE_INDEXES,
+        Section.RANKED_SIGNATURE_INDEXES,
+        Section.SIGNATURES
+    };
+
+    /**
+     * Reads one byte from every page of the sections provided in the order
+     * given. Sections not present in the data set are ignored.
+     *
+     * @param dataSet streamed from a data file.
+     * @param sections to pre-touch.
+     * @return number of pages read.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public static long pretouch(IndirectDataset dataSet, Section... sections)
+            throws IOException {
+        long pages = 0;
+        BinaryReader reader = dataSet.pool.getReader();
+        try {
+            for (Section section : sections) {
+                Header header = dataSet.getSection(section);
+                if (header != null) {
+                    long end = header.getLongStartPosition() + 
+                            header.getLength();
+                    for (long position = header.getLongStartPosition();
+                            position < end; position += PAGE_SIZE) {
+                        reader.setPos(position);
+                        reader.readByte();
+                        pages++;
+                    }
+                }
+            }
+        } finally {
+            dataSet.pool.release(reader);
+        }
+        return pages;
+    }
+
+    /**
+     * Starts a daemon thread that pre-touches the sections provided. Errors
+     * are logged and otherwise ignored as pre-touching only affects 
+     * performance.
+     *
+     * @param dataSet streamed from a data file.
+     * @param sections to pre-touch.
+     * @return the thread which has been started.
+     */
+    public static Thread pretouchInBackground(final IndirectDataset dataSet,
+            final Section... sections) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    long pages = pretouch(dataSet, sections);
+                    logger.fine(String.format(
+                            "Pre-touched '%d' pages.", pages));
+                } catch (Exception ex) {
+                    // The data set will still work so only log the error.
+                    logger.log(Level.WARNING, 
+                            "Pre-touching the data set failed.", ex);
+                }
+            }
+        }, "51Degrees-WarmUp");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Matches each of the User-Agents so that the entities they need are
+     * loaded into the data set's caches. The profiles of each match are also
+     * loaded.
+     *
+     * @param dataSet to warm up.
+     * @param userAgents to match.
+     * @return number of User-Agents matched.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public static int replay(Dataset dataSet, Iterable<String> userAgents)
+            throws IOException {
+        Provider provider = new Provider(dataSet);
+        Match match = provider.createMatch();
+        int count = 0;
+        for (String userAgent : userAgents) {
+            provider.match(userAgent, match);
+            match.getProfiles();
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Matches each of the User-Agents in the file, one per line, so that
+     * the entities they need are loaded into the data set's caches.
+     *
+     * @param dataSet to warm up.
+     * @param fileName of a UTF-8 file with one User-Agent per line.
+     * @param maxUserAgents the most User-Agents to read from the file.
+     * @return number of User-Agents matched.
+     * @throws IOException if there was a problem accessing the data file or
+     * the User-Agents file.
+     */
+    public static int replay(Dataset dataSet, String fileName,
+            int maxUserAgents) throws IOException {
+        Provider provider = new Provider(dataSet);
+        Match match = provider.createMatch();
+        int count = 0;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(fileName), "UTF-8"));
+        try {
+            String userAgent;
+            while (count < maxUserAgents &&
+                   (userAgent = reader.readLine()) != null) {
+                provider.match(userAgent, match);
+                match.getProfiles();
+                count++;
+            }
+        } finally {
+            reader.close();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,473 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of compact entries keyed on a hash of a string rather than the
+ * string itself.
+ * <p>
+ * The {@link LruCache} holds a reference to the key, the value and a linked
+ * list item for every entry. When used for User-Agents the key alone is often
+ * larger than the information needed to recreate the result of the match.
+ * This cache stores a 64 bit hash of the key, a single long of packed
+ * information and an array of integers in parallel primitive arrays using
+ * open addressing. No per entry objects other than the integer array are
+ * created.
+ * <p>
+ * As only a hash of the key is stored there is a very small probability that
+ * two different keys share the same hash. Where this is not acceptable the
+ * cache should be constructed with verification enabled. A second independent
+ * 64 bit hash is then stored and checked, making the key effectively 128 bits.
+ * <p>
+ * The table is divided into segments to reduce contention in environments
+ * with a high degree of concurrency. Each key may only be stored within a
+ * short probe sequence starting at its home slot. When the sequence is full
+ * the first entry that has not been requested since it was last passed over
+ * is replaced, giving an approximation of least recently used behaviour
+ * without the need to maintain linked lists.
+ * <p>
+ * This class should not be called as it is part of the internal logic.
+ */
+public class CompactCache implements IPutCache<String, CompactCache.Entry> {
+
+    /**
+     * The maximum number of slots examined when looking for a key.
+     */
+    private static final int PROBE_LENGTH = 8;
+
+    /**
+     * Ratio of slots to the number of entries the cache should hold. Slots
+     * above the requested size reduce the number of entries that are
+     * replaced before they become the least recently used.
+     */
+    private static final double SLOTS_PER_ENTRY = 1.25;
+
+    /**
+     * Multiplier used by the 64 bit FNV-1a hash.
+     */
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Initial value used by the 64 bit FNV-1a hash.
+     */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+    /**
+     * Multiplier used by the verification hash.
+     */
+    private static final long CHECK_PRIME = 0x9e3779b97f4a7c15L;
+
+    /**
+     * The information stored for each key in the cache. Instances are only
+     * used to pass information to and from the cache and are not retained
+     * by it.
+     */
+    public static final class Entry {
+
+        /**
+         * @return packed information associated with the key. The meaning of
+         * the bits is determined by the user of the cache.
+         */
+        public long getMeta() {
+            return meta;
+        }
+        private final long meta;
+
+        /**
+         * @return integers associated with the key. The array must not be
+         * altered.
+         */
+        public int[] getValues() {
+            return values;
+        }
+        private final int[] values;
+
+        /**
+         * Constructs a new instance of Entry.
+         *
+         * @param meta packed information associated with the key.
+         * @param values integers associated with the key, not null.
+         */
+        public Entry(long meta, int[] values) {
+            if (values == null) {
+                throw new IllegalArgumentException(
+                        "Values for a compact cache entry can not be null.");
+            }
+            this.meta = meta;
+            this.values = values;
+        }
+    }
+
+    /**
+     * A portion of the table protected by its own lock. A slot is empty when
+     * the values array is null.
+     */
+    private static final class Segment {
+
+        /**
+         * Primary hash of the key in each slot.
+         */
+        final long[] keys;
+
+        /**
+         * Verification hash of the key in each slot, or null if verification
+         * is not enabled.
+         */
+        final long[] checks;
+
+        /**
+         * Packed information for each slot.
+         */
+        final long[] metas;
+
+        /**
+         * Integers for each slot, null if the slot is empty.
+         */
+        final int[][] values;
+
+        /**
+         * True if the slot has been requested since it was last considered
+         * for replacement.
+         */
+        final boolean[] referenced;
+
+        /**
+         * Mask applied to a hash to obtain a slot index.
+         */
+        final int mask;
+
+        Segment(int slots, boolean verify) {
+            keys = new long[slots];
+            checks = verify ? new long[slots] : null;
+            metas = new long[slots];
+            values = new int[slots][];
+            referenced = new boolean[slots];
+            mask = slots - 1;
+        }
+
+        /**
+         * Returns the slot containing the key, or -1 if not present.
+         */
+        int find(long key, long check) {
+            int slot = (int)key & mask;
+            for (int i = 0; i < PROBE_LENGTH; i++) {
+                if (values[slot] == null) {
+                    return -1;
+                }
+                if (keys[slot] == key &&
+                    (checks == null || checks[slot] == check)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the slot the key should be written to. This is either the
+         * slot already holding the key, an empty slot, or the slot of the
+         * entry chosen to be replaced.
+         */
+        int select(long key, long check) {
+            int home = (int)key & mask;
+            int slot = home;
+            int victim = -1;
+            for (int i = 0; i < PROBE_LENGTH; i++) {
+                if (values[slot] == null) {
+                    return slot;
+                }
+                if (keys[slot] == key &&
+                    (checks == null || checks[slot] == check)) {
+                    return slot;
+                }
+                if (victim < 0) {
+                    if (referenced[slot]) {
+                        // Give the entry a second chance.
+                        referenced[slot] = false;
+                    } else {
+                        victim = slot;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+            return victim >= 0 ? victim : home;
+        }
+
+        void clear() {
+            Arrays.fill(values, null);
+            Arrays.fill(referenced, false);
+        }
+    }
+
+    /**
+     * Segments of the table.
+     */
+    private final Segment[] segments;
+
+    /**
+     * Number of bits to shift a hash to obtain the segment index.
+     */
+    private final int segmentShift;
+
+    /**
+     * Constructs a new instance of the cache without verification.
+     *
+     * @param cacheSize The number of items to store in the cache.
+     */
+    public CompactCache(int cacheSize) {
+        this(cacheSize, false);
+    }
+
+    /**
+     * Constructs a new instance of the cache.
+     *
+     * @param cacheSize The number of items to store in the cache.
+     * @param verify True if a second hash of the key should be stored to
+     * avoid returning the wrong entry when two keys share the same hash.
+     */
+    public CompactCache(int cacheSize, boolean verify) {
+        this(cacheSize, verify, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs a new instance of the cache.
+     *
+     * @param cacheSize The number of items to store in the cache.
+     * @param verify True if a second hash of the key should be stored to
+     * avoid returning the wrong entry when two keys share the same hash.
+     * @param concurrency The expected number of concurrent threads.
+     */
+    public CompactCache(int cacheSize, boolean verify, int concurrency) {
+        if (cacheSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Cache size must be a positive integer greater than 0.");
+        }
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException(
+                    "Concurrency must be a positive integer greater than 0.");
+        }
+        this.cacheSize = cacheSize;
+        this.verify = verify;
+        int segmentCount = nextPowerOfTwo(concurrency);
+        int slots = nextPowerOfTwo(Math.max(PROBE_LENGTH,
+                (int)Math.ceil(cacheSize * SLOTS_PER_ENTRY / segmentCount)));
+        this.segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(slots, verify);
+        }
+        this.segmentShift = 64 - Integer.numberOfTrailingZeros(segmentCount);
+    }
+
+    /**
+     * @return true if a second hash of each key is stored and checked.
+     */
+    public boolean getVerify() {
+        return verify;
+    }
+    private final boolean verify;
+
+    /**
+     * The number of items the cache was created to hold.
+     *
+     * @return capacity of the cache.
+     */
+    @Override
+    public long getCacheSize() {
+        return cacheSize;
+    }
+    private final int cacheSize;
+
+    /**
+     * @return number of cache misses.
+     */
+    @Override
+    public long getCacheMisses() {
+        return misses.get();
+    }
+    private final AtomicLong misses = new AtomicLong(0);
+
+    /**
+     * @return number of requests received by the cache.
+     */
+    @Override
+    public long getCacheRequests() {
+        return requests.get();
+    }
+    private final AtomicLong requests = new AtomicLong(0);
+
+    /**
+     * @return the percentage of times cache request did not return a result.
+     */
+    @Override
+    public double getPercentageMisses() {
+        long total = requests.get();
+        return total > 0 ? misses.doubleValue() / total : 0;
+    }
+
+    /**
+     * Retrieves the entry for the key requested.
+     *
+     * @param key for the item required, not null.
+     * @return a new Entry with the information stored for the key, or null if
+     * the key is not present.
+     */
+    @Override
+    public Entry get(String key) {
+        requests.incrementAndGet();
+        Entry result = find(key);
+        if (result == null) {
+            misses.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the entry for the key only if it is present. A miss is never
+     * recorded in the cache statistics as the caller is expected to request 
+     * the key again with {@link #get(String)} if it is not present.
+     *
+     * @param key for the item required, not null.
+     * @param recordHit true if a hit should be recorded as a request.
+     * @return a new Entry with the information stored for the key, or null if
+     * the key is not present.
+     */
+    public Entry getIfPresent(String key, boolean recordHit) {
+        Entry result = find(key);
+        if (result != null && recordHit) {
+            requests.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Finds the entry for the key without changing the statistics.
+     */
+    private Entry find(String key) {
+        long hash = hash(key);
+        long check = verify ? check(key) : 0;
+        Segment segment = segments[segmentIndex(hash)];
+        Entry result = null;
+        synchronized (segment) {
+            int slot = segment.find(hash, check);
+            if (slot >= 0) {
+                segment.referenced[slot] = true;
+                result = new Entry(segment.metas[slot], segment.values[slot]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds or replaces the entry for the key provided. If the table does not
+     * have space for the key then an existing entry is replaced.
+     *
+     * @param key for the item, not null.
+     * @param value information to store against the key, not null.
+     */
+    @Override
+    public void put(String key, Entry value) {
+        long hash = hash(key);
+        long check = verify ? check(key) : 0;
+        Segment segment = segments[segmentIndex(hash)];
+        synchronized (segment) {
+            int slot = segment.select(hash, check);
+            segment.keys[slot] = hash;
+            if (segment.checks != null) {
+                segment.checks[slot] = check;
+            }
+            segment.metas[slot] = value.getMeta();
+            segment.values[slot] = value.getValues();
+            segment.referenced[slot] = false;
+        }
+    }
+
+    /**
+     * Removes all entries from the cache and resets the statistics.
+     */
+    @Override
+    public void resetCache() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+        misses.set(0);
+        requests.set(0);
+    }
+
+    /**
+     * Returns the 64 bit hash used as the primary key. FNV-1a is applied to
+     * the characters of the string and the result mixed so that both the
+     * high bits, used to select a segment, and the low bits, used to select
+     * a slot, are well distributed.
+     *
+     * @param key to be hashed.
+     * @return 64 bit hash of the key.
+     */
+    static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Returns a second 64 bit hash calculated independently of
+     * {@link #hash(String)} and used to verify the key.
+     *
+     * @param key to be hashed.
+     * @return 64 bit verification hash of the key.
+     */
+    static long check(String key) {
+        long hash = key.length();
+        for (int i = key.length() - 1; i >= 0; i--) {
+            hash = (hash + key.charAt(i)) * CHECK_PRIME;
+            hash ^= hash >>> 29;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Final mixing step from MurmurHash3.
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private int segmentIndex(long hash) {
+        return segments.length == 1 ? 0 : (int)(hash >>> segmentShift);
+    }
+
+    private static int nextPowerOfTwo(int value) {
+        int result = Integer.highestOneBit(value);
+        return result == value ? result : result << 1;
+    }
+}
@@ -22,9 +22,12 @@ package fiftyone.mobile.detection.cache;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Many of the entities used by the detector data set are requested repeatedly. 
@@ -131,6 +134,13 @@ public class LruCache<K, V>  implements ILoadingCache<K,V> {
          */
         CachedItem last = null;
 
+        /**
+         * Guards changes to the list. A lock is used rather than a monitor
+         * so that threads waiting for the list, including virtual threads, 
+         * are not pinned to their carrier thread.
+         */
+        final ReentrantLock lock = new ReentrantLock();
+
         /**
          * Constructs a new instance of the CacheLinkedList.
          */
@@ -146,7 +156,8 @@ public class LruCache<K, V>  implements ILoadingCache<K,V> {
             boolean added = false;
             if (item != first)
             {
-                synchronized(this)
+                lock.lock();
+                try
                 {
                     if (item != first)
                     {
@@ -173,13 +184,18 @@ public class LruCache<K, V>  implements ILoadingCache<K,V> {
                         item.isValid = true;
                     }
                 }
+                finally
+                {
+                    lock.unlock();
+                }
             }
 
             // Check if the linked list needs to be trimmed as the cache
             // size has been exceeded.
             if (added && cache.hashMap.size() > cache.cacheSize)
             {
-                synchronized (this)
+                lock.lock();
+                try
                 {
                     if (cache.hashMap.size() > cache.cacheSize)
                     {
@@ -194,6 +210,10 @@ public class LruCache<K, V>  implements ILoadingCache<K,V> {
                         last.next = null;
                     }
                 }
+                finally
+                {
+                    lock.unlock();
+                }
             }
         }
 
@@ -204,7 +224,8 @@ public class LruCache<K, V>  implements ILoadingCache<K,V> {
         {
             if (item != first && item.isValid == true)
             {
-                synchronized (this)
+                lock.lock();
+                try
                 {
                     if (item != first && item.isValid == true)
                     {
@@ -232,6 +253,10 @@ public class LruCache<K, V>  implements ILoadingCache<K,V> {
                         first = item;
                     }
                 }
+                finally
+                {
+                    lock.unlock();
+                }
             }
         }
 
@@ -363,6 +388,50 @@ public class LruCache<K, V>  implements ILoadingCache<K,V> {
         }
     }
     
+    /**
+     * Retrieves the value for the key only if it is already in the cache. 
+     * The item is moved to the head of its list but the cache statistics 
+     * are not changed.
+     * 
+     * @param key of the item required.
+     * @return the value associated with the key, or null if not in the cache.
+     */
+    public V getIfPresent(K key) {
+        return getIfPresent(key, false);
+    }
+
+    /**
+     * Retrieves the value for the key only if it is already in the cache. 
+     * The item is moved to the head of its list. A miss is never recorded in
+     * the cache statistics as the caller is expected to request the key 
+     * again with a loader if it is not present.
+     * 
+     * @param key of the item required.
+     * @param recordHit true if a hit should be recorded as a request.
+     * @return the value associated with the key, or null if not in the cache.
+     */
+    public V getIfPresent(K key, boolean recordHit) {
+        CachedItem node = hashMap.get(key);
+        if (node == null) {
+            return null;
+        }
+        if (recordHit) {
+            requests.incrementAndGet();
+        }
+        node.list.moveFirst(node);
+        return node.value;
+    }
+
+    /**
+     * Returns the keys currently in the cache. The cache statistics and the 
+     * order of the items are not changed.
+     * 
+     * @return a snapshot of the keys in no particular order.
+     */
+    public List<K> getKeys() {
+        return new ArrayList<K>(hashMap.keySet());
+    }
+
     /**
      * Retrieves the value for key requested. If the key does not exist
      * in the cache then the Fetch method is used to retrieve the value
@@ -0,0 +1,437 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.cache;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A two tier cache where a small cache private to each thread (L1) is
+ * checked before a cache shared by all threads (L2).
+ * <p>
+ * Where a small number of keys account for the majority of requests, as is
+ * the case with User-Agents, most requests can be served from the L1 cache
+ * without touching any memory shared with other threads. Requests not found
+ * in the L1 cache are passed to the shared cache and the result added to the
+ * L1 cache of the requesting thread.
+ * <p>
+ * The L1 caches are invalidated together by {@link #invalidate()}, for
+ * example when the data set associated with the values changes. The items
+ * are released immediately and each thread starts a new L1 cache the next 
+ * time it is used so no locking is needed. Threads only hold weak 
+ * references to their L1 caches so that a cache which is no longer used, 
+ * and the values it contains, can be collected while pooled threads live on.
+ * <p>
+ * Statistics for the L1 caches are maintained by each thread without
+ * synchronisation and are therefore approximate while requests are in
+ * progress. Statistics for the L2 cache are those of the shared cache.
+ * <p>
+ * This class should not be called as it is part of the internal logic.
+ *
+ * @param <K> Key for the cache items.
+ * @param <V> Value for the cache items.
+ */
+public class ThreadLocalCache<K, V> implements ILoadingCache<K, V> {
+
+    /**
+     * The L1 cache used by a single thread. A linked hash map in access order
+     * provides least recently used behaviour.
+     * <p>
+     * The class is static and does not reference the parent cache. The 
+     * owning thread only holds a weak reference to it, the strong reference 
+     * being held by the parent, so the items can be collected as soon as the
+     * parent is no longer used even if the thread is pooled and lives on.
+     */
+    private static final class LocalCache<K, V> {
+
+        /**
+         * The thread the cache belongs to.
+         */
+        final WeakReference<Thread> owner;
+
+        /**
+         * The maximum number of items.
+         */
+        final int size;
+
+        /**
+         * The items, or null if the cache has been invalidated. Only 
+         * modified by the owning thread except when invalidated.
+         */
+        volatile LinkedHashMap<K, V> entries;
+
+        /**
+         * The generation of the parent cache when the local cache was last
+         * cleared.
+         */
+        int generation;
+
+        /**
+         * Requests made to the local cache by the owning thread.
+         */
+        long requests;
+
+        /**
+         * Requests that were served by the local cache.
+         */
+        long hits;
+
+        LocalCache(int size, int generation) {
+            this.owner = new WeakReference<Thread>(Thread.currentThread());
+            this.size = size;
+            this.generation = generation;
+        }
+
+        /**
+         * @return the items creating a new empty map if invalidated.
+         */
+        LinkedHashMap<K, V> getEntries() {
+            LinkedHashMap<K, V> current = entries;
+            if (current == null) {
+                current = new LinkedHashMap<K, V>(16, 0.75f, true) {
+                    private static final long serialVersionUID = 1L;
+                    @Override
+                    protected boolean removeEldestEntry(
+                            Map.Entry<K, V> eldest) {
+                        return size() > size;
+                    }
+                };
+                entries = current;
+            }
+            return current;
+        }
+
+        /**
+         * @return true if the owning thread has ended.
+         */
+        boolean isOrphaned() {
+            Thread thread = owner.get();
+            return thread == null || thread.isAlive() == false;
+        }
+    }
+
+    /**
+     * The cache shared by all threads.
+     */
+    private final ILoadingCache<K, V> sharedCache;
+
+    /**
+     * Weak reference to the L1 cache for each thread.
+     */
+    private final ThreadLocal<WeakReference<LocalCache<K, V>>> localCaches =
+            new ThreadLocal<WeakReference<LocalCache<K, V>>>();
+
+    /**
+     * The L1 caches of all the threads that are still alive. Used to
+     * aggregate statistics and to release items when invalidated.
+     */
+    private final ConcurrentLinkedQueue<LocalCache<K, V>> allLocalCaches =
+            new ConcurrentLinkedQueue<LocalCache<K, V>>();
+
+    /**
+     * Incremented to invalidate all the L1 caches.
+     */
+    private volatile int generation = 0;
+
+    /**
+     * Constructs a new instance of the cache.
+     *
+     * @param sharedCache the L2 cache shared by all threads, not null.
+     * @param localCacheSize The number of items to store in each thread's
+     * L1 cache.
+     */
+    public ThreadLocalCache(ILoadingCache<K, V> sharedCache,
+                            int localCacheSize) {
+        if (sharedCache == null) {
+            throw new IllegalArgumentException(
+                    "Shared cache can not be null.");
+        }
+        if (localCacheSize <= 0) {
+            throw new IllegalArgumentException(
+                    "Local cache size must be a positive integer greater " +
+                    "than 0.");
+        }
+        this.sharedCache = sharedCache;
+        this.localCacheSize = localCacheSize;
+    }
+
+    /**
+     * @return the L2 cache shared by all threads.
+     */
+    public ILoadingCache<K, V> getSharedCache() {
+        return sharedCache;
+    }
+
+    /**
+     * @return the number of items stored in each thread's L1 cache.
+     */
+    public int getLocalCacheSize() {
+        return localCacheSize;
+    }
+    private final int localCacheSize;
+
+    /**
+     * The size of the shared cache.
+     *
+     * @return capacity of the shared cache.
+     */
+    @Override
+    public long getCacheSize() {
+        return sharedCache.getCacheSize();
+    }
+
+    /**
+     * @return number of requests served by neither the L1 or L2 caches.
+     */
+    @Override
+    public long getCacheMisses() {
+        return sharedCache.getCacheMisses();
+    }
+
+    /**
+     * @return number of requests received by the cache.
+     */
+    @Override
+    public long getCacheRequests() {
+        long total = 0;
+        for (LocalCache<K, V> cache : getLocalCaches()) {
+            total += cache.requests;
+        }
+        return total;
+    }
+
+    /**
+     * @return the percentage of requests that were not served by either the
+     * L1 or L2 caches.
+     */
+    @Override
+    public double getPercentageMisses() {
+        long total = getCacheRequests();
+        return total > 0 ? (double)getCacheMisses() / total : 0;
+    }
+
+    /**
+     * @return number of requests served by the L1 caches.
+     */
+    public long getLocalCacheHits() {
+        long total = 0;
+        for (LocalCache<K, V> cache : getLocalCaches()) {
+            total += cache.hits;
+        }
+        return total;
+    }
+
+    /**
+     * @return the percentage of all requests that were served by the L1
+     * caches.
+     */
+    public double getPercentageLocalHits() {
+        long total = getCacheRequests();
+        return total > 0 ? (double)getLocalCacheHits() / total : 0;
+    }
+
+    /**
+     * @return the percentage of requests passed to the L2 cache that were
+     * served by it.
+     */
+    public double getPercentageSharedHits() {
+        long total = sharedCache.getCacheRequests();
+        return total > 0 ? 
+                (double)(total - sharedCache.getCacheMisses()) / total : 0;
+    }
+
+    /**
+     * Retrieves the value for key requested using the loader associated with
+     * the shared cache.
+     *
+     * @param key or the item required.
+     * @return An instance of the value associated with the key.
+     */
+    @Override
+    public V get(K key) {
+        LocalCache<K, V> local = getLocalCache();
+        local.requests++;
+        LinkedHashMap<K, V> entries = local.getEntries();
+        V value = entries.get(key);
+        if (value == null) {
+            value = sharedCache.get(key);
+            if (value != null) {
+                entries.put(key, value);
+            }
+        } else {
+            local.hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves the value for key requested. If the key does not exist in
+     * the L1 cache of the current thread then the shared cache is used with
+     * the loader provided.
+     *
+     * @param key or the item required
+     * @param loader to fetch the items from
+     * @return An instance of the value associated with the key
+     * @throws java.io.IOException if there was a problem accessing data file.
+     */
+    @Override
+    public V get(K key, IValueLoader<K, V> loader) throws IOException {
+        LocalCache<K, V> local = getLocalCache();
+        local.requests++;
+        LinkedHashMap<K, V> entries = local.getEntries();
+        V value = entries.get(key);
+        if (value == null) {
+            value = sharedCache.get(key, loader);
+            if (value != null) {
+                entries.put(key, value);
+            }
+        } else {
+            local.hits++;
+        }
+        return value;
+    }
+
+    /**
+     * Retrieves the value for the key only if it is already in the L1 cache 
+     * of the current thread, or in the shared cache when the shared cache is
+     * an {@link LruCache}. Values are never loaded.
+     *
+     * @param key of the item required.
+     * @return the value associated with the key, or null if not cached.
+     */
+    public V getIfPresent(K key) {
+        return getIfPresent(key, false);
+    }
+
+    /**
+     * Retrieves the value for the key only if it is already in the L1 cache 
+     * of the current thread, or in the shared cache when the shared cache is
+     * an {@link LruCache}. Values are never loaded. A miss is never recorded
+     * in the cache statistics as the caller is expected to request the key 
+     * again with a loader if it is not present.
+     *
+     * @param key of the item required.
+     * @param recordHit true if a hit should be recorded as a request.
+     * @return the value associated with the key, or null if not cached.
+     */
+    public V getIfPresent(K key, boolean recordHit) {
+        LocalCache<K, V> local = getLocalCache();
+        LinkedHashMap<K, V> entries = local.getEntries();
+        V value = entries.get(key);
+        if (value != null) {
+            if (recordHit) {
+                local.requests++;
+                local.hits++;
+            }
+        } else if (sharedCache instanceof LruCache) {
+            value = ((LruCache<K, V>)sharedCache).getIfPresent(
+                    key, recordHit);
+            if (value != null) {
+                if (recordHit) {
+                    local.requests++;
+                }
+                entries.put(key, value);
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Invalidates the L1 caches of all threads releasing the items they 
+     * hold. Statistics are reset by each thread the next time its cache is 
+     * used. The shared cache is not altered.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        for (LocalCache<K, V> cache : allLocalCaches) {
+            // The owning thread may still add to the map it has already
+            // read, which is then discarded.
+            cache.entries = null;
+        }
+    }
+
+    /**
+     * Invalidates all the L1 caches and removes all entries from the shared
+     * cache resetting the statistics.
+     */
+    @Override
+    public void resetCache() {
+        invalidate();
+        sharedCache.resetCache();
+    }
+
+    /**
+     * Returns the L1 cache for the current thread, creating it if the thread
+     * does not have one and clearing it first if the cache has been 
+     * invalidated since it was last used.
+     */
+    private LocalCache<K, V> getLocalCache() {
+        WeakReference<LocalCache<K, V>> reference = localCaches.get();
+        LocalCache<K, V> local = reference != null ? reference.get() : null;
+        int current = generation;
+        if (local == null) {
+            removeOrphans();
+            local = new LocalCache<K, V>(localCacheSize, current);
+            allLocalCaches.add(local);
+            localCaches.set(new WeakReference<LocalCache<K, V>>(local));
+        } else if (local.generation != current) {
+            local.entries = null;
+            local.requests = 0;
+            local.hits = 0;
+            local.generation = current;
+        }
+        return local;
+    }
+
+    /**
+     * Returns the L1 caches that are valid for the current generation.
+     */
+    private List<LocalCache<K, V>> getLocalCaches() {
+        final int current = generation;
+        List<LocalCache<K, V>> caches = new ArrayList<LocalCache<K, V>>();
+        for (LocalCache<K, V> cache : allLocalCaches) {
+            if (cache.generation == current) {
+                caches.add(cache);
+            }
+        }
+        return caches;
+    }
+
+    /**
+     * Removes the L1 caches of threads that have ended. Called when a new
+     * thread starts using the cache so the number held is bounded by the
+     * number of threads alive.
+     */
+    private void removeOrphans() {
+        Iterator<LocalCache<K, V>> iterator = allLocalCaches.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isOrphaned()) {
+                iterator.remove();
+            }
+        }
+    }
+}
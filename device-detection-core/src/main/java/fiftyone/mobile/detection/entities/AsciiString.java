@@ -22,6 +22,8 @@ package fiftyone.mobile.detection.entities;
 
 import fiftyone.mobile.detection.Dataset;
 import fiftyone.mobile.detection.readers.BinaryReader;
+import fiftyone.properties.DetectionConstants;
+import java.util.Arrays;
 
 /**
  * ASCII format strings are the only ones used in the data set.
@@ -45,9 +47,21 @@ import fiftyone.mobile.detection.readers.BinaryReader;
 public class AsciiString extends BaseEntity {
 
     /**
-     * The value of the string in ASCII bytes.
+     * The array containing the ASCII bytes of the string. Either an array 
+     * used only by this string or an arena containing all the strings of the 
+     * data set.
      */
-    final byte[] value;
+    final byte[] source;
+
+    /**
+     * The index in the source array of the first character.
+     */
+    final int start;
+
+    /**
+     * The number of characters in the string.
+     */
+    final int length;
 
     /**
      * The length of the byte array or string in characters.
@@ -55,7 +69,7 @@ public class AsciiString extends BaseEntity {
      * @return length of the byte array or string in characters.
      */
     public int getLength() {
-        return value.length;
+        return length;
     }
 
     /**
@@ -72,7 +86,9 @@ public class AsciiString extends BaseEntity {
         super(dataSet, offset);
 
         // The length includes the null byte which we're not interested in.
-        this.value = reader.readBytes(reader.readInt16() - 1);
+        this.source = reader.readBytes(reader.readInt16() - 1);
+        this.start = 0;
+        this.length = source.length;
 
         // Read the null byte to ensure the file position is at the 
         // expected place for the next string.
@@ -81,22 +97,105 @@ public class AsciiString extends BaseEntity {
         this.stringValue = null;
     }
 
+    /**
+     * Constructs a new instance of AsciiString that uses the characters held 
+     * in an arena containing the entire strings data structure. No bytes are 
+     * copied.
+     *
+     * @param dataSet The data set whose strings list the string is contained
+     * within.
+     * @param offset The offset to the start of the string within the string
+     * data structure, and therefore within the arena.
+     * @param arena The bytes of the strings data structure.
+     */
+    public AsciiString(Dataset dataSet, int offset, byte[] arena) {
+        super(dataSet, offset);
+        this.source = arena;
+        this.start = offset + DetectionConstants.SIZE_OF_SHORT;
+        // The length is a little endian short that includes the null byte.
+        this.length = ((arena[offset] & 0xFF) | 
+                       ((arena[offset + 1] & 0xFF) << 8)) - 1;
+        this.stringValue = null;
+    }
+
+    /**
+     * Returns the array holding the characters of the string. For data sets 
+     * held in memory this is the arena containing every string of the data 
+     * set so only the characters from {@link #getStart()} for 
+     * {@link #getLength()} relate to this string. The array must not be 
+     * modified.
+     *
+     * @return the array containing the string's characters.
+     */
+    public byte[] getSource() {
+        return source;
+    }
+
+    /**
+     * The index in the array returned by {@link #getSource()} of the first 
+     * character of the string.
+     *
+     * @return index of the first character.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the characters of the string. The array must not be modified 
+     * as it may be shared with the string.
+     *
+     * @return array of the string's characters.
+     */
+    byte[] getBytes() {
+        return start == 0 && length == source.length ? 
+                source : 
+                Arrays.copyOfRange(source, start, start + length);
+    }
+
+    /**
+     * Copies the characters of the string to the array provided.
+     *
+     * @param destination array to copy the characters to.
+     * @param destinationIndex first index in the array to write to.
+     * @param count number of characters to copy.
+     */
+    void copyTo(byte[] destination, int destinationIndex, int count) {
+        System.arraycopy(source, start, destination, destinationIndex, count);
+    }
+
+    /**
+     * Compares the characters of the string from last to first with the 
+     * characters of the other array ending at the index provided. Used when 
+     * matching nodes against a target User-Agent.
+     *
+     * @param other array of characters to compare.
+     * @param startIndex the index in the other array of the character to 
+     * compare to the first character of this string.
+     * @return the difference of the first characters that differ, or 0 if 
+     * all are the same.
+     */
+    int compareReverse(byte[] other, int startIndex) {
+        for (int i = start + length - 1, o = startIndex + length - 1; 
+                i >= start; i--, o--) {
+            int difference = source[i] - other[o];
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return 0;
+    }
+
     /**
      * .NET string representation of the ASCII string.
      *
      * @return ASCII string as a native string.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public String toString() {
         String localStringValue = stringValue;
         if (localStringValue == null) {
-            synchronized (this) {
-                localStringValue = stringValue;
-                if (localStringValue == null) {
-                    stringValue = localStringValue = new String(value);
-                }
-            }
+            stringValue = localStringValue = new String(source, start, length);
         }
         return localStringValue;
     }
@@ -36,6 +36,14 @@ import java.util.List;
  * All entities in this package extend this class. Every entity contains a 
  * unique integer key.
  * <p>
+ * Values used during detection that entities fetch lazily, such as node
+ * characters, signature profiles or stream mode ranked signature indexes,
+ * are published through volatile fields without locking. The value is 
+ * always the same so if concurrent threads both fetch it one result is 
+ * simply discarded. Threads never wait on an entity's monitor, including 
+ * while stream mode reads from the data file, so virtual threads are not 
+ * pinned to their carrier thread during detection.
+ * <p>
  * Objects of this class should not be created directly as they are part of the 
  * internal logic.
  * <p>
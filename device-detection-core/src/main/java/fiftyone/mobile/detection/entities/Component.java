@@ -21,6 +21,7 @@
 package fiftyone.mobile.detection.entities;
 
 import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.Utilities;
 import fiftyone.mobile.detection.readers.BinaryReader;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -158,6 +159,31 @@ public abstract class Component extends BaseEntity
     @SuppressWarnings("VolatileArrayField")
     private volatile Property[] properties;
     
+    /**
+     * Table relating the properties of the component to columns used to 
+     * find the values of a profile for a property.
+     * <p>
+     * This method should not be called as it is part of the internal logic.
+     *
+     * @return the property table for the component.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    @SuppressWarnings("DoubleCheckedLocking")
+    public PropertyTable getPropertyTable() throws IOException {
+        PropertyTable localPropertyTable = propertyTable;
+        if (localPropertyTable == null) {
+            synchronized (this) {
+                localPropertyTable = propertyTable;
+                if (localPropertyTable == null) {
+                    propertyTable = localPropertyTable = new PropertyTable(
+                            this, getDataSet().getProperties().size());
+                }
+            }
+        }
+        return localPropertyTable;
+    }
+    private volatile PropertyTable propertyTable;
+    
     /**
      * Initialises the references to profiles.
      * This method should not be called as it is part of the internal logic.
@@ -171,6 +197,7 @@ public abstract class Component extends BaseEntity
             defaultProfile = getDataSet().getProfiles().get(defaultProfileOffset);
         if (profiles == null)
             profiles = doGetProfiles();
+        getPropertyTable();
     }
     
     /**
@@ -201,7 +228,7 @@ public abstract class Component extends BaseEntity
      */
     private Profile[] doGetProfiles() throws IOException {
         List<Profile> temp = new ArrayList<Profile>();
-        for (Profile profile : getDataSet().getProfiles()) {
+        for (Profile profile : Utilities.scan(getDataSet().getProfiles())) {
             if (profile.getComponent().getComponentId() == componentId) {
                 temp.add(profile);
             }
@@ -78,11 +78,10 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
     };
     
     /**
-     * The characters that make up the node if it's a complete node or null 
-     * if it's incomplete.
+     * The string of characters that make up the node if it's a complete node 
+     * or null if it's incomplete.
      */
-    @SuppressWarnings("VolatileArrayField")
-    private volatile byte[] characters;
+    private volatile AsciiString characterString;
     
     /**
      * The position in the stream of the first byte of the node.
@@ -114,7 +113,7 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
      * the characters of the node. Or -1 if the node is not complete and no
      * characters are available.
      */
-    private final int characterStringOffset;
+    final int characterStringOffset;
     /**
      * The next character position to the left of this node or a negative number
      * if this is not a complete node.
@@ -147,7 +146,7 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
      */
     public Node(Dataset dataSet, int offset, BinaryReader reader) {
         super(dataSet, offset);
-        this.nodeStartStreamPosition = reader.getPos(); 
+        this.nodeStartStreamPosition = reader.getLongPos(); 
         this.position = reader.readInt16();
         this.nextCharacterPosition = reader.readInt16();
         this.parentOffset = reader.readInt32();
@@ -162,16 +161,10 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
      * @return root node for this node
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Node getRoot() throws IOException {
         Node localRoot = root;
         if (localRoot == null) {
-            synchronized (this) {
-                localRoot = root;
-                if (localRoot == null) {
-                    root = localRoot = getParent() == null ? this : getParent().getRoot();
-                }
-            }
+            root = localRoot = getParent() == null ? this : getParent().getRoot();
         }
         return localRoot;
     }
@@ -180,16 +173,10 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
      * Returns the parent node for this node.
      * @reurn the parent node for this node.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     Node getParent() throws IOException {
         Node localParent = parent;
         if (parentOffset >= 0 && localParent == null) {
-            synchronized (this) {
-                localParent = parent;
-                if (localParent == null) {
-                    parent = localParent = getDataSet().getNodes().get(parentOffset);
-                }
-            }
+            parent = localParent = getDataSet().getNodes().get(parentOffset);
         }
         return localParent;
     }
@@ -222,28 +209,60 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     public int getLength() throws IOException {
-        return getRoot().position - position;
+        return getRootPosition() - position;
     }
 
     /**
-     * Gets an array containing all the characters of the node.
+     * Returns the position of the root node for this node. If the data set's
+     * {@link NodeTable} has been built it is used so that the parent nodes
+     * do not need to be fetched.
+     * 
+     * @return position of the root node for this node.
+     * @throws java.io.IOException if there was a problem accessing data file.
+     */
+    public int getRootPosition() throws IOException {
+        int localRootPosition = rootPosition;
+        if (localRootPosition < 0) {
+            // The value is always the same so concurrent threads setting it 
+            // is not a problem.
+            NodeTable table = getDataSet().getNodeTable();
+            rootPosition = localRootPosition = table != null ?
+                    table.getRootPosition(getIndex()) :
+                    getRoot().position;
+        }
+        return localRootPosition;
+    }
+    private volatile int rootPosition = -1;
+
+    /**
+     * Gets an array containing all the characters of the node. For data sets
+     * held in memory the array is a copy so 
+     * {@link #getCharacterString()} should be used when matching.
      * 
      * @return array containing all the characters of the node.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public byte[] getCharacters() throws IOException {
-        byte[] localCharacters = characters;
-        if (localCharacters == null && characterStringOffset >= 0) {
-            synchronized (this) {
-                localCharacters = characters;
-                if (localCharacters == null) {
-                    characters = localCharacters = super.getDataSet().strings.
-                            get(characterStringOffset).value;
-                }
-            }
+        AsciiString localString = getCharacterString();
+        return localString == null ? null : localString.getBytes();
+    }
+
+    /**
+     * Gets the string containing all the characters of the node. For data 
+     * sets held in memory the string is a view over the arena of all the 
+     * strings so no characters are copied.
+     * 
+     * @return string of the node's characters, or null if the node is not
+     * complete.
+     * @throws java.io.IOException if there was a problem accessing data file.
+     */
+    public AsciiString getCharacterString() throws IOException {
+        AsciiString localString = characterString;
+        if (localString == null && characterStringOffset >= 0) {
+            characterString = localString = super.getDataSet().strings.
+                    get(characterStringOffset);
         }
-        return localCharacters;
+        return localString;
     }
 
     /**
@@ -294,8 +313,8 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     public void init() throws IOException {
-        if (isComplete() && characters == null) {
-            characters = getCharacters();
+        if (isComplete()) {
+            getCharacterString();
         }
         if (parent == null && parentOffset >= 0) {
             parent = dataSet.nodes.get(parentOffset);
@@ -418,12 +437,12 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
      */
     public void addCharacters(byte[] values) throws IOException {
         if (getParent() != null) {
-            byte[] nodeCharacters = this.characters == null ?
-                    this.dataSet.strings.get(this.characterStringOffset).value :
-                    this.getCharacters();
-            for (int i = 0; i < getLength(); i++) {
-                values[position + i + 1] = nodeCharacters[i];
+            AsciiString localString = characterString;
+            if (localString == null) {
+                localString = this.dataSet.strings.get(
+                        this.characterStringOffset);
             }
+            localString.copyTo(values, position + 1, getLength());
         }
     }
 
@@ -512,7 +531,7 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
         Node lower = node.position < position ? node : this;
         Node higher = lower == this ? node : this;
         return lower.position == higher.position
-                || lower.getRoot().position > higher.position;
+                || lower.getRootPosition() > higher.position;
     }
     
     /**
@@ -529,7 +548,7 @@ public abstract class Node extends BaseEntity implements Comparable<Node> {
 
             int lower = 0;
             int middle = lower + (upper - lower) / 2;
-            int length = children[middle].getCharacters().length;
+            int length = children[middle].getCharacterLength();
             int startIndex = position - length + 1;
 
             while (lower <= upper) {
@@ -52,24 +52,27 @@ public class NodeIndex extends NodeIndexBase implements Comparable<NodeIndex> {
     private final byte[] value;
 
     /**
-     * Returns the characters related to this node index.
+     * Returns the number of characters related to this node index.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
-    byte[] getCharacters() throws IOException {
-        byte[] localCharacters = characters;
-        if (localCharacters == null) {
-            synchronized(this) {
-                localCharacters = characters;
-                if (localCharacters == null) {
-                    characters = localCharacters = getCharacters(
-                            getDataSet(), isString, value);
-                }
-            }
+    int getCharacterLength() throws IOException {
+        return isString ? getString().getLength() : value.length;
+    }
+
+    /**
+     * Returns the string the node index relates to if the value is an offset
+     * in the strings data structure. For data sets held in memory the string
+     * shares the arena of the strings list so no characters are copied.
+     */
+    private AsciiString getString() throws IOException {
+        AsciiString localString = string;
+        if (localString == null) {
+            string = localString = getDataSet().strings.get(
+                    Integer.reverseBytes(
+                            ByteBuffer.wrap(value).getInt()));
         }
-        return localCharacters;
+        return localString;
     }
-    @SuppressWarnings("VolatileArrayField")
-    private volatile byte[] characters;
+    private volatile AsciiString string;
 
     /**
      * Constructs a new instance of NodeIndex
@@ -98,21 +101,8 @@ public class NodeIndex extends NodeIndexBase implements Comparable<NodeIndex> {
     @Override
     void init() throws IOException {
         super.init();
-        if (characters == null) {
-            characters = getCharacters(getDataSet(), isString, value);
-        }
-    }
-
-    /**
-     * Returns the characters the node index relates to.
-     */
-    private static byte[] getCharacters(Dataset dataSet,
-            boolean isString, byte[] value) throws IOException {
         if (isString) {
-            return dataSet.strings.get(
-                    Integer.reverseBytes(ByteBuffer.wrap(value).getInt())).value;
-        } else {
-            return value;
+            getString();
         }
     }
 
@@ -125,7 +115,10 @@ public class NodeIndex extends NodeIndexBase implements Comparable<NodeIndex> {
      * @return The relative position of the node in relation to the other array
      */
     int compareTo(byte[] other, int startIndex) throws IOException {
-        byte[] c = getCharacters();
+        if (isString) {
+            return getString().compareReverse(other, startIndex);
+        }
+        byte[] c = value;
         for (int i = c.length - 1, o = startIndex + c.length - 1; i >= 0; i--, o--) {
             int difference = c[i] - other[o];
             if (difference != 0) {
@@ -144,7 +137,12 @@ public class NodeIndex extends NodeIndexBase implements Comparable<NodeIndex> {
     @Override
     public int compareTo(NodeIndex other) {
         try {
-            return compareTo(other.getCharacters(), 0);
+            if (other.isString) {
+                AsciiString otherString = other.getString();
+                return compareTo(
+                        otherString.getSource(), otherString.getStart());
+            }
+            return compareTo(other.value, 0);
         } catch (IOException e) {
             return 0;
         }
@@ -159,7 +157,7 @@ public class NodeIndex extends NodeIndexBase implements Comparable<NodeIndex> {
     public String toString() {
         try {
             return String.format("%s[%d]]",
-                    new String(getCharacters()),
+                    isString ? getString().toString() : new String(value),
                     relatedNodeOffset);
         } catch (IOException e) {
             return super.toString();
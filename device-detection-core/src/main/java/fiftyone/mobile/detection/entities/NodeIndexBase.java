@@ -67,7 +67,6 @@ public abstract class NodeIndexBase extends BaseEntity {
      * memory would be used as the garbage collector would not recognise that 
      * it could be freed.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     Node getNode() throws IOException {
         Node result = node;
         if (result != null) {
@@ -75,13 +74,8 @@ public abstract class NodeIndexBase extends BaseEntity {
         } 
         
         if (getDataSet().nodes instanceof MemoryBaseList) {
-            synchronized (this) {
-                result = node;
-                if (result == null) {
-                    node = result = getDataSet().getNodes().get(
-                            relatedNodeOffset);
-                }
-            }
+            node = result = getDataSet().getNodes().get(
+                    relatedNodeOffset);
             return result;
         } 
         
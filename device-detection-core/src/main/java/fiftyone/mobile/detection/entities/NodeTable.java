@@ -0,0 +1,184 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.Utilities;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compact tables of the node and signature metadata needed when scoring
+ * signatures so that nodes do not need to be fetched to find it.
+ * <p>
+ * For every node the table holds the offset, the position of the root node
+ * and the offset of the node's characters in the strings data structure. For
+ * every signature the table holds the number of characters in the signature,
+ * which is one more than the root position of the signature's last node.
+ * <p>
+ * The table is most useful when nodes and signatures are streamed from the
+ * data file as each node fetched to calculate a length would otherwise pass
+ * through the nodes cache and the reader pool. Building the table reads
+ * every node and signature once without using the caches.
+ * <p>
+ * One table exists per data set and is returned by
+ * {@link Dataset#getNodeTable()} after {@link Dataset#initNodeTable()} has
+ * been called.
+ * <p>
+ * This class should not be called as it is part of the internal logic.
+ */
+public class NodeTable {
+
+    /**
+     * Offsets of the nodes in ascending order.
+     */
+    private final int[] offsets;
+
+    /**
+     * Position of the root node of each node.
+     */
+    private final short[] rootPositions;
+
+    /**
+     * Offset in the strings data structure of the characters of each node,
+     * or -1 if the node is not complete.
+     */
+    private final int[] characterStringOffsets;
+
+    /**
+     * Number of characters in each signature indexed by signature index.
+     */
+    private final short[] signatureLengths;
+
+    /**
+     * Constructs a new table reading all the nodes and signatures of the
+     * data set.
+     *
+     * @param dataSet to build the table for.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public NodeTable(Dataset dataSet) throws IOException {
+        int count = dataSet.nodes.size();
+        offsets = new int[count];
+        rootPositions = new short[count];
+        characterStringOffsets = new int[count];
+        int[] parentOffsets = new int[count];
+        int index = 0;
+        for (Node node : Utilities.scan(dataSet.nodes)) {
+            offsets[index] = node.getIndex();
+            rootPositions[index] = node.position;
+            characterStringOffsets[index] = node.characterStringOffset;
+            parentOffsets[index] = node.parentOffset;
+            index++;
+        }
+        setRootPositions(parentOffsets);
+
+        signatureLengths = new short[dataSet.signatures.size()];
+        for (Signature signature : Utilities.scan(dataSet.signatures)) {
+            signatureLengths[signature.getIndex()] = (short)(
+                    getRootPosition(signature.getLastNodeOffset()) + 1);
+        }
+    }
+
+    /**
+     * Replaces the position of each node with the position of its root by
+     * following the parent offsets. Nodes whose root has already been found
+     * are not followed again.
+     */
+    private void setRootPositions(int[] parentOffsets) {
+        boolean[] resolved = new boolean[offsets.length];
+        int[] path = new int[16];
+        for (int i = 0; i < offsets.length; i++) {
+            int depth = 0;
+            int current = i;
+            while (resolved[current] == false &&
+                   parentOffsets[current] >= 0) {
+                if (depth == path.length) {
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                path[depth++] = current;
+                current = getNodeIndex(parentOffsets[current]);
+            }
+            resolved[current] = true;
+            short rootPosition = rootPositions[current];
+            while (depth > 0) {
+                int node = path[--depth];
+                rootPositions[node] = rootPosition;
+                resolved[node] = true;
+            }
+        }
+    }
+
+    /**
+     * Returns the index in the table of the node at the offset.
+     *
+     * @param offset of the node.
+     * @return index of the node in the table.
+     * @throws IllegalArgumentException if there is no node at the offset.
+     */
+    private int getNodeIndex(int offset) {
+        int index = Arrays.binarySearch(offsets, offset);
+        if (index < 0) {
+            throw new IllegalArgumentException(String.format(
+                    "No node exists at offset '%d'.", offset));
+        }
+        return index;
+    }
+
+    /**
+     * @return number of nodes in the table.
+     */
+    public int getNodeCount() {
+        return offsets.length;
+    }
+
+    /**
+     * Returns the position of the root node of the node at the offset.
+     *
+     * @param offset of the node.
+     * @return position of the node's root.
+     */
+    public int getRootPosition(int offset) {
+        return rootPositions[getNodeIndex(offset)];
+    }
+
+    /**
+     * Returns the offset in the strings data structure of the characters of
+     * the node at the offset.
+     *
+     * @param offset of the node.
+     * @return offset of the node's characters, or -1 if the node is not
+     * complete.
+     */
+    public int getCharacterStringOffset(int offset) {
+        return characterStringOffsets[getNodeIndex(offset)];
+    }
+
+    /**
+     * Returns the number of characters in the signature.
+     *
+     * @param signatureIndex index of the signature.
+     * @return number of characters in the signature.
+     */
+    public int getSignatureLength(int signatureIndex) {
+        return signatureLengths[signatureIndex];
+    }
+}
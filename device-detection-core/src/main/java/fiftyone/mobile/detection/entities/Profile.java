@@ -30,7 +30,6 @@ import java.util.Comparator;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Profile is a collection of {@link Value values} for a single 
@@ -87,15 +86,7 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
     /**
      * Returned when the property has no values in the provide.
      */
-    private final Value[] emptyValues = new Value[0];
-    
-    /**
-     * Map used to relate property index to the values associated with it for
-     * this profile. Used to speed up the retrieval of values associated with 
-     * the profile and property.
-     */
-    private final ConcurrentHashMap<Integer, Values> propertyIndexToValues = 
-            new ConcurrentHashMap<Integer, Values>();
+    private static final Value[] EMPTY_VALUES = new Value[0];
     
     /**
      * Constructs a new instance of the Profile
@@ -127,17 +118,11 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
      * @return The {@link Component} the profile belongs to.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Component getComponent() throws IOException {
         Component localComponent = component;
         if (localComponent == null) {
-            synchronized (this) {
-                localComponent = component;
-                if (localComponent == null) {
-                    component = localComponent = 
-                            getDataSet().getComponents().get(componentIndex);
-                }
-            }
+            component = localComponent = 
+                    getDataSet().getComponents().get(componentIndex);
         }
         return localComponent;
     }
@@ -149,16 +134,10 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
      * @return array of {@link Property properties} associated with this profile.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Property[] getProperties() throws IOException {
         Property[] localProperties = properties;
         if (localProperties == null) {
-            synchronized (this) {
-                localProperties = properties;
-                if (localProperties == null) {
-                    properties = localProperties = doGetProperties();
-                }
-            }
+            properties = localProperties = doGetProperties();
         }
         return localProperties;
     }
@@ -212,71 +191,83 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     public Values getValues(Property property) throws IOException {
-        Values localValues, newValues;
-        localValues = propertyIndexToValues.get(property.getIndex());
+        PropertyTable table = getComponent().getPropertyTable();
+        int column = table.getColumn(property);
+        if (column < 0) {
+            return new Values(property, EMPTY_VALUES);
+        }
+        Values[] localPropertyValues = getPropertyValues(table);
+        // Values are immutable so a race to create them is benign.
+        Values localValues = localPropertyValues[column];
         if (localValues == null) {
-            newValues = getPropertyValues(property);
-            localValues = propertyIndexToValues.putIfAbsent(
-                    property.getIndex(), 
-                    newValues);
-            if (localValues == null) {
-                localValues = newValues;
-            }
+            localPropertyValues[column] = localValues = 
+                    createValues(property, column);
         }
         return localValues;
     }
     
+    /**
+     * The values of the profile for each column of the component's 
+     * {@link PropertyTable}. Elements are null until the values for the 
+     * property are first requested.
+     * 
+     * @param table for the component the profile belongs to.
+     * @return array of values with an element for each column.
+     */
+    private Values[] getPropertyValues(PropertyTable table) {
+        Values[] localPropertyValues = propertyValues;
+        if (localPropertyValues == null) {
+            // A race to create the array only loses values which will be
+            // created again when next requested.
+            propertyValues = localPropertyValues = 
+                    new Values[table.getColumnCount()];
+        }
+        return localPropertyValues;
+    }
+    @SuppressWarnings("VolatileArrayField")
+    private volatile Values[] propertyValues;
+    
+    /**
+     * The start and end positions in the value indexes of the profile for 
+     * each column of the component's {@link PropertyTable}.
+     * 
+     * @return array of start and end positions.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    private int[] getValueRanges() throws IOException {
+        int[] localValueRanges = valueRanges;
+        if (localValueRanges == null) {
+            valueRanges = localValueRanges = getComponent()
+                    .getPropertyTable()
+                    .getValueRanges(getValueIndexes());
+        }
+        return localValueRanges;
+    }
+    @SuppressWarnings("VolatileArrayField")
+    private volatile int[] valueRanges;
+    
     /**
      * Gets the values associated with the property for this profile.
      * 
      * @param property Property to be returned.
+     * @param column of the property in the component's property table.
      * @return Array of values associated with the property and profile.
      */
-    private Values getPropertyValues(Property property) throws IOException {
-        // Work out the start and end index in the values associated
-        // with the profile that relate to this property.
+    private Values createValues(Property property, int column) 
+            throws IOException {
+        int[] localValueRanges = getValueRanges();
+        int start = localValueRanges[column * 2];
+        int end = localValueRanges[(column * 2) + 1];
         Value[] result;
-        int start = Arrays.binarySearch(
-                getValueIndexes(),
-                property.firstValueIndex);
-        
-        // If the start is negative then the first value doesn't exist.
-        // Take the complement and use this as the first index which will 
-        // relate to the first value associated with the profile for the
-        // property.
-        if (start < 0) {
-            start = ~start;
-        }
-        
-        int end = Arrays.binarySearch(getValueIndexes(), 
-                start, 
-                (getValueIndexes().length), 
-                property.getLastIndexValue());
-        
-        // If the end is negative then the last value doesn't exist. Take
-        // the complement and use this as the last index. However if this 
-        // value doesn't relate to the property then it's the first value
-        // for the next property and we need to move back one in the list.
-        if (end < 0) {
-            end = ~end;
-            if (end >= getValueIndexes().length ||
-                getValueIndexes()[end] > property.getLastIndexValue()) {
-                end--;
-            }
-        }
-        // If start is greater than end then there are no values for this
-        // property in this profile. Return an empty array.
-        if (start > end) {
-            result = emptyValues;
+        if (start >= end) {
+            result = EMPTY_VALUES;
         } else {
-            result = new Value[end - start + 1];
-            for (int i = start, v = 0; i <= end; i++, v++) {
-                Value value = dataSet.values.get(getValueIndexes()[i]);
-                result[v] = value;
+            int[] localValueIndexes = getValueIndexes();
+            result = new Value[end - start];
+            for (int i = start, v = 0; i < end; i++, v++) {
+                result[v] = dataSet.values.get(localValueIndexes[i]);
             }
         }
-        // Create the array and populate it with the values for the profile
-        // and property.
         return new Values(property, result);
     }
     
@@ -286,16 +277,10 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
      * @return array of {@link Signature signatures} associated with this profile.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Signature[] getSignatures() throws IOException {
         Signature[] localSignatures = signatures;
         if (localSignatures == null) {
-            synchronized (this) {
-                localSignatures = signatures;
-                if (localSignatures == null) {
-                    signatures = localSignatures = doGetSignatures();
-                }
-            }
+            signatures = localSignatures = doGetSignatures();
         }
         return localSignatures;
     }
@@ -320,16 +305,10 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
      * @return array of {@link Value values} associated with this profile.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Value[] getValues() throws IOException {
         Value[] localValues = values;
         if (localValues == null) {
-            synchronized (this) {
-                localValues = values;
-                if (localValues == null) {
-                    values = localValues = doGetValues();
-                }
-            }
+            values = localValues = doGetValues();
         }
         return localValues;
     }
@@ -366,9 +345,7 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
         if (component == null)
             component = getDataSet().getComponents().get(componentIndex);
         for(Property property : properties) {
-            propertyIndexToValues.put(
-                    property.getIndex(),
-                    getPropertyValues(property));
+            getValues(property);
         }
     }
 
@@ -380,46 +357,40 @@ public abstract class Profile extends BaseEntity implements Comparable<Profile>
      * @return the profile as a string.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public String toString() {
         String localStringValue = stringValue;
         if (localStringValue == null) {
-            synchronized (this) {
-                localStringValue = stringValue;
-                if (localStringValue == null) {
-                    List<Value> list = new ArrayList<Value>();
-                    try {
-                        for (int i = 0; i < getValues().length; i++) {
-                            Value value = getValues()[i];
-                            if (value.getProperty().displayOrder > 0
-                                    && value.getName().contains("Unknown") == false) {
-                                int tempIndex = Collections.binarySearch(
-                                            list, value, propertyComparator);
-                                if (tempIndex < 0) {
-                                    list.add(~tempIndex, value);
-                                }
-                            }
+            List<Value> list = new ArrayList<Value>();
+            try {
+                for (int i = 0; i < getValues().length; i++) {
+                    Value value = getValues()[i];
+                    if (value.getProperty().displayOrder > 0
+                            && value.getName().contains("Unknown") == false) {
+                        int tempIndex = Collections.binarySearch(
+                                    list, value, propertyComparator);
+                        if (tempIndex < 0) {
+                            list.add(~tempIndex, value);
                         }
-                        if (list.size() > 0) {
-                            // Values with a display order were found. Sort 
-                            // them and then concatenate before returning.
-                            StringBuilder sb = new StringBuilder();
-                            for (int i = 0; i < list.size(); i++) {
-                                sb.append(list.get(i).toString());
-                                if (i < list.size() - 1) {
-                                    sb.append("/");
-                                }
-                            }
-                            stringValue = localStringValue = sb.toString();
-                        } else {
-                            stringValue = 
-                                    localStringValue = String.valueOf(profileId);
+                    }
+                }
+                if (list.size() > 0) {
+                    // Values with a display order were found. Sort 
+                    // them and then concatenate before returning.
+                    StringBuilder sb = new StringBuilder();
+                    for (int i = 0; i < list.size(); i++) {
+                        sb.append(list.get(i).toString());
+                        if (i < list.size() - 1) {
+                            sb.append("/");
                         }
-                    } catch (IOException e) {
-                        stringValue = 
-                                localStringValue = String.valueOf(profileId);
                     }
+                    stringValue = localStringValue = sb.toString();
+                } else {
+                    stringValue = 
+                            localStringValue = String.valueOf(profileId);
                 }
+            } catch (IOException e) {
+                stringValue = 
+                        localStringValue = String.valueOf(profileId);
             }
         }
         return localStringValue;
@@ -27,6 +27,9 @@ import java.util.*;
 import java.util.Map;
 
 import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.Utilities;
+import fiftyone.mobile.detection.query.ComponentProfileIndex;
+import fiftyone.mobile.detection.query.ProfileBitmap;
 import fiftyone.mobile.detection.readers.BinaryReader;
 
 /**
@@ -257,29 +260,12 @@ public class Property extends BaseEntity implements Comparable<Property> {
             synchronized (this) {
                 localValueProfilesSet = valueProfilesSet;
                 if (localValueProfilesSet == false) {
-
-                    // A map of value indexes to the profiles that contain those 
-                    // values.
-                    Map<Integer, List<Integer>> valueIndexProfileIndexMap = 
-                            new HashMap<Integer, List<Integer>>();
+                    // Set the profile indexes in the values of the property
+                    // from the component's inverted index.
+                    ComponentProfileIndex index = getProfileIndex();
                     for (Value value : getValues().getAll()) {
-                        valueIndexProfileIndexMap.put(
-                                value.index, 
-                                new ArrayList<Integer>());
-                    }
-
-                    // Add all the profile indexes to the map.
-                    for (Profile profile : getComponent().getProfiles()) {
-                        for (Value value : profile.getValues(this).getAll()) {
-                            valueIndexProfileIndexMap.get(value.index).add(
-                                    profile.getIndex());
-                        }
-                    }
-
-                    // Set the profile indexes in the property.
-                    for (int valueIndex : valueIndexProfileIndexMap.keySet()) {
-                        Value value = dataSet.values.get(valueIndex);
-                        value.setProfileIndexes(valueIndexProfileIndexMap.get(valueIndex));
+                        value.setProfileIndexes(index.getProfileIndexes(
+                                index.getBitmap(value)));
                     }
                     valueProfilesSet = true;
                 }
@@ -287,6 +273,15 @@ public class Property extends BaseEntity implements Comparable<Property> {
         }
     }
 
+    /**
+     * @return the inverted index of values to profiles for the component
+     * the property relates to.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    private ComponentProfileIndex getProfileIndex() throws IOException {
+        return dataSet.getProfileIndex().getComponentIndex(getComponent());
+    }
+
     /**
      * Check to see if the property has initialized the linkage to profiles that refer to it.
      */
@@ -313,15 +308,14 @@ public class Property extends BaseEntity implements Comparable<Property> {
         if (valueName != null) {
             Value value = this.values.get(valueName);
             if (value != null) {
+                ComponentProfileIndex index = getProfileIndex();
+                ProfileBitmap bitmap = index.getBitmap(value);
                 if (filterProfiles == null) {
-                    for (Integer profileIndex : value.getProfileIndexes()) {
-                        result.add(dataSet.profiles.get(profileIndex));
-                    }
-                } else {
-                    for (Profile profile : filterProfiles) {
-                        if (value.getProfileIndexes().contains(profile.getIndex())) {
-                            result.add(profile);
-                        }
+                    return index.getProfiles(bitmap);
+                }
+                for (Profile profile : filterProfiles) {
+                    if (bitmap.contains(index.getPosition(profile))) {
+                        result.add(profile);
                     }
                 }
             }
@@ -473,8 +467,10 @@ public class Property extends BaseEntity implements Comparable<Property> {
      */
     private Values doGetValues() throws IOException {
         Value[] tempValues = new Value[lastValueIndex - firstValueIndex + 1];
-        for (int i = firstValueIndex, v = 0; i <= lastValueIndex; i++, v++) {
-            tempValues[v] = dataSet.getValues().get(i);
+        int v = 0;
+        for (Value value : Utilities.scan(dataSet.getValues(), 
+                firstValueIndex, tempValues.length)) {
+            tempValues[v++] = value;
         }
         return new Values(this, tempValues);
     }
@@ -0,0 +1,140 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Relates the properties of a component to columns so that the values of a
+ * profile for a property can be found with array lookups rather than maps or
+ * searches.
+ * <p>
+ * The properties are ordered by their first value index. As the values of
+ * each property are contiguous in the data set, and the value indexes of a
+ * profile are in ascending order, the ranges of the profile's value indexes
+ * for every property can be found with a single pass.
+ * <p>
+ * One table exists per component and is returned by
+ * {@link Component#getPropertyTable()}.
+ * <p>
+ * This class should not be called as it is part of the internal logic.
+ */
+public class PropertyTable {
+
+    /**
+     * Orders properties by their first value index.
+     */
+    private static final Comparator<Property> FIRST_VALUE_ORDER =
+            new Comparator<Property>() {
+        @Override
+        public int compare(Property property1, Property property2) {
+            return property1.firstValueIndex < property2.firstValueIndex ? -1 :
+                   property1.firstValueIndex > property2.firstValueIndex ? 1 :
+                   0;
+        }
+    };
+
+    /**
+     * The properties of the component in column order.
+     */
+    private final Property[] properties;
+
+    /**
+     * The column of each property keyed on the index of the property, or -1
+     * if the property does not relate to the component.
+     */
+    private final int[] columns;
+
+    /**
+     * Constructs a new table for the properties of the component.
+     *
+     * @param component the table relates to.
+     * @param propertyCount number of properties in the data set.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    PropertyTable(Component component, int propertyCount) throws IOException {
+        this.properties = component.getProperties().clone();
+        Arrays.sort(this.properties, FIRST_VALUE_ORDER);
+        this.columns = new int[propertyCount];
+        Arrays.fill(this.columns, -1);
+        for (int column = 0; column < properties.length; column++) {
+            columns[properties[column].getIndex()] = column;
+        }
+    }
+
+    /**
+     * @return number of properties in the table.
+     */
+    public int getColumnCount() {
+        return properties.length;
+    }
+
+    /**
+     * Returns the property for the column.
+     *
+     * @param column of the property.
+     * @return the property.
+     */
+    public Property getProperty(int column) {
+        return properties[column];
+    }
+
+    /**
+     * Returns the column for the property.
+     *
+     * @param property to find.
+     * @return the column, or -1 if the property does not relate to the
+     * component.
+     */
+    public int getColumn(Property property) {
+        int index = property.getIndex();
+        return index >= 0 && index < columns.length ? columns[index] : -1;
+    }
+
+    /**
+     * Returns the start and end positions in the value indexes provided for
+     * each property. The start for column c is at element 2c and the end,
+     * exclusive, at element 2c + 1.
+     *
+     * @param valueIndexes of a profile in ascending order.
+     * @return start and end positions of the values for every column.
+     */
+    public int[] getValueRanges(int[] valueIndexes) {
+        int[] ranges = new int[properties.length * 2];
+        int i = 0;
+        for (int column = 0; column < properties.length; column++) {
+            Property property = properties[column];
+            while (i < valueIndexes.length &&
+                   valueIndexes[i] < property.firstValueIndex) {
+                i++;
+            }
+            ranges[column * 2] = i;
+            while (i < valueIndexes.length &&
+                   valueIndexes[i] <= property.getLastIndexValue()) {
+                i++;
+            }
+            ranges[column * 2 + 1] = i;
+        }
+        return ranges;
+    }
+}
@@ -94,22 +94,28 @@ public abstract class Signature extends BaseEntity
         }
     }
     
+    /**
+     * Constructs a new instance of Signature for a sub class which holds
+     * the profile offsets itself and overrides {@link #getProfiles()}.
+     *
+     * @param dataSet the {@link Dataset} the signature is contained within.
+     * @param index the index in the data structure to the signature.
+     */
+    protected Signature(Dataset dataSet, int index) {
+        super(dataSet, index);
+        this.profileOffsets = null;
+    }
+    
     /**
      * List of the profiles the signature relates to.
      * 
      * @return List of the {@link Profile profiles} the signature relates to.
      * @throws IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Profile[] getProfiles() throws IOException {
         Profile[] localProfiles = profiles;
         if (localProfiles == null) {
-            synchronized (this) {
-                localProfiles = profiles;
-                if (localProfiles == null) {
-                    profiles = localProfiles = getProfiles(profileOffsets);
-                }
-            }
+            profiles = localProfiles = getProfiles(profileOffsets);
         }
         return localProfiles;
     }
@@ -121,16 +127,10 @@ public abstract class Signature extends BaseEntity
      * @return unique Device Id for the signature.
      * @throws IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public String getDeviceId() throws IOException {
         String localDeviceId = deviceId;
         if (localDeviceId == null) {
-            synchronized (this) {
-                localDeviceId = deviceId;
-                if (localDeviceId == null) {
-                    deviceId = localDeviceId = initGetDeviceId();
-                }
-            }
+            deviceId = localDeviceId = initGetDeviceId();
         }
         return localDeviceId;
     }
@@ -144,19 +144,11 @@ public abstract class Signature extends BaseEntity
      * property does not exist.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Values getValues(Property property) throws IOException {
-        Values localValues = getPropertyIndexToValues().get(property.index);
-        if (localValues == null) {
-            synchronized (this) {
-                localValues = getPropertyIndexToValues().get(property.index);
-                if (localValues == null) {
-                    localValues = getPropertyValues(property);
-                    getPropertyIndexToValues().add(property.index, localValues);
-                }
-            }
-        }
-        return localValues;
+        Profile profileForProperty = getProfile(property);
+        return profileForProperty != null ? 
+                profileForProperty.getValues(property) :
+                null;
     }
     
     /**
@@ -168,22 +160,9 @@ public abstract class Signature extends BaseEntity
      * property does not exist.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Values getValues(String propertyName) throws IOException {
-        Values localValues = getPropertyNameToValues().get(propertyName);
-        if (localValues == null) {
-            synchronized (this) {
-                localValues = getPropertyNameToValues().get(propertyName);
-                if (localValues == null) {
-                    Property property = dataSet.get(propertyName);
-                    if (property != null) {
-                        localValues = this.getValues(property);
-                    }
-                    getPropertyNameToValues().add(propertyName, localValues);
-                }
-            }
-        }
-        return localValues;
+        Property property = dataSet.get(propertyName);
+        return property != null ? getValues(property) : null;
     }
     
     /**
@@ -204,12 +183,11 @@ public abstract class Signature extends BaseEntity
     public int getLength() throws IOException {
         int localLength = length;
         if (localLength == 0) {
-            synchronized (this) {
-                localLength = length;
-                if (localLength == 0) {
-                    length = localLength = getSignatureLength();
-                }
+            NodeTable table = dataSet.getNodeTable();
+            if (table != null) {
+                return table.getSignatureLength(index);
             }
+            length = localLength = getSignatureLength();
         }
         return localLength;
     }
@@ -233,16 +211,10 @@ public abstract class Signature extends BaseEntity
      * @return  An array of nodes associated with the signature.
      * @throws java.io.IOException if there was a problem accessing data file.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public Node[] getNodes() throws IOException {
         Node[] localNodes = nodes;
         if (localNodes == null) {
-            synchronized(this) {
-                localNodes = nodes;
-                if (localNodes == null) {
-                    nodes = localNodes = doGetNodes();
-                }
-            }
+            nodes = localNodes = doGetNodes();
         }
         return localNodes;
     }
@@ -386,29 +358,23 @@ public abstract class Signature extends BaseEntity
      * @return The signature as a string.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public String toString() {
         String localStringValue = stringValue;
         if (localStringValue == null) {
-            synchronized (this) {
-                localStringValue = stringValue;
-                if (localStringValue == null) {
-                    try {
-                        byte[] buffer = new byte[getLength()];
-                        for (Node n : getNodes()) {
-                            n.addCharacters(buffer);
-                        }
-                        for (int i = 0; i < buffer.length; i++) {
-                            if (buffer[i] == 0) {
-                                buffer[i] = ' ';
-                            }
-                        }
-                        stringValue = localStringValue = 
-                                new String(buffer, "US-ASCII");
-                    } catch (IOException ex) {
-                        throw new WrappedIOException(ex.getMessage());
+            try {
+                byte[] buffer = new byte[getLength()];
+                for (Node n : getNodes()) {
+                    n.addCharacters(buffer);
+                }
+                for (int i = 0; i < buffer.length; i++) {
+                    if (buffer[i] == 0) {
+                        buffer[i] = ' ';
                     }
                 }
+                stringValue = localStringValue = 
+                        new String(buffer, "US-ASCII");
+            } catch (IOException ex) {
+                throw new WrappedIOException(ex.getMessage());
             }
         }
         return localStringValue;
@@ -435,71 +401,24 @@ public abstract class Signature extends BaseEntity
     private volatile Profile[] profiles;
     
     /**
-     * A hash map relating the index of a property to the values returned 
-     * by the signature. Used to speed up subsequent data processing.
-     * 
-     * @return dictionary relating the index of a property to the values 
-     *         returned by the signature.
-     */
-    @SuppressWarnings("DoubleCheckedLocking")
-    private SortedList<Integer, Values> getPropertyIndexToValues() {
-        SortedList<Integer, Values> localPropertyIndexToValues;
-        localPropertyIndexToValues = propertyIndexToValues;
-        if (localPropertyIndexToValues == null) {
-            synchronized (this) {
-                localPropertyIndexToValues = propertyIndexToValues;
-                if (localPropertyIndexToValues == null) {
-                    propertyIndexToValues = localPropertyIndexToValues = 
-                            new SortedList<Integer, Values>();
-                }
-            }
-        }
-        return localPropertyIndexToValues;
-    }
-    private volatile SortedList<Integer, Values> propertyIndexToValues;
-    
-    /**
-     * A hash map relating the name of a property to the values returned by 
-     * the signature. Used to speed up subsequent data processing.
-     * @return a hash map with values mapped to specific property.
-     */
-    @SuppressWarnings("DoubleCheckedLocking")
-    private SortedList<String, Values> getPropertyNameToValues() {
-        SortedList<String, Values> localPropertyNameToValues;
-        localPropertyNameToValues = propertyNameToValues;
-        if (localPropertyNameToValues == null) {
-            synchronized (this) {
-                localPropertyNameToValues = propertyNameToValues;
-                if (localPropertyNameToValues == null) {
-                    propertyNameToValues = localPropertyNameToValues = 
-                            new SortedList<String, Values>();
-                }
-            }
-        }
-        return localPropertyNameToValues;
-    }
-    private volatile SortedList<String, Values> propertyNameToValues;
-    
-    /**
-     * Gets the values associated with the property for this signature.
+     * Returns the profile of the signature for the component the property 
+     * relates to. The profile's values are held in arrays indexed by the 
+     * component's {@link PropertyTable} so the signature does not need to 
+     * keep a map of property to values.
      * 
-     * @param property Property to be returned.
-     * @return array of values associated with the property and signature, or 
-     *         an empty array if property not found.
+     * @param property whose profile is required.
+     * @return profile for the property's component, or null if the signature
+     *         does not have a profile for the component.
      * @throws IOException if there was a problem accessing data file.
      */
-    private Values getPropertyValues(Property property) throws IOException {
-        Profile profileForProperty = null;
-        for (Profile localProfile : profiles) {
-            if (property.getComponent().getComponentId() == 
-                    localProfile.getComponent().getComponentId()) {
-                profileForProperty = localProfile;
-                break;
+    private Profile getProfile(Property property) throws IOException {
+        int componentId = property.getComponent().getComponentId();
+        for (Profile localProfile : getProfiles()) {
+            if (componentId == localProfile.getComponent().getComponentId()) {
+                return localProfile;
             }
         }
-        return profileForProperty != null ? 
-                profileForProperty.getValues(property) :
-                null;
+        return null;
     }
     
     /**
@@ -547,6 +466,18 @@ public abstract class Signature extends BaseEntity
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     protected abstract int getSignatureLength() throws IOException;
+
+    /**
+     * The offset of the right most node of the signature, which is the last 
+     * of the node offsets.
+     * 
+     * @return offset of the signature's last node.
+     * @throws java.io.IOException if there was a problem accessing data file.
+     */
+    protected int getLastNodeOffset() throws IOException {
+        List<Integer> localNodeOffsets = getNodeOffsets();
+        return localNodeOffsets.get(localNodeOffsets.size() - 1);
+    }
     
     /**
      * Gets the rank, where a lower number means the signature is more popular, 
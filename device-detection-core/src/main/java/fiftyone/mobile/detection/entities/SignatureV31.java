@@ -68,16 +68,10 @@ public class SignatureV31 extends Signature {
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public int getRank() throws IOException {
         Integer localRank = rank;
         if (localRank == null) {
-            synchronized(this) {
-                localRank = rank;
-                if (localRank == null) {
-                    rank = localRank = getSignatureRank();
-                }
-            }
+            rank = localRank = getSignatureRank();
         }
         return localRank;
     }
@@ -104,9 +98,7 @@ public class SignatureV31 extends Signature {
      */
     @Override
     protected int getSignatureLength() throws IOException {
-        Node lastNode = 
-                dataSet.nodes.get(nodeOffsets.get(nodeOffsets.size() - 1));
-        return lastNode.position + lastNode.getLength() + 1;
+        return dataSet.nodes.get(getLastNodeOffset()).getRootPosition() + 1;
     }
     
     /**
@@ -104,18 +104,12 @@ public class SignatureV32 extends Signature {
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public List<Integer> getNodeOffsets() throws IOException {
         List<Integer> localNodeOffsets = this.nodeOffsets;
         if (localNodeOffsets == null) {
-            synchronized(this) {
-                localNodeOffsets = this.nodeOffsets;
-                if (localNodeOffsets == null) {
-                    localNodeOffsets = this.nodeOffsets =
-                            dataSet.getSignatureNodeOffsets().getRange(
-                                            firstNodeOffsetIndex, nodeCount);
-                }
-            }
+            localNodeOffsets = this.nodeOffsets =
+                    dataSet.getSignatureNodeOffsets().getRange(
+                                    firstNodeOffsetIndex, nodeCount);
         }
         return localNodeOffsets;
     }
@@ -128,11 +122,21 @@ public class SignatureV32 extends Signature {
     @Override
     protected int getSignatureLength() {
         try {
-            Node lastNode = dataSet.nodes.get(dataSet.signatureNodeOffsets
-                            .get(nodeCount + firstNodeOffsetIndex - 1));
-            return lastNode.position + lastNode.getLength() + 1;
+            return dataSet.nodes.get(getLastNodeOffset()).getRootPosition() + 1;
         } catch (IOException ex) {
             return -1;
         }
-    } 
+    }
+
+    /**
+     * The offset of the right most node of the signature read directly from
+     * the data set's signature node offsets.
+     * 
+     * @return offset of the signature's last node.
+     */
+    @Override
+    protected int getLastNodeOffset() {
+        return dataSet.signatureNodeOffsets.get(
+                nodeCount + firstNodeOffsetIndex - 1);
+    }
 }
@@ -29,7 +29,7 @@ import java.util.List;
 import fiftyone.mobile.detection.Dataset;
 import fiftyone.mobile.detection.WrappedIOException;
 import fiftyone.mobile.detection.readers.BinaryReader;
-import fiftyone.mobile.detection.search.SearchArrays;
+import fiftyone.mobile.detection.query.ComponentProfileIndex;
 
 import java.util.Collections;
 
@@ -61,11 +61,6 @@ public class Value extends BaseEntity {
      */
     public static final int RECORD_LENGTH = (4 * 3) + 2;
 
-    /**
-     * Used to find profiles with values that include this one.
-     */
-    private static final SearchValues valuesIndexSearch = new SearchValues();
-    
     /**
      * @return The name of the value as string.
      * @throws IOException if there was a problem accessing data file.
@@ -440,16 +435,9 @@ public class Value extends BaseEntity {
     // <editor-fold defaultstate="collapsed" desc="Private methods">
 
     private List<Integer> doGetProfileIndexes() throws IOException {
-        List<Integer> list = new ArrayList<Integer>();
-
-        for (Profile profile : getComponent().getProfiles()) {
-            if (valuesIndexSearch.binarySearch(
-                    profile.getValues(),
-                    getIndex()) >= 0) {
-                list.add(profile.index);
-            }
-        }
-        return list;
+        ComponentProfileIndex index = 
+                dataSet.getProfileIndex().getComponentIndex(getComponent());
+        return index.getProfileIndexes(index.getBitmap(this));
     }
 
     /**
@@ -478,19 +466,6 @@ public class Value extends BaseEntity {
     }
     // </editor-fold>
 
-    // <editor-fold defaultstate="collapsed" desc="Private static class for binary search access.">
-
-    /**
-     * Provides access to binary search and overrides the compareTo method.
-     */
-    private static class SearchValues extends SearchArrays<Value, Integer> {
-        @Override
-        public int compareTo(Value item, Integer key) {
-            return item.compareTo(key);
-        }
-    }
-    // </editor-fold>
-
     int[] toIntArray(List<Integer> list) {
         int[] ret = new int[list.size()];
         int i = 0;
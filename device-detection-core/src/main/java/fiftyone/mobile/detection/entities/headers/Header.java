@@ -39,7 +39,9 @@ public class Header {
      * positioned to start reading.
      */
     public Header(BinaryReader reader) {
-        startPosition = reader.readInt32();
+        // The start position is unsigned so that data structures can be
+        // addressed in files up to 4 GB.
+        startPosition = reader.readInt32() & 0xFFFFFFFFL;
         length = reader.readInt32();
         count = reader.readInt32();
     }
@@ -54,11 +56,22 @@ public class Header {
 
     /**
      * @return the position in the file where the data structure starts.
+     * @deprecated positions beyond 2 GB can not be represented. Use 
+     * {@link #getLongStartPosition()}.
      */
+    @Deprecated
     public int getStartPosition() {
+        return (int)startPosition;
+    }
+
+    /**
+     * @return the position in the file where the data structure starts,
+     * which may be beyond 2 GB.
+     */
+    public long getLongStartPosition() {
         return startPosition;
     }
-    private final int startPosition;
+    private final long startPosition;
 
     /**
      * @return the number of bytes consumed by the data structure.
@@ -0,0 +1,408 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities.memory;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.IReadonlyList;
+import fiftyone.mobile.detection.ISimpleList;
+import fiftyone.mobile.detection.entities.Profile;
+import fiftyone.mobile.detection.entities.Signature;
+import fiftyone.mobile.detection.entities.headers.Header;
+import fiftyone.mobile.detection.readers.BinaryReader;
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A readonly list of signatures held in memory as parallel arrays of
+ * primitives rather than as signature objects.
+ * <p>
+ * Each field of the signature record is stored in its own array indexed by
+ * the signature index. The variable number of profile offsets, and node
+ * offsets for version 3.1 data, are stored in a single array per field with
+ * a second array giving the start of each signature's offsets. Accessing a
+ * signature returns a small view which reads from the arrays without copying
+ * them. The signature length, which every match needs, is calculated once
+ * and held in its own array so it is shared by all views.
+ * <p>
+ * The list uses a fraction of the memory of a {@link MemoryFixedList} of
+ * signatures at the expense of creating a view for each access. Profiles
+ * and node offsets are resolved by each view when first needed as holding
+ * them for every signature would remove the saving.
+ * <p>
+ * Objects of this class should not be created directly as they are part of
+ * the internal logic.
+ */
+public class ColumnarSignatureList implements IReadonlyList<Signature> {
+
+    /**
+     * The data set the signatures relate to.
+     */
+    private final Dataset dataSet;
+
+    /**
+     * Header of the signatures data structure.
+     */
+    public final Header header;
+
+    /**
+     * True if the signatures use the version 3.2 record format.
+     */
+    private final boolean v32;
+
+    /**
+     * Start of each signature's profile offsets in profileOffsets. Contains
+     * one more element than there are signatures.
+     */
+    private int[] profileStarts;
+
+    /**
+     * The profile offsets of all signatures.
+     */
+    private int[] profileOffsets;
+
+    /**
+     * Start of each signature's node offsets in nodeOffsets. Version 3.1
+     * only.
+     */
+    private int[] nodeStarts;
+
+    /**
+     * The node offsets of all signatures. Version 3.1 only.
+     */
+    private int[] nodeOffsets;
+
+    /**
+     * The number of nodes associated with each signature. Version 3.2 only.
+     */
+    private byte[] nodeCounts;
+
+    /**
+     * The index of each signature's first node offset in the data set's
+     * signature node offsets. Version 3.2 only.
+     */
+    private int[] firstNodeOffsetIndexes;
+
+    /**
+     * The rank of each signature. Read from the data for version 3.2 and
+     * calculated from the ranked signature indexes for version 3.1.
+     */
+    private volatile int[] ranks;
+
+    /**
+     * Flags of each signature. Version 3.2 only.
+     */
+    private byte[] flags;
+
+    /**
+     * The length in characters of each signature, or zero if not yet
+     * calculated. Populated when the data set is initialised or the first
+     * time a signature's length is requested.
+     */
+    private int[] lengths;
+
+    /**
+     * Constructs a new instance of ColumnarSignatureList.
+     *
+     * @param dataSet The DataSet being created.
+     * @param reader BinaryReader connected to the source data structure and
+     *               positioned to start reading.
+     * @param v32 true if the data uses the version 3.2 signature format.
+     */
+    public ColumnarSignatureList(Dataset dataSet, BinaryReader reader,
+            boolean v32) {
+        this.dataSet = dataSet;
+        this.header = new Header(reader);
+        this.v32 = v32;
+    }
+
+    /**
+     * Reads the list into memory.
+     *
+     * @param reader BinaryReader connected to the source data structure and
+     *               positioned to start reading.
+     */
+    public void read(BinaryReader reader) {
+        int count = header.getCount();
+        lengths = new int[count];
+        profileStarts = new int[count + 1];
+        profileOffsets = new int[count * dataSet.signatureProfilesCount];
+        int profileCount = 0;
+        int nodeCount = 0;
+        if (v32) {
+            nodeCounts = new byte[count];
+            firstNodeOffsetIndexes = new int[count];
+            ranks = new int[count];
+            flags = new byte[count];
+        } else {
+            nodeStarts = new int[count + 1];
+            nodeOffsets = new int[count * dataSet.signatureNodesCount];
+        }
+        for (int index = 0; index < count; index++) {
+            profileStarts[index] = profileCount;
+            profileCount = readPositiveAndZeroIntegers(reader,
+                    dataSet.signatureProfilesCount,
+                    profileOffsets,
+                    profileCount);
+            if (v32) {
+                nodeCounts[index] = reader.readByte();
+                firstNodeOffsetIndexes[index] = reader.readInt32();
+                ranks[index] = reader.readInt32();
+                flags[index] = reader.readByte();
+            } else {
+                nodeStarts[index] = nodeCount;
+                nodeCount = readPositiveAndZeroIntegers(reader,
+                        dataSet.signatureNodesCount,
+                        nodeOffsets,
+                        nodeCount);
+            }
+        }
+        profileStarts[count] = profileCount;
+        profileOffsets = Arrays.copyOf(profileOffsets, profileCount);
+        if (v32 == false) {
+            nodeStarts[count] = nodeCount;
+            nodeOffsets = Arrays.copyOf(nodeOffsets, nodeCount);
+        }
+    }
+
+    /**
+     * Accessor for the list.
+     *
+     * @param i The index of the signature to be returned from the list.
+     * @return a new signature view backed by the list.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    @Override
+    public Signature get(int i) throws IOException {
+        return new ColumnarSignature(i);
+    }
+
+    /**
+     * @return number of signatures in the list.
+     */
+    @Override
+    public int size() {
+        return header.getCount();
+    }
+
+    @Override
+    public Iterator<Signature> iterator() {
+        return new Iterator<Signature>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public Signature next() {
+                if (hasNext() == false) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return get(index++);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "remove not supported");
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close as the list is held in memory.
+    }
+
+    /**
+     * Returns the rank of every signature. For version 3.1 data the ranks
+     * are calculated from the data set's ranked signature indexes the first
+     * time they are needed, as that list is read after the signatures.
+     *
+     * @return array of ranks indexed by signature index.
+     */
+    @SuppressWarnings("DoubleCheckedLocking")
+    private int[] getRanks() {
+        int[] localRanks = ranks;
+        if (localRanks == null) {
+            synchronized (this) {
+                localRanks = ranks;
+                if (localRanks == null) {
+                    localRanks = new int[size()];
+                    Arrays.fill(localRanks, Integer.MAX_VALUE);
+                    ISimpleList ranked = dataSet.getRankedSignatureIndexes();
+                    for (int rank = 0; rank < ranked.size(); rank++) {
+                        localRanks[ranked.get(rank)] = rank;
+                    }
+                    ranks = localRanks;
+                }
+            }
+        }
+        return localRanks;
+    }
+
+    /**
+     * A signature which reads its fields from the columns of the list rather
+     * than holding copies of them. Values which are expensive to calculate
+     * and needed for every match, the length, are stored in the list's
+     * columns so they are shared by all views of the same signature.
+     */
+    private class ColumnarSignature extends Signature {
+
+        /**
+         * Profiles of the signature, resolved the first time they are
+         * needed by this view.
+         */
+        @SuppressWarnings("VolatileArrayField")
+        private volatile Profile[] profiles;
+
+        /**
+         * Node offsets of the signature, created the first time they are
+         * needed by this view.
+         */
+        private volatile List<Integer> nodeOffsets;
+
+        ColumnarSignature(int index) {
+            super(ColumnarSignatureList.this.dataSet, index);
+        }
+
+        @Override
+        public Profile[] getProfiles() throws IOException {
+            Profile[] localProfiles = profiles;
+            if (localProfiles == null) {
+                int start = profileStarts[index];
+                localProfiles = new Profile[profileStarts[index + 1] - start];
+                for (int p = 0; p < localProfiles.length; p++) {
+                    localProfiles[p] = dataSet.getProfiles().get(
+                            profileOffsets[start + p]);
+                }
+                profiles = localProfiles;
+            }
+            return localProfiles;
+        }
+
+        @Override
+        public List<Integer> getNodeOffsets() throws IOException {
+            List<Integer> localNodeOffsets = nodeOffsets;
+            if (localNodeOffsets == null) {
+                if (v32) {
+                    localNodeOffsets = dataSet.getSignatureNodeOffsets()
+                            .getRange(firstNodeOffsetIndexes[index],
+                                    nodeCounts[index]);
+                } else {
+                    localNodeOffsets = new NodeOffsets(
+                            nodeStarts[index], nodeStarts[index + 1]);
+                }
+                nodeOffsets = localNodeOffsets;
+            }
+            return localNodeOffsets;
+        }
+
+        @Override
+        public int getLength() throws IOException {
+            int localLength = lengths[index];
+            if (localLength == 0) {
+                localLength = lengths[index] = super.getLength();
+            }
+            return localLength;
+        }
+
+        @Override
+        protected int getSignatureLength() throws IOException {
+            return dataSet.nodes.get(getLastNodeOffset())
+                    .getRootPosition() + 1;
+        }
+
+        @Override
+        public int getRank() {
+            return v32 ? ranks[index] : getRanks()[index];
+        }
+
+        /**
+         * Only the length is retained by the list. Other values are
+         * calculated by each view when needed.
+         *
+         * @throws IOException if there was a problem accessing data file.
+         */
+        @Override
+        public void init() throws IOException {
+            getLength();
+        }
+    }
+
+    /**
+     * Version 3.1 node offsets of a signature read from the list's node
+     * offsets column without copying.
+     */
+    private class NodeOffsets extends AbstractList<Integer> {
+
+        private final int start;
+
+        private final int end;
+
+        NodeOffsets(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public Integer get(int i) {
+            if (i < 0 || start + i >= end) {
+                throw new IndexOutOfBoundsException(String.format(
+                        "Index '%d' outside node offsets of size '%d'",
+                        i, end - start));
+            }
+            return nodeOffsets[start + i];
+        }
+
+        @Override
+        public int size() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Reads the number of integers provided adding those that are zero or
+     * positive to the array. The same as the method used by entities to
+     * read profile and node offsets.
+     *
+     * @return the next free element in the array.
+     */
+    private static int readPositiveAndZeroIntegers(BinaryReader reader,
+            int count, int[] array, int next) {
+        for (int i = 0; i < count; i++) {
+            int value = reader.readInt32();
+            if (value >= 0) {
+                array[next++] = value;
+            }
+        }
+        return next;
+    }
+}
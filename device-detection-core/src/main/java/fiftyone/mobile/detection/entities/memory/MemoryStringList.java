@@ -0,0 +1,155 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities.memory;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.IReadonlyList;
+import fiftyone.mobile.detection.entities.AsciiString;
+import fiftyone.mobile.detection.entities.headers.Header;
+import fiftyone.mobile.detection.readers.BinaryReader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A readonly list of the data set's strings held in a single byte array
+ * containing the entire strings data structure.
+ * <p>
+ * The array, or arena, is addressed using the offsets held by other entities
+ * so a string is found without the binary search a
+ * {@link MemoryVariableList} needs. The strings returned are lightweight
+ * {@link AsciiString} instances that use the arena's bytes rather than
+ * copies of them. The node indexes of the data set compare their characters
+ * with the target User-Agent directly from the arena.
+ * <p>
+ * The list does not retain the strings it returns. Callers that need the
+ * native string should keep it rather than calling the list again.
+ * <p>
+ * Objects of this class should not be created directly as they are part of
+ * the internal logic.
+ */
+public class MemoryStringList implements IReadonlyList<AsciiString> {
+
+    /**
+     * The data set the strings relate to.
+     */
+    private final Dataset dataSet;
+
+    /**
+     * Header of the strings data structure.
+     */
+    public final Header header;
+
+    /**
+     * All the bytes of the strings data structure.
+     */
+    private byte[] arena;
+
+    /**
+     * Constructs a new instance of MemoryStringList. The read method needs
+     * to be called before the list can be used.
+     *
+     * @param dataSet The DataSet being created.
+     * @param reader BinaryReader connected to the source data structure and
+     *               positioned to start reading.
+     */
+    public MemoryStringList(Dataset dataSet, BinaryReader reader) {
+        this.dataSet = dataSet;
+        this.header = new Header(reader);
+    }
+
+    /**
+     * Reads the strings data structure into the arena.
+     *
+     * @param reader BinaryReader connected to the source data structure and
+     *               positioned to start reading.
+     */
+    public void read(BinaryReader reader) {
+        arena = reader.readBytes(header.getLength());
+    }
+
+    /**
+     * Accessor for the list.
+     * <p>
+     * The offset must be the start of a string as held by the entities of
+     * the data set.
+     *
+     * @param offset the offset position in the data structure to the string.
+     * @return a new string backed by the arena, or null if the offset is
+     * outside the data structure.
+     */
+    @Override
+    public AsciiString get(int offset) {
+        if (offset < 0 || offset + 1 >= arena.length) {
+            return null;
+        }
+        return new AsciiString(dataSet, offset, arena);
+    }
+
+    /**
+     * @return number of strings in the list.
+     */
+    @Override
+    public int size() {
+        return header.getCount();
+    }
+
+    /**
+     * Returns an iterator that moves through the strings in the order of
+     * their offsets.
+     *
+     * @return iterator for the strings.
+     */
+    @Override
+    public Iterator<AsciiString> iterator() {
+        return new Iterator<AsciiString>() {
+            int index = 0;
+            int offset = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public AsciiString next() {
+                if (hasNext() == false) {
+                    throw new NoSuchElementException();
+                }
+                AsciiString string = get(offset);
+                // Skip the length, characters and the null byte.
+                offset += string.getLength() + 3;
+                index++;
+                return string;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException(
+                        "remove not supported");
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        // Nothing to close as the list is held in memory.
+    }
+}
@@ -57,7 +57,7 @@ public class NodeV31 extends Node{
         super.children = NodeFactoryShared.readNodeIndexesV31(
                 dataSet, 
                 reader, 
-                (int)(offset + reader.getPos() - nodeStartStreamPosition), 
+                (int)(offset + reader.getLongPos() - nodeStartStreamPosition), 
                 childrenCount);
         numericChildren = readNodeNumericIndexes(
                 dataSet, reader, numericChildrenCount);
@@ -41,7 +41,7 @@ import java.util.List;
 public class IntegerList implements ISimpleList {
 
     // Entity header.
-    private final Header header;
+    public final Header header;
     // Array of items contained in the list.
     protected final IndirectDataset dataSet;
     
@@ -63,7 +63,7 @@ public class IntegerList implements ISimpleList {
         BinaryReader reader = null;
         try {
             reader = dataSet.pool.getReader();
-            reader.setPos(header.getStartPosition() + 
+            reader.setPos(header.getLongStartPosition() + 
                     (DetectionConstants.SIZE_OF_INT * index));
             result = reader.readInt32();
         } catch (IOException ex) {
@@ -83,7 +83,7 @@ public class IntegerList implements ISimpleList {
         BinaryReader reader = null;
         try {
             reader = dataSet.pool.getReader();
-            reader.setPos(header.getStartPosition() + 
+            reader.setPos(header.getLongStartPosition() + 
                     (DetectionConstants.SIZE_OF_INT * index));
             for (int i = 0; i < count; i++) {
                 result.add(reader.readInt32());
@@ -39,7 +39,7 @@ public abstract class Node extends fiftyone.mobile.detection.entities.Node {
     /**
      * The position in the data set where the NumericChildren start.
      */
-    protected int numericChildrenPosition;
+    protected long numericChildrenPosition;
     
     /**
      * Pool used to load NumericChildren and RankedSignatureIndexes.
@@ -68,23 +68,17 @@ public abstract class Node extends fiftyone.mobile.detection.entities.Node {
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public final NodeNumericIndex[] getNumericChildren() throws IOException {
         NodeNumericIndex[] result = numericChildren;
         if(result == null) {
-            synchronized(this) {
-                result = numericChildren;
-                if(result == null) {
-                    BinaryReader reader = pool.getReader();
-                    try {
-                        reader.setPos(numericChildrenPosition);
-                        result = numericChildren = readNodeNumericIndexes(
-                                dataSet, reader, numericChildrenCount);
-                    }
-                    finally {
-                        pool.release(reader);
-                    }
-                }
+            BinaryReader reader = pool.getReader();
+            try {
+                reader.setPos(numericChildrenPosition);
+                result = numericChildren = readNodeNumericIndexes(
+                        dataSet, reader, numericChildrenCount);
+            }
+            finally {
+                pool.release(reader);
             }
         }
         return result;
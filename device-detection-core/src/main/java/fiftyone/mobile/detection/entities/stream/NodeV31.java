@@ -60,9 +60,9 @@ public class NodeV31 extends Node {
         super.children = NodeFactoryShared.readNodeIndexesV31(
                 dataSet, 
                 reader, 
-                (int)(offset + reader.getPos() - nodeStartStreamPosition), 
+                (int)(offset + reader.getLongPos() - nodeStartStreamPosition), 
                 childrenCount);
-        super.numericChildrenPosition = reader.getPos();
+        super.numericChildrenPosition = reader.getLongPos();
     }
 
     /**
@@ -70,26 +70,20 @@ public class NodeV31 extends Node {
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public List<Integer> getRankedSignatureIndexes() throws IOException {
         List<Integer> localRankedSignatureIndexes = rankedSignatureIndexes;
         if (localRankedSignatureIndexes == null) {
-            synchronized (this) {
-                localRankedSignatureIndexes = rankedSignatureIndexes;
-                if (localRankedSignatureIndexes == null) {
-                    BinaryReader reader = pool.getReader();
-                    try {
-                        reader.setPos(numericChildrenPosition + 
-                            ((DetectionConstants.SIZE_OF_SHORT + 
-                              DetectionConstants.SIZE_OF_INT) * 
-                                    getNumericChildrenLength()));
-                        rankedSignatureIndexes = localRankedSignatureIndexes = 
-                                readIntegerList(reader, rankedSignatureCount);
-                    }
-                    finally {
-                        pool.release(reader);
-                    }
-                }
+            BinaryReader reader = pool.getReader();
+            try {
+                reader.setPos(numericChildrenPosition + 
+                    ((DetectionConstants.SIZE_OF_SHORT + 
+                      DetectionConstants.SIZE_OF_INT) * 
+                            getNumericChildrenLength()));
+                rankedSignatureIndexes = localRankedSignatureIndexes = 
+                        readIntegerList(reader, rankedSignatureCount);
+            }
+            finally {
+                pool.release(reader);
             }
         }
         return localRankedSignatureIndexes;
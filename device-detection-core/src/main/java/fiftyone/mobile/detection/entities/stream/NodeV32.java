@@ -60,9 +60,9 @@ public class NodeV32 extends Node {
         super.children = NodeFactoryShared.readNodeIndexesV32(
                 dataSet, 
                 reader, 
-                (int)(offset + reader.getPos() - nodeStartStreamPosition), 
+                (int)(offset + reader.getLongPos() - nodeStartStreamPosition), 
                 childrenCount);
-        super.numericChildrenPosition = reader.getPos();
+        super.numericChildrenPosition = reader.getLongPos();
     }
 
     /**
@@ -70,17 +70,11 @@ public class NodeV32 extends Node {
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public List<Integer> getRankedSignatureIndexes() throws IOException {
         List<Integer> localRankedSignatureIndexes = rankedSignatureIndexes;
         if (localRankedSignatureIndexes == null) {
-            synchronized (this) {
-                localRankedSignatureIndexes = rankedSignatureIndexes;
-                if (localRankedSignatureIndexes == null) {
-                    rankedSignatureIndexes = localRankedSignatureIndexes =
-                            getRankedSignatureIndexesAsArray();
-                }
-            }
+            rankedSignatureIndexes = localRankedSignatureIndexes =
+                    getRankedSignatureIndexesAsArray();
         }
         return localRankedSignatureIndexes;
     }
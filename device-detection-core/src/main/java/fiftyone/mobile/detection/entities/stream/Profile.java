@@ -32,7 +32,7 @@ import java.io.IOException;
  * internal logic.
  */
 public class Profile extends fiftyone.mobile.detection.entities.Profile {
-    private final int position;
+    private final long position;
     private final int valueIndexesCount;
     private final int signatureIndexesCount;
     private final Pool pool;
@@ -49,7 +49,7 @@ public class Profile extends fiftyone.mobile.detection.entities.Profile {
         this.pool = dataSet.pool;
         valueIndexesCount = reader.readInt32();
         signatureIndexesCount = reader.readInt32();
-        position = reader.getPos();
+        position = reader.getLongPos();
     }
     
     /** 
@@ -57,23 +57,17 @@ public class Profile extends fiftyone.mobile.detection.entities.Profile {
      * @throws IOException if there was a problem reading from the data file.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public int[] getValueIndexes() throws IOException {
         int[] localValueIndexes = valueIndexes;
         if(localValueIndexes == null) {
-            synchronized(this) {
-                localValueIndexes = valueIndexes;
-                if(localValueIndexes == null) {
-                    BinaryReader reader = pool.getReader();
-                    try {
-                        reader.setPos(position);
-                        valueIndexes = localValueIndexes = 
-                                BaseEntity.readIntegerArray(reader, valueIndexesCount);
-                    }
-                    finally {
-                        pool.release(reader);
-                    }
-                }
+            BinaryReader reader = pool.getReader();
+            try {
+                reader.setPos(position);
+                valueIndexes = localValueIndexes = 
+                        BaseEntity.readIntegerArray(reader, valueIndexesCount);
+            }
+            finally {
+                pool.release(reader);
             }
         }
         return localValueIndexes;
@@ -84,27 +78,21 @@ public class Profile extends fiftyone.mobile.detection.entities.Profile {
      * @throws IOException if there was a problem reading from the data file.
      */
     @Override
-    @SuppressWarnings("DoubleCheckedLocking")
     public int[] getSignatureIndexes() throws IOException {
         int[] localSignatureIndexes = signatureIndexes;
         if(localSignatureIndexes == null) {
-            synchronized(this) {
-                localSignatureIndexes = signatureIndexes;
-                if (localSignatureIndexes == null) {
-                    BinaryReader reader = pool.getReader();
-                    try {
-                        int offset = valueIndexesCount * 
-                                (Integer.SIZE / Byte.SIZE);
-                        reader.setPos(position + offset);
-                        signatureIndexes = localSignatureIndexes = 
-                                BaseEntity.readIntegerArray(
-                                        reader, 
-                                        signatureIndexesCount);
-                    }
-                    finally {
-                        pool.release(reader);
-                    }
-                }
+            BinaryReader reader = pool.getReader();
+            try {
+                int offset = valueIndexesCount * 
+                        (Integer.SIZE / Byte.SIZE);
+                reader.setPos(position + offset);
+                signatureIndexes = localSignatureIndexes = 
+                        BaseEntity.readIntegerArray(
+                                reader, 
+                                signatureIndexesCount);
+            }
+            finally {
+                pool.release(reader);
             }
         }
         return localSignatureIndexes;
@@ -0,0 +1,338 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.query;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.entities.Component;
+import fiftyone.mobile.detection.entities.Profile;
+import fiftyone.mobile.detection.entities.Property;
+import fiftyone.mobile.detection.entities.Value;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Inverted index from the values of a component's properties to the profiles
+ * of the component that contain them.
+ * <p>
+ * Each profile of the component is given a position between zero and the
+ * number of profiles minus one in ascending profile index order. Each value is
+ * associated with a {@link ProfileBitmap} of the positions of the profiles
+ * that contain it. The index is built with a single pass over the profiles of
+ * the component.
+ * <p>
+ * Use {@link ProfileIndex#getComponentIndex(Component)} to retrieve an
+ * instance.
+ * <p>
+ * This class should not be called as it is part of the internal logic.
+ */
+public class ComponentProfileIndex {
+
+    /**
+     * Orders profiles by index.
+     */
+    private static final Comparator<Profile> PROFILE_INDEX_ORDER =
+            new Comparator<Profile>() {
+        @Override
+        public int compare(Profile profile1, Profile profile2) {
+            return profile1.getIndex() < profile2.getIndex() ? -1 :
+                   profile1.getIndex() > profile2.getIndex() ? 1 : 0;
+        }
+    };
+
+    /**
+     * A growable list of positions used while the index is built.
+     */
+    private static class Positions {
+        int[] items = new int[4];
+        int count = 0;
+
+        void add(int position) {
+            if (count == items.length) {
+                items = Arrays.copyOf(items, count * 2);
+            }
+            items[count++] = position;
+        }
+    }
+
+    /**
+     * The numeric values of a property sorted in ascending numeric order.
+     */
+    static class NumericValues {
+        final double[] numbers;
+        final Value[] values;
+
+        NumericValues(double[] numbers, Value[] values) {
+            this.numbers = numbers;
+            this.values = values;
+        }
+
+        /**
+         * @param min number to find.
+         * @return the position of the first number greater than or equal to
+         * min, or the number of values if there is none.
+         */
+        int lowerBound(double min) {
+            int lower = 0;
+            int upper = numbers.length;
+            while (lower < upper) {
+                int middle = (lower + upper) >>> 1;
+                if (numbers[middle] < min) {
+                    lower = middle + 1;
+                } else {
+                    upper = middle;
+                }
+            }
+            return lower;
+        }
+    }
+
+    /**
+     * The data set the component relates to.
+     */
+    private final Dataset dataSet;
+
+    /**
+     * The component the index relates to.
+     */
+    private final Component component;
+
+    /**
+     * The profiles of the component in position order.
+     */
+    private final Profile[] profiles;
+
+    /**
+     * The index of each profile in position order, used to find the position
+     * of a profile.
+     */
+    private final int[] profileIndexes;
+
+    /**
+     * The positions of the profiles keyed on the index of the value.
+     */
+    private final Map<Integer, ProfileBitmap> valueBitmaps;
+
+    /**
+     * Returned for values that are not contained in any profile.
+     */
+    private final ProfileBitmap empty;
+
+    /**
+     * The numeric values of properties keyed on the index of the property,
+     * parsed when first used by a range query.
+     */
+    private final ConcurrentHashMap<Integer, NumericValues> numericValues =
+            new ConcurrentHashMap<Integer, NumericValues>();
+
+    /**
+     * Builds the index for the component.
+     *
+     * @param dataSet the component relates to.
+     * @param component to build the index for.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    ComponentProfileIndex(Dataset dataSet, Component component)
+            throws IOException {
+        this.dataSet = dataSet;
+        this.component = component;
+        this.profiles = component.getProfiles().clone();
+        Arrays.sort(this.profiles, PROFILE_INDEX_ORDER);
+        this.profileIndexes = new int[profiles.length];
+        Map<Integer, Positions> temp = new HashMap<Integer, Positions>();
+        for (int position = 0; position < profiles.length; position++) {
+            profileIndexes[position] = profiles[position].getIndex();
+            for (int valueIndex : profiles[position].getValueIndexes()) {
+                Positions positions = temp.get(valueIndex);
+                if (positions == null) {
+                    positions = new Positions();
+                    temp.put(valueIndex, positions);
+                }
+                positions.add(position);
+            }
+        }
+        this.valueBitmaps = new HashMap<Integer, ProfileBitmap>(
+                temp.size() * 4 / 3 + 1);
+        for (Map.Entry<Integer, Positions> entry : temp.entrySet()) {
+            valueBitmaps.put(entry.getKey(), ProfileBitmap.fromSorted(
+                    profiles.length,
+                    entry.getValue().items,
+                    entry.getValue().count));
+        }
+        this.empty = ProfileBitmap.empty(profiles.length);
+    }
+
+    /**
+     * @return the data set the component relates to.
+     */
+    public Dataset getDataSet() {
+        return dataSet;
+    }
+
+    /**
+     * @return the component the index relates to.
+     */
+    public Component getComponent() {
+        return component;
+    }
+
+    /**
+     * @return number of profiles in the component.
+     */
+    public int getProfileCount() {
+        return profiles.length;
+    }
+
+    /**
+     * Returns the profile at the position provided.
+     *
+     * @param position of the profile in the index.
+     * @return the profile at the position.
+     */
+    public Profile getProfile(int position) {
+        return profiles[position];
+    }
+
+    /**
+     * Returns the position of the profile in the index.
+     *
+     * @param profile to find.
+     * @return the position, or -1 if the profile does not relate to the
+     * component.
+     */
+    public int getPosition(Profile profile) {
+        int position = Arrays.binarySearch(profileIndexes, profile.getIndex());
+        return position >= 0 && profiles[position].profileId ==
+                profile.profileId ? position : -1;
+    }
+
+    /**
+     * Returns the profiles that contain the value.
+     *
+     * @param value to find the profiles for.
+     * @return bitmap of profile positions, empty if the value is not in any
+     * profile of the component.
+     */
+    public ProfileBitmap getBitmap(Value value) {
+        ProfileBitmap result = valueBitmaps.get(value.getIndex());
+        return result == null ? empty : result;
+    }
+
+    /**
+     * Returns the values of the property that are numbers in ascending
+     * numeric order. Values that are not numeric are excluded. The names of
+     * the values are only parsed the first time the property is requested.
+     *
+     * @param property of the component.
+     * @return the numeric values of the property.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    NumericValues getNumericValues(Property property) throws IOException {
+        NumericValues result = numericValues.get(property.getIndex());
+        if (result == null) {
+            Value[] all = property.getValues().getAll();
+            final double[] parsed = new double[all.length];
+            List<Integer> positions = new ArrayList<Integer>(all.length);
+            for (int i = 0; i < all.length; i++) {
+                try {
+                    parsed[i] = Double.parseDouble(all[i].getName());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (Double.isNaN(parsed[i]) == false) {
+                    positions.add(i);
+                }
+            }
+            Collections.sort(positions, new Comparator<Integer>() {
+                @Override
+                public int compare(Integer position1, Integer position2) {
+                    return Double.compare(
+                            parsed[position1], parsed[position2]);
+                }
+            });
+            double[] numbers = new double[positions.size()];
+            Value[] values = new Value[positions.size()];
+            for (int i = 0; i < numbers.length; i++) {
+                numbers[i] = parsed[positions.get(i)];
+                values[i] = all[positions.get(i)];
+            }
+            result = new NumericValues(numbers, values);
+            NumericValues existing = numericValues.putIfAbsent(
+                    property.getIndex(), result);
+            if (existing != null) {
+                result = existing;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return a bitmap containing every profile of the component.
+     */
+    public ProfileBitmap all() {
+        return ProfileBitmap.all(profiles.length);
+    }
+
+    /**
+     * Returns the profiles in the bitmap.
+     *
+     * @param bitmap of profile positions from this index.
+     * @return read-only list of profiles in ascending index order.
+     */
+    public List<Profile> getProfiles(ProfileBitmap bitmap) {
+        checkBitmap(bitmap);
+        int[] positions = bitmap.toArray();
+        List<Profile> result = new ArrayList<Profile>(positions.length);
+        for (int position : positions) {
+            result.add(profiles[position]);
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the indexes of the profiles in the bitmap.
+     *
+     * @param bitmap of profile positions from this index.
+     * @return list of profile indexes in ascending order.
+     */
+    public List<Integer> getProfileIndexes(ProfileBitmap bitmap) {
+        checkBitmap(bitmap);
+        int[] positions = bitmap.toArray();
+        List<Integer> result = new ArrayList<Integer>(positions.length);
+        for (int position : positions) {
+            result.add(profileIndexes[position]);
+        }
+        return result;
+    }
+
+    private void checkBitmap(ProfileBitmap bitmap) {
+        if (bitmap.getSize() != profiles.length) {
+            throw new IllegalArgumentException(
+                    "Bitmap does not relate to this component.");
+        }
+    }
+}
@@ -0,0 +1,331 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.query;
+
+import java.util.Arrays;
+
+/**
+ * An immutable set of profile positions within a component, used to evaluate
+ * profile queries with bitwise operations rather than list searches.
+ * <p>
+ * Positions are those of the profiles in the {@link ComponentProfileIndex}
+ * the bitmap relates to. Sets containing few positions are stored as a sorted
+ * array of positions, all others as an array of 64 bit words. Operations
+ * between sets return a set using whichever form needs the least memory.
+ * <p>
+ * This class should not be called as it is part of the internal logic.
+ */
+public class ProfileBitmap {
+
+    /**
+     * Number of bits in each word.
+     */
+    private static final int WORD_BITS = 64;
+
+    /**
+     * Number of positions in the universe of the set. All positions are
+     * between 0 and size - 1.
+     */
+    private final int size;
+
+    /**
+     * The positions in ascending order when the set is sparse, otherwise
+     * null.
+     */
+    private final int[] positions;
+
+    /**
+     * The bits representing the positions when the set is dense, otherwise
+     * null.
+     */
+    private final long[] words;
+
+    /**
+     * Number of positions in the set.
+     */
+    private final int cardinality;
+
+    private ProfileBitmap(int size, int[] positions, long[] words,
+            int cardinality) {
+        this.size = size;
+        this.positions = positions;
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    /**
+     * Creates a set from positions provided in ascending order.
+     *
+     * @param size number of positions in the universe of the set.
+     * @param positions sorted array of positions, not copied.
+     * @param count number of valid elements in the positions array.
+     * @return a new set containing the positions.
+     */
+    static ProfileBitmap fromSorted(int size, int[] positions, int count) {
+        if (isSparse(size, count)) {
+            return new ProfileBitmap(size,
+                    positions.length == count ?
+                        positions : Arrays.copyOf(positions, count),
+                    null,
+                    count);
+        }
+        long[] words = new long[wordCount(size)];
+        for (int i = 0; i < count; i++) {
+            words[positions[i] >>> 6] |= 1L << positions[i];
+        }
+        return new ProfileBitmap(size, null, words, count);
+    }
+
+    /**
+     * Creates an empty set.
+     *
+     * @param size number of positions in the universe of the set.
+     * @return a new empty set.
+     */
+    static ProfileBitmap empty(int size) {
+        return new ProfileBitmap(size, new int[0], null, 0);
+    }
+
+    /**
+     * Creates a set containing every position.
+     *
+     * @param size number of positions in the universe of the set.
+     * @return a new set containing all positions.
+     */
+    static ProfileBitmap all(int size) {
+        long[] words = new long[wordCount(size)];
+        Arrays.fill(words, -1L);
+        trim(words, size);
+        return fromWords(size, words);
+    }
+
+    /**
+     * @return number of positions in the universe of the set.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return number of positions in the set.
+     */
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * @return true if the set contains no positions.
+     */
+    public boolean isEmpty() {
+        return cardinality == 0;
+    }
+
+    /**
+     * Checks if the position is in the set.
+     *
+     * @param position to check.
+     * @return true if the position is in the set.
+     */
+    public boolean contains(int position) {
+        if (position < 0 || position >= size) {
+            return false;
+        }
+        if (positions != null) {
+            return Arrays.binarySearch(positions, position) >= 0;
+        }
+        return (words[position >>> 6] & (1L << position)) != 0;
+    }
+
+    /**
+     * @return the positions in the set in ascending order.
+     */
+    public int[] toArray() {
+        if (positions != null) {
+            return positions.clone();
+        }
+        int[] result = new int[cardinality];
+        int r = 0;
+        for (int w = 0; w < words.length; w++) {
+            long word = words[w];
+            while (word != 0) {
+                result[r++] = (w * WORD_BITS) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the positions in both this set and the other.
+     *
+     * @param other set with the same size.
+     * @return a new set.
+     */
+    public ProfileBitmap and(ProfileBitmap other) {
+        checkSize(other);
+        if (positions != null || other.positions != null) {
+            // Filter the sparse set by the other as the result can not be
+            // larger than the sparse set.
+            ProfileBitmap sparse = positions != null ? this : other;
+            ProfileBitmap filter = sparse == this ? other : this;
+            int[] result = new int[sparse.cardinality];
+            int count = 0;
+            for (int position : sparse.positions) {
+                if (filter.contains(position)) {
+                    result[count++] = position;
+                }
+            }
+            return fromSorted(size, result, count);
+        }
+        long[] result = new long[words.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = words[i] & other.words[i];
+        }
+        return fromWords(size, result);
+    }
+
+    /**
+     * Returns the positions in either this set or the other.
+     *
+     * @param other set with the same size.
+     * @return a new set.
+     */
+    public ProfileBitmap or(ProfileBitmap other) {
+        checkSize(other);
+        long[] result = getWords();
+        long[] otherWords = other.words;
+        if (otherWords != null) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] |= otherWords[i];
+            }
+        } else {
+            for (int position : other.positions) {
+                result[position >>> 6] |= 1L << position;
+            }
+        }
+        return fromWords(size, result);
+    }
+
+    /**
+     * Returns the positions in this set which are not in the other.
+     *
+     * @param other set with the same size.
+     * @return a new set.
+     */
+    public ProfileBitmap andNot(ProfileBitmap other) {
+        checkSize(other);
+        if (positions != null) {
+            int[] result = new int[cardinality];
+            int count = 0;
+            for (int position : positions) {
+                if (other.contains(position) == false) {
+                    result[count++] = position;
+                }
+            }
+            return fromSorted(size, result, count);
+        }
+        long[] result = words.clone();
+        long[] otherWords = other.words;
+        if (otherWords != null) {
+            for (int i = 0; i < result.length; i++) {
+                result[i] &= ~otherWords[i];
+            }
+        } else {
+            for (int position : other.positions) {
+                result[position >>> 6] &= ~(1L << position);
+            }
+        }
+        return fromWords(size, result);
+    }
+
+    /**
+     * Returns the positions not in this set.
+     *
+     * @return a new set.
+     */
+    public ProfileBitmap not() {
+        long[] result = getWords();
+        for (int i = 0; i < result.length; i++) {
+            result[i] = ~result[i];
+        }
+        trim(result, size);
+        return fromWords(size, result);
+    }
+
+    /**
+     * @return a new array of words representing the set.
+     */
+    private long[] getWords() {
+        if (words != null) {
+            return words.clone();
+        }
+        long[] result = new long[wordCount(size)];
+        for (int position : positions) {
+            result[position >>> 6] |= 1L << position;
+        }
+        return result;
+    }
+
+    private void checkSize(ProfileBitmap other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException(String.format(
+                    "Bitmap size '%d' does not match '%d'. Both bitmaps " +
+                    "must relate to the same component.",
+                    other.size, size));
+        }
+    }
+
+    /**
+     * Creates a set from words choosing the sparse form if it is smaller.
+     */
+    private static ProfileBitmap fromWords(int size, long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        ProfileBitmap result = new ProfileBitmap(size, null, words, count);
+        if (isSparse(size, count)) {
+            result = new ProfileBitmap(size, result.toArray(), null, count);
+        }
+        return result;
+    }
+
+    /**
+     * Clears any bits in the last word beyond the size of the set.
+     */
+    private static void trim(long[] words, int size) {
+        int remainder = size % WORD_BITS;
+        if (remainder != 0) {
+            words[words.length - 1] &= (1L << remainder) - 1;
+        }
+    }
+
+    /**
+     * True if an array of positions uses less memory than the words.
+     */
+    private static boolean isSparse(int size, int count) {
+        return count < wordCount(size) * 2;
+    }
+
+    private static int wordCount(int size) {
+        return (size + WORD_BITS - 1) / WORD_BITS;
+    }
+}
@@ -0,0 +1,141 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.query;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.entities.Component;
+import fiftyone.mobile.detection.entities.Profile;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Inverted indexes from values to profiles for every component of a data
+ * set, used to find the profiles that match a {@link ProfileQuery}.
+ * <p>
+ * The index for each component is built the first time it is needed, or for
+ * all components when {@link #build()} is called. Fully initialised data sets
+ * build all the indexes when they are created.
+ * <p>
+ * Use as follows:<br>
+ * <pre><code>
+ *      List&lt;Profile&gt; profiles = dataSet.getProfileIndex().find(
+ *          ProfileQuery.equal("IsMobile", "True")
+ *              .and(ProfileQuery.range("ScreenPixelsWidth", 720, 1080))
+ *              .and(ProfileQuery.equal("HardwareVendor", "Apple").not()));
+ * </code></pre>
+ */
+public class ProfileIndex {
+
+    /**
+     * The data set the index relates to.
+     */
+    private final Dataset dataSet;
+
+    /**
+     * Index for each component in the same order as the data set's list of
+     * components. Null until built.
+     */
+    private final AtomicReferenceArray<ComponentProfileIndex> components;
+
+    /**
+     * Constructs a new index for the data set. No indexes are built until
+     * needed.
+     *
+     * @param dataSet the index relates to.
+     */
+    public ProfileIndex(Dataset dataSet) {
+        this.dataSet = dataSet;
+        this.components = new AtomicReferenceArray<ComponentProfileIndex>(
+                dataSet.getComponents().size());
+    }
+
+    /**
+     * @return the data set the index relates to.
+     */
+    public Dataset getDataSet() {
+        return dataSet;
+    }
+
+    /**
+     * Builds the indexes for all the components that have not already been
+     * built.
+     *
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public void build() throws IOException {
+        for (Component component : dataSet.getComponents()) {
+            getComponentIndex(component);
+        }
+    }
+
+    /**
+     * Returns the index for the component, building it if needed.
+     *
+     * @param component of the data set.
+     * @return the index for the component.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public ComponentProfileIndex getComponentIndex(Component component)
+            throws IOException {
+        int index = component.getIndex();
+        ComponentProfileIndex result = components.get(index);
+        if (result == null) {
+            synchronized (this) {
+                result = components.get(index);
+                if (result == null) {
+                    result = new ComponentProfileIndex(dataSet, component);
+                    components.set(index, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Evaluates the query returning the positions of the matching profiles.
+     *
+     * @param query to evaluate.
+     * @return the positions of the profiles in the index of the query's
+     * component.
+     * @throws IOException if there was a problem accessing data file.
+     * @throws IllegalArgumentException if the query refers to properties
+     * that do not exist or relate to different components.
+     */
+    public ProfileBitmap evaluate(ProfileQuery query) throws IOException {
+        return query.evaluate(getComponentIndex(query.getComponent(dataSet)));
+    }
+
+    /**
+     * Finds the profiles that match the query.
+     *
+     * @param query to evaluate.
+     * @return read-only list of profiles in ascending index order.
+     * @throws IOException if there was a problem accessing data file.
+     * @throws IllegalArgumentException if the query refers to properties
+     * that do not exist or relate to different components.
+     */
+    public List<Profile> find(ProfileQuery query) throws IOException {
+        ComponentProfileIndex index =
+                getComponentIndex(query.getComponent(dataSet));
+        return index.getProfiles(query.evaluate(index));
+    }
+}
@@ -0,0 +1,232 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.query;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.entities.Component;
+import fiftyone.mobile.detection.entities.Property;
+import fiftyone.mobile.detection.entities.Value;
+import java.io.IOException;
+
+/**
+ * A predicate on the property values of profiles which can be combined with
+ * other predicates and evaluated by a {@link ProfileIndex}.
+ * <p>
+ * All the properties referred to by a query must relate to the same
+ * component as each profile relates to a single component.
+ * <p>
+ * Queries are immutable and can be reused with different data sets.
+ */
+public abstract class ProfileQuery {
+
+    /**
+     * Matches profiles where the property has the value.
+     *
+     * @param propertyName name of the property.
+     * @param valueName name of the value.
+     * @return a new query.
+     */
+    public static ProfileQuery equal(final String propertyName,
+            final String valueName) {
+        return new PropertyQuery(propertyName) {
+            @Override
+            ProfileBitmap evaluate(ComponentProfileIndex index)
+                    throws IOException {
+                Value value = getProperty(index.getDataSet())
+                        .getValues().get(valueName);
+                return value == null ?
+                        ProfileBitmap.empty(index.getProfileCount()) :
+                        index.getBitmap(value);
+            }
+        };
+    }
+
+    /**
+     * Matches profiles where the property has a numeric value between the
+     * minimum and maximum inclusive. Values that are not numeric are ignored.
+     *
+     * @param propertyName name of the property.
+     * @param min lowest value to match.
+     * @param max highest value to match.
+     * @return a new query.
+     */
+    public static ProfileQuery range(final String propertyName,
+            final double min, final double max) {
+        if (min > max) {
+            throw new IllegalArgumentException(String.format(
+                    "Minimum '%f' is greater than maximum '%f'.", min, max));
+        }
+        return new PropertyQuery(propertyName) {
+            @Override
+            ProfileBitmap evaluate(ComponentProfileIndex index)
+                    throws IOException {
+                ProfileBitmap result =
+                        ProfileBitmap.empty(index.getProfileCount());
+                ComponentProfileIndex.NumericValues numeric =
+                        index.getNumericValues(
+                                getProperty(index.getDataSet()));
+                for (int i = numeric.lowerBound(min);
+                        i < numeric.numbers.length &&
+                        numeric.numbers[i] <= max;
+                        i++) {
+                    result = result.or(index.getBitmap(numeric.values[i]));
+                }
+                return result;
+            }
+        };
+    }
+
+    /**
+     * Matches profiles matched by both this query and the other.
+     *
+     * @param other query.
+     * @return a new query.
+     */
+    public ProfileQuery and(final ProfileQuery other) {
+        return new BinaryQuery(this, other) {
+            @Override
+            ProfileBitmap evaluate(ComponentProfileIndex index)
+                    throws IOException {
+                return left.evaluate(index).and(right.evaluate(index));
+            }
+        };
+    }
+
+    /**
+     * Matches profiles matched by either this query or the other.
+     *
+     * @param other query.
+     * @return a new query.
+     */
+    public ProfileQuery or(final ProfileQuery other) {
+        return new BinaryQuery(this, other) {
+            @Override
+            ProfileBitmap evaluate(ComponentProfileIndex index)
+                    throws IOException {
+                return left.evaluate(index).or(right.evaluate(index));
+            }
+        };
+    }
+
+    /**
+     * Matches profiles of the same component not matched by this query.
+     *
+     * @return a new query.
+     */
+    public ProfileQuery not() {
+        final ProfileQuery inner = this;
+        return new ProfileQuery() {
+            @Override
+            Component getComponent(Dataset dataSet) throws IOException {
+                return inner.getComponent(dataSet);
+            }
+
+            @Override
+            ProfileBitmap evaluate(ComponentProfileIndex index)
+                    throws IOException {
+                return inner.evaluate(index).not();
+            }
+        };
+    }
+
+    /**
+     * Returns the component that all the properties in the query relate to.
+     *
+     * @param dataSet used to find the properties.
+     * @return the component of the query.
+     * @throws IOException if there was a problem accessing data file.
+     * @throws IllegalArgumentException if a property does not exist or the
+     * properties relate to different components.
+     */
+    abstract Component getComponent(Dataset dataSet) throws IOException;
+
+    /**
+     * Evaluates the query against the index.
+     *
+     * @param index for the component returned by getComponent.
+     * @return positions of the matching profiles.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    abstract ProfileBitmap evaluate(ComponentProfileIndex index)
+            throws IOException;
+
+    /**
+     * Base for queries that relate to a single property.
+     */
+    private static abstract class PropertyQuery extends ProfileQuery {
+
+        private final String propertyName;
+
+        PropertyQuery(String propertyName) {
+            if (propertyName == null) {
+                throw new IllegalArgumentException(
+                        "Property name can not be null.");
+            }
+            this.propertyName = propertyName;
+        }
+
+        Property getProperty(Dataset dataSet) throws IOException {
+            Property property = dataSet.properties.get(propertyName);
+            if (property == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Property '%s' does not exist in the '%s' data set.",
+                        propertyName,
+                        dataSet.getName()));
+            }
+            return property;
+        }
+
+        @Override
+        Component getComponent(Dataset dataSet) throws IOException {
+            return getProperty(dataSet).getComponent();
+        }
+    }
+
+    /**
+     * Base for queries that combine two other queries.
+     */
+    private static abstract class BinaryQuery extends ProfileQuery {
+
+        final ProfileQuery left;
+        final ProfileQuery right;
+
+        BinaryQuery(ProfileQuery left, ProfileQuery right) {
+            if (right == null) {
+                throw new IllegalArgumentException(
+                        "Query can not be null.");
+            }
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        Component getComponent(Dataset dataSet) throws IOException {
+            Component component = left.getComponent(dataSet);
+            if (component.getComponentId() !=
+                    right.getComponent(dataSet).getComponentId()) {
+                throw new IllegalArgumentException(
+                        "All the properties in a query must relate to the " +
+                        "same component.");
+            }
+            return component;
+        }
+    }
+}
@@ -72,6 +72,12 @@ public class BinaryReader implements Closeable {
         byteBuffer.order(ByteOrder.LITTLE_ENDIAN);
     }
 
+    /**
+     * Used by readers which do not use a single byte buffer.
+     */
+    BinaryReader() {
+    }
+
     /**
      * Creates a new BinaryReader from a byte buffer.
      * 
@@ -98,6 +104,27 @@ public class BinaryReader implements Closeable {
         return byteBuffer.position();
     }
 
+    /**
+     * Sets position. Positions beyond 2 GB are only supported by readers of 
+     * sources which are mapped in segments.
+     * 
+     * @param pos position to set.
+     */
+    public void setPos(long pos) {
+        if (pos > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format(
+                    "Position '%d' is beyond the end of the source.", pos));
+        }
+        byteBuffer.position((int)pos);
+    }
+
+    /**
+     * @return current position in the source.
+     */
+    public long getLongPos() {
+        return byteBuffer.position();
+    }
+
     public byte readByte() {
         return byteBuffer.get();
     }
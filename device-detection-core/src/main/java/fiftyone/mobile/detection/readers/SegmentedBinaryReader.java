@@ -0,0 +1,200 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.readers;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A reader for sources too large for a single byte buffer. The source is
+ * split into segments of the same power of two size, apart from the last
+ * which may be shorter, and positions are held as longs.
+ * <p>
+ * Values which span two segments are assembled a byte at a time. All other
+ * reads are passed to the buffer of the current segment.
+ * <p>
+ * Objects of this class should not be created directly as they are part of
+ * the internal logic.
+ */
+class SegmentedBinaryReader extends BinaryReader {
+
+    /**
+     * Buffers for each segment of the source.
+     */
+    private ByteBuffer[] segments;
+
+    /**
+     * Number of bits to shift a position right to get the segment index.
+     */
+    private final int segmentShift;
+
+    /**
+     * Mask applied to a position to get the position within the segment.
+     */
+    private final long segmentMask;
+
+    /**
+     * Index of the current segment.
+     */
+    private int segment;
+
+    /**
+     * Buffer of the current segment.
+     */
+    private ByteBuffer current;
+
+    /**
+     * Creates a new reader for the segments provided. The buffers are
+     * duplicated so that the position of this reader is independent of any
+     * others using the same segments.
+     *
+     * @param segments buffers for each segment of the source. The capacity
+     * of the first is the segment size which must be a power of two.
+     */
+    SegmentedBinaryReader(ByteBuffer[] segments) {
+        int segmentSize = segments[0].capacity();
+        if (Integer.bitCount(segmentSize) != 1) {
+            throw new IllegalArgumentException(String.format(
+                    "Segment size '%d' is not a power of two.", segmentSize));
+        }
+        this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+        this.segmentMask = segmentSize - 1;
+        this.segments = new ByteBuffer[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            this.segments[i] = segments[i].duplicate();
+            this.segments[i].order(ByteOrder.LITTLE_ENDIAN);
+        }
+        this.segment = 0;
+        this.current = this.segments[0];
+        this.current.position(0);
+    }
+
+    @Override
+    public void setPos(int pos) {
+        setPos((long)pos);
+    }
+
+    @Override
+    public void setPos(long pos) {
+        int index = (int)(pos >>> segmentShift);
+        if (pos < 0 || index >= segments.length) {
+            throw new IllegalArgumentException(String.format(
+                    "Position '%d' is beyond the end of the source.", pos));
+        }
+        segment = index;
+        current = segments[index];
+        current.position((int)(pos & segmentMask));
+    }
+
+    /**
+     * @return current position in the source.
+     * @throws IllegalStateException if the position is beyond 2 GB.
+     */
+    @Override
+    public int getPos() {
+        long pos = getLongPos();
+        if (pos > Integer.MAX_VALUE) {
+            throw new IllegalStateException(String.format(
+                    "Position '%d' can not be returned as an integer.", pos));
+        }
+        return (int)pos;
+    }
+
+    @Override
+    public long getLongPos() {
+        return ((long)segment << segmentShift) + current.position();
+    }
+
+    @Override
+    public byte readByte() {
+        if (current.hasRemaining() == false) {
+            nextSegment();
+        }
+        return current.get();
+    }
+
+    @Override
+    public short readInt16() {
+        if (current.remaining() >= 2) {
+            return current.getShort();
+        }
+        return (short)((readByte() & 0xFF) | (readByte() << 8));
+    }
+
+    @Override
+    public int readUInt16() {
+        return readInt16() & 0xFFFF;
+    }
+
+    @Override
+    public int readInt32() {
+        if (current.remaining() >= 4) {
+            return current.getInt();
+        }
+        return (readByte() & 0xFF) |
+               ((readByte() & 0xFF) << 8) |
+               ((readByte() & 0xFF) << 16) |
+               (readByte() << 24);
+    }
+
+    @Override
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte[] readBytes(final int length) {
+        byte[] bytes = new byte[length];
+        int read = 0;
+        while (read < length) {
+            if (current.hasRemaining() == false) {
+                nextSegment();
+            }
+            int count = Math.min(length - read, current.remaining());
+            current.get(bytes, read, count);
+            read += count;
+        }
+        return bytes;
+    }
+
+    /**
+     * Releases the segments. The buffers are shared with the source which
+     * is responsible for the underlying file.
+     */
+    @Override
+    public void close() {
+        segments = null;
+        current = null;
+    }
+
+    /**
+     * Moves to the start of the next segment.
+     */
+    private void nextSegment() {
+        if (segment + 1 >= segments.length) {
+            throw new BufferUnderflowException();
+        }
+        segment++;
+        current = segments[segment];
+        current.position(0);
+    }
+}
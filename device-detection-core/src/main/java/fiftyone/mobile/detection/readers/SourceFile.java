@@ -62,6 +62,62 @@ public class SourceFile extends SourceFileBase {
         channel = fileInputStream.getChannel();
     }
 
+    /**
+     * Size of the segments used to map files larger than 2 GB.
+     */
+    static final int SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * Buffers mapped to each segment of a file larger than 2 GB. Shared by
+     * all the readers of the source.
+     */
+    @SuppressWarnings("VolatileArrayField")
+    private volatile ByteBuffer[] segments;
+
+    /**
+     * Creates a new reader for the file. Files that fit in a single buffer
+     * are mapped with one buffer per reader. Larger files are mapped once in
+     * segments that are shared by all the readers.
+     * 
+     * @return A reader open for read access to the file.
+     * @throws java.io.IOException if there was a problem accessing data file.
+     */
+    @Override
+    public BinaryReader createReader() throws IOException {
+        if (channel.size() <= Integer.MAX_VALUE) {
+            return super.createReader();
+        }
+        return new SegmentedBinaryReader(getSegments());
+    }
+
+    /**
+     * Returns the buffers mapped to each segment of the file, mapping them 
+     * the first time they are needed.
+     */
+    @SuppressWarnings("DoubleCheckedLocking")
+    private ByteBuffer[] getSegments() throws IOException {
+        ByteBuffer[] localSegments = segments;
+        if (localSegments == null) {
+            synchronized (this) {
+                localSegments = segments;
+                if (localSegments == null) {
+                    long size = channel.size();
+                    localSegments = new ByteBuffer[
+                            (int)((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE)];
+                    for (int i = 0; i < localSegments.length; i++) {
+                        long position = (long)i * SEGMENT_SIZE;
+                        localSegments[i] = channel.map(
+                                FileChannel.MapMode.READ_ONLY,
+                                position,
+                                Math.min(SEGMENT_SIZE, size - position));
+                    }
+                    segments = localSegments;
+                }
+            }
+        }
+        return localSegments;
+    }
+
     /**
      * Creates a new ByteBuffer from the file located on the hard drive.
      * 
@@ -87,6 +143,7 @@ public class SourceFile extends SourceFileBase {
     @Override
     public void close() throws IOException {
         // Close the input stream and therefore the channel.
+        segments = null;
         fileInputStream.close();
         
         // Java does not provide a method to explicitly unmap the buffer from 
@@ -0,0 +1,118 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Estimates the number of distinct keys in a stream using the HyperLogLog
+ * algorithm with a fixed amount of memory.
+ * <p>
+ * Each key is hashed to 64 bits. The first bits of the hash select a
+ * register and the register records the longest run of leading zeros seen
+ * in the remaining bits. The estimate is derived from the harmonic mean of
+ * the registers. With 2^precision registers the standard error is about
+ * 1.04 / sqrt(2^precision).
+ * <p>
+ * The class is thread safe and does not lock.
+ */
+public class CardinalityEstimator {
+
+    private final int precision;
+    private final AtomicIntegerArray registers;
+
+    /**
+     * Constructs a new instance with 2^precision registers.
+     *
+     * @param precision between 4 and 18.
+     */
+    public CardinalityEstimator(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException(String.format(
+                    "Precision '%d' must be between 4 and 18.", precision));
+        }
+        this.precision = precision;
+        this.registers = new AtomicIntegerArray(1 << precision);
+    }
+
+    /**
+     * Records the key.
+     *
+     * @param key to record.
+     */
+    public void offer(String key) {
+        long hash = hash(key);
+        int register = (int)(hash >>> (64 - precision));
+        int rank = Long.numberOfLeadingZeros(
+                (hash << precision) | (1L << (precision - 1))) + 1;
+        int current = registers.get(register);
+        while (rank > current) {
+            if (registers.compareAndSet(register, current, rank)) {
+                break;
+            }
+            current = registers.get(register);
+        }
+    }
+
+    /**
+     * @return estimated number of distinct keys recorded.
+     */
+    public long estimate() {
+        int count = registers.length();
+        double sum = 0;
+        int zeros = 0;
+        for (int i = 0; i < count; i++) {
+            int value = registers.get(i);
+            sum += 1.0 / (1L << value);
+            if (value == 0) {
+                zeros++;
+            }
+        }
+        double alpha = count == 16 ? 0.673 :
+                       count == 32 ? 0.697 :
+                       count == 64 ? 0.709 :
+                       0.7213 / (1 + 1.079 / count);
+        double estimate = alpha * count * count / sum;
+        if (estimate <= 2.5 * count && zeros > 0) {
+            // Use linear counting for small cardinalities.
+            estimate = count * Math.log((double)count / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Returns a 64 bit hash of the characters of the key. Uses FNV-1a
+     * followed by a finalising mix so that all bits are well distributed.
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
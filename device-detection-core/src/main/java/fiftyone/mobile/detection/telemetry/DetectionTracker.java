@@ -0,0 +1,307 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+import fiftyone.properties.MatchMethods;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Records which User-Agents are requested most often, which take the
+ * longest to detect and how many distinct User-Agents have been seen, using
+ * a fixed amount of memory.
+ * <p>
+ * Set on a {@link fiftyone.mobile.detection.Provider} to record every
+ * request made to the provider. Requests are recorded whether or not the
+ * result came from the provider's cache. Detection times are only recorded
+ * when a detection is performed.
+ * <p>
+ * The results can be queried at any time or written to a file with
+ * {@link #dump(String)}.
+ */
+public class DetectionTracker {
+
+    /**
+     * Default number of frequent User-Agents tracked.
+     */
+    public static final int DEFAULT_FREQUENT_CAPACITY = 1000;
+
+    /**
+     * Default number of slowest detections retained.
+     */
+    public static final int DEFAULT_SLOWEST_CAPACITY = 100;
+
+    /**
+     * Default precision of the distinct User-Agents estimate.
+     */
+    public static final int DEFAULT_PRECISION = 12;
+
+    /**
+     * Details of a detection.
+     */
+    public static class Detection {
+
+        private final String userAgent;
+        private final long elapsed;
+        private final MatchMethods method;
+        private final int signaturesCompared;
+        private final int nodesEvaluated;
+        private final int closestSignaturesCount;
+
+        Detection(String userAgent, long elapsed, MatchMethods method,
+                int signaturesCompared, int nodesEvaluated,
+                int closestSignaturesCount) {
+            this.userAgent = userAgent;
+            this.elapsed = elapsed;
+            this.method = method;
+            this.signaturesCompared = signaturesCompared;
+            this.nodesEvaluated = nodesEvaluated;
+            this.closestSignaturesCount = closestSignaturesCount;
+        }
+
+        /**
+         * @return the target User-Agent.
+         */
+        public String getUserAgent() {
+            return userAgent;
+        }
+
+        /**
+         * @return time taken to perform the detection in nanoseconds.
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        /**
+         * @return method used to determine the match.
+         */
+        public MatchMethods getMethod() {
+            return method;
+        }
+
+        /**
+         * @return number of signatures that were compared.
+         */
+        public int getSignaturesCompared() {
+            return signaturesCompared;
+        }
+
+        /**
+         * @return number of nodes checked.
+         */
+        public int getNodesEvaluated() {
+            return nodesEvaluated;
+        }
+
+        /**
+         * @return number of closest signatures returned for evaluation.
+         */
+        public int getClosestSignaturesCount() {
+            return closestSignaturesCount;
+        }
+    }
+
+    /**
+     * Orders detections by elapsed time, fastest first.
+     */
+    private static final Comparator<Detection> ELAPSED_ORDER =
+            new Comparator<Detection>() {
+        @Override
+        public int compare(Detection detection1, Detection detection2) {
+            return detection1.elapsed < detection2.elapsed ? -1 :
+                   detection1.elapsed > detection2.elapsed ? 1 :
+                   0;
+        }
+    };
+
+    private final SpaceSaving frequent;
+    private final CardinalityEstimator distinct;
+    private final int slowestCapacity;
+    private final PriorityQueue<Detection> slowest;
+
+    /**
+     * Elapsed time of the fastest of the slowest detections once the
+     * capacity is reached. Faster detections are ignored without locking.
+     */
+    private volatile long slowestThreshold = -1;
+
+    /**
+     * Constructs a new tracker with the default capacities.
+     */
+    public DetectionTracker() {
+        this(DEFAULT_FREQUENT_CAPACITY, DEFAULT_SLOWEST_CAPACITY,
+                DEFAULT_PRECISION);
+    }
+
+    /**
+     * Constructs a new tracker.
+     *
+     * @param frequentCapacity number of frequent User-Agents tracked.
+     * @param slowestCapacity number of slowest detections retained.
+     * @param precision of the distinct User-Agents estimate which uses
+     * 2^precision integers.
+     */
+    public DetectionTracker(int frequentCapacity, int slowestCapacity,
+            int precision) {
+        if (slowestCapacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Slowest capacity must be greater than zero.");
+        }
+        this.frequent = new SpaceSaving(frequentCapacity);
+        this.distinct = new CardinalityEstimator(precision);
+        this.slowestCapacity = slowestCapacity;
+        this.slowest = new PriorityQueue<Detection>(
+                slowestCapacity, ELAPSED_ORDER);
+    }
+
+    /**
+     * Records a request for the User-Agent.
+     * <p>
+     * This method should not be called as it is part of the internal logic.
+     *
+     * @param userAgent that was requested.
+     */
+    public void recordRequest(String userAgent) {
+        frequent.offer(userAgent);
+        distinct.offer(userAgent);
+    }
+
+    /**
+     * Records a detection performed for the User-Agent.
+     * <p>
+     * This method should not be called as it is part of the internal logic.
+     *
+     * @param userAgent the target User-Agent.
+     * @param elapsed time taken in nanoseconds.
+     * @param method used to determine the match.
+     * @param signaturesCompared number of signatures compared.
+     * @param nodesEvaluated number of nodes checked.
+     * @param closestSignaturesCount number of closest signatures evaluated.
+     */
+    public void recordDetection(String userAgent, long elapsed,
+            MatchMethods method, int signaturesCompared, int nodesEvaluated,
+            int closestSignaturesCount) {
+        if (elapsed <= slowestThreshold) {
+            return;
+        }
+        synchronized (slowest) {
+            if (slowest.size() >= slowestCapacity) {
+                if (elapsed <= slowest.peek().elapsed) {
+                    return;
+                }
+                slowest.poll();
+            }
+            slowest.add(new Detection(userAgent, elapsed, method,
+                    signaturesCompared, nodesEvaluated,
+                    closestSignaturesCount));
+            if (slowest.size() >= slowestCapacity) {
+                slowestThreshold = slowest.peek().elapsed;
+            }
+        }
+    }
+
+    /**
+     * Returns the most frequently requested User-Agents.
+     *
+     * @param max the most User-Agents to return.
+     * @return entries with the most frequent first.
+     */
+    public List<SpaceSaving.Entry> getMostFrequent(int max) {
+        return frequent.getTop(max);
+    }
+
+    /**
+     * @return the slowest detections with the slowest first.
+     */
+    public List<Detection> getSlowest() {
+        List<Detection> result;
+        synchronized (slowest) {
+            result = new ArrayList<Detection>(slowest);
+        }
+        Collections.sort(result, Collections.reverseOrder(ELAPSED_ORDER));
+        return result;
+    }
+
+    /**
+     * @return estimated number of distinct User-Agents requested.
+     */
+    public long getDistinctUserAgents() {
+        return distinct.estimate();
+    }
+
+    /**
+     * @return total number of requests recorded.
+     */
+    public long getRequests() {
+        return frequent.getTotal();
+    }
+
+    /**
+     * Writes the results to a UTF-8 text file, replacing any existing file.
+     *
+     * @param fileName of the file to write.
+     * @throws IOException if the file could not be written.
+     */
+    public void dump(String fileName) throws IOException {
+        PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(fileName), "UTF-8"));
+        try {
+            writer.printf("Requests\t%d%n", getRequests());
+            writer.printf("Distinct User-Agents\t%d%n",
+                    getDistinctUserAgents());
+            writer.println();
+            writer.println("Most frequent");
+            writer.println("Count\tError\tUser-Agent");
+            for (SpaceSaving.Entry entry : getMostFrequent(Integer.MAX_VALUE)) {
+                writer.printf("%d\t%d\t%s%n",
+                        entry.getCount(), entry.getError(), entry.getKey());
+            }
+            writer.println();
+            writer.println("Slowest");
+            writer.println("Elapsed ns\tMethod\tSignatures compared\t" +
+                    "Nodes evaluated\tClosest signatures\tUser-Agent");
+            for (Detection detection : getSlowest()) {
+                writer.printf("%d\t%s\t%d\t%d\t%d\t%s%n",
+                        detection.getElapsed(),
+                        detection.getMethod(),
+                        detection.getSignaturesCompared(),
+                        detection.getNodesEvaluated(),
+                        detection.getClosestSignaturesCount(),
+                        detection.getUserAgent());
+            }
+        } finally {
+            writer.close();
+        }
+        if (writer.checkError()) {
+            throw new IOException(String.format(
+                    "Could not write detection tracker results to '%s'.",
+                    fileName));
+        }
+    }
+}
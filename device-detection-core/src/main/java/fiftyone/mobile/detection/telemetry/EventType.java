@@ -0,0 +1,86 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+/**
+ * Stages of device detection and data file management reported to an
+ * {@link IEventListener}.
+ */
+public enum EventType {
+    /**
+     * Finding the nodes that match the target User-Agent exactly.
+     */
+    MATCH_EVALUATE,
+    /**
+     * Finding nodes that match the target User-Agent allowing for numeric
+     * differences.
+     */
+    MATCH_EVALUATE_NUMERIC,
+    /**
+     * Searching for a signature with exactly the nodes found.
+     */
+    MATCH_EXACT_SEARCH,
+    /**
+     * Finding the closest signatures and evaluating them with the Nearest
+     * method.
+     */
+    MATCH_NEAREST,
+    /**
+     * Evaluating the closest signatures with the Closest method.
+     */
+    MATCH_CLOSEST,
+    /**
+     * A detection performed because the User-Agent was not in the provider's
+     * cache.
+     */
+    USER_AGENT_CACHE_LOAD,
+    /**
+     * An entity read from the data file by a stream data set. The detail is
+     * the name of the {@link fiftyone.mobile.detection.DatasetBuilder.CacheType}
+     * of the entity.
+     */
+    ENTITY_LOAD,
+    /**
+     * Downloading a data file from 51Degrees. The detail is the resulting
+     * {@link fiftyone.mobile.detection.AutoUpdateStatus}.
+     */
+    AUTO_UPDATE_DOWNLOAD,
+    /**
+     * Checking, decompressing and validating a downloaded data file. The
+     * detail is the resulting
+     * {@link fiftyone.mobile.detection.AutoUpdateStatus}.
+     */
+    AUTO_UPDATE_VALIDATE,
+    /**
+     * Replacing the existing data file with the downloaded one. The detail is
+     * the resulting {@link fiftyone.mobile.detection.AutoUpdateStatus}.
+     */
+    AUTO_UPDATE_ACTIVATE,
+    /**
+     * Reading the lists of a data set. The detail is the data set's
+     * {@link fiftyone.mobile.detection.entities.Modes}.
+     */
+    DATASET_LOAD,
+    /**
+     * Setting the references between the entities of a memory data set.
+     */
+    DATASET_INIT
+}
@@ -0,0 +1,54 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+/**
+ * Holds the {@link IEventListener} the API reports events to.
+ * <p>
+ * No listener is set by default. Each stage reported checks for a listener
+ * before doing any other work so there is no cost beyond reading a field
+ * when events are not required.
+ */
+public final class Events {
+
+    private static volatile IEventListener listener = null;
+
+    private Events() {
+    }
+
+    /**
+     * Sets the listener that receives events from all providers and data
+     * sets. Set to null to stop reporting events.
+     *
+     * @param listener to receive events, or null.
+     */
+    public static void setListener(IEventListener listener) {
+        Events.listener = listener;
+    }
+
+    /**
+     * @return the listener receiving events, or null if events are not
+     * being reported.
+     */
+    public static IEventListener getListener() {
+        return listener;
+    }
+}
@@ -0,0 +1,98 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+/**
+ * Receives the start and end of the stages of device detection and data
+ * file management so that they can be recorded alongside other events, for
+ * example as JDK Flight Recorder events.
+ * <p>
+ * A listener recording JDK Flight Recorder events would create and begin an
+ * event in {@link #begin(EventType)}, returning the event, then set the
+ * event's fields and commit it in
+ * {@link #end(Object, EventType, String, int, int)}. For example, with
+ * Java 11 or later and the annotations imported from {@code jdk.jfr}:
+ * <pre>
+ * &#64;Name("fiftyone.Stage")
+ * &#64;Label("51Degrees Stage")
+ * &#64;Category("51Degrees")
+ * class StageEvent extends jdk.jfr.Event {
+ *     &#64;Label("Type") String type;
+ *     &#64;Label("Detail") String detail;
+ *     &#64;Label("Nodes Evaluated") int nodesEvaluated;
+ *     &#64;Label("Signatures Compared") int signaturesCompared;
+ * }
+ *
+ * class FlightRecorderListener implements IEventListener {
+ *     public Object begin(EventType type) {
+ *         StageEvent event = new StageEvent();
+ *         event.begin();
+ *         return event;
+ *     }
+ *
+ *     public void end(Object event, EventType type, String detail,
+ *             int nodesEvaluated, int signaturesCompared) {
+ *         StageEvent stage = (StageEvent) event;
+ *         stage.end();
+ *         if (stage.shouldCommit()) {
+ *             stage.type = type.name();
+ *             stage.detail = detail;
+ *             stage.nodesEvaluated = nodesEvaluated;
+ *             stage.signaturesCompared = signaturesCompared;
+ *             stage.commit();
+ *         }
+ *     }
+ * }
+ *
+ * Events.setListener(new FlightRecorderListener());
+ * </pre>
+ * The stages then appear in recordings started with
+ * {@code -XX:StartFlightRecording} or {@code jcmd JFR.start}.
+ * <p>
+ * Implementations must be thread safe and return quickly as they are called
+ * during detection.
+ */
+public interface IEventListener {
+
+    /**
+     * Called when a stage starts.
+     *
+     * @param type of the stage.
+     * @return an object passed to the end method when the stage ends, or
+     * null.
+     */
+    Object begin(EventType type);
+
+    /**
+     * Called when a stage ends successfully.
+     *
+     * @param event returned from the begin method for the stage.
+     * @param type of the stage.
+     * @param detail further information about the stage described by the
+     * {@link EventType}, or null.
+     * @param nodesEvaluated number of nodes evaluated by the detection so
+     * far, or zero if the stage is not part of a detection.
+     * @param signaturesCompared number of signatures compared by the
+     * detection so far, or zero if the stage is not part of a detection.
+     */
+    void end(Object event, EventType type, String detail, int nodesEvaluated,
+            int signaturesCompared);
+}
@@ -0,0 +1,302 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the most frequent keys in a stream using a fixed number of counters
+ * with the Space-Saving algorithm.
+ * <p>
+ * When a key without a counter is offered and all the counters are in use
+ * the counter with the lowest count is given to the new key. The new key
+ * inherits the count, which is recorded as the possible error in its count.
+ * Any key that occurs more often than the total number of keys offered
+ * divided by the capacity is guaranteed to have a counter.
+ * <p>
+ * The counters are held in a binary heap ordered by count so offering a key
+ * takes logarithmic time in the capacity.
+ * <p>
+ * The class is thread safe. To avoid every thread waiting on the same lock
+ * the keys offered are divided between a number of shards, each with its
+ * own counters and lock, by the thread offering them. The shards are merged
+ * when the top keys are requested. A key missing from a shard which has used
+ * all its counters may have been offered to that shard as often as the
+ * shard's lowest count, so the lowest count is added to both the key's count
+ * and its error. Counts therefore remain no lower than the actual number.
+ */
+public class SpaceSaving {
+
+    /**
+     * Default number of shards used when none is specified.
+     */
+    private static final int DEFAULT_SHARDS = 
+            Math.min(Runtime.getRuntime().availableProcessors(), 16);
+
+    /**
+     * Estimated count of a key.
+     */
+    public static class Entry {
+
+        private final String key;
+        private final long count;
+        private final long error;
+
+        Entry(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+
+        /**
+         * @return the key.
+         */
+        public String getKey() {
+            return key;
+        }
+
+        /**
+         * @return the estimated number of times the key was offered, never
+         * lower than the actual number.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return the largest amount by which the count could exceed the
+         * actual number.
+         */
+        public long getError() {
+            return error;
+        }
+    }
+
+    private final Shard[] shards;
+
+    /**
+     * Constructs a new instance with the number of counters provided and a
+     * shard for each processor, up to 16.
+     *
+     * @param capacity number of keys to track.
+     */
+    public SpaceSaving(int capacity) {
+        this(capacity, DEFAULT_SHARDS);
+    }
+
+    /**
+     * Constructs a new instance with the number of counters and shards 
+     * provided. Each shard has the full number of counters.
+     *
+     * @param capacity number of keys to track.
+     * @param shards number of independently locked sets of counters.
+     */
+    public SpaceSaving(int capacity, int shards) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be greater than zero.");
+        }
+        if (shards <= 0) {
+            throw new IllegalArgumentException(
+                    "Shards must be greater than zero.");
+        }
+        this.shards = new Shard[shards];
+        for (int i = 0; i < shards; i++) {
+            this.shards[i] = new Shard(capacity);
+        }
+    }
+
+    /**
+     * Records an occurrence of the key.
+     *
+     * @param key to record.
+     */
+    public void offer(String key) {
+        shards[(int)(Thread.currentThread().getId() % shards.length)]
+                .offer(key);
+    }
+
+    /**
+     * @return total number of keys offered.
+     */
+    public long getTotal() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.getTotal();
+        }
+        return total;
+    }
+
+    /**
+     * Returns the tracked keys with the highest counts first.
+     *
+     * @param max the most entries to return.
+     * @return list of entries in descending order of count.
+     */
+    public List<Entry> getTop(int max) {
+        List<Map<String, Entry>> snapshots = 
+                new ArrayList<Map<String, Entry>>(shards.length);
+        long[] minimums = new long[shards.length];
+        Map<String, Entry> merged = new HashMap<String, Entry>();
+        for (int i = 0; i < shards.length; i++) {
+            Map<String, Entry> snapshot = new HashMap<String, Entry>();
+            minimums[i] = shards[i].snapshot(snapshot);
+            snapshots.add(snapshot);
+            merged.putAll(snapshot);
+        }
+        List<Entry> entries = new ArrayList<Entry>(merged.size());
+        for (String key : merged.keySet()) {
+            long count = 0;
+            long error = 0;
+            for (int i = 0; i < shards.length; i++) {
+                Entry entry = snapshots.get(i).get(key);
+                if (entry != null) {
+                    count += entry.count;
+                    error += entry.error;
+                } else {
+                    count += minimums[i];
+                    error += minimums[i];
+                }
+            }
+            entries.add(new Entry(key, count, error));
+        }
+        Collections.sort(entries, new Comparator<Entry>() {
+            @Override
+            public int compare(Entry entry1, Entry entry2) {
+                return entry1.count > entry2.count ? -1 :
+                       entry1.count < entry2.count ? 1 :
+                       0;
+            }
+        });
+        return entries.size() > max ? entries.subList(0, max) : entries;
+    }
+
+    /**
+     * Counters for the keys offered by some of the threads.
+     */
+    private static class Shard {
+
+        private final String[] keys;
+        private final long[] counts;
+        private final long[] errors;
+        private final HashMap<String, Integer> positions;
+        private int size = 0;
+        private long total = 0;
+
+        Shard(int capacity) {
+            keys = new String[capacity];
+            counts = new long[capacity];
+            errors = new long[capacity];
+            positions = new HashMap<String, Integer>(capacity * 2);
+        }
+
+        synchronized void offer(String key) {
+            total++;
+            Integer position = positions.get(key);
+            if (position != null) {
+                counts[position]++;
+                siftDown(position);
+            } else if (size < keys.length) {
+                keys[size] = key;
+                counts[size] = 1;
+                errors[size] = 0;
+                positions.put(key, size);
+                siftUp(size++);
+            } else {
+                // Replace the key with the lowest count at the root of the 
+                // heap.
+                positions.remove(keys[0]);
+                keys[0] = key;
+                errors[0] = counts[0];
+                counts[0]++;
+                positions.put(key, 0);
+                siftDown(0);
+            }
+        }
+
+        synchronized long getTotal() {
+            return total;
+        }
+
+        /**
+         * Adds the tracked keys to the map.
+         *
+         * @param entries map to add the entries to.
+         * @return the most times a key without a counter could have been 
+         * offered, which is the lowest count if all the counters are used.
+         */
+        synchronized long snapshot(Map<String, Entry> entries) {
+            for (int i = 0; i < size; i++) {
+                entries.put(keys[i], new Entry(keys[i], counts[i], errors[i]));
+            }
+            return size < keys.length ? 0 : counts[0];
+        }
+
+        private void siftUp(int position) {
+            while (position > 0) {
+                int parent = (position - 1) / 2;
+                if (counts[parent] <= counts[position]) {
+                    break;
+                }
+                swap(parent, position);
+                position = parent;
+            }
+        }
+
+        private void siftDown(int position) {
+            while (true) {
+                int smallest = position;
+                int left = position * 2 + 1;
+                int right = left + 1;
+                if (left < size && counts[left] < counts[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && counts[right] < counts[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == position) {
+                    break;
+                }
+                swap(smallest, position);
+                position = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            String key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            long count = counts[a];
+            counts[a] = counts[b];
+            counts[b] = count;
+            long error = errors[a];
+            errors[a] = errors[b];
+            errors[b] = error;
+            positions.put(keys[a], a);
+            positions.put(keys[b], b);
+        }
+    }
+}
@@ -0,0 +1,225 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.factories.MemoryFactory;
+import fiftyone.mobile.test.common.UserAgentGenerator;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests detections completed inline from the cache, detections queued on
+ * the executor and requests rejected when the queue is full.
+ */
+public class AsyncProviderTest extends StandardUnitTest {
+
+    /**
+     * Records the match or failure passed to the callback and the thread
+     * the callback was called on.
+     */
+    private static class RecordingCallback implements IMatchCallback {
+
+        volatile Match match;
+        volatile Throwable cause;
+        volatile Thread thread;
+        final CountDownLatch called = new CountDownLatch(1);
+
+        @Override
+        public void completed(Match match) {
+            this.match = match;
+            this.thread = Thread.currentThread();
+            called.countDown();
+        }
+
+        @Override
+        public void failed(Throwable cause) {
+            this.cause = cause;
+            this.thread = Thread.currentThread();
+            called.countDown();
+        }
+    }
+
+    private Dataset dataSet;
+    private Provider provider;
+    private Iterator<String> userAgents;
+
+    @Before
+    public void createProvider() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        provider = new Provider(dataSet, 100);
+        userAgents = UserAgentGenerator.getUniqueUserAgents().iterator();
+    }
+
+    @After
+    public void closeDataSet() throws IOException {
+        if (dataSet != null) {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void inlineOnCacheHit() throws Exception {
+        String userAgent = userAgents.next();
+        String deviceId = provider.match(userAgent).getDeviceId();
+        AsyncProvider async = new AsyncProvider(provider, 1, 10);
+        try {
+            RecordingCallback callback = new RecordingCallback();
+            Future<Match> future = async.matchAsync(userAgent, callback);
+            // Completed and the callback called before returning.
+            assertTrue(future.isDone());
+            assertNotNull(callback.match);
+            assertSame(Thread.currentThread(), callback.thread);
+            assertSame(callback.match, future.get());
+            assertEquals(deviceId, future.get().getDeviceId());
+            assertEquals(1, async.getInlineCount());
+            assertEquals(0, async.getQueuedCount());
+            assertEquals(0, async.getQueueTime());
+            assertEquals(0, async.getDetectionTime());
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    public void queuedWhenNotCached() throws Exception {
+        String userAgent = userAgents.next();
+        AsyncProvider async = new AsyncProvider(provider, 1, 10);
+        try {
+            RecordingCallback callback = new RecordingCallback();
+            Future<Match> future = async.matchAsync(userAgent, callback);
+            Match match = future.get(10, TimeUnit.SECONDS);
+            assertTrue(callback.called.await(10, TimeUnit.SECONDS));
+            assertSame(match, callback.match);
+            assertTrue(callback.thread.getName().startsWith(
+                    "51Degrees-Detection-"));
+            assertEquals(provider.match(userAgent).getDeviceId(),
+                    match.getDeviceId());
+            assertEquals(0, async.getInlineCount());
+            assertEquals(1, async.getQueuedCount());
+            assertTrue(async.getQueueTime() >= 0);
+            assertTrue(async.getDetectionTime() > 0);
+            assertTrue(async.getAverageDetectionTime() > 0);
+
+            // The result is now cached so the same User-Agent is inline.
+            async.matchAsync(userAgent).get();
+            assertEquals(1, async.getInlineCount());
+            assertEquals(1, async.getQueuedCount());
+        } finally {
+            async.close();
+        }
+    }
+
+    @Test
+    public void rejectedWhenQueueFull() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        AsyncProvider async = new AsyncProvider(provider, 1, 1);
+        try {
+            // Hold the only thread in the callback of the first detection.
+            List<Future<Match>> futures = new ArrayList<Future<Match>>();
+            futures.add(async.matchAsync(userAgents.next(), 
+                    new RecordingCallback() {
+                @Override
+                public void completed(Match match) {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }));
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+
+            // The second detection fills the queue.
+            futures.add(async.matchAsync(userAgents.next()));
+            try {
+                async.matchAsync(userAgents.next());
+                fail("Expected the detection to be rejected.");
+            } catch (RejectedExecutionException ex) {
+                // Expected.
+            }
+            assertEquals(1, async.getRejectedCount());
+            release.countDown();
+            for (Future<Match> future : futures) {
+                assertNotNull(future.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(2, async.getQueuedCount());
+            assertEquals(1, async.getRejectedCount());
+        } finally {
+            release.countDown();
+            async.close();
+        }
+    }
+
+    @Test
+    public void singleHeaderInline() throws Exception {
+        String userAgent = userAgents.next();
+        provider.match(userAgent);
+        AsyncProvider async = new AsyncProvider(provider, 1, 10);
+        try {
+            Map<String, String> headers = new HashMap<String, String>();
+            headers.put("User-Agent", userAgent);
+            headers.put("Cookie", "51D_ScreenPixelsWidth=1080");
+            RecordingCallback callback = new RecordingCallback();
+            Future<Match> future = async.matchAsync(headers, callback);
+            assertTrue(future.isDone());
+            assertSame(Thread.currentThread(), callback.thread);
+            assertEquals(headers.get("Cookie"), future.get().cookie);
+            assertEquals(provider.match(headers).getDeviceId(),
+                    future.get().getDeviceId());
+            assertEquals(1, async.getInlineCount());
+
+            // More than one detection header is always queued.
+            for (String header : dataSet.getHttpHeaders()) {
+                if ("User-Agent".equals(header) == false) {
+                    headers.put(header, userAgents.next());
+                    break;
+                }
+            }
+            async.matchAsync(headers).get(10, TimeUnit.SECONDS);
+            assertEquals(1, async.getInlineCount());
+            assertEquals(1, async.getQueuedCount());
+        } finally {
+            async.close();
+        }
+    }
+}
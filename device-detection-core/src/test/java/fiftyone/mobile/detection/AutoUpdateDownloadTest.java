@@ -0,0 +1,220 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.TestType;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static fiftyone.mobile.detection.AutoUpdateStatus.AUTO_UPDATE_ERR_MD5_VALIDATION_FAILED;
+import static fiftyone.mobile.detection.AutoUpdateStatus.AUTO_UPDATE_SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests downloads of valid, truncated and empty GZip responses from a local
+ * HTTP server. The server is a plain socket rather than the JDK's HTTP 
+ * server as the com.sun.net.httpserver package can't be loaded by the 
+ * surefire class loader on Java 9 and later.
+ */
+@Category(TestType.TypeUnit.class)
+public class AutoUpdateDownloadTest extends DetectionTestSupport {
+
+    /**
+     * Body and Content-MD5 header returned for every request.
+     */
+    private volatile byte[] body;
+    private volatile String contentMD5;
+
+    private ServerSocket server;
+
+    private Thread serverThread;
+
+    private URL url;
+
+    private File dataFile;
+
+    @Before
+    public void startServer() throws IOException {
+        server = new ServerSocket(0, 0, InetAddress.getByName("localhost"));
+        serverThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        respond(server.accept());
+                    }
+                } catch (IOException ex) {
+                    // The server socket has been closed.
+                }
+            }
+        });
+        serverThread.setDaemon(true);
+        serverThread.start();
+        url = new URL("http://localhost:" + server.getLocalPort() + "/");
+        dataFile = new File(File.createTempFile("AutoUpdate", ".dat")
+                .getPath());
+        dataFile.delete();
+    }
+
+    @After
+    public void stopServer() throws Exception {
+        server.close();
+        serverThread.join();
+        dataFile.delete();
+    }
+
+    /**
+     * Reads the request headers and writes the body and Content-MD5 header
+     * closing the connection.
+     */
+    private void respond(Socket socket) throws IOException {
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), "US-ASCII"));
+            String line;
+            while ((line = reader.readLine()) != null && line.length() > 0) {
+                // Skip the request line and headers.
+            }
+            OutputStream output = socket.getOutputStream();
+            output.write(String.format(
+                    "HTTP/1.1 200 OK\r\n" +
+                    "Content-MD5: %s\r\n" +
+                    "Content-Length: %d\r\n" +
+                    "Connection: close\r\n\r\n",
+                    contentMD5,
+                    body.length).getBytes("US-ASCII"));
+            output.write(body);
+            output.flush();
+        } finally {
+            socket.close();
+        }
+    }
+
+    /**
+     * A truncated download does not match the hash of the complete data so
+     * is reported as an MD5 failure.
+     */
+    @Test
+    public void truncatedGzip() throws Exception {
+        byte[] compressed = gzip(new byte[64 * 1024]);
+        contentMD5 = md5(compressed);
+        body = Arrays.copyOf(compressed, compressed.length / 2);
+        assertEquals(AUTO_UPDATE_ERR_MD5_VALIDATION_FAILED,
+                AutoUpdate.download(url, dataFile.getPath()));
+        assertFalse(dataFile.exists());
+    }
+
+    /**
+     * An empty body fails in the GZip stream constructor and is also
+     * reported as an MD5 failure.
+     */
+    @Test
+    public void emptyBody() throws Exception {
+        contentMD5 = md5(gzip(new byte[64 * 1024]));
+        body = new byte[0];
+        assertEquals(AUTO_UPDATE_ERR_MD5_VALIDATION_FAILED,
+                AutoUpdate.download(url, dataFile.getPath()));
+        assertFalse(dataFile.exists());
+    }
+
+    /**
+     * If the hash matches data that can't be decompressed then the
+     * decompression error is thrown.
+     */
+    @Test(expected = EOFException.class)
+    public void truncatedGzipMatchingHash() throws Exception {
+        byte[] compressed = gzip(new byte[64 * 1024]);
+        body = Arrays.copyOf(compressed, compressed.length / 2);
+        contentMD5 = md5(body);
+        AutoUpdate.download(url, dataFile.getPath());
+    }
+
+    /**
+     * Valid GZip data which is not a data file fails validation and is not
+     * activated.
+     */
+    @Test
+    public void validGzipNotDataFile() throws Exception {
+        body = gzip("Not a data file".getBytes("UTF-8"));
+        contentMD5 = md5(body);
+        try {
+            AutoUpdate.download(url, dataFile.getPath());
+            fail("Data which is not a data file should not be activated.");
+        }
+        catch (IOException ex) {
+            assertFalse(dataFile.exists());
+        }
+    }
+
+    /**
+     * A valid data file is activated, including when there are bytes after
+     * the last section.
+     */
+    @Test
+    public void validGzip() throws Exception {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        byte[] data = readAllBytes(Filename.LITE_PATTERN_V32);
+        byte[] padded = Arrays.copyOf(data, data.length + 16);
+        body = gzip(padded);
+        contentMD5 = md5(body);
+        assertEquals(AUTO_UPDATE_SUCCESS,
+                AutoUpdate.download(url, dataFile.getPath()));
+        assertEquals(padded.length, dataFile.length());
+        assertEquals(md5(padded), md5(readAllBytes(dataFile)));
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        GZIPOutputStream gzos = new GZIPOutputStream(output);
+        gzos.write(data);
+        gzos.close();
+        return output.toByteArray();
+    }
+
+    private static String md5(byte[] data) throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(data)) {
+            builder.append(String.format("%02x", b));
+        }
+        return builder.toString().toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,84 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.factories.MemoryFactory;
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CacheReplayTest extends StandardUnitTest {
+
+    private static final String[] USER_AGENTS = new String[] {
+        "Mozilla/5.0 (iPhone; CPU iPhone OS 6_0 like Mac OS X) " +
+        "AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 " +
+        "Mobile/10A5376e Safari/8536.25",
+        "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 " +
+        "(KHTML, like Gecko) Chrome/52.0.2743.116 Safari/537.36",
+        "Mozilla/5.0 (Linux; Android 6.0.1; SM-G920F Build/MMB29K) " +
+        "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/52.0.2743.98 " +
+        "Mobile Safari/537.36"
+    };
+
+    @Test
+    public void replaySameDataSet() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset oldDataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        Dataset newDataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        try {
+            Provider oldProvider = new Provider(oldDataSet, 100);
+            Provider newProvider = new Provider(newDataSet, 100);
+            for (String userAgent : USER_AGENTS) {
+                oldProvider.match(userAgent);
+            }
+
+            CacheReplay replay = new CacheReplay(oldProvider, newProvider);
+            assertEquals(USER_AGENTS.length, replay.getCount());
+
+            // Before the replay results come from the old provider's cache.
+            assertSame(oldDataSet,
+                    replay.match(USER_AGENTS[0]).getDataSet());
+            assertEquals(0, newProvider.getDetectionCount());
+
+            replay.run();
+            assertTrue(replay.isComplete());
+            assertEquals(USER_AGENTS.length, replay.getReplayed());
+            assertEquals(0, replay.getChanged());
+            assertEquals(USER_AGENTS.length, 
+                    newProvider.getDetectionCount());
+
+            // After the replay results come from the new provider's cache.
+            for (String userAgent : USER_AGENTS) {
+                assertSame(newDataSet, replay.match(userAgent).getDataSet());
+            }
+            assertEquals(USER_AGENTS.length, 
+                    newProvider.getDetectionCount());
+        } finally {
+            oldDataSet.close();
+            newDataSet.close();
+        }
+    }
+}
@@ -5,6 +5,9 @@ import fiftyone.mobile.Filename;
 import fiftyone.mobile.StandardUnitTest;
 import fiftyone.mobile.detection.cache.CacheOptions;
 import fiftyone.mobile.detection.cache.LruCache;
+import fiftyone.mobile.detection.entities.Profile;
+import fiftyone.mobile.detection.entities.Signature;
+import fiftyone.mobile.detection.entities.Value;
 import fiftyone.mobile.detection.factories.MemoryFactory;
 import fiftyone.mobile.detection.helper.GuavaCache;
 import fiftyone.mobile.detection.helper.ViableProvider;
@@ -90,6 +93,58 @@ public class DatasetBuilderTest extends StandardUnitTest {
         it.next();
     }
 
+    // scanning a stream list returns the same entities in the same order as
+    // indexed access without using the entity caches
+    @Test
+    public void testScanMatchesGet () throws IOException {
+        IndirectDataset dataset = DatasetBuilder.file()
+                .configureDefaultCaches()
+                .build(Filename.LITE_PATTERN_V32);
+        IndirectDataset reference = DatasetBuilder.file()
+                .build(Filename.LITE_PATTERN_V32);
+        assertTrue(dataset.values instanceof IScannableList);
+        assertTrue(dataset.profiles instanceof IScannableList);
+        dataset.resetCache();
+
+        // Fixed length entities are compared with the entity at each index.
+        int index = 0;
+        for (Value value : Utilities.scan(dataset.values)) {
+            Value expected = reference.values.get(index);
+            assertEquals(expected.index, value.index);
+            assertEquals(expected.getName(), value.getName());
+            index++;
+        }
+        assertEquals(reference.values.size(), index);
+
+        // A range starts and ends at the requested indexes.
+        index = 10;
+        for (Signature signature : Utilities.scan(
+                dataset.signatures, 10, 100)) {
+            Signature expected = reference.signatures.get(index);
+            assertEquals(expected.index, signature.index);
+            assertEquals(expected.getDeviceId(), signature.getDeviceId());
+            index++;
+        }
+        assertEquals(110, index);
+
+        // Variable length entities are compared with the entity at each 
+        // offset returned by the iterator.
+        Iterator<Profile> expected = reference.profiles.iterator();
+        for (Profile profile : Utilities.scan(dataset.profiles)) {
+            Profile next = expected.next();
+            assertEquals(next.index, profile.index);
+            assertEquals(next.profileId, profile.profileId);
+        }
+        assertFalse(expected.hasNext());
+
+        // None of the entities were requested from the caches.
+        assertEquals(0, dataset.getCache(ValuesCache).getCacheRequests());
+        assertEquals(0, dataset.getCache(SignaturesCache).getCacheRequests());
+        assertEquals(0, dataset.getCache(ProfilesCache).getCacheRequests());
+        dataset.close();
+        reference.close();
+    }
+
     // tests to see if Stream and Memory load the same thing (no caches)
     @Test
     public void testMemoryStreamDatasetConsistentNoCache () throws IOException {
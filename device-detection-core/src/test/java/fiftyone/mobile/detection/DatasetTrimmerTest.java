@@ -0,0 +1,111 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.factories.MemoryFactory;
+import fiftyone.mobile.detection.factories.StreamFactory;
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static fiftyone.mobile.detection.helper.ViableProvider.ensureViableProvider;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DatasetTrimmerTest extends StandardUnitTest {
+
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (iPhone; CPU iPhone OS 6_0 like Mac OS X) " +
+            "AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 " +
+            "Mobile/10A5376e Safari/8536.25";
+
+    private File trimmed;
+
+    @Before
+    public void createTempFile() throws IOException {
+        trimmed = File.createTempFile("Trimmed", ".dat");
+    }
+
+    @After
+    public void deleteTempFile() {
+        trimmed.delete();
+    }
+
+    @Test
+    public void trimmedMatchesOriginal() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        new DatasetTrimmer()
+                .addProperties("IsMobile")
+                .addComponents("HardwarePlatform")
+                .trim(Filename.LITE_PATTERN_V32, trimmed.getPath());
+        assertTrue(trimmed.length() < new File(
+                Filename.LITE_PATTERN_V32).length());
+
+        Dataset original = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = MemoryFactory.create(trimmed.getPath(), true);
+        try {
+            assertNotNull(dataSet.get("IsMobile"));
+            assertNotNull(dataSet.get("ScreenPixelsWidth"));
+            assertNull(dataSet.get("BrowserName"));
+            assertEquals(original.getComponents().size(),
+                    dataSet.getComponents().size());
+            assertEquals(original.maps.size(), dataSet.maps.size());
+            for (int i = 0; i < original.maps.size(); i++) {
+                assertEquals(original.maps.get(i).getName(),
+                        dataSet.maps.get(i).getName());
+            }
+            ensureViableProvider(new Provider(dataSet));
+            assertEquals(
+                    new Provider(original).match(USER_AGENT).getDeviceId(),
+                    new Provider(dataSet).match(USER_AGENT).getDeviceId());
+        } finally {
+            original.close();
+            dataSet.close();
+        }
+
+        IndirectDataset streamDataSet = StreamFactory.create(
+                trimmed.getPath(), false);
+        try {
+            ensureViableProvider(new Provider(streamDataSet));
+        } finally {
+            streamDataSet.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownProperty() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        new DatasetTrimmer()
+                .addProperties("NotAProperty")
+                .trim(Filename.LITE_PATTERN_V32, trimmed.getPath());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nothingSelected() throws IOException {
+        new DatasetTrimmer().trim(Filename.LITE_PATTERN_V32, trimmed.getPath());
+    }
+}
@@ -0,0 +1,99 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.entities.Property;
+import fiftyone.mobile.detection.factories.MemoryFactory;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class DeviceResultTest extends StandardUnitTest {
+
+    /**
+     * Two versions of the same browser which return the same device id.
+     */
+    private static final String[] USER_AGENTS = new String[] {
+        "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 " +
+        "(KHTML, like Gecko) Chrome/52.0.2743.116 Safari/537.36",
+        "Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 " +
+        "(KHTML, like Gecko) Chrome/52.0.2743.82 Safari/537.36",
+        "Mozilla/5.0 (iPhone; CPU iPhone OS 6_0 like Mac OS X) " +
+        "AppleWebKit/536.26 (KHTML, like Gecko) Version/6.0 " +
+        "Mobile/10A5376e Safari/8536.25"
+    };
+
+    @Test
+    public void sameValuesAsProfiles() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        try {
+            Provider provider = new Provider(dataSet);
+            Provider cachedProvider = new Provider(dataSet);
+            cachedProvider.setDeviceCacheSize(10);
+            for (String userAgent : USER_AGENTS) {
+                Match match = provider.match(userAgent);
+                Match cachedMatch = cachedProvider.match(userAgent);
+                for (Property property : dataSet.getProperties()) {
+                    assertEquals(match.getValues(property).toString(),
+                            cachedMatch.getValues(property).toString());
+                }
+                Map<String, String[]> results = match.getResults();
+                Map<String, String[]> cachedResults = 
+                        cachedMatch.getResults();
+                assertEquals(results.size(), cachedResults.size());
+                for (Map.Entry<String, String[]> entry : results.entrySet()) {
+                    assertTrue(Arrays.equals(entry.getValue(),
+                            cachedResults.get(entry.getKey())));
+                }
+            }
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void sharedByDeviceId() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        try {
+            Provider provider = new Provider(dataSet);
+            provider.setDeviceCacheSize(10);
+            Match first = provider.match(USER_AGENTS[0]);
+            Match second = provider.match(USER_AGENTS[1]);
+            Match third = provider.match(USER_AGENTS[2]);
+            assertEquals(first.getDeviceId(), second.getDeviceId());
+            assertSame(first.getDeviceResult(), second.getDeviceResult());
+            assertNotSame(first.getDeviceResult(), third.getDeviceResult());
+            assertEquals(2, provider.getDeviceCache().getCacheMisses());
+        } finally {
+            dataSet.close();
+        }
+    }
+}
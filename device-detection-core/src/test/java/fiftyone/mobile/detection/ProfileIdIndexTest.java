@@ -0,0 +1,74 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.TestType;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertEquals;
+
+@Category(TestType.TypeUnit.class)
+public class ProfileIdIndexTest extends StandardUnitTest {
+
+    /**
+     * Checks every profile id is found at the position provided and that
+     * ids not provided are not found.
+     */
+    private static void verify(int[] profileIds) {
+        ProfileIdIndex index = new ProfileIdIndex(
+                profileIds, new int[profileIds.length], null);
+        for (int i = 0; i < profileIds.length; i++) {
+            assertEquals(i, index.indexOf(profileIds[i]));
+            assertEquals(-1, index.indexOf(profileIds[i] + 1));
+        }
+        assertEquals(-1, index.indexOf(-1));
+        assertEquals(-1, index.indexOf(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void dense() {
+        // Even profile ids which are indexed directly.
+        int[] profileIds = new int[1000];
+        for (int i = 0; i < profileIds.length; i++) {
+            profileIds[i] = i * 2;
+        }
+        verify(profileIds);
+    }
+
+    @Test
+    public void sparse() {
+        // Widely spaced profile ids which are held in the hash table.
+        int[] profileIds = new int[1000];
+        for (int i = 0; i < profileIds.length; i++) {
+            profileIds[i] = i * 10007 + 2;
+        }
+        verify(profileIds);
+    }
+
+    @Test
+    public void empty() {
+        ProfileIdIndex index = new ProfileIdIndex(new int[0], new int[0], null);
+        assertEquals(-1, index.indexOf(0));
+        assertEquals(-1, index.indexOf(12345));
+    }
+}
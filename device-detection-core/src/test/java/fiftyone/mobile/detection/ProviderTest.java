@@ -2,6 +2,7 @@ package fiftyone.mobile.detection;
 
 import fiftyone.mobile.Filename;
 import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.cache.CompactCache;
 import fiftyone.mobile.detection.cache.LruCache;
 import fiftyone.mobile.detection.factories.MemoryFactory;
 import fiftyone.mobile.detection.factories.StreamFactoryTest;
@@ -13,6 +14,8 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 
 import static fiftyone.mobile.detection.helper.MatchHelper.matchEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * minimal testing that Provider works. Some of this is covered in the Factory and DatasetBuilder tests
@@ -55,4 +58,38 @@ public class ProviderTest extends StandardUnitTest {
         unCachedDataset.close();
         memoryDataset.close();
     }
-}
\ No newline at end of file
+
+    // check the compact cache returns the same results as no cache
+    @Test
+    public void testCompactCacheSame () throws IOException {
+        Dataset memoryDataset = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        Provider memoryProvider = new Provider(memoryDataset);
+        Provider compactProvider = new Provider(memoryDataset, 
+                new CompactCache(5000, true));
+
+        FileInputStream is = new FileInputStream(Filename.GOOD_USERAGENTS_FILE);
+        BufferedReader source = new BufferedReader(new InputStreamReader(is));
+        String line;
+        int count = 0;
+        while ((line = source.readLine()) != null) {
+            // Match twice so the second result comes from the cache.
+            for (int i = 0; i < 2; i++) {
+                Match compactMatch = compactProvider.match(line);
+                Match memoryMatch = memoryProvider.match(line);
+                assertEquals(memoryMatch.getMethod(), compactMatch.getMethod());
+                assertEquals(memoryMatch.getDeviceId(), 
+                        compactMatch.getDeviceId());
+                assertEquals(memoryMatch.getDifference(), 
+                        compactMatch.getDifference());
+                assertEquals(memoryMatch.getUserAgent(), 
+                        compactMatch.getUserAgent());
+            }
+            count++;
+        }
+        logger.info("{} tests done", count);
+        assertTrue(compactProvider.getCacheMisses() < 
+                compactProvider.getCacheRequests());
+        source.close();
+        memoryDataset.close();
+    }
+}
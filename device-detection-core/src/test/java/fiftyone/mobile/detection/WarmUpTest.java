@@ -0,0 +1,166 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.cache.ICache;
+import fiftyone.mobile.detection.entities.headers.Header;
+import fiftyone.mobile.test.common.UserAgentGenerator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static fiftyone.mobile.detection.DatasetBuilder.CacheType.NodesCache;
+import static fiftyone.mobile.detection.DatasetBuilder.CacheType.SignaturesCache;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests pre-touching and replaying User-Agents to warm up stream data sets.
+ */
+public class WarmUpTest extends StandardUnitTest {
+
+    private static final int USER_AGENTS = 20;
+
+    @Test
+    public void pretouchReadsEveryPage() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        IndirectDataset dataSet = DatasetBuilder.file()
+                .build(Filename.LITE_PATTERN_V32);
+        try {
+            long expected = 0;
+            for (WarmUp.Section section : WarmUp.Section.values()) {
+                Header header = dataSet.getSection(section);
+                assertNotNull(section.name(), header);
+                long pages = (header.getLength() + WarmUp.PAGE_SIZE - 1) / 
+                        WarmUp.PAGE_SIZE;
+                assertEquals(section.name(), pages,
+                        WarmUp.pretouch(dataSet, section));
+                expected += pages;
+            }
+            assertEquals(expected,
+                    WarmUp.pretouch(dataSet, WarmUp.Section.values()));
+            assertEquals(0, WarmUp.pretouch(dataSet));
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void replayFillsCaches() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        IndirectDataset dataSet = DatasetBuilder.file()
+                .configureDefaultCaches()
+                .build(Filename.LITE_PATTERN_V32);
+        try {
+            List<String> userAgents = getUserAgents();
+            assertEquals(USER_AGENTS, WarmUp.replay(dataSet, userAgents));
+            ICache<?, ?> nodes = dataSet.getCache(NodesCache);
+            ICache<?, ?> signatures = dataSet.getCache(SignaturesCache);
+            assertTrue(nodes.getCacheMisses() > 0);
+            assertTrue(signatures.getCacheMisses() > 0);
+
+            // Replaying the same User-Agents finds everything in the caches.
+            long nodeMisses = nodes.getCacheMisses();
+            long signatureMisses = signatures.getCacheMisses();
+            assertEquals(USER_AGENTS, WarmUp.replay(dataSet, userAgents));
+            assertEquals(nodeMisses, nodes.getCacheMisses());
+            assertEquals(signatureMisses, signatures.getCacheMisses());
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void replayFileStopsAtMaximum() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        File file = File.createTempFile("UserAgents", ".txt");
+        IndirectDataset dataSet = DatasetBuilder.file()
+                .build(Filename.LITE_PATTERN_V32);
+        try {
+            Writer writer = new OutputStreamWriter(
+                    new FileOutputStream(file), "UTF-8");
+            try {
+                for (String userAgent : getUserAgents()) {
+                    writer.write(userAgent);
+                    writer.write('\n');
+                }
+            } finally {
+                writer.close();
+            }
+            assertEquals(5, WarmUp.replay(dataSet, file.getPath(), 5));
+            assertEquals(USER_AGENTS, 
+                    WarmUp.replay(dataSet, file.getPath(), USER_AGENTS * 2));
+        } finally {
+            dataSet.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void builderPreparesDataSet() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        IndirectDataset dataSet = DatasetBuilder.file()
+                .configureDefaultCaches()
+                .build(Filename.LITE_PATTERN_V32);
+        try {
+            assertNull(dataSet.getNodeTable());
+            assertEquals(0, dataSet.getCache(NodesCache).getCacheRequests());
+        } finally {
+            dataSet.close();
+        }
+        dataSet = DatasetBuilder.file()
+                .configureDefaultCaches()
+                .initNodeTable()
+                .warmUp(getUserAgents())
+                .build(Filename.LITE_PATTERN_V32);
+        try {
+            assertNotNull(dataSet.getNodeTable());
+            assertTrue(dataSet.getCache(NodesCache).getCacheMisses() > 0);
+            assertTrue(dataSet.getCache(SignaturesCache).getCacheMisses() > 0);
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    /**
+     * Returns the first User-Agents from the test set so that the same 
+     * User-Agents can be replayed more than once.
+     */
+    private static List<String> getUserAgents() {
+        List<String> userAgents = new ArrayList<String>();
+        for (String userAgent : UserAgentGenerator.getUniqueUserAgents()) {
+            if (userAgents.size() == USER_AGENTS) {
+                break;
+            }
+            userAgents.add(userAgent);
+        }
+        return userAgents;
+    }
+}
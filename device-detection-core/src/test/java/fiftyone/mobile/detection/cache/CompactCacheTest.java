@@ -0,0 +1,160 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.cache;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class CompactCacheTest extends DetectionTestSupport {
+
+    @Test
+    public void single() {
+        CompactCache cache = new CompactCache(1);
+        assertEquals(0, cache.getPercentageMisses(), 0);
+        assertNull(cache.get("key"));
+        cache.put("key", new CompactCache.Entry(42, new int[] { 1, 2, 3 }));
+        CompactCache.Entry entry = cache.get("key");
+        assertNotNull(entry);
+        assertEquals(42, entry.getMeta());
+        assertEquals(3, entry.getValues().length);
+        assertEquals(2, entry.getValues()[1]);
+        assertEquals(2, cache.getCacheRequests());
+        assertEquals(1, cache.getCacheMisses());
+    }
+
+    @Test
+    public void getIfPresent() {
+        CompactCache cache = new CompactCache(1);
+        assertNull(cache.getIfPresent("key", true));
+        cache.put("key", new CompactCache.Entry(42, new int[] { 1 }));
+        assertNotNull(cache.getIfPresent("key", false));
+        assertEquals(0, cache.getCacheRequests());
+        assertNotNull(cache.getIfPresent("key", true));
+        assertEquals(1, cache.getCacheRequests());
+        assertEquals(0, cache.getCacheMisses());
+    }
+
+    @Test
+    public void replace() {
+        CompactCache cache = new CompactCache(10);
+        cache.put("key", new CompactCache.Entry(1, new int[] { 1 }));
+        cache.put("key", new CompactCache.Entry(2, new int[] { 2 }));
+        assertEquals(2, cache.get("key").getMeta());
+    }
+
+    @Test
+    public void full() {
+        validateCache(getKeys(10000), false);
+    }
+
+    @Test
+    public void fullVerified() {
+        validateCache(getKeys(10000), true);
+    }
+
+    @Test
+    public void bounded() {
+        List<String> keys = getKeys(100000);
+        CompactCache cache = new CompactCache(1000, false, 4);
+        for (int i = 0; i < keys.size(); i++) {
+            cache.put(keys.get(i), new CompactCache.Entry(i, new int[] { i }));
+        }
+        int found = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            CompactCache.Entry entry = cache.get(keys.get(i));
+            if (entry != null) {
+                assertEquals(i, entry.getMeta());
+                found++;
+            }
+        }
+        logger.info("'{}' of '{}' entries retained.", found, keys.size());
+        assertTrue(found > 0);
+        assertTrue(found < keys.size() / 10);
+    }
+
+    @Test
+    public void reset() {
+        CompactCache cache = new CompactCache(10);
+        cache.put("key", new CompactCache.Entry(1, new int[] { 1 }));
+        assertNotNull(cache.get("key"));
+        cache.resetCache();
+        assertEquals(0, cache.getCacheRequests());
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void hashes() {
+        String key = UUID.randomUUID().toString();
+        assertEquals(CompactCache.hash(key), CompactCache.hash(new String(key)));
+        assertTrue(CompactCache.hash(key) != CompactCache.check(key));
+        assertTrue(CompactCache.hash(key) != CompactCache.hash(key + " "));
+    }
+
+    /**
+     * Fills a cache with capacity for all the keys and checks that nearly
+     * all are returned with the information they were stored with.
+     */
+    private void validateCache(List<String> keys, boolean verify) {
+        CompactCache cache = new CompactCache(keys.size(), verify);
+        assertEquals(verify, cache.getVerify());
+        for (int i = 0; i < keys.size(); i++) {
+            cache.put(keys.get(i), new CompactCache.Entry(i, new int[] { i }));
+        }
+        int found = 0;
+        for (int i = 0; i < keys.size(); i++) {
+            CompactCache.Entry entry = cache.get(keys.get(i));
+            if (entry != null) {
+                assertEquals(i, entry.getMeta());
+                assertEquals(i, entry.getValues()[0]);
+                found++;
+            }
+        }
+        assertEquals(keys.size(), cache.getCacheRequests());
+        assertEquals(keys.size() - found, cache.getCacheMisses());
+        assertTrue(String.format(
+                "Only '%d' of '%d' entries retained.", found, keys.size()),
+                found > keys.size() * 0.95);
+    }
+
+    /**
+     * Creates a list of random unique string keys.
+     */
+    private static List<String> getKeys(int size) {
+        List<String> keys = new ArrayList<String>(size);
+        for (int i = 0; i < size; i++) {
+            keys.add(UUID.randomUUID().toString());
+        }
+        return keys;
+    }
+}
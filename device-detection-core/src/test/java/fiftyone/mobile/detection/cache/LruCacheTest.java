@@ -92,6 +92,55 @@ public class LruCacheTest extends DetectionTestSupport {
         assertTrue(cache.getCacheMisses() == 1);
     }
 
+    @Test
+    public void getIfPresent() throws IOException {
+        HashMap<Integer, String> source = getNumericKeys(2);
+        CacheLoader<Integer, String> loader =
+                new CacheLoader<Integer, String>(source);
+        LruCache<Integer, String> cache =
+                new LruCache<Integer, String>(source.size(), loader);
+        assertTrue(cache.getIfPresent(0) == null);
+        assertTrue(loader.fetches.get() == 0);
+        cache.get(0);
+        assertTrue(cache.getIfPresent(0).equals(source.get(0)));
+        assertTrue(cache.getIfPresent(1) == null);
+        assertTrue(loader.fetches.get() == 1);
+        assertTrue(cache.getCacheRequests() == 1);
+    }
+
+    @Test
+    public void getIfPresentRecordHit() throws IOException {
+        HashMap<Integer, String> source = getNumericKeys(2);
+        CacheLoader<Integer, String> loader =
+                new CacheLoader<Integer, String>(source);
+        LruCache<Integer, String> cache =
+                new LruCache<Integer, String>(source.size(), loader);
+        cache.get(0);
+        assertTrue(cache.getIfPresent(0, true).equals(source.get(0)));
+        assertTrue(cache.getIfPresent(1, true) == null);
+        assertTrue(cache.getCacheRequests() == 2);
+        assertTrue(cache.getCacheMisses() == 1);
+    }
+
+    @Test
+    public void getKeys() throws IOException {
+        HashMap<Integer, String> source = getNumericKeys(10);
+        CacheLoader<Integer, String> loader =
+                new CacheLoader<Integer, String>(source);
+        LruCache<Integer, String> cache =
+                new LruCache<Integer, String>(5, loader);
+        assertTrue(cache.getKeys().isEmpty());
+        for (int key = 0; key < 10; key++) {
+            cache.get(key);
+        }
+        List<Integer> keys = cache.getKeys();
+        assertTrue(keys.size() == 5);
+        for (Integer key : keys) {
+            assertTrue(cache.getIfPresent(key) != null);
+        }
+        assertTrue(cache.getCacheRequests() == 10);
+    }
+
     @Test
     public void numericFull() throws IOException {
         validateCache(getNumericKeys(10000));
@@ -0,0 +1,250 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.cache;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class ThreadLocalCacheTest extends DetectionTestSupport {
+
+    /**
+     * Returns the key as the value counting the number of loads.
+     */
+    private static class CountingLoader implements IValueLoader<String, String> {
+
+        final AtomicInteger loads = new AtomicInteger();
+
+        @Override
+        public String load(String key) throws IOException {
+            loads.incrementAndGet();
+            return key;
+        }
+    }
+
+    @Test
+    public void noRequests() {
+        ThreadLocalCache<String, String> cache =
+                new ThreadLocalCache<String, String>(
+                        new LruCache<String, String>(100), 10);
+        assertEquals(0, cache.getPercentageMisses(), 0);
+        assertEquals(0, cache.getPercentageLocalHits(), 0);
+        assertEquals(0, cache.getPercentageSharedHits(), 0);
+    }
+
+    @Test
+    public void getIfPresentRecordHit() throws IOException {
+        CountingLoader loader = new CountingLoader();
+        LruCache<String, String> shared = new LruCache<String, String>(100);
+        shared.get("shared", loader);
+        ThreadLocalCache<String, String> cache =
+                new ThreadLocalCache<String, String>(shared, 10);
+        cache.get("local", loader);
+        assertEquals("local", cache.getIfPresent("local", true));
+        assertEquals("shared", cache.getIfPresent("shared", true));
+        assertNull(cache.getIfPresent("missing", true));
+        assertEquals(3, cache.getCacheRequests());
+        assertEquals(1, cache.getLocalCacheHits());
+        assertEquals(2, cache.getCacheMisses());
+        assertEquals(1.0 / 3, cache.getPercentageLocalHits(), 0.001);
+    }
+
+    @Test
+    public void localHits() throws IOException {
+        CountingLoader loader = new CountingLoader();
+        ThreadLocalCache<String, String> cache =
+                new ThreadLocalCache<String, String>(
+                        new LruCache<String, String>(100), 10);
+        for (int i = 0; i < 10; i++) {
+            assertEquals("key", cache.get("key", loader));
+        }
+        assertEquals(1, loader.loads.get());
+        assertEquals(10, cache.getCacheRequests());
+        assertEquals(9, cache.getLocalCacheHits());
+        assertEquals(1, cache.getCacheMisses());
+        assertEquals(1, cache.getSharedCache().getCacheRequests());
+    }
+
+    @Test
+    public void sharedHits() throws IOException {
+        CountingLoader loader = new CountingLoader();
+        ThreadLocalCache<String, String> cache =
+                new ThreadLocalCache<String, String>(
+                        new LruCache<String, String>(100), 2);
+        // Cycle through more keys than the local cache can hold so they are
+        // served from the shared cache.
+        for (int pass = 0; pass < 3; pass++) {
+            for (int i = 0; i < 5; i++) {
+                cache.get(Integer.toString(i), loader);
+            }
+        }
+        assertEquals(5, loader.loads.get());
+        assertEquals(0, cache.getLocalCacheHits());
+        assertEquals(15, cache.getSharedCache().getCacheRequests());
+        assertTrue(cache.getPercentageSharedHits() > 0.6);
+    }
+
+    @Test
+    public void otherThread() throws Exception {
+        final CountingLoader loader = new CountingLoader();
+        final ThreadLocalCache<String, String> cache =
+                new ThreadLocalCache<String, String>(
+                        new LruCache<String, String>(100), 10);
+        cache.get("key", loader);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    cache.get("key", loader);
+                } catch (IOException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        // The second thread's local cache is empty so the value comes from
+        // the shared cache rather than the loader.
+        assertEquals(1, loader.loads.get());
+        assertEquals(2, cache.getCacheRequests());
+        assertEquals(0, cache.getLocalCacheHits());
+        assertEquals(2, cache.getSharedCache().getCacheRequests());
+    }
+
+    @Test
+    public void invalidate() throws IOException {
+        CountingLoader loader = new CountingLoader();
+        ThreadLocalCache<String, String> cache =
+                new ThreadLocalCache<String, String>(
+                        new LruCache<String, String>(100), 10);
+        cache.get("key", loader);
+        cache.get("key", loader);
+        assertEquals(1, cache.getLocalCacheHits());
+        cache.invalidate();
+        assertEquals(0, cache.getCacheRequests());
+        cache.get("key", loader);
+        assertEquals(0, cache.getLocalCacheHits());
+        assertEquals(1, loader.loads.get());
+        cache.resetCache();
+        cache.get("key", loader);
+        assertEquals(2, loader.loads.get());
+    }
+
+    /**
+     * Creates a new value for each key keeping a weak reference to the last
+     * value created.
+     */
+    private static class TrackingLoader 
+            implements IValueLoader<String, Object> {
+
+        volatile WeakReference<Object> last;
+
+        @Override
+        public Object load(String key) throws IOException {
+            Object value = new byte[1024];
+            last = new WeakReference<Object>(value);
+            return value;
+        }
+    }
+
+    /**
+     * Loads the key on the thread of the executor so that the value is held
+     * by that thread's local cache.
+     */
+    private static void loadOnThread(ExecutorService executor, 
+            final ThreadLocalCache<String, Object> cache, 
+            final TrackingLoader loader) throws Exception {
+        executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                cache.get("key", loader);
+                return null;
+            }
+        }).get();
+    }
+
+    /**
+     * Requests garbage collection until the reference is cleared or the
+     * attempts are exhausted.
+     */
+    private static void collect(WeakReference<Object> reference) 
+            throws InterruptedException {
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void resetReleasesOtherThreads() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TrackingLoader loader = new TrackingLoader();
+            ThreadLocalCache<String, Object> cache =
+                    new ThreadLocalCache<String, Object>(
+                            new LruCache<String, Object>(100), 10);
+            loadOnThread(executor, cache, loader);
+            // As when a new data set is used the cache is reset while the
+            // pooled thread that loaded the value is still alive.
+            cache.resetCache();
+            collect(loader.last);
+            assertNull(loader.last.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void unusedCacheCollectable() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            TrackingLoader loader = new TrackingLoader();
+            ThreadLocalCache<String, Object> cache =
+                    new ThreadLocalCache<String, Object>(
+                            new LruCache<String, Object>(100), 10);
+            loadOnThread(executor, cache, loader);
+            WeakReference<Object> cacheReference = 
+                    new WeakReference<Object>(cache);
+            cache = null;
+            // The pooled thread must not keep the cache or its values.
+            collect(cacheReference);
+            collect(loader.last);
+            assertNull(cacheReference.get());
+            assertNull(loader.last.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
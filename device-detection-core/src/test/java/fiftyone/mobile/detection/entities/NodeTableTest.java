@@ -0,0 +1,128 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.factories.MemoryFactory;
+import fiftyone.mobile.detection.factories.StreamFactory;
+import java.io.IOException;
+import java.util.Date;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks the root positions and signature lengths held in the node table,
+ * and those calculated by signatures, are the same as those found by 
+ * walking from each node to its root node.
+ */
+public class NodeTableTest extends StandardUnitTest {
+
+    @Test
+    public void memoryLengthsMatchNodeWalk() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        try {
+            validateLengths(dataSet);
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void columnarLengthsMatchNodeWalk() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = MemoryFactory.create(
+                Filename.LITE_PATTERN_V32, false, new Date(), true);
+        try {
+            validateLengths(dataSet);
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void streamLengthsMatchNodeWalk() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = StreamFactory.create(Filename.LITE_PATTERN_V32, false);
+        try {
+            validateLengths(dataSet);
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    /**
+     * Compares every node's root position and every signature's length 
+     * before and after the node table is built.
+     */
+    private static void validateLengths(Dataset dataSet) throws IOException {
+        int[] expected = new int[dataSet.signatures.size()];
+        for (int i = 0; i < expected.length; i++) {
+            Signature signature = dataSet.signatures.get(i);
+            expected[i] = getRootPosition(dataSet, getLastNode(signature)) + 1;
+            assertEquals(String.format("Signature '%d'", i),
+                    expected[i], signature.getSignatureLength());
+            assertEquals(String.format("Signature '%d'", i),
+                    expected[i], signature.getLength());
+        }
+        dataSet.initNodeTable();
+        NodeTable table = dataSet.getNodeTable();
+        assertEquals(dataSet.nodes.size(), table.getNodeCount());
+        for (Node node : dataSet.nodes) {
+            assertEquals(String.format("Node '%d'", node.getIndex()),
+                    getRootPosition(dataSet, node),
+                    table.getRootPosition(node.getIndex()));
+        }
+        for (int i = 0; i < expected.length; i++) {
+            Signature signature = dataSet.signatures.get(i);
+            assertEquals(String.format("Signature '%d'", i),
+                    expected[i], table.getSignatureLength(i));
+            assertEquals(String.format("Signature '%d'", i),
+                    expected[i], signature.getLength());
+        }
+    }
+
+    /**
+     * Returns the right most node of the signature.
+     */
+    private static Node getLastNode(Signature signature) throws IOException {
+        List<Integer> nodeOffsets = signature.getNodeOffsets();
+        return signature.getDataSet().nodes.get(
+                nodeOffsets.get(nodeOffsets.size() - 1));
+    }
+
+    /**
+     * Returns the position of the node's root found by following the
+     * parent offsets, as the node did before the table existed.
+     */
+    private static int getRootPosition(Dataset dataSet, Node node) 
+            throws IOException {
+        Node root = node;
+        while (root.parentOffset >= 0) {
+            root = dataSet.nodes.get(root.parentOffset);
+        }
+        return root.position;
+    }
+}
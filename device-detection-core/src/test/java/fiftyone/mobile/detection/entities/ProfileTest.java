@@ -0,0 +1,169 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.factories.MemoryFactory;
+import fiftyone.mobile.detection.factories.StreamFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that the values returned for each property of a profile using the
+ * component's property table are those found by searching the profile's 
+ * value indexes for the property's range of values.
+ */
+public class ProfileTest extends StandardUnitTest {
+
+    @Test
+    public void memoryValuesMatchSearch() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        try {
+            validateValues(dataSet);
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void streamValuesMatchSearch() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = StreamFactory.create(Filename.LITE_PATTERN_V32, false);
+        try {
+            validateValues(dataSet);
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    /**
+     * Profiles are initialised without locks so several threads requesting
+     * the same values at once must all get the correct values.
+     */
+    @Test
+    public void concurrentValuesMatchSearch() throws Exception {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        final Dataset dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        try {
+            final List<Throwable> errors = 
+                    Collections.synchronizedList(new ArrayList<Throwable>());
+            List<Thread> threads = new ArrayList<Thread>();
+            for (int i = 0; i < 4; i++) {
+                threads.add(new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            validateValues(dataSet);
+                            for (Profile profile : dataSet.profiles) {
+                                assertEquals(profile.getValues().length,
+                                        profile.getValueIndexes().length);
+                                profile.getProperties();
+                                profile.getSignatures();
+                                profile.toString();
+                            }
+                        } catch (Throwable ex) {
+                            errors.add(ex);
+                        }
+                    }
+                }));
+            }
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(errors.toString(), 0, errors.size());
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    /**
+     * Compares the values of every property, including those of other
+     * components, for every profile in the data set.
+     */
+    private static void validateValues(Dataset dataSet) throws IOException {
+        for (Profile profile : dataSet.profiles) {
+            for (Property property : dataSet.properties) {
+                assertEquals(
+                        String.format("Profile '%d' property '%s'",
+                            profile.profileId,
+                            property.getName()),
+                        Arrays.toString(searchValueIndexes(profile, property)),
+                        Arrays.toString(getIndexes(
+                            profile.getValues(property))));
+            }
+        }
+    }
+
+    /**
+     * Returns the indexes of the values.
+     */
+    private static int[] getIndexes(Values values) {
+        Value[] all = values.getAll();
+        int[] indexes = new int[all.length];
+        for (int i = 0; i < all.length; i++) {
+            indexes[i] = all[i].index;
+        }
+        return indexes;
+    }
+
+    /**
+     * Finds the value indexes of the profile which relate to the property 
+     * by binary searching the profile's value indexes for the first and last
+     * value of the property.
+     */
+    private static int[] searchValueIndexes(Profile profile, Property property) 
+            throws IOException {
+        int[] valueIndexes = profile.getValueIndexes();
+        int start = Arrays.binarySearch(
+                valueIndexes,
+                property.firstValueIndex);
+        if (start < 0) {
+            start = ~start;
+        }
+        int end = Arrays.binarySearch(
+                valueIndexes, 
+                start, 
+                valueIndexes.length, 
+                property.getLastIndexValue());
+        if (end < 0) {
+            end = ~end;
+            if (end >= valueIndexes.length ||
+                valueIndexes[end] > property.getLastIndexValue()) {
+                end--;
+            }
+        }
+        return start > end ? 
+                new int[0] : 
+                Arrays.copyOfRange(valueIndexes, start, end + 1);
+    }
+}
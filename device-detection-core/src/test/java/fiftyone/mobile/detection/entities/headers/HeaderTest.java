@@ -0,0 +1,64 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities.headers;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+import fiftyone.mobile.detection.readers.BinaryReader;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class HeaderTest extends DetectionTestSupport {
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void startPosition() {
+        Header header = read(1000);
+        assertEquals(1000, header.getStartPosition());
+        assertEquals(1000L, header.getLongStartPosition());
+        assertEquals(20, header.getLength());
+        assertEquals(2, header.getCount());
+    }
+
+    /**
+     * Start positions are unsigned so structures beyond 2 GB are addressed
+     * by the long start position.
+     */
+    @Test
+    public void startPositionBeyond2GB() {
+        Header header = read((int)3000000000L);
+        assertEquals(3000000000L, header.getLongStartPosition());
+    }
+
+    private static Header read(int startPosition) {
+        ByteBuffer buffer = ByteBuffer.allocate(12);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(startPosition).putInt(20).putInt(2);
+        return new Header(new BinaryReader(buffer.array()));
+    }
+}
@@ -0,0 +1,113 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities.memory;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.entities.Modes;
+import fiftyone.mobile.detection.entities.Signature;
+import fiftyone.mobile.detection.readers.BinaryReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class ColumnarSignatureListTest extends DetectionTestSupport {
+
+    @Test
+    public void v32() throws IOException {
+        Dataset dataSet = new Dataset(new Date(), Modes.MEMORY);
+        dataSet.signatureProfilesCount = 2;
+        ByteBuffer buffer = header(3);
+        for (int i = 0; i < 3; i++) {
+            buffer.putInt(i * 10);
+            buffer.putInt(i == 1 ? -1 : i * 10 + 1);
+            buffer.put((byte)(i + 1));
+            buffer.putInt(i * 5);
+            buffer.putInt(100 - i);
+            buffer.put((byte)0);
+        }
+        ColumnarSignatureList list = read(dataSet, buffer, true);
+        assertEquals(3, list.size());
+        for (int i = 0; i < 3; i++) {
+            Signature signature = list.get(i);
+            assertEquals(i, signature.getIndex());
+            assertEquals(100 - i, signature.getRank());
+        }
+        int count = 0;
+        for (Signature signature : list) {
+            assertEquals(count++, signature.getIndex());
+        }
+        assertEquals(3, count);
+    }
+
+    @Test
+    public void v31() throws IOException {
+        Dataset dataSet = new Dataset(new Date(), Modes.MEMORY);
+        dataSet.signatureProfilesCount = 1;
+        dataSet.signatureNodesCount = 3;
+        ByteBuffer buffer = header(2);
+        buffer.putInt(7);
+        buffer.putInt(1).putInt(2).putInt(-1);
+        buffer.putInt(8);
+        buffer.putInt(3).putInt(4).putInt(5);
+        ColumnarSignatureList list = read(dataSet, buffer, false);
+        // Ranks are calculated from the ranked signature indexes.
+        ByteBuffer ranked = header(2);
+        ranked.putInt(1).putInt(0);
+        BinaryReader reader = new BinaryReader(
+                Arrays.copyOf(ranked.array(), ranked.position()));
+        MemoryIntegerList rankedSignatureIndexes = 
+                new MemoryIntegerList(reader);
+        rankedSignatureIndexes.read(reader);
+        dataSet.rankedSignatureIndexes = rankedSignatureIndexes;
+        assertEquals(Arrays.asList(1, 2), list.get(0).getNodeOffsets());
+        assertEquals(Arrays.asList(3, 4, 5), list.get(1).getNodeOffsets());
+        assertEquals(1, list.get(0).getRank());
+        assertEquals(0, list.get(1).getRank());
+    }
+
+    private static ByteBuffer header(int count) {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(0).putInt(0).putInt(count);
+        return buffer;
+    }
+
+    private static ColumnarSignatureList read(Dataset dataSet,
+            ByteBuffer buffer, boolean v32) {
+        BinaryReader reader = new BinaryReader(
+                Arrays.copyOf(buffer.array(), buffer.position()));
+        ColumnarSignatureList list =
+                new ColumnarSignatureList(dataSet, reader, v32);
+        list.read(reader);
+        return list;
+    }
+}
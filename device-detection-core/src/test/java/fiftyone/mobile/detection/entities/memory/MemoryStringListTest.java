@@ -0,0 +1,97 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.entities.memory;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.entities.AsciiString;
+import fiftyone.mobile.detection.entities.Modes;
+import fiftyone.mobile.detection.readers.BinaryReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class MemoryStringListTest extends DetectionTestSupport {
+
+    private static final String[] STRINGS = { "Mozilla", "", "Chrome/58" };
+
+    @Test
+    public void get() throws IOException {
+        MemoryStringList list = create();
+        int offset = 0;
+        for (String expected : STRINGS) {
+            AsciiString string = list.get(offset);
+            assertEquals(expected, string.toString());
+            assertEquals(expected.length(), string.getLength());
+            assertEquals(offset, string.getIndex());
+            // The characters are read in place from the arena.
+            assertEquals(offset + 2, string.getStart());
+            assertEquals(expected, new String(string.getSource(),
+                    string.getStart(), string.getLength()));
+            offset += expected.length() + 3;
+        }
+        assertNull(list.get(-1));
+        assertNull(list.get(offset));
+    }
+
+    @Test
+    public void iterator() throws IOException {
+        MemoryStringList list = create();
+        assertEquals(STRINGS.length, list.size());
+        int index = 0;
+        for (AsciiString string : list) {
+            assertEquals(STRINGS[index++], string.toString());
+        }
+        assertEquals(STRINGS.length, index);
+    }
+
+    private static MemoryStringList create() throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int length = 0;
+        for (String string : STRINGS) {
+            length += string.length() + 3;
+        }
+        buffer.putInt(0).putInt(length).putInt(STRINGS.length);
+        for (String string : STRINGS) {
+            buffer.putShort((short)(string.length() + 1));
+            buffer.put(string.getBytes());
+            buffer.put((byte)0);
+        }
+        BinaryReader reader = new BinaryReader(
+                Arrays.copyOf(buffer.array(), buffer.position()));
+        MemoryStringList list = new MemoryStringList(
+                new Dataset(new Date(), Modes.MEMORY), reader);
+        list.read(reader);
+        return list;
+    }
+}
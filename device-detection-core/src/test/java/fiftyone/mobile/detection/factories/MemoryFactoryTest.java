@@ -24,13 +24,19 @@ package fiftyone.mobile.detection.factories;
 import fiftyone.mobile.Filename;
 import fiftyone.mobile.StandardUnitTest;
 import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.Match;
 import fiftyone.mobile.detection.Provider;
+import fiftyone.mobile.detection.entities.Signature;
+import fiftyone.mobile.test.common.UserAgentGenerator;
 import org.junit.Test;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Date;
 
 import static fiftyone.mobile.detection.helper.ViableProvider.ensureViableProvider;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -58,4 +64,63 @@ public class MemoryFactoryTest extends StandardUnitTest {
             fileInputStream.close();
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testColumnarMatchesObjects() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        compareColumnar(false);
+        compareColumnar(true);
+    }
+
+    /**
+     * Checks every signature, and the results of detecting the test
+     * User-Agents, are the same when signatures are held in columns as 
+     * when they are held as objects.
+     */
+    private static void compareColumnar(boolean init) throws IOException {
+        Date lastModified = new Date();
+        Dataset objects = MemoryFactory.create(
+                Filename.LITE_PATTERN_V32, init, lastModified, false);
+        Dataset columns = MemoryFactory.create(
+                Filename.LITE_PATTERN_V32, init, lastModified, true);
+        try {
+            assertEquals(objects.signatures.size(), columns.signatures.size());
+            for (int i = 0; i < objects.signatures.size(); i++) {
+                Signature expected = objects.signatures.get(i);
+                Signature actual = columns.signatures.get(i);
+                String message = String.format("Signature '%d'", i);
+                assertEquals(message, expected.getDeviceId(),
+                        actual.getDeviceId());
+                assertEquals(message, expected.getRank(), actual.getRank());
+                assertEquals(message, expected.getLength(),
+                        actual.getLength());
+                assertEquals(message, expected.getNodeOffsets(),
+                        actual.getNodeOffsets());
+                assertEquals(message, expected.toString(),
+                        actual.toString());
+            }
+            Provider objectProvider = new Provider(objects);
+            Provider columnProvider = new Provider(columns);
+            for (String userAgent : UserAgentGenerator.getUniqueUserAgents()) {
+                Match expected = objectProvider.match(userAgent);
+                Match actual = columnProvider.match(userAgent);
+                assertEquals(userAgent, expected.getDeviceId(),
+                        actual.getDeviceId());
+                assertEquals(userAgent, expected.getMethod(),
+                        actual.getMethod());
+                assertEquals(userAgent, expected.getDifference(),
+                        actual.getDifference());
+                assertEquals(userAgent, expected.getSignature() == null,
+                        actual.getSignature() == null);
+                if (expected.getSignature() != null) {
+                    assertEquals(userAgent, 
+                            expected.getSignature().getIndex(),
+                            actual.getSignature().getIndex());
+                }
+            }
+        } finally {
+            objects.close();
+            columns.close();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.query;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+
+import java.util.BitSet;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class ProfileBitmapTest extends DetectionTestSupport {
+
+    private static final int SIZE = 1000;
+
+    @Test
+    public void contains() {
+        ProfileBitmap bitmap = create(new int[] { 0, 63, 64, 999 });
+        assertEquals(4, bitmap.cardinality());
+        assertTrue(bitmap.contains(63));
+        assertTrue(bitmap.contains(999));
+        assertFalse(bitmap.contains(1));
+        assertFalse(bitmap.contains(-1));
+        assertFalse(bitmap.contains(SIZE));
+    }
+
+    @Test
+    public void allAndEmpty() {
+        assertEquals(SIZE, ProfileBitmap.all(SIZE).cardinality());
+        assertTrue(ProfileBitmap.empty(SIZE).isEmpty());
+        assertEquals(SIZE, ProfileBitmap.empty(SIZE).not().cardinality());
+        assertTrue(ProfileBitmap.all(SIZE).not().isEmpty());
+    }
+
+    @Test
+    public void operationsSparse() {
+        validate(10, 20);
+    }
+
+    @Test
+    public void operationsDense() {
+        validate(400, 600);
+    }
+
+    @Test
+    public void operationsMixed() {
+        validate(5, 700);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void differentSize() {
+        ProfileBitmap.all(10).and(ProfileBitmap.all(11));
+    }
+
+    /**
+     * Compares the results of the operations with those of a BitSet for
+     * random sets containing the numbers of positions provided.
+     */
+    private static void validate(int count1, int count2) {
+        Random random = new Random(count1 * 31 + count2);
+        BitSet set1 = randomSet(random, count1);
+        BitSet set2 = randomSet(random, count2);
+        ProfileBitmap bitmap1 = create(toArray(set1));
+        ProfileBitmap bitmap2 = create(toArray(set2));
+
+        BitSet and = (BitSet)set1.clone();
+        and.and(set2);
+        assertArrayEquals(toArray(and), bitmap1.and(bitmap2).toArray());
+        assertArrayEquals(toArray(and), bitmap2.and(bitmap1).toArray());
+
+        BitSet or = (BitSet)set1.clone();
+        or.or(set2);
+        assertArrayEquals(toArray(or), bitmap1.or(bitmap2).toArray());
+        assertArrayEquals(toArray(or), bitmap2.or(bitmap1).toArray());
+
+        BitSet andNot = (BitSet)set1.clone();
+        andNot.andNot(set2);
+        assertArrayEquals(toArray(andNot), bitmap1.andNot(bitmap2).toArray());
+
+        BitSet not = (BitSet)set1.clone();
+        not.flip(0, SIZE);
+        assertArrayEquals(toArray(not), bitmap1.not().toArray());
+        assertEquals(not.cardinality(), bitmap1.not().cardinality());
+    }
+
+    private static ProfileBitmap create(int[] positions) {
+        return ProfileBitmap.fromSorted(SIZE, positions, positions.length);
+    }
+
+    private static BitSet randomSet(Random random, int count) {
+        BitSet set = new BitSet(SIZE);
+        while (set.cardinality() < count) {
+            set.set(random.nextInt(SIZE));
+        }
+        return set;
+    }
+
+    private static int[] toArray(BitSet set) {
+        int[] result = new int[set.cardinality()];
+        for (int i = set.nextSetBit(0), r = 0; i >= 0;
+                i = set.nextSetBit(i + 1)) {
+            result[r++] = i;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,93 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.readers;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class SegmentedBinaryReaderTest extends DetectionTestSupport {
+
+    private static final int SEGMENT_SIZE = 8;
+
+    /**
+     * Reads the same values from a single buffer and from segments at every
+     * start position so that values spanning segments are included.
+     */
+    @Test
+    public void sameAsSingleBuffer() {
+        byte[] data = createData(61);
+        for (int start = 0; start < SEGMENT_SIZE; start++) {
+            BinaryReader expected = new BinaryReader(data);
+            BinaryReader actual = new SegmentedBinaryReader(split(data));
+            expected.setPos(start);
+            actual.setPos((long)start);
+            while (expected.getPos() + 12 <= data.length) {
+                assertEquals(expected.getPos(), actual.getLongPos());
+                assertEquals(expected.readInt32(), actual.readInt32());
+                assertEquals(expected.readInt16(), actual.readInt16());
+                assertEquals(expected.readUInt16(), actual.readUInt16());
+                assertEquals(expected.readByte(), actual.readByte());
+                assertArrayEquals(expected.readBytes(3), actual.readBytes(3));
+            }
+        }
+    }
+
+    @Test
+    public void readBytesAcrossSegments() {
+        byte[] data = createData(40);
+        BinaryReader reader = new SegmentedBinaryReader(split(data));
+        reader.setPos(3L);
+        assertArrayEquals(Arrays.copyOfRange(data, 3, 37),
+                reader.readBytes(34));
+        assertEquals(37, reader.getPos());
+    }
+
+    private static byte[] createData(int length) {
+        byte[] data = new byte[length];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte)(i * 37 + 200);
+        }
+        return data;
+    }
+
+    private static ByteBuffer[] split(byte[] data) {
+        ByteBuffer[] segments =
+                new ByteBuffer[(data.length + SEGMENT_SIZE - 1) / SEGMENT_SIZE];
+        for (int i = 0; i < segments.length; i++) {
+            int start = i * SEGMENT_SIZE;
+            segments[i] = ByteBuffer.wrap(Arrays.copyOfRange(data, start,
+                    Math.min(start + SEGMENT_SIZE, data.length)))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return segments;
+    }
+}
@@ -0,0 +1,56 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class CardinalityEstimatorTest extends DetectionTestSupport {
+
+    @Test
+    public void smallCardinality() {
+        CardinalityEstimator estimator = new CardinalityEstimator(12);
+        for (int i = 0; i < 100; i++) {
+            estimator.offer("key " + i);
+            estimator.offer("key " + i);
+        }
+        assertEquals(100, estimator.estimate(), 3);
+    }
+
+    /**
+     * The estimate should be within a few standard errors of the actual
+     * number of distinct keys.
+     */
+    @Test
+    public void largeCardinality() {
+        CardinalityEstimator estimator = new CardinalityEstimator(12);
+        for (int i = 0; i < 100000; i++) {
+            estimator.offer("Mozilla/5.0 " + i);
+        }
+        assertEquals(100000, estimator.estimate(), 100000 * 0.05);
+    }
+}
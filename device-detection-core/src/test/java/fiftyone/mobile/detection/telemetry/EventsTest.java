@@ -0,0 +1,208 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+import fiftyone.mobile.Filename;
+import fiftyone.mobile.StandardUnitTest;
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.Match;
+import fiftyone.mobile.detection.Provider;
+import fiftyone.mobile.detection.factories.MemoryFactory;
+import fiftyone.mobile.test.common.UserAgentGenerator;
+import fiftyone.properties.MatchMethods;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Checks the stages reported to an {@link IEventListener} during data set
+ * loading and detection.
+ */
+public class EventsTest extends StandardUnitTest {
+
+    private static final int USER_AGENTS = 200;
+
+    /**
+     * Records the stages reported and checks that each stage ends with the
+     * event returned when it began, in the reverse order the stages began.
+     */
+    private static class RecordingListener implements IEventListener {
+
+        private final LinkedList<Object> open = new LinkedList<Object>();
+        private final LinkedList<EventType> openTypes = 
+                new LinkedList<EventType>();
+        private final Map<EventType, Integer> counts = 
+                new EnumMap<EventType, Integer>(EventType.class);
+        private final List<String> details = new ArrayList<String>();
+        private int lastNodesEvaluated = 0;
+        private int lastSignaturesCompared = 0;
+
+        @Override
+        public synchronized Object begin(EventType type) {
+            Object event = new Object();
+            open.push(event);
+            openTypes.push(type);
+            return event;
+        }
+
+        @Override
+        public synchronized void end(Object event, EventType type,
+                String detail, int nodesEvaluated, int signaturesCompared) {
+            assertTrue(type + " ended without beginning", open.size() > 0);
+            assertTrue(type + " ended out of order", open.pop() == event);
+            assertEquals(openTypes.pop(), type);
+            assertTrue(nodesEvaluated >= lastNodesEvaluated);
+            assertTrue(signaturesCompared >= lastSignaturesCompared);
+            lastNodesEvaluated = nodesEvaluated;
+            lastSignaturesCompared = signaturesCompared;
+            Integer count = counts.get(type);
+            counts.put(type, count == null ? 1 : count + 1);
+            if (detail != null) {
+                details.add(detail);
+            }
+        }
+
+        synchronized int getCount(EventType type) {
+            Integer count = counts.get(type);
+            return count == null ? 0 : count;
+        }
+
+        synchronized void reset() {
+            assertEquals("Stages not ended", 0, open.size());
+            counts.clear();
+            details.clear();
+            lastNodesEvaluated = 0;
+            lastSignaturesCompared = 0;
+        }
+    }
+
+    @After
+    public void removeListener() {
+        Events.setListener(null);
+    }
+
+    @Test
+    public void loadStages() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        RecordingListener listener = new RecordingListener();
+        Events.setListener(listener);
+        Dataset dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32, true);
+        try {
+            assertEquals(1, listener.getCount(EventType.DATASET_LOAD));
+            assertEquals(1, listener.getCount(EventType.DATASET_INIT));
+            assertEquals("MEMORY", listener.details.get(0));
+            listener.reset();
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    @Test
+    public void detectionStages() throws IOException {
+        assumeFileExists(Filename.LITE_PATTERN_V32);
+        Dataset dataSet = MemoryFactory.create(Filename.LITE_PATTERN_V32);
+        try {
+            Provider provider = new Provider(dataSet, USER_AGENTS * 2);
+            RecordingListener listener = new RecordingListener();
+            Events.setListener(listener);
+            int count = 0;
+            for (String userAgent : UserAgentGenerator.getUserAgentsIterable(
+                    USER_AGENTS, 10)) {
+                Match match = provider.match(userAgent);
+                if (listener.getCount(EventType.USER_AGENT_CACHE_LOAD) == 0) {
+                    // Duplicate User-Agent found in the cache.
+                    assertEquals(0, listener.counts.size());
+                    continue;
+                }
+                assertEquals(1, 
+                        listener.getCount(EventType.USER_AGENT_CACHE_LOAD));
+                assertStages(listener, match.getMethod());
+                assertEquals(match.getNodesEvaluated(), 
+                        listener.lastNodesEvaluated);
+                assertEquals(match.getSignaturesCompared(), 
+                        listener.lastSignaturesCompared);
+                listener.reset();
+
+                // The same User-Agent is returned from the cache without 
+                // any detection stages.
+                provider.match(userAgent);
+                assertEquals(0, listener.counts.size());
+                count++;
+            }
+            assertTrue(count > 0);
+        } finally {
+            dataSet.close();
+        }
+    }
+
+    /**
+     * Checks the number of each detection stage reported is the number 
+     * expected for the method used.
+     */
+    private static void assertStages(RecordingListener listener, 
+            MatchMethods method) {
+        int numeric = 0, exactSearches = 0, nearest = 0, closest = 0;
+        switch (method) {
+            case EXACT:
+                exactSearches = 1;
+                break;
+            case NUMERIC:
+                numeric = 1;
+                exactSearches = 2;
+                break;
+            case NEAREST:
+                numeric = 1;
+                exactSearches = 2;
+                nearest = 1;
+                break;
+            case CLOSEST:
+                numeric = 1;
+                exactSearches = 2;
+                nearest = 1;
+                closest = 1;
+                break;
+            default:
+                // No match may have evaluated the User-Agent or not
+                // depending on its length.
+                return;
+        }
+        assertEquals(method.name(), 1, 
+                listener.getCount(EventType.MATCH_EVALUATE));
+        assertEquals(method.name(), exactSearches, 
+                listener.getCount(EventType.MATCH_EXACT_SEARCH));
+        assertEquals(method.name(), numeric, 
+                listener.getCount(EventType.MATCH_EVALUATE_NUMERIC));
+        assertEquals(method.name(), nearest, 
+                listener.getCount(EventType.MATCH_NEAREST));
+        assertEquals(method.name(), closest, 
+                listener.getCount(EventType.MATCH_CLOSEST));
+    }
+}
@@ -0,0 +1,166 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.telemetry;
+
+import fiftyone.mobile.DetectionTestSupport;
+import fiftyone.mobile.TestType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(TestType.TypeUnit.class)
+public class SpaceSavingTest extends DetectionTestSupport {
+
+    /**
+     * Frequent keys mixed with many keys seen once must be reported with
+     * counts no lower than their actual counts.
+     */
+    @Test
+    public void frequentKeysFound() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        for (int i = 0; i < 1000; i++) {
+            sketch.offer("A");
+            if (i % 2 == 0) {
+                sketch.offer("B");
+            }
+            sketch.offer("unique " + i);
+        }
+        List<SpaceSaving.Entry> top = sketch.getTop(2);
+        assertEquals(2, top.size());
+        assertEquals("A", top.get(0).getKey());
+        assertEquals("B", top.get(1).getKey());
+        assertTrue(top.get(0).getCount() >= 1000);
+        assertTrue(top.get(1).getCount() >= 500);
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 1000);
+        assertEquals(2500, sketch.getTotal());
+    }
+
+    @Test
+    public void exactBelowCapacity() {
+        SpaceSaving sketch = new SpaceSaving(10);
+        for (int i = 0; i < 5; i++) {
+            for (int j = 0; j <= i; j++) {
+                sketch.offer("key " + i);
+            }
+        }
+        List<SpaceSaving.Entry> top = sketch.getTop(Integer.MAX_VALUE);
+        assertEquals(5, top.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals("key " + (4 - i), top.get(i).getKey());
+            assertEquals(5 - i, top.get(i).getCount());
+            assertEquals(0, top.get(i).getError());
+        }
+    }
+
+    /**
+     * Keys offered by several threads are counted by different shards. The
+     * merged counts must be no lower than the actual counts, and no higher
+     * than the actual counts plus their errors.
+     */
+    @Test
+    public void shardsMerged() throws InterruptedException {
+        final SpaceSaving sketch = new SpaceSaving(10, 4);
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 1000; i++) {
+                        sketch.offer("A");
+                        if (i % 4 == 0) {
+                            sketch.offer("B");
+                        }
+                        sketch.offer("unique " + thread + " " + i);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8 * 2250, sketch.getTotal());
+        List<SpaceSaving.Entry> top = sketch.getTop(2);
+        assertEquals("A", top.get(0).getKey());
+        assertEquals("B", top.get(1).getKey());
+        assertTrue(top.get(0).getCount() >= 8000);
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 8000);
+        assertTrue(top.get(1).getCount() >= 2000);
+        assertTrue(top.get(1).getCount() - top.get(1).getError() <= 2000);
+    }
+
+    /**
+     * A key missing from a shard which has used all its counters gains the
+     * lowest count of that shard as it may have been evicted from it.
+     */
+    @Test
+    public void missingFromFullShard() throws InterruptedException {
+        final SpaceSaving sketch = new SpaceSaving(2, 2);
+        // Run on threads with known shards so that each shard sees
+        // different keys.
+        Thread first = null;
+        Thread second = null;
+        while (first == null || second == null) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    if (Thread.currentThread().getId() % 2 == 0) {
+                        sketch.offer("A");
+                        sketch.offer("A");
+                        sketch.offer("A");
+                    } else {
+                        sketch.offer("B");
+                        sketch.offer("C");
+                        sketch.offer("C");
+                    }
+                }
+            });
+            if (thread.getId() % 2 == 0 && first == null) {
+                first = thread;
+            } else if (thread.getId() % 2 == 1 && second == null) {
+                second = thread;
+            }
+        }
+        first.start();
+        second.start();
+        first.join();
+        second.join();
+        List<SpaceSaving.Entry> top = sketch.getTop(Integer.MAX_VALUE);
+        assertEquals(3, top.size());
+        // The second shard is full with a lowest count of 1.
+        assertEquals("A", top.get(0).getKey());
+        assertEquals(4, top.get(0).getCount());
+        assertEquals(1, top.get(0).getError());
+        // The first shard is not full so adds nothing.
+        assertEquals("C", top.get(1).getKey());
+        assertEquals(2, top.get(1).getCount());
+        assertEquals(0, top.get(1).getError());
+    }
+}
@@ -213,6 +213,19 @@ public abstract class ApiBase extends DetectionTestSupport {
                                  deviceIdByteArray));
         assertTrue(Arrays.equals(matchDeviceIdArray.getDeviceIdAsByteArray(),
                                  deviceIdByteArray));
+        
+        // Test the bulk resolution methods including an invalid device Id.
+        Profile[][] fromStrings = getProvider().resolveDeviceIds(
+                new String[] { deviceIdString, "invalid", null });
+        Profile[][] fromArrays = getProvider().resolveDeviceIds(
+                new byte[][] { deviceIdByteArray, null });
+        assertTrue(Arrays.equals(fromStrings[0], 
+                                 matchDeviceIdString.getProfiles()));
+        assertTrue(Arrays.equals(fromArrays[0], 
+                                 matchDeviceIdArray.getProfiles()));
+        assertTrue(fromStrings[1] == null);
+        assertTrue(fromStrings[2] == null);
+        assertTrue(fromArrays[1] == null);
     }
     
     /**
@@ -0,0 +1,282 @@
+/*
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited.
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ *
+ * This Source Code Form is the subject of the following patent
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY:
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ */
+
+package fiftyone.device.example.illustration;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.Match;
+import fiftyone.mobile.detection.Provider;
+import fiftyone.mobile.detection.factories.StreamFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <!-- tutorial -->
+ * Example comparing device detection performed by a fixed pool of platform
+ * threads with detection performed by a virtual thread per request.
+ * <p>
+ * Web servers using virtual threads start a new thread for every request.
+ * Each request is simulated by a task that performs a detection and then
+ * blocks for a configurable time to represent the other I/O a request
+ * handler performs. Lazily loaded entities are published without locking
+ * and the caches use java.util.concurrent locks so detection does not pin
+ * a virtual thread to its carrier thread.
+ * <p>
+ * Virtual threads require Java 21 or later. They are created by reflection
+ * so the example compiles against earlier versions and only the platform
+ * thread benchmark runs when they are not available.
+ * <ol>
+ *  <li>Creating an executor that starts a virtual thread per task
+ *  <pre class="prettyprint lang-java">
+ *  <code>
+ *      ExecutorService executor = (ExecutorService)Executors.class
+ *          .getMethod("newVirtualThreadPerTaskExecutor")
+ *          .invoke(null);
+ *  </code>
+ *  </pre>
+ *  <li>Performing a detection for each request
+ *  <pre class="prettyprint lang-java">
+ *  <code>
+ *      Match match = provider.match(userAgent);
+ *  </code>
+ *  </pre>
+ * </ol>
+ * You can run {@link VirtualThreadBenchmark#main} to compare the two on your
+ * system.
+ * <!-- tutorial -->
+ */
+public class VirtualThreadBenchmark {
+    // Snippet Start
+    
+    // the default number of platform threads in the fixed pool.
+    private static final int DEFAULT_PLATFORM_THREADS = 200;
+    
+    // the default time each request blocks for after detection.
+    private static final int DEFAULT_BLOCKING_MILLIS = 1;
+    
+    // User-Agents to detect, one per request.
+    private final List<String> userAgents;
+    
+    // time each request blocks for after detection.
+    private final int blockingMillis;
+    
+    // total time in nanoseconds spent performing detections.
+    private final AtomicLong detectionNano = new AtomicLong();
+    
+    // number of requests that failed.
+    private final AtomicInteger failures = new AtomicInteger();
+    
+    // elapsed time in nanoseconds of the last run.
+    private long elapsedNano;
+    
+    /**
+     * Creates a new benchmark for the User-Agents in the file.
+     * 
+     * @param userAgentFile path to a text file of User-Agents
+     * @param maxUserAgents most User-Agents to read from the file
+     * @param blockingMillis time each request blocks for after detection
+     * @throws IOException if there was a problem reading the file
+     */
+    public VirtualThreadBenchmark(
+            String userAgentFile, 
+            int maxUserAgents,
+            int blockingMillis) throws IOException {
+        if (new File(userAgentFile).exists() == false) {
+            throw new IllegalArgumentException(String.format(
+                    "File '%s' does not exist.",
+                    userAgentFile));
+        }
+        this.blockingMillis = blockingMillis;
+        this.userAgents = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(
+                new FileReader(userAgentFile));
+        try {
+            String userAgent;
+            while (userAgents.size() < maxUserAgents &&
+                   (userAgent = reader.readLine()) != null) {
+                userAgents.add(userAgent);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+    
+    /**
+     * Returns an executor that starts a new virtual thread for each task, or
+     * null if virtual threads are not available.
+     * 
+     * @return executor or null
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService)Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+    
+    /**
+     * Submits a request for every User-Agent to the executor and waits for
+     * them all to complete. The executor is shut down afterwards.
+     * 
+     * @param provider to use for detection
+     * @param executor to run the requests
+     * @return number of requests completed per second
+     * @throws InterruptedException 
+     */
+    public double run(final Provider provider, ExecutorService executor) 
+            throws InterruptedException {
+        final CountDownLatch remaining = new CountDownLatch(userAgents.size());
+        detectionNano.set(0);
+        failures.set(0);
+        long start = System.nanoTime();
+        try {
+            for (final String userAgent : userAgents) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            long detectionStart = System.nanoTime();
+                            Match match = provider.match(userAgent);
+                            match.getDeviceId();
+                            detectionNano.addAndGet(
+                                    System.nanoTime() - detectionStart);
+                            if (blockingMillis > 0) {
+                                Thread.sleep(blockingMillis);
+                            }
+                        } catch (Exception ex) {
+                            failures.incrementAndGet();
+                        } finally {
+                            remaining.countDown();
+                        }
+                    }
+                });
+            }
+            remaining.await();
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        elapsedNano = System.nanoTime() - start;
+        return getRequestsPerSecond();
+    }
+    
+    /**
+     * @return requests completed per second in the last run.
+     */
+    public double getRequestsPerSecond() {
+        return userAgents.size() / (elapsedNano / 1000000000d);
+    }
+    
+    /**
+     * @return average detection time in milliseconds in the last run.
+     */
+    public double getAverageDetectionTime() {
+        return (detectionNano.doubleValue() / 1000000) / userAgents.size();
+    }
+    
+    /**
+     * @return number of requests that failed in the last run.
+     */
+    public int getFailures() {
+        return failures.get();
+    }
+    
+    /**
+     * Runs the benchmark with platform threads and then virtual threads if
+     * they are available.
+     * 
+     * @param dataSet initialised and ready for device detection
+     * @param platformThreads size of the platform thread pool
+     * @throws InterruptedException 
+     */
+    public void runAll(Dataset dataSet, int platformThreads) 
+            throws InterruptedException {
+        Provider provider = new Provider(dataSet);
+        
+        // Warm the caches so both runs start from the same state.
+        run(provider, Executors.newFixedThreadPool(platformThreads));
+        
+        run(provider, Executors.newFixedThreadPool(platformThreads));
+        print(String.format("Platform threads (%d)", platformThreads));
+        
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            run(provider, virtual);
+            print("Virtual thread per request");
+        } else {
+            System.out.println("Virtual threads are not available.");
+        }
+    }
+    
+    private void print(String name) {
+        System.out.printf("%s\r\n", name);
+        System.out.printf("  Requests per second: %.0f\r\n", 
+                getRequestsPerSecond());
+        System.out.printf("  Average detection milliseconds: %f\r\n", 
+                getAverageDetectionTime());
+        System.out.printf("  Failures: %d\r\n", getFailures());
+    }
+
+    /**
+     * Compares platform and virtual threads using a stream data set read 
+     * from the file provided.
+     * 
+     * @param args data file, User-Agents file, optional number of platform
+     * threads and optional milliseconds each request blocks for.
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public static void main(String[] args) 
+            throws IOException, InterruptedException {
+        if (args.length < 2) {
+            throw new IllegalArgumentException("Must provide two data files.");
+        }
+        int platformThreads = args.length >= 3 ? 
+                Integer.parseInt(args[2]) : DEFAULT_PLATFORM_THREADS;
+        int blockingMillis = args.length >= 4 ? 
+                Integer.parseInt(args[3]) : DEFAULT_BLOCKING_MILLIS;
+        VirtualThreadBenchmark bm = new VirtualThreadBenchmark(
+                args[1], Integer.MAX_VALUE, blockingMillis);
+        Dataset dataSet = StreamFactory.create(args[0], false);
+        try {
+            System.out.printf("Benchmarking stream file dataset: %s\r\n", 
+                    args[0]);
+            bm.runAll(dataSet, platformThreads);
+        } finally {
+            dataSet.close();
+        }
+    }
+    // Snippet End
+}
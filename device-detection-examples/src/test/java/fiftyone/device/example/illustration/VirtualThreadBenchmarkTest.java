@@ -0,0 +1,75 @@
+/*
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited.
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ *
+ * This Source Code Form is the subject of the following patent
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY:
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ */
+
+package fiftyone.device.example.illustration;
+
+import fiftyone.device.example.Shared;
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.Provider;
+import fiftyone.mobile.detection.factories.StreamFactory;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+
+public class VirtualThreadBenchmarkTest {
+
+    private final org.slf4j.Logger logger = 
+            LoggerFactory.getLogger(VirtualThreadBenchmarkTest.class);
+    private VirtualThreadBenchmark bm;
+    private Dataset dataSet;
+    
+    @Before
+    public void setUp() throws IOException {
+        bm = new VirtualThreadBenchmark(
+                Shared.getGoodUserAgentsFile(), 5000, 1);
+        dataSet = StreamFactory.create(Shared.getLitePatternV32(), false);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        dataSet.close();
+    }
+
+    @Test
+    public void testPlatformThreads() throws Exception {
+        bm.run(new Provider(dataSet), Executors.newFixedThreadPool(200));
+        logger.info("Platform threads '{}' requests per second", 
+                bm.getRequestsPerSecond());
+        assertEquals(0, bm.getFailures());
+    }
+    
+    @Test
+    public void testVirtualThreads() throws Exception {
+        ExecutorService executor = 
+                VirtualThreadBenchmark.newVirtualThreadExecutor();
+        assumeTrue(executor != null);
+        bm.run(new Provider(dataSet), executor);
+        logger.info("Virtual threads '{}' requests per second", 
+                bm.getRequestsPerSecond());
+        assertEquals(0, bm.getFailures());
+    }
+}
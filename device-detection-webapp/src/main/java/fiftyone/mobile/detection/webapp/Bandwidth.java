@@ -50,6 +50,7 @@ class Bandwidth {
     private static final String COOKIE_NAME = "51D_Bandwidth";
     private static final String SESSION_KEY = "51D_Stats";
     private static final String COOKIE_DELIM = "|";
+    private static final String PROPERTY_NAME = "JavascriptBandwidth";
 
     static void process(HttpServletRequest req, HttpServletResponse resp,
                         HttpSession session, Cookie[] cookies) {
@@ -120,6 +121,22 @@ class Bandwidth {
         session.setAttribute(SESSION_KEY, stats);
     } 
     
+    /**
+     * Returns true if the active data set contains the bandwidth monitoring 
+     * JavaScript property. Does not perform device detection.
+     * 
+     * @param request current HttpServletRequest.
+     * @return true if bandwidth monitoring may be available for the request.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    static boolean isAvailable(HttpServletRequest request) 
+            throws IOException {
+        WebProvider provider = WebProvider.getActiveProvider(
+                request.getServletContext());
+        return provider != null && 
+               provider.dataSet.get(PROPERTY_NAME) != null;
+    }
+    
     /**
      * Returns the bandwidth monitoring JavaScript for the current request.
      * 
@@ -130,7 +147,7 @@ class Bandwidth {
     static String getJavascript(HttpServletRequest request) throws IOException {
         Match match = WebProvider.getMatch(request);
         if (match != null) {
-            Values values = match.getValues("JavascriptBandwidth");
+            Values values = match.getValues(PROPERTY_NAME);
             if (values != null) {
                 return values.toString();
             }
@@ -36,11 +36,78 @@ public class Constants {
      */
     public static final String MEMORY_MODE = "MEMORY_MODE";
     
+    /**
+     * Filter parameter in the web.xml file which if True defers device 
+     * detection until the match is first used. Defaults to False.
+     */
+    public static final String LAZY_DETECTION = "LAZY_DETECTION";
+    
+    /**
+     * Filter parameter in the web.xml file which if True, when lazy 
+     * detection is enabled, still performs device detection for requests 
+     * with cookies so that bandwidth can be monitored. Defaults to False.
+     */
+    public static final String LAZY_BANDWIDTH_MONITORING = 
+            "LAZY_BANDWIDTH_MONITORING";
+    
+    /**
+     * Filter parameter in the web.xml file containing a comma separated list
+     * of URL patterns, such as /health, /static/* or *.css, for which the 
+     * filter does not perform device detection.
+     */
+    public static final String EXCLUDE_URL_PATTERNS = "EXCLUDE_URL_PATTERNS";
+    
+    /**
+     * Request attribute containing the {@link DeferredMatch} installed by 
+     * the filter when lazy detection is enabled.
+     */
+    public static final String DEFERRED_MATCH_ATTRIBUTE = "51D_DEFERRED_MATCH";
+    
     /**
      * Context parameter in the web.xml file for controlling usage sharing.
      */
     public static final String SHARE_USAGE = "SHARE_USAGE";
     
+    /**
+     * Context parameter in the web.xml file for the number of User-Agents 
+     * cached by the provider. Defaults to 0 for no cache.
+     */
+    public static final String CACHE_SIZE = "CACHE_SIZE";
+    
+    /**
+     * Context parameter in the web.xml file for the number of rendered 
+     * feature JavaScript responses cached. Defaults to 
+     * {@link #DEFAULT_JAVASCRIPT_CACHE_SIZE}. 0 disables the cache.
+     */
+    public static final String JAVASCRIPT_CACHE_SIZE = "JAVASCRIPT_CACHE_SIZE";
+    
+    /**
+     * Context parameter in the web.xml file which if True replays the 
+     * User-Agents cached by the current provider against a new data file 
+     * when the provider is refreshed. Requires a cache size.
+     */
+    public static final String CACHE_REPLAY = "CACHE_REPLAY";
+    
+    /**
+     * Context parameter in the web.xml file for the maximum number of 
+     * seconds added at random to the data file checks so that servers do not 
+     * all update at the same time. Defaults to {@link #DEFAULT_UPDATE_JITTER}.
+     */
+    public static final String UPDATE_JITTER = "UPDATE_JITTER";
+    
+    /**
+     * Context parameter in the web.xml file which if True reads the parts of
+     * a new stream data set used for detection before it is published.
+     */
+    public static final String WARM_UP = "WARM_UP";
+    
+    /**
+     * Context parameter in the web.xml file for a file in WEB-INF containing
+     * User-Agents, one per line, matched by a new data set before it is 
+     * published.
+     */
+    public static final String WARM_UP_FILE = "WARM_UP_FILE";
+    
     /**
      * Url used to share usage information with 51Degrees.
      */
@@ -52,6 +119,53 @@ public class Constants {
      */
     public static final int NEW_DEVICE_QUEUE_LENGTH = 50;
     
+    /**
+     * Maximum number of requests waiting to be shared with 51Degrees. 
+     * Further requests are not shared until the queue has been sent.
+     */
+    public static final int SHARE_USAGE_BUFFER_SIZE = 1024;
+    
+    /**
+     * Number of recently shared User-Agents remembered so that the same 
+     * User-Agent is not shared repeatedly. Must be a power of 2.
+     */
+    public static final int SHARE_USAGE_RECENT_USER_AGENTS = 4096;
+    
+    /**
+     * When the usage sharing queue is more than half full only one in this
+     * number of new requests is added to it.
+     */
+    public static final int SHARE_USAGE_SAMPLE_RATE = 4;
+    
+    /**
+     * Maximum number of requests shared with 51Degrees in a single batch.
+     */
+    public static final int SHARE_USAGE_MAX_BATCH = 500;
+    
+    /**
+     * The number of seconds after which queued usage data is shared even if
+     * fewer than {@link #NEW_DEVICE_QUEUE_LENGTH} requests are waiting.
+     */
+    public static final int SHARE_USAGE_MAX_DELAY = 5 * 60;
+    
+    /**
+     * The number of seconds to wait before retrying a batch of usage data
+     * which could not be shared. Doubles after each failure.
+     */
+    public static final int SHARE_USAGE_INITIAL_BACKOFF = 30;
+    
+    /**
+     * The maximum number of seconds to wait before retrying a batch of 
+     * usage data which could not be shared.
+     */
+    public static final int SHARE_USAGE_MAX_BACKOFF = 60 * 60;
+    
+    /**
+     * The number of attempts made to share a batch of usage data before it 
+     * is abandoned.
+     */
+    public static final int SHARE_USAGE_MAX_ATTEMPTS = 5;
+    
     /**
      * Timeout in milliseconds before usage sharing is abandoned.
      */
@@ -65,6 +179,14 @@ public class Constants {
     
     public static final String DEFAULT_AUTO = "IMAGE_DEFAULT_AUTO";
     
+    /**
+     * Context parameter in the web.xml file for the maximum number of bytes
+     * of resized images held in memory. Defaults to 
+     * {@link #DEFAULT_IMAGE_MEMORY_CACHE_SIZE}.
+     */
+    public static final String IMAGE_MEMORY_CACHE_SIZE = 
+            "IMAGE_MEMORY_CACHE_SIZE";
+    
     public static final String IMAGE_WIDTH_PARAM = "IMAGE_WIDTH_PARAM";
     
     public static final String IMAGE_HEIGHT_PARAM = "IMAGE_HEIGHT_PARAM";
@@ -94,6 +216,40 @@ public class Constants {
      */
     public static final int FILE_CHECK_DELAYED_START = 5 * 60;
 
+    /**
+     * The default maximum number of seconds added at random to the data file
+     * checks.
+     */
+    public static final int DEFAULT_UPDATE_JITTER = 5 * 60;
+    
+    /**
+     * The default number of rendered feature JavaScript responses cached.
+     */
+    public static final int DEFAULT_JAVASCRIPT_CACHE_SIZE = 1000;
+    
+    /**
+     * The default maximum number of bytes of resized images held in memory.
+     */
+    public static final int DEFAULT_IMAGE_MEMORY_CACHE_SIZE = 32 * 1024 * 1024;
+    
+    /**
+     * The number of images waiting to be resized before requests resize 
+     * images on their own thread.
+     */
+    public static final int IMAGE_RESIZE_QUEUE_LENGTH = 64;
+    
+    /**
+     * The number of seconds to wait after a new provider is published before
+     * the provider it replaced is closed, allowing requests using the 
+     * replaced provider to complete.
+     */
+    public static final int PROVIDER_CLOSE_DELAY = 60;
+    
+    /**
+     * The maximum number of User-Agents read from the warm up file.
+     */
+    public static final int WARM_UP_MAX_USER_AGENTS = 10000;
+
     /**
      * Header fields that should not be shared with 51Degrees.
      */
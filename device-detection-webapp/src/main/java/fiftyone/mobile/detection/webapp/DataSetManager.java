@@ -0,0 +1,406 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import fiftyone.mobile.detection.IndirectDataset;
+import fiftyone.mobile.detection.Match;
+import fiftyone.mobile.detection.WarmUp;
+import fiftyone.mobile.detection.entities.Profile;
+import fiftyone.properties.MatchMethods;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ServletContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Manages the life cycle of the data set used by the {@link WebProvider}
+ * away from the request threads.
+ * <p>
+ * A single low priority daemon thread checks the master data file for
+ * changes, requests automatic updates from 51Degrees if licence keys are
+ * available, and when the data file changes creates, warms up and validates
+ * a new provider before publishing it as the active provider. Requests
+ * continue to use the current provider until the new one is published. If
+ * the new provider fails validation it is closed and the current provider
+ * continues to be used.
+ * <p>
+ * A random delay of up to the number of seconds configured with
+ * {@link Constants#UPDATE_JITTER} is added to every check so that servers
+ * started at the same time do not all check for, download and load new data
+ * files at the same time.
+ * <p>
+ * Objects of this class should not be created directly as they are part of
+ * the internal logic.
+ */
+public class DataSetManager implements Closeable {
+
+    private final static Logger logger = LoggerFactory
+            .getLogger(DataSetManager.class);
+
+    /**
+     * User-Agents which must be matched by a new data set before it is
+     * published.
+     */
+    static final String[] SMOKE_TEST_USER_AGENTS = new String[] {
+        "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 " +
+        "(KHTML, like Gecko) Chrome/58.0.3029.110 Safari/537.36",
+        "Mozilla/5.0 (iPhone; CPU iPhone OS 10_3_1 like Mac OS X) " +
+        "AppleWebKit/603.1.30 (KHTML, like Gecko) Version/10.0 " +
+        "Mobile/14E304 Safari/602.1",
+        "Mozilla/5.0 (Linux; Android 7.0; SM-G930F Build/NRD90M) " +
+        "AppleWebKit/537.36 (KHTML, like Gecko) Chrome/58.0.3029.83 " +
+        "Mobile Safari/537.36"
+    };
+
+    /**
+     * The manager which is currently running, or null if none is running.
+     */
+    private static volatile DataSetManager current;
+
+    private final ServletContext sc;
+    private final File binaryFile;
+    private final List<String> licenceKeys;
+    private final long jitter;
+    private final Random random = new Random();
+    private final ScheduledExecutorService executor;
+
+    /**
+     * Providers which have been replaced and will be closed once requests
+     * that started with them have had time to complete.
+     */
+    private final Queue<WebProvider> retired =
+            new ConcurrentLinkedQueue<WebProvider>();
+
+    /**
+     * Last modified time and length of the master data file when last
+     * loaded. Only used by the manager's thread.
+     */
+    private long lastModified;
+    private long length;
+
+    /**
+     * Constructs a new manager for the binary file.
+     *
+     * @param sc servlet context used to create providers.
+     * @param binaryFile the master data file.
+     * @param licenceKeys used to request updates from 51Degrees, or an empty
+     * list if automatic updates are not required.
+     */
+    public DataSetManager(ServletContext sc, File binaryFile,
+            List<String> licenceKeys) {
+        this.sc = sc;
+        this.binaryFile = binaryFile;
+        this.licenceKeys = licenceKeys;
+        this.jitter = getJitter(sc) * 1000L;
+        this.executor = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable,
+                        "51Degrees-DataSetManager");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @return the manager which is currently running, or null.
+     */
+    static DataSetManager getCurrent() {
+        return current;
+    }
+
+    /**
+     * Creates the active provider if one does not already exist and starts
+     * checking for new data files.
+     */
+    public void start() {
+        current = this;
+        lastModified = binaryFile.lastModified();
+        length = binaryFile.length();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    WebProvider.getActiveProvider(sc);
+                } catch (Error ex) {
+                    // Already logged by the web provider. The provider will
+                    // be created again by the first request.
+                }
+            }
+        });
+        schedule(new Runnable() {
+            @Override
+            public void run() {
+                checkFile();
+            }
+        }, Constants.FILE_CHECK_DELAYED_START, Constants.FILE_CHECK_WAIT);
+        if (licenceKeys.size() > 0) {
+            schedule(new AutoUpdate(binaryFile.getAbsolutePath(), licenceKeys),
+                    Constants.AUTO_UPDATE_DELAYED_START,
+                    Constants.AUTO_UPDATE_WAIT);
+        }
+        logger.info(String.format(
+                "Started data set manager for '%s' with up to '%d' seconds " +
+                "of jitter.",
+                binaryFile,
+                jitter / 1000));
+    }
+
+    /**
+     * Requests the active provider is replaced with a new provider for the
+     * master data file whether or not the file has changed. Returns
+     * immediately as the new provider is created by the manager's thread.
+     */
+    void reload() {
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    update();
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            // The manager has been closed.
+        }
+    }
+
+    /**
+     * Stops checking for new data files and closes any providers which
+     * have been replaced but not yet closed.
+     */
+    @Override
+    public void close() {
+        if (current == this) {
+            current = null;
+        }
+        executor.shutdownNow();
+        WebProvider provider;
+        while ((provider = retired.poll()) != null) {
+            closeProvider(provider);
+        }
+    }
+
+    /**
+     * Runs the task after the delay and then repeatedly with the wait
+     * between each run. A random jitter is added to every delay.
+     *
+     * @param task to run.
+     * @param delay before the first run in seconds.
+     * @param wait between runs in seconds.
+     */
+    private void schedule(final Runnable task, long delay, final long wait) {
+        try {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        task.run();
+                    } catch (RuntimeException ex) {
+                        logger.warn("Exception in data set manager task", ex);
+                    } finally {
+                        schedule(task, wait, wait);
+                    }
+                }
+            }, delay * 1000L + nextJitter(), TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            // The manager has been closed.
+        }
+    }
+
+    /**
+     * @return a random number of milliseconds between 0 and the jitter.
+     */
+    private long nextJitter() {
+        return jitter > 0 ? (long)(random.nextDouble() * jitter) : 0;
+    }
+
+    /**
+     * Updates the active provider if the master data file has been modified
+     * since it was last loaded.
+     */
+    private void checkFile() {
+        if (binaryFile.exists() &&
+            (binaryFile.lastModified() != lastModified ||
+             binaryFile.length() != length)) {
+            update();
+        }
+    }
+
+    /**
+     * Creates, warms up and validates a new provider for the master data
+     * file and if valid publishes it as the active provider. The replaced
+     * provider is closed after a delay to allow requests using it to
+     * complete.
+     */
+    private void update() {
+        lastModified = binaryFile.lastModified();
+        length = binaryFile.length();
+        WebProvider newProvider;
+        try {
+            newProvider = WebProvider.create(sc, false);
+        } catch (Error ex) {
+            // Already logged by the web provider. The current provider will
+            // continue to be used.
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            warmUp(newProvider);
+            validate(newProvider);
+            logger.info(String.format(
+                    "Warmed up and validated new provider in '%d' ms.",
+                    System.currentTimeMillis() - start));
+        } catch (Exception ex) {
+            logger.error(String.format(
+                    "New data file '%s' failed validation. The current " +
+                    "provider will continue to be used.",
+                    binaryFile),
+                    ex);
+            closeProvider(newProvider);
+            return;
+        }
+        final WebProvider oldProvider = WebProvider.publish(newProvider);
+        logger.info(String.format(
+                "Published new provider for data file '%s' with published " +
+                "date '%s'.",
+                binaryFile,
+                newProvider.dataSet.published));
+        if (oldProvider != null) {
+            retired.add(oldProvider);
+            try {
+                executor.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (retired.remove(oldProvider)) {
+                            closeProvider(oldProvider);
+                        }
+                    }
+                }, Constants.PROVIDER_CLOSE_DELAY, TimeUnit.SECONDS);
+            } catch (RejectedExecutionException ex) {
+                // The provider will be closed with the manager.
+            }
+        }
+    }
+
+    /**
+     * Loads the parts of the data set needed for detection if warm up is
+     * enabled in the configuration, and matches any User-Agents from the
+     * configured warm up file.
+     *
+     * @param provider to warm up.
+     * @throws IOException if there was a problem accessing the data file or
+     * the warm up file.
+     */
+    private void warmUp(WebProvider provider) throws IOException {
+        if ("True".equalsIgnoreCase(sc.getInitParameter(Constants.WARM_UP)) &&
+            provider.dataSet instanceof IndirectDataset) {
+            long pages = WarmUp.pretouch(
+                    (IndirectDataset)provider.dataSet, WarmUp.MATCH_SECTIONS);
+            logger.debug(String.format(
+                    "Pre-touched '%d' pages of the new data set.", pages));
+        }
+        String warmUpFile = sc.getInitParameter(Constants.WARM_UP_FILE);
+        if (warmUpFile != null) {
+            int count = WarmUp.replay(
+                    provider.dataSet,
+                    String.format("%s%s%s",
+                            sc.getRealPath("WEB-INF"),
+                            File.separator,
+                            warmUpFile),
+                    Constants.WARM_UP_MAX_USER_AGENTS);
+            logger.debug(String.format(
+                    "Warmed up the new data set with '%d' User-Agents.",
+                    count));
+        }
+    }
+
+    /**
+     * Checks that each of the smoke test User-Agents returns a profile for
+     * every component of the provider's data set.
+     *
+     * @param provider to validate.
+     * @throws IOException if a User-Agent could not be matched.
+     */
+    static void validate(WebProvider provider) throws IOException {
+        int components = provider.dataSet.components.size();
+        Match match = provider.createMatch();
+        for (String userAgent : SMOKE_TEST_USER_AGENTS) {
+            provider.match(userAgent, match);
+            Profile[] profiles = match.getProfiles();
+            if (match.getMethod() == MatchMethods.NONE ||
+                profiles == null ||
+                profiles.length != components) {
+                throw new IOException(String.format(
+                        "Smoke test User-Agent '%s' was not matched.",
+                        userAgent));
+            }
+        }
+    }
+
+    /**
+     * Closes the provider logging any exception.
+     */
+    private static void closeProvider(WebProvider provider) {
+        try {
+            provider.close();
+        } catch (IOException ex) {
+            logger.warn("Exception closing provider", ex);
+        }
+    }
+
+    /**
+     * Returns the maximum number of seconds of jitter from the
+     * configuration.
+     *
+     * @param sc current ServletContext.
+     * @return the jitter in seconds, or the default if not configured.
+     */
+    private static int getJitter(ServletContext sc) {
+        String value = sc.getInitParameter(Constants.UPDATE_JITTER);
+        if (value != null) {
+            try {
+                return Math.max(0, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException ex) {
+                logger.warn(String.format(
+                        "Invalid value '%s' for '%s'. Default of '%d' " +
+                        "seconds will be used.",
+                        value,
+                        Constants.UPDATE_JITTER,
+                        Constants.DEFAULT_UPDATE_JITTER));
+            }
+        }
+        return Constants.DEFAULT_UPDATE_JITTER;
+    }
+}
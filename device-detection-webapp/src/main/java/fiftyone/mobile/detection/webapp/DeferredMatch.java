@@ -0,0 +1,100 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import fiftyone.mobile.detection.Match;
+import fiftyone.mobile.detection.entities.Values;
+import java.io.IOException;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Handle to the match for a request which performs device detection the 
+ * first time the match or one of its properties is used.
+ * <p>
+ * Installed in the request attribute 
+ * {@link Constants#DEFERRED_MATCH_ATTRIBUTE} by 
+ * {@link FiftyOneDegreesFilter} when {@link Constants#LAZY_DETECTION} is 
+ * enabled. The match is shared with {@link WebProvider#getMatch} so 
+ * detection is only performed once for the request however it is accessed.
+ * <p>
+ * Parallel requests for the same HttpServletRequest instance are not 
+ * supported.
+ */
+public class DeferredMatch {
+
+    private final HttpServletRequest request;
+
+    /**
+     * Constructs a new handle for the request.
+     * 
+     * @param request details of the HTTP request
+     */
+    DeferredMatch(HttpServletRequest request) {
+        this.request = request;
+    }
+
+    /**
+     * Returns the match for the request performing device detection if it
+     * has not already been performed.
+     * 
+     * @return a match object with properties associated with the device
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public Match getMatch() throws IOException {
+        return WebProvider.getMatch(request);
+    }
+
+    /**
+     * Returns the match result as a map performing device detection if it 
+     * has not already been performed.
+     * 
+     * @return a map with properties associated with the device
+     * @throws IOException if there was a problem accessing data file.
+     * @deprecated use getValues methods
+     */
+    @Deprecated
+    public Map<String, String[]> getResult() throws IOException {
+        Match match = getMatch();
+        return match != null ? match.getResults() : null;
+    }
+
+    /**
+     * Returns the values of the property for the request performing device
+     * detection if it has not already been performed.
+     * 
+     * @param propertyName name of the property whose values are required.
+     * @return the values of the property, or null if the property does not
+     * exist.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    public Values getValues(String propertyName) throws IOException {
+        Match match = getMatch();
+        return match != null ? match.getValues(propertyName) : null;
+    }
+
+    /**
+     * @return true if device detection has been performed for the request.
+     */
+    public boolean isDetected() {
+        return WebProvider.hasMatch(request);
+    }
+}
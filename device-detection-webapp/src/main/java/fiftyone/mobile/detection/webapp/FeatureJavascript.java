@@ -0,0 +1,291 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import fiftyone.mobile.detection.Dataset;
+import fiftyone.mobile.detection.cache.IValueLoader;
+import fiftyone.mobile.detection.cache.LruCache;
+import fiftyone.mobile.detection.entities.Property;
+import fiftyone.mobile.detection.entities.Property.PropertyValueType;
+import fiftyone.properties.DetectionConstants;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.servlet.ServletContext;
+import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Feature JavaScript rendered once for a device and set of properties, held
+ * uncompressed and pre-compressed with gzip and deflate along with a hash 
+ * of the content used to form a strong ETag for each encoding.
+ * <p>
+ * Rendered instances are cached for the data set of the active provider
+ * keyed on the device id and the properties requested, so repeat requests 
+ * only need to copy the bytes or confirm the ETag.
+ * <p>
+ * You should not access objects of this class directly or instantiate new
+ * objects using this class as they are part of the internal logic.
+ */
+class FeatureJavascript {
+    
+    /**
+     * Used to log information about activity.
+     */
+    private final static Logger logger = 
+            LoggerFactory.getLogger(FeatureJavascript.class);
+    
+    /**
+     * Cache for the data set of the active provider.
+     */
+    private static volatile Cache current;
+    
+    final byte[] identity;
+    final byte[] gzip;
+    final byte[] deflate;
+    
+    /**
+     * Base 64 MD5 hash of the uncompressed JavaScript.
+     */
+    private final String hash;
+
+    /**
+     * Constructs a new instance compressing the JavaScript.
+     * 
+     * @param javascript to be sent.
+     * @throws IOException 
+     */
+    FeatureJavascript(String javascript) throws IOException {
+        identity = javascript.getBytes("UTF-8");
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        GZIPOutputStream gos = new GZIPOutputStream(bos);
+        gos.write(identity);
+        gos.close();
+        gzip = bos.toByteArray();
+        bos = new ByteArrayOutputStream();
+        DeflaterOutputStream dos = new DeflaterOutputStream(bos);
+        dos.write(identity);
+        dos.close();
+        deflate = bos.toByteArray();
+        try {
+            hash = Base64.encodeBase64String(
+                    MessageDigest.getInstance("MD5").digest(identity));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IOException(ex);
+        }
+    }
+    
+    /**
+     * Returns the strong ETag for the JavaScript sent with the content 
+     * encoding. Each encoding is a different representation so has a 
+     * different ETag.
+     * 
+     * @param encoding gzip, deflate or null if not compressed.
+     * @return the quoted ETag.
+     */
+    String getETag(String encoding) {
+        return encoding == null ? 
+                "\"" + hash + "\"" : 
+                "\"" + hash + "-" + encoding + "\"";
+    }
+    
+    /**
+     * Returns the cache for the data set creating a new one if the data set
+     * has changed since the cache was created.
+     * 
+     * @param sc current ServletContext.
+     * @param dataSet of the active provider.
+     * @return cache for the data set.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    static Cache getCache(ServletContext sc, Dataset dataSet) 
+            throws IOException {
+        Cache cache = current;
+        if (cache == null || cache.dataSet != dataSet) {
+            synchronized (FeatureJavascript.class) {
+                cache = current;
+                if (cache == null || cache.dataSet != dataSet) {
+                    cache = new Cache(dataSet, getCacheSize(sc));
+                    current = cache;
+                }
+            }
+        }
+        return cache;
+    }
+    
+    /**
+     * Returns the number of responses to cache from the configuration.
+     * 
+     * @param sc current ServletContext.
+     * @return the cache size, or the default if not configured or invalid.
+     */
+    private static int getCacheSize(ServletContext sc) {
+        String value = sc.getInitParameter(Constants.JAVASCRIPT_CACHE_SIZE);
+        if (value != null) {
+            try {
+                return Math.max(0, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException ex) {
+                logger.warn(String.format(
+                        "Invalid value '%s' for '%s'. Default size '%d' " +
+                        "will be used.",
+                        value,
+                        Constants.JAVASCRIPT_CACHE_SIZE,
+                        Constants.DEFAULT_JAVASCRIPT_CACHE_SIZE));
+            }
+        }
+        return Constants.DEFAULT_JAVASCRIPT_CACHE_SIZE;
+    }
+    
+    /**
+     * Rendered feature JavaScript for a single data set.
+     */
+    static class Cache {
+        
+        private final Dataset dataSet;
+        
+        /**
+         * Properties which are not JavaScript keyed on their lower case 
+         * names.
+         */
+        private final Map<String, Property> properties = 
+                new HashMap<String, Property>();
+        
+        /**
+         * Properties which are not JavaScript in data set order.
+         */
+        private final List<Property> allProperties = 
+                new ArrayList<Property>();
+        
+        /**
+         * Rendered JavaScript keyed on device id and properties, or null if
+         * caching is disabled.
+         */
+        private final LruCache<String, FeatureJavascript> cache;
+        
+        private Cache(Dataset dataSet, int cacheSize) throws IOException {
+            this.dataSet = dataSet;
+            for (Property property : dataSet.properties) {
+                if (property.valueType != PropertyValueType.JAVASCRIPT) {
+                    properties.put(
+                            property.getName().toLowerCase(Locale.ENGLISH), 
+                            property);
+                    allProperties.add(property);
+                }
+            }
+            this.cache = cacheSize > 0 ?
+                    new LruCache<String, FeatureJavascript>(cacheSize) :
+                    null;
+        }
+        
+        /**
+         * Returns the properties requested by the query in data set order
+         * without duplicates, or all the properties if there is no query.
+         * 
+         * @param query string of property names separated by &amp;.
+         * @return properties which are not JavaScript.
+         */
+        List<Property> getProperties(String query) {
+            if (query == null) {
+                return allProperties;
+            }
+            boolean[] requested = new boolean[dataSet.properties.size()];
+            for (String name : query.split("&")) {
+                Property property = properties.get(
+                        name.toLowerCase(Locale.ENGLISH));
+                if (property != null) {
+                    requested[property.index] = true;
+                }
+            }
+            List<Property> result = new ArrayList<Property>();
+            for (Property property : allProperties) {
+                if (requested[property.index]) {
+                    result.add(property);
+                }
+            }
+            return result;
+        }
+        
+        /**
+         * Returns true if the cookie header overrides the value of one of 
+         * the properties, in which case the JavaScript is specific to the 
+         * request and must not be cached.
+         * 
+         * @param cookie header of the request, or null.
+         * @param requested properties to be rendered.
+         * @return true if the values are overridden.
+         * @throws IOException if there was a problem accessing data file.
+         */
+        boolean hasOverrides(String cookie, List<Property> requested) 
+                throws IOException {
+            if (cookie == null || cookie.contains(
+                    DetectionConstants.PROPERTY_VALUE_OVERRIDE_COOKIE_PREFIX) 
+                    == false) {
+                return false;
+            }
+            for (Property property : requested) {
+                if (cookie.contains(
+                        DetectionConstants.PROPERTY_VALUE_OVERRIDE_COOKIE_PREFIX + 
+                        property.getName() + "=")) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        
+        /**
+         * Returns the JavaScript for the device and properties from the 
+         * cache, using the loader to render it if not present.
+         * 
+         * @param deviceId of the match.
+         * @param requested properties to be rendered.
+         * @param loader used to render the JavaScript.
+         * @return rendered JavaScript.
+         * @throws IOException if there was a problem accessing data file.
+         */
+        FeatureJavascript get(
+                String deviceId, 
+                List<Property> requested,
+                IValueLoader<String, FeatureJavascript> loader) 
+                throws IOException {
+            if (cache == null) {
+                return loader.load(null);
+            }
+            StringBuilder key = new StringBuilder(deviceId);
+            if (requested == allProperties) {
+                key.append('*');
+            } else {
+                for (Property property : requested) {
+                    key.append(',').append(property.index);
+                }
+            }
+            return cache.get(key.toString(), loader);
+        }
+    }
+}
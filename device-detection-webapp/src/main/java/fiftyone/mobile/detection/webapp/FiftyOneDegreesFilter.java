@@ -21,6 +21,9 @@
 package fiftyone.mobile.detection.webapp;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -31,20 +34,88 @@ import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Filter used in the 51Degrees servlet.
  * <p>
+ * By default device detection is performed for every filtered request. If 
+ * the filter parameter {@link Constants#LAZY_DETECTION} is True a 
+ * {@link DeferredMatch} is installed in the request attribute
+ * {@link Constants#DEFERRED_MATCH_ATTRIBUTE} instead and detection is only 
+ * performed when the match is first used. Bandwidth monitoring needs
+ * detection for every request with cookies, so in lazy mode it is only 
+ * performed if the filter parameter 
+ * {@link Constants#LAZY_BANDWIDTH_MONITORING} is also True. Requests 
+ * matching one of the patterns in the filter parameter 
+ * {@link Constants#EXCLUDE_URL_PATTERNS} are passed on without detection 
+ * in either mode.
+ * <p>
  * Objects of this class should not be created directly as they are part of the 
  * internal logic.
  */
 public class FiftyOneDegreesFilter implements Filter {
 
+    private final static Logger logger = LoggerFactory
+            .getLogger(FiftyOneDegreesFilter.class);
+    
+    /**
+     * Number of requests passed on without detection as they matched an 
+     * excluded URL pattern.
+     */
+    private static final AtomicLong excludedRequests = new AtomicLong();
+    
+    /**
+     * Number of requests with a deferred match which completed without 
+     * device detection being performed.
+     */
+    private static final AtomicLong detectionsAvoided = new AtomicLong();
+    
+    /**
+     * True if detection is deferred until the match is used.
+     */
+    private boolean lazy = false;
+    
+    /**
+     * True if bandwidth is monitored when detection is deferred.
+     */
+    private boolean lazyBandwidth = false;
+    
+    /**
+     * Exact paths, path prefixes ending in / and extensions starting with . 
+     * for which detection is not performed.
+     */
+    private final List<String> exactPaths = new ArrayList<String>();
+    private final List<String> pathPrefixes = new ArrayList<String>();
+    private final List<String> extensions = new ArrayList<String>();
+
     public FiftyOneDegreesFilter() {
     }
 
+    /**
+     * @return number of requests passed on without detection as they 
+     * matched an excluded URL pattern.
+     */
+    public static long getExcludedRequests() {
+        return excludedRequests.get();
+    }
+    
+    /**
+     * @return number of requests with a deferred match which completed 
+     * without device detection being performed.
+     */
+    public static long getDetectionsAvoided() {
+        return detectionsAvoided.get();
+    }
+    
     @Override
     public void destroy() {
+        logger.info(String.format(
+                "Device detection avoided for '%d' requests and not " +
+                "performed for '%d' excluded requests.",
+                detectionsAvoided.get(),
+                excludedRequests.get()));
     }
 
     @Override
@@ -52,25 +123,123 @@ public class FiftyOneDegreesFilter implements Filter {
             FilterChain chain) throws IOException, ServletException {
         
         HttpServletRequest httpRequest = (HttpServletRequest)request;
-        if (Bandwidth.getJavascript(httpRequest) != null) {
-            HttpSession session = httpRequest.getSession();
-            Cookie[] cookies = httpRequest.getCookies();
-            String ServletPath = httpRequest.getServletPath();
+        if (isExcluded(httpRequest)) {
+            excludedRequests.incrementAndGet();
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        DeferredMatch deferred = null;
+        if (lazy) {
+            deferred = new DeferredMatch(httpRequest);
+            request.setAttribute(Constants.DEFERRED_MATCH_ATTRIBUTE, deferred);
+        }
+        
+        // In lazy mode only detect for bandwidth monitoring if it has been
+        // enabled and the request could be monitored.
+        if (lazy == false || (
+                lazyBandwidth &&
+                httpRequest.getCookies() != null &&
+                "/51D".equals(httpRequest.getServletPath()) == false &&
+                Bandwidth.isAvailable(httpRequest))) {
+            processBandwidth(httpRequest, (HttpServletResponse)response);
+        }
+        
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (deferred != null && deferred.isDetected() == false) {
+                detectionsAvoided.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void init(FilterConfig fc) throws ServletException {
+        lazy = Boolean.parseBoolean(
+                fc.getInitParameter(Constants.LAZY_DETECTION));
+        lazyBandwidth = Boolean.parseBoolean(
+                fc.getInitParameter(Constants.LAZY_BANDWIDTH_MONITORING));
+        String patterns = fc.getInitParameter(Constants.EXCLUDE_URL_PATTERNS);
+        if (patterns != null) {
+            for (String pattern : patterns.split(",")) {
+                pattern = pattern.trim();
+                if (pattern.startsWith("*.")) {
+                    extensions.add(pattern.substring(1));
+                } else if (pattern.endsWith("/*")) {
+                    pathPrefixes.add(pattern.substring(
+                            0, pattern.length() - 1));
+                } else if (pattern.length() > 0) {
+                    exactPaths.add(pattern);
+                }
+            }
+        }
+        logger.debug(String.format(
+                "Lazy detection '%s', lazy bandwidth monitoring '%s', " +
+                "excluded URL patterns '%s'.",
+                lazy,
+                lazyBandwidth,
+                patterns));
+    }
+    
+    /**
+     * Records bandwidth statistics if the data set provides bandwidth 
+     * monitoring JavaScript for the device.
+     */
+    private static void processBandwidth(HttpServletRequest request, 
+            HttpServletResponse response) throws IOException {
+        if (Bandwidth.getJavascript(request) != null) {
+            HttpSession session = request.getSession();
+            Cookie[] cookies = request.getCookies();
+            String ServletPath = request.getServletPath();
             
             if(!ServletPath.equals("/51D")) {
                 if (cookies != null && session != null) {
                     Bandwidth.process(
-                            (HttpServletRequest)request, 
-                            (HttpServletResponse)response,
+                            request, 
+                            response,
                             session,
                             cookies);
                 }
             }
         }    
-        chain.doFilter(request, response);
     }
-
-    @Override
-    public void init(FilterConfig fc) throws ServletException {
+    
+    /**
+     * Returns true if the path of the request within the application 
+     * matches one of the excluded URL patterns using the servlet mapping 
+     * rules for exact, path prefix and extension patterns.
+     */
+    private boolean isExcluded(HttpServletRequest request) {
+        if (exactPaths.isEmpty() && 
+            pathPrefixes.isEmpty() && 
+            extensions.isEmpty()) {
+            return false;
+        }
+        String path = request.getRequestURI();
+        String contextPath = request.getContextPath();
+        if (path == null) {
+            return false;
+        }
+        if (contextPath != null && path.startsWith(contextPath)) {
+            path = path.substring(contextPath.length());
+        }
+        for (String exactPath : exactPaths) {
+            if (path.equals(exactPath)) {
+                return true;
+            }
+        }
+        for (String prefix : pathPrefixes) {
+            if (path.startsWith(prefix) || 
+                path.equals(prefix.substring(0, prefix.length() - 1))) {
+                return true;
+            }
+        }
+        for (String extension : extensions) {
+            if (path.endsWith(extension)) {
+                return true;
+            }
+        }
+        return false;
     }
 }
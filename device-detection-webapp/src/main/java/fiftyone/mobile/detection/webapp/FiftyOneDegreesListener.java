@@ -26,7 +26,6 @@ import java.io.FileReader;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
-import java.util.Timer;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletContextEvent;
 import javax.servlet.ServletContextListener;
@@ -34,10 +33,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Initialises and manages the automatic update and the newer data check timers.
+ * Initialises and manages the {@link DataSetManager} which performs the 
+ * automatic update and the newer data checks.
  * <p>
- * If a data file was not provided in the Web.xml file the timers will not be 
- * started. Timers stopped upon servlet termination.
+ * If a data file was not provided in the Web.xml file the manager will not be 
+ * started. The manager is stopped upon servlet termination.
  * <p>
  * Objects of this class should not be created directly as they are part of the 
  * internal logic.
@@ -48,17 +48,12 @@ public class FiftyOneDegreesListener implements ServletContextListener {
             .getLogger(FiftyOneDegreesListener.class);
 
     /**
-     * Timer used to check for changes at 51Degrees.
+     * Used to check for changes at 51Degrees and to the file on the disk.
      */
-    private Timer autoUpdateTimer;
-    
-    /**
-     * Timer used to check for changes to the file on the disk.
-     */
-    private Timer fileUpdateTimer;
+    private DataSetManager dataSetManager;
 
     /**
-     * Initialises auto update and new data check timers.
+     * Initialises the data set manager.
      * 
      * @param contextEvent ServletContextEvent.
      */
@@ -69,25 +64,15 @@ public class FiftyOneDegreesListener implements ServletContextListener {
                 contextEvent.getServletContext());
         if (binaryFile != null) {
             
-            // Initialise the auto update service from 51Degrees if licence
-            // keys are available.
+            // Initialise the file system checks and the auto update service 
+            // from 51Degrees if licence keys are available.
             List<String> keys = getLicenceKeys(
                     contextEvent.getServletContext());
-            if (keys.size() > 0) {
-                autoUpdateTimer = new Timer();
-                autoUpdateTimer.schedule(new AutoUpdate(
-                        binaryFile.getAbsolutePath(),
-                        keys),
-                        Constants.AUTO_UPDATE_DELAYED_START * 1000,
-                        Constants.AUTO_UPDATE_WAIT * 1000);
-            }
-
-            // Initialise the auto update based on file system checks.
-            fileUpdateTimer = new Timer();
-            fileUpdateTimer.schedule(
-                    new FileUpdate(this, binaryFile.getAbsolutePath()),
-                    Constants.FILE_CHECK_DELAYED_START * 1000,
-                    Constants.FILE_CHECK_WAIT * 1000);
+            dataSetManager = new DataSetManager(
+                    contextEvent.getServletContext(),
+                    binaryFile,
+                    keys);
+            dataSetManager.start();
         }
         logger.debug("Finished 51Degrees Listener Initialisation");
     }
@@ -118,19 +103,17 @@ public class FiftyOneDegreesListener implements ServletContextListener {
     }
 
     /**
-     * Closes the listener and stops all the update timers.
+     * Closes the listener and stops the data set manager.
      * 
      * @param sce ServletContextEvent.
      */
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
         logger.debug("Destroying 51Degrees Listener");
-        if (autoUpdateTimer != null) {
-            autoUpdateTimer.cancel();
-        }
-        if (fileUpdateTimer != null) {
-            fileUpdateTimer.cancel();
+        if (dataSetManager != null) {
+            dataSetManager.close();
         }
+        ImageCache.close();
         logger.debug("Destroyed 51Degrees Listener");
     }
 }
\ No newline at end of file
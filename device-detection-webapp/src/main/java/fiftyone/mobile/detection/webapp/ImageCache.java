@@ -20,28 +20,118 @@
  * ********************************************************************* */
 package fiftyone.mobile.detection.webapp;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.commons.codec.binary.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Implements image cache. An internal mechanism of storing the resized 
  * versions of an image on disk.
  * <p>
+ * Recently used images are also held in memory up to a maximum number of
+ * bytes, removing the oldest first. Images not in memory are read from disk 
+ * or resized by a bounded pool of worker threads. Only one worker loads each 
+ * image at a time and other requests for the same image wait for its result.
+ * Images are written to a temporary file which is then renamed so a 
+ * partially written image is never read from the cache.
+ * <p>
  * You should not access objects of this class directly or instantiate new 
  * objects using this class as they are part of the internal logic.
  */
 class ImageCache {
 
+    private final static Logger logger = LoggerFactory
+        .getLogger(ImageCache.class);
+    
     /**
      * The number of "chunks" the image cacheFile location should be broken 
      * into.
      */
     private static final int SPLIT_COUNT = 5;
+    
+    /**
+     * Images held in memory keyed on the path of the cache file.
+     */
+    private static final ConcurrentHashMap<String, CachedImage> memory = 
+            new ConcurrentHashMap<String, CachedImage>();
+    
+    /**
+     * Keys of the images in memory in the order they were added.
+     */
+    private static final ConcurrentLinkedQueue<String> added =
+            new ConcurrentLinkedQueue<String>();
+    
+    /**
+     * Total size of the images in memory.
+     */
+    private static final AtomicLong memoryBytes = new AtomicLong();
+    
+    /**
+     * Images being loaded keyed on the path of the cache file.
+     */
+    private static final ConcurrentHashMap<String, Future<byte[]>> loading =
+            new ConcurrentHashMap<String, Future<byte[]>>();
+    
+    /**
+     * Workers used to load images, created when first needed.
+     */
+    private static volatile ThreadPoolExecutor workers;
+    
+    /**
+     * Counters for the images requested, found in memory, read from disk
+     * and resized, and the total time in nanoseconds spent resizing.
+     */
+    private static final AtomicLong requests = new AtomicLong();
+    private static final AtomicLong memoryHits = new AtomicLong();
+    private static final AtomicLong diskHits = new AtomicLong();
+    private static final AtomicLong resizes = new AtomicLong();
+    private static final AtomicLong resizeTime = new AtomicLong();
+    
+    /**
+     * Encoded image and the modification time of the source it was created 
+     * from.
+     */
+    private static class CachedImage {
+        final byte[] bytes;
+        final long sourceModified;
+        CachedImage(byte[] bytes, long sourceModified) {
+            this.bytes = bytes;
+            this.sourceModified = sourceModified;
+        }
+    }
+
+    /**
+     * Runs a task rejected by the workers on the requesting thread. Unlike
+     * {@link ThreadPoolExecutor.CallerRunsPolicy} the task is also run if 
+     * the workers have been shut down, so the future other requests for the
+     * same image wait on is always completed.
+     */
+    static class LoadInline implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable task, 
+                ThreadPoolExecutor executor) {
+            task.run();
+        }
+    }
 
     /**
      * Looks for the local image with the width and height in the cache.
@@ -52,34 +142,298 @@ class ImageCache {
      * exist in the cache.
      * @throws IOException 
      */
-    @SuppressWarnings("resource")
-    synchronized static File lookup(String cacheDirectory, File physicalPath, 
+    static File lookup(String cacheDirectory, File physicalPath, 
             int width, int height) throws IOException {
         return getFile(cacheDirectory, physicalPath.getAbsolutePath(), width, height);
     }
 
     /**
-     * Adds the image at the width and height provided to the cache.
-     * @param imageLocal
-     * @param width
-     * @param height
-     * @param imageAsStream
+     * Returns the encoded image for the cache file from memory, from disk if 
+     * the cache file is not older than the source, or from the resizer which
+     * is then written to the cache file.
+     * 
+     * @param sourceFile the original image.
+     * @param cacheFile for the resized image returned by {@link #lookup}.
+     * @param maxMemoryBytes maximum size of the images held in memory.
+     * @param resizer creates the encoded image from the source.
+     * @return the encoded image.
      * @throws IOException 
      */
-    synchronized static void add(File physicalPath, File cacheFile, int width, 
-            int height, InputStream imageAsStream) throws IOException {
-        new File(cacheFile.getParent()).mkdirs();
-        cacheFile.createNewFile();
-        OutputStream outputStream = new FileOutputStream(cacheFile);
-
-        int read = 0;
-        byte[] bytes = new byte[1024 ^ 2];
-
-        while ((read = imageAsStream.read(bytes)) != -1) {
-            outputStream.write(bytes, 0, read);
+    static byte[] get(final File sourceFile, final File cacheFile, 
+            final long maxMemoryBytes, final Callable<byte[]> resizer)
+            throws IOException {
+        requests.incrementAndGet();
+        final String key = cacheFile.getAbsolutePath();
+        final long sourceModified = sourceFile.lastModified();
+        CachedImage image = memory.get(key);
+        if (image != null && image.sourceModified == sourceModified) {
+            memoryHits.incrementAndGet();
+            return image.bytes;
+        }
+        
+        FutureTask<byte[]> task = new FutureTask<byte[]>(
+                new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                byte[] bytes = load(
+                        sourceFile, cacheFile, sourceModified, resizer);
+                put(key, new CachedImage(bytes, sourceModified), 
+                        maxMemoryBytes);
+                return bytes;
+            }
+        }) {
+            @Override
+            protected void done() {
+                loading.remove(key, this);
+            }
+        };
+        Future<byte[]> future = loading.putIfAbsent(key, task);
+        if (future == null) {
+            future = task;
+            getWorkers().execute(task);
+        }
+        
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            // Waiters are released before done() runs so remove the failed
+            // load here to ensure the next request retries it.
+            loading.remove(key, future);
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException)ex.getCause();
+            }
+            throw new IOException(ex.getCause());
+        }
+    }
+    
+    /**
+     * Stops the worker threads and logs the cache metrics.
+     */
+    static void close() {
+        ThreadPoolExecutor current = workers;
+        workers = null;
+        if (current != null) {
+            current.shutdown();
+        }
+        logger.info(String.format(
+                "Image cache hit rate '%.1f%%' for '%d' requests. " +
+                "Resized '%d' images in an average of '%d' ms.",
+                getHitRate() * 100,
+                requests.get(),
+                resizes.get(),
+                getAverageResizeTime()));
+    }
+    
+    /**
+     * @return the proportion of requests served from memory or disk without
+     * resizing the image.
+     */
+    static double getHitRate() {
+        long total = requests.get();
+        return total > 0 ? 
+                (double)(memoryHits.get() + diskHits.get()) / total : 
+                0;
+    }
+    
+    /**
+     * @return number of requests served from memory.
+     */
+    static long getMemoryHits() {
+        return memoryHits.get();
+    }
+    
+    /**
+     * @return number of requests served from the disk cache.
+     */
+    static long getDiskHits() {
+        return diskHits.get();
+    }
+    
+    /**
+     * @return number of images resized.
+     */
+    static long getResizes() {
+        return resizes.get();
+    }
+    
+    /**
+     * @return average time in milliseconds taken to resize an image.
+     */
+    static long getAverageResizeTime() {
+        long count = resizes.get();
+        return count > 0 ? 
+                TimeUnit.NANOSECONDS.toMillis(resizeTime.get() / count) : 
+                0;
+    }
+    
+    /**
+     * @return number of bytes of images held in memory.
+     */
+    static long getMemoryBytes() {
+        return memoryBytes.get();
+    }
+    
+    /**
+     * Reads the image from the cache file if it is up to date, otherwise
+     * resizes the image and writes it to the cache file.
+     */
+    private static byte[] load(File sourceFile, File cacheFile, 
+            long sourceModified, Callable<byte[]> resizer) throws Exception {
+        if (cacheFile.isFile() && 
+            cacheFile.lastModified() >= sourceModified) {
+            try {
+                byte[] bytes = read(cacheFile);
+                diskHits.incrementAndGet();
+                return bytes;
+            } catch (IOException ex) {
+                logger.debug(String.format(
+                        "Exception reading cached image '%s'.",
+                        cacheFile),
+                        ex);
+            }
+        }
+        
+        long start = System.nanoTime();
+        byte[] bytes = resizer.call();
+        long elapsed = System.nanoTime() - start;
+        resizes.incrementAndGet();
+        resizeTime.addAndGet(elapsed);
+        logger.debug(String.format(
+                "Resized image '%s' in '%d' ms.",
+                sourceFile,
+                TimeUnit.NANOSECONDS.toMillis(elapsed)));
+        
+        try {
+            write(cacheFile, bytes);
+        } catch (IOException ex) {
+            // The image can still be returned from memory.
+            logger.warn(String.format(
+                    "Exception writing cached image '%s'.",
+                    cacheFile),
+                    ex);
+        }
+        return bytes;
+    }
+    
+    /**
+     * Adds the image to memory, removing the oldest images if the maximum 
+     * size is exceeded. Images larger than an eighth of the maximum are not
+     * held in memory.
+     */
+    private static void put(String key, CachedImage image, 
+            long maxMemoryBytes) {
+        if (image.bytes.length > maxMemoryBytes / 8) {
+            return;
+        }
+        CachedImage previous = memory.put(key, image);
+        if (previous != null) {
+            memoryBytes.addAndGet(-previous.bytes.length);
+        } else {
+            added.offer(key);
+        }
+        memoryBytes.addAndGet(image.bytes.length);
+        while (memoryBytes.get() > maxMemoryBytes) {
+            String oldest = added.poll();
+            if (oldest == null) {
+                break;
+            }
+            CachedImage removed = memory.remove(oldest);
+            if (removed != null) {
+                memoryBytes.addAndGet(-removed.bytes.length);
+            }
+        }
+    }
+    
+    /**
+     * Returns the worker pool creating it if needed. When all the workers 
+     * are busy and the queue is full, or the workers have been shut down, 
+     * the requesting thread loads the image itself.
+     */
+    private static ThreadPoolExecutor getWorkers() {
+        ThreadPoolExecutor current = workers;
+        if (current == null) {
+            synchronized (ImageCache.class) {
+                current = workers;
+                if (current == null) {
+                    int threads = Runtime.getRuntime().availableProcessors();
+                    current = new ThreadPoolExecutor(
+                            threads,
+                            threads,
+                            60,
+                            TimeUnit.SECONDS,
+                            new ArrayBlockingQueue<Runnable>(
+                                    Constants.IMAGE_RESIZE_QUEUE_LENGTH),
+                            new ThreadFactory() {
+                                @Override
+                                public Thread newThread(Runnable runnable) {
+                                    Thread thread = new Thread(
+                                            runnable, "51Degrees-ImageCache");
+                                    thread.setDaemon(true);
+                                    return thread;
+                                }
+                            },
+                            new LoadInline());
+                    current.allowCoreThreadTimeOut(true);
+                    workers = current;
+                }
+            }
+        }
+        return current;
+    }
+    
+    /**
+     * Reads all the bytes of the file.
+     */
+    private static byte[] read(File file) throws IOException {
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+                    (int)file.length());
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return bytes.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+    
+    /**
+     * Writes the image to a temporary file in the same directory as the 
+     * cache file and then renames it to the cache file.
+     */
+    private static void write(File cacheFile, byte[] bytes) 
+            throws IOException {
+        File parent = cacheFile.getParentFile();
+        parent.mkdirs();
+        File temp = File.createTempFile(cacheFile.getName(), ".tmp", parent);
+        try {
+            FileOutputStream outputStream = new FileOutputStream(temp);
+            try {
+                outputStream.write(bytes);
+            } finally {
+                outputStream.close();
+            }
+            if (temp.renameTo(cacheFile) == false) {
+                // Some platforms will not rename over an existing file.
+                cacheFile.delete();
+                if (temp.renameTo(cacheFile) == false) {
+                    throw new IOException(String.format(
+                            "Could not rename '%s' to '%s'.",
+                            temp,
+                            cacheFile));
+                }
+            }
+        } finally {
+            if (temp.exists()) {
+                temp.delete();
+            }
         }
-
-        outputStream.close();
     }
 
     /**
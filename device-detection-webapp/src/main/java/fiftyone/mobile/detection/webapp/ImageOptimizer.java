@@ -36,6 +36,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
 
 import javax.imageio.ImageIO;
 import javax.servlet.http.HttpServletRequest;
@@ -267,51 +268,59 @@ class ImageOptimizer {
                 size.width,
                 size.height));
 
-            // If the cached file doesn't exist or is out of date
-            // then create a new cached file and serve this in response
-            // to the request by rewriting the requested URL to the 
-            // static file.
-            if ((cachedFile.exists() == false && cachedFile.isFile()) ||
-                cachedFile.lastModified() < sourceFile.lastModified())
-            {
-                // Shrink the image and store in the cache.
-                BufferedImage image = createBufferedImage(
-                        size.width, 
-                        size.height,
-                        new FileInputStream(sourceFile));
-                ByteArrayOutputStream os = new ByteArrayOutputStream();
-                ImageIO.write(image, 
-                        "image/jpeg".equals(request.getServletContext().getMimeType(
-                            sourceFile.getAbsolutePath())) 
-                        ? "jpg" : "png", os);
-                ByteArrayInputStream imageAsStream = new ByteArrayInputStream(os.toByteArray());
-                ImageCache.add(sourceFile, cachedFile, size.width, size.height, imageAsStream);
-                imageAsStream.close();
-            }
-            
-            // Send the response from the cached file.
-            File responseFile = cachedFile.exists() ? cachedFile : sourceFile;
-            FileInputStream responseStream = new FileInputStream(responseFile);
+            // Get the image from memory, the cache file, or resize it if
+            // the cached file doesn't exist or is out of date.
+            final File source = sourceFile;
+            final int width = size.width;
+            final int height = size.height;
+            final String format = "image/jpeg".equals(
+                    request.getServletContext().getMimeType(
+                        sourceFile.getAbsolutePath())) ? "jpg" : "png";
+            byte[] image;
             try {
-                sendResponse(response, responseStream, responseFile.length());
-            }
-            finally {
-                responseStream.close();
+                image = ImageCache.get(
+                        sourceFile, 
+                        cachedFile, 
+                        getImageMemoryCacheSize(request),
+                        new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() throws IOException {
+                        return resize(source, width, height, format);
+                    }
+                });
+            } catch (IOException ex) {
+                // Send the original image rather than an error.
+                logger.warn(String.format(
+                        "Exception resizing image '%s'. The original image " +
+                        "will be sent.",
+                        sourceFile),
+                        ex);
+                sendFile(response, sourceFile);
+                return;
             }
+            sendResponse(
+                    response, 
+                    new ByteArrayInputStream(image), 
+                    image.length);
         } 
         else {
             // No size has been calculated for the image so return the original 
             // one.
-            FileInputStream responseStream = new FileInputStream(sourceFile);
-            try {
-                sendResponse(response, responseStream, sourceFile.length());
-            }
-            finally {
-                responseStream.close();
-            }            
+            sendFile(response, sourceFile);
         }
     } 
     
+    private static void sendFile(HttpServletResponse response, File file) 
+            throws IOException {
+        FileInputStream responseStream = new FileInputStream(file);
+        try {
+            sendResponse(response, responseStream, file.length());
+        }
+        finally {
+            responseStream.close();
+        }
+    }
+    
     private static void sendResponse(
             HttpServletResponse response, 
             InputStream imageResponse,
@@ -338,6 +347,38 @@ class ImageOptimizer {
         }
     }
     
+    /**
+     * Shrinks the source image and encodes it in the format provided.
+     * @param sourceFile
+     * @param width
+     * @param height
+     * @param format
+     * @return
+     * @throws IOException 
+     */
+    private static byte[] resize(File sourceFile, int width, int height, 
+            String format) throws IOException {
+        FileInputStream inputStream = new FileInputStream(sourceFile);
+        try {
+            BufferedImage image = createBufferedImage(
+                    width, 
+                    height,
+                    inputStream);
+            ByteArrayOutputStream os = new ByteArrayOutputStream();
+            ImageIO.write(image, format, os);
+            return os.toByteArray();
+        } finally {
+            inputStream.close();
+        }
+    }
+    
+    private static long getImageMemoryCacheSize(HttpServletRequest request) {
+        return getIntegerParameter(
+                request, 
+                Constants.IMAGE_MEMORY_CACHE_SIZE, 
+                Constants.DEFAULT_IMAGE_MEMORY_CACHE_SIZE);
+    }
+    
     private static int getDefaultAuto(HttpServletRequest request) {
         return getIntegerParameter(
                 request, 
@@ -23,8 +23,8 @@ package fiftyone.mobile.detection.webapp;
 
 import fiftyone.mobile.detection.Dataset;
 import fiftyone.mobile.detection.Match;
+import fiftyone.mobile.detection.cache.IValueLoader;
 import fiftyone.mobile.detection.entities.Property;
-import fiftyone.mobile.detection.entities.Property.PropertyValueType;
 import fiftyone.mobile.detection.entities.Values;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
@@ -32,11 +32,8 @@ import java.io.IOException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.codec.binary.Base64;
@@ -58,12 +55,8 @@ class JavascriptProvider {
                                StringBuilder javascript) throws IOException {
         
         response.reset();
-        response.setContentType("application/x-javascript");
-        response.setCharacterEncoding("UTF-8");
+        setHeaders(response, dataSet);
         response.setHeader("Vary", "User-Agent");
-        response.setHeader("Cache-Control", "public");
-        response.setHeader("Expires", dataSet.nextUpdate.toString());
-        response.setHeader("Last-Modified", dataSet.published.toString());
         try {
             response.setHeader("ETag", eTagHash(dataSet, request));
         } catch (Exception ex) {
@@ -111,6 +104,13 @@ class JavascriptProvider {
 
     /**
      * Responds with the JavaScript listing the featured properties and values.
+     * <p>
+     * The JavaScript is rendered once for each device and set of requested 
+     * properties and then served from a cache, compressed if the client
+     * accepts gzip or deflate. If the client already has the JavaScript in
+     * the same encoding, identified by the ETag, a 304 response is sent 
+     * without a body.
+     * 
      * @param request
      * @param response
      * @throws IOException 
@@ -119,44 +119,146 @@ class JavascriptProvider {
                                       HttpServletResponse response) 
                                                             throws IOException {
         
-        StringBuilder javascript = new StringBuilder(
-                "// Copyright 51 Degrees Mobile Experts Limited\r\n");
-        Dataset dataSet = 
+        final Dataset dataSet = 
                 WebProvider.getActiveProvider(request.getServletContext()).dataSet;
         final Match match = WebProvider.getMatch(request);
-        List<String> features = new ArrayList<String>();
+        final FeatureJavascript.Cache cache = FeatureJavascript.getCache(
+                request.getServletContext(), dataSet);
+        final List<Property> properties = cache.getProperties(
+                request.getQueryString());
         
-        String query = request.getQueryString();
-        if (query == null) {
-            for(Property property : dataSet.properties) {
-                if (property.valueType != PropertyValueType.JAVASCRIPT) {
-                    getFeatureJavaScript(match, features, property);
-                }
+        IValueLoader<String, FeatureJavascript> loader = 
+                new IValueLoader<String, FeatureJavascript>() {
+            @Override
+            public FeatureJavascript load(String key) throws IOException {
+                return new FeatureJavascript(
+                        renderFeatureJavaScript(match, properties));
             }
+        };
+        FeatureJavascript javascript = 
+                cache.hasOverrides(match.cookie, properties) ?
+                loader.load(null) :
+                cache.get(match.getDeviceId(), properties, loader);
+        
+        byte[] content;
+        String encoding;
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (isAccepted(acceptEncoding, "gzip")) {
+            encoding = "gzip";
+            content = javascript.gzip;
+        } else if (isAccepted(acceptEncoding, "deflate")) {
+            encoding = "deflate";
+            content = javascript.deflate;
+        } else {
+            encoding = null;
+            content = javascript.identity;
+        }
+        String eTag = javascript.getETag(encoding);
+        
+        response.reset();
+        setHeaders(response, dataSet);
+        response.setHeader("Vary", "User-Agent, Accept-Encoding");
+        response.setHeader("ETag", eTag);
+        if (isNotModified(request.getHeader("If-None-Match"), eTag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        if (encoding != null) {
+            response.setHeader("Content-Encoding", encoding);
         }
-        else {
-            Set<String> requestedProperties = 
-                    new HashSet<String>(Arrays.asList(query.split("&")));
-            for(Property property : dataSet.properties) {
-                if (property.valueType != PropertyValueType.JAVASCRIPT) {
-                    for(String name : requestedProperties) {
-                        if (name.equalsIgnoreCase(property.getName())) {
-                            getFeatureJavaScript(match, features, property);
+        response.setContentLength(content.length);
+        response.getOutputStream().write(content);
+        response.getOutputStream().flush();
+        response.getOutputStream().close();
+    }
+    
+    /**
+     * Renders the JavaScript listing the properties and values for the match.
+     * 
+     * @param match for the request.
+     * @param properties to include.
+     * @return JavaScript source.
+     * @throws IOException 
+     */
+    private static String renderFeatureJavaScript(
+            Match match, List<Property> properties) throws IOException {
+        StringBuilder javascript = new StringBuilder(
+                "// Copyright 51 Degrees Mobile Experts Limited\r\n");
+        List<String> features = new ArrayList<String>();
+        for (Property property : properties) {
+            getFeatureJavaScript(match, features, property);
+        }
+        javascript.append(String.format("var FODF={%s};", 
+            stringJoin(",", features)));
+        return javascript.toString();
+    }
+    
+    /**
+     * Sets the content type and caching headers common to all the 
+     * JavaScript responses.
+     */
+    private static void setHeaders(HttpServletResponse response, 
+                                   Dataset dataSet) {
+        response.setContentType("application/x-javascript");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "public");
+        response.setHeader("Expires", dataSet.nextUpdate.toString());
+        response.setHeader("Last-Modified", dataSet.published.toString());
+    }
+    
+    /**
+     * Returns true if the If-None-Match header contains the ETag or *.
+     * 
+     * @param ifNoneMatch header value, or null.
+     * @param eTag of the current content.
+     * @return true if the client already has the content.
+     */
+    static boolean isNotModified(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(eTag) || tag.equals("*")) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Returns true if the Accept-Encoding header includes the encoding with 
+     * a quality greater than zero.
+     * 
+     * @param acceptEncoding header value, or null.
+     * @param encoding to check for.
+     * @return true if the client accepts the encoding.
+     */
+    private static boolean isAccepted(String acceptEncoding, String encoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String item : acceptEncoding.split(",")) {
+            String[] parts = item.split(";");
+            if (parts[0].trim().equalsIgnoreCase(encoding)) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            return Double.parseDouble(
+                                    parameter.substring(2)) > 0;
+                        } catch (NumberFormatException ex) {
+                            return false;
                         }
                     }
                 }
+                return true;
             }
         }
-                
-        javascript.append(String.format("var FODF={%s};", 
-            stringJoin(",", features)));
-        
-        sendJavaScript(
-            request, 
-            response, 
-            WebProvider.getActiveProvider(
-                request.getServletContext()).dataSet,
-            javascript);        
+        return false;
     }
 
     private static void getFeatureJavaScript(
@@ -0,0 +1,112 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Read only view of the headers used for device detection which reads each
+ * header from the request when it is needed rather than copying them.
+ * <p>
+ * Only the headers the data set uses for detection and the Cookie header
+ * are visible. The view must not be used after the request has completed.
+ * <p>
+ * You should not access objects of this class directly or instantiate new
+ * objects using this class as they are part of the internal logic.
+ */
+class RequestHeaders extends AbstractMap<String, String> {
+
+    private static final String COOKIE = "Cookie";
+
+    private final HttpServletRequest request;
+    private final String[] httpHeaders;
+
+    /**
+     * Constructs a new view of the request.
+     *
+     * @param request the current request.
+     * @param httpHeaders names of the headers used for detection.
+     */
+    RequestHeaders(HttpServletRequest request, String[] httpHeaders) {
+        this.request = request;
+        this.httpHeaders = httpHeaders;
+    }
+
+    @Override
+    public String get(Object key) {
+        return isVisible(key) ? request.getHeader((String)key) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (String header : httpHeaders) {
+            if (request.getHeader(header) != null) {
+                return false;
+            }
+        }
+        return request.getHeader(COOKIE) == null;
+    }
+
+    /**
+     * Copies the visible headers which are present. Only used by callers
+     * which iterate over the headers.
+     */
+    @Override
+    public Set<Map.Entry<String, String>> entrySet() {
+        Map<String, String> copy = new HashMap<String, String>();
+        for (String header : httpHeaders) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                copy.put(header, value);
+            }
+        }
+        String cookie = request.getHeader(COOKIE);
+        if (cookie != null) {
+            copy.put(COOKIE, cookie);
+        }
+        return copy.entrySet();
+    }
+
+    /**
+     * Returns true if the key is the Cookie header or a header used for
+     * detection.
+     */
+    private boolean isVisible(Object key) {
+        if (COOKIE.equals(key)) {
+            return true;
+        }
+        for (String header : httpHeaders) {
+            if (header.equals(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,109 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded queue which many threads can add to and a single thread removes
+ * from without locking.
+ * <p>
+ * Adding threads claim a position by incrementing the tail and then publish
+ * the item in the slot for that position. The removing thread takes items
+ * in order and clears each slot before moving the head on, so a slot is
+ * never claimed again until it is empty. When the buffer is full items are
+ * rejected rather than blocking the adding thread.
+ * <p>
+ * You should not access objects of this class directly or instantiate new
+ * objects using this class as they are part of the internal logic.
+ *
+ * @param <E> type of item held.
+ */
+class RingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0;
+
+    /**
+     * Constructs a new buffer.
+     *
+     * @param capacity maximum number of items, rounded up to a power of 2.
+     */
+    RingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException(
+                    "Capacity must be greater than zero.");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        slots = new AtomicReferenceArray<E>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Adds the item to the end of the buffer if there is space. May be
+     * called by any thread.
+     *
+     * @param item to add, not null.
+     * @return true if added, false if the buffer was full.
+     */
+    boolean offer(E item) {
+        long position;
+        do {
+            position = tail.get();
+            if (position - head >= slots.length()) {
+                return false;
+            }
+        } while (tail.compareAndSet(position, position + 1) == false);
+        slots.set((int)(position & mask), item);
+        return true;
+    }
+
+    /**
+     * Removes the item at the start of the buffer. Must only be called by
+     * a single thread.
+     *
+     * @return the item, or null if the buffer is empty or the next item
+     * has not yet been published.
+     */
+    E poll() {
+        long position = head;
+        int slot = (int)(position & mask);
+        E item = slots.get(slot);
+        if (item != null) {
+            slots.set(slot, null);
+            head = position + 1;
+        }
+        return item;
+    }
+
+    /**
+     * @return the number of positions claimed and not yet removed.
+     */
+    int size() {
+        return (int)(tail.get() - head);
+    }
+}
@@ -20,25 +20,27 @@
  * ********************************************************************* */
 package fiftyone.mobile.detection.webapp;
 
-import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.net.HttpURLConnection;
 import java.net.URL;
-import java.net.UnknownHostException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.List;
 import java.util.TimeZone;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.zip.GZIPOutputStream;
-import javax.net.ssl.SSLHandshakeException;
 import javax.servlet.http.HttpServletRequest;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
@@ -51,15 +53,21 @@ import org.slf4j.LoggerFactory;
  * quality of device detection and to spot new devices. Controlled in the 
  * Web.xml file.
  * <p>
+ * Request threads only copy the relevant details of the request into a 
+ * {@link RingBuffer} without locking. The XML is created by the usage 
+ * sharing thread when the data is sent. Requests are recorded the first time
+ * their User-Agent is seen rather than the first time a session is seen, so 
+ * sessions are not created for stateless requests.
+ * <p>
  * You should not access objects of this class directly or instantiate new 
  * objects using this class as they are part of the internal logic.
  */
 class ShareUsage implements Runnable, Closeable {
 
     /**
-     * Used to signal the thread to check whether to send data.
+     * The thread running the instance, signalled when there is data to send.
      */
-    private final Object wait = new Object();
+    private volatile Thread thread;
     /**
      * Used to stop the thread.
      */
@@ -75,11 +83,24 @@ class ShareUsage implements Runnable, Closeable {
     /**
      * Queue to hold new device detail.
      */
-    private final LinkedBlockingQueue<String> queue;
+    private final RingBuffer<UsageRecord> queue;
+    /**
+     * Hashes of the User-Agents recorded recently.
+     */
+    private final AtomicLongArray recentUserAgents;
+    /**
+     * Longest time in milliseconds a record waits before being sent.
+     */
+    private final long maxDelay;
+    /**
+     * Time in milliseconds to wait before the first retry of a failed batch.
+     */
+    private final long initialBackoff;
     /**
-     * The format wanted for dates that are generated.
+     * The format wanted for dates that are generated. Only used by the usage
+     * sharing thread.
      */
-    private static final SimpleDateFormat dateFormat = new SimpleDateFormat(
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat(
             "yyyy-MM-dd'T'HH:mm:ss");
     /**
      * Used to detect local devices.
@@ -87,6 +108,24 @@ class ShareUsage implements Runnable, Closeable {
     private static final String[] local = new String[]{
         "127.0.0.1",
         "0:0:0:0:0:0:0:1"};
+    /**
+     * Number of records offered while the queue is more than half full, 
+     * used to sample one in {@link Constants#SHARE_USAGE_SAMPLE_RATE}.
+     */
+    private final AtomicLong congested = new AtomicLong();
+    /**
+     * Counters for the records queued, discarded by sampling, dropped as the
+     * queue was full, sent successfully and abandoned after failing to send.
+     */
+    private final AtomicLong queued = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    /**
+     * Number of requests to the URL which failed.
+     */
+    private final AtomicLong failedRequests = new AtomicLong();
    
     /**
      * Creates a logger for this class
@@ -101,11 +140,36 @@ class ShareUsage implements Runnable, Closeable {
      */
     ShareUsage(final String newDevicesUrl,
             final NewDeviceDetails newDeviceDetail) {
+        this(newDevicesUrl, 
+             newDeviceDetail, 
+             Constants.SHARE_USAGE_MAX_DELAY * 1000L,
+             Constants.SHARE_USAGE_INITIAL_BACKOFF * 1000L);
+    }
+
+    /**
+     * Sets the enabled state of the class with specific timings.
+     *
+     * @param newDevicesUrl URL of potential new host.
+     * @param newDeviceDetail Controls how much data is sent.
+     * @param maxDelay longest time in milliseconds a record waits before 
+     * being sent.
+     * @param initialBackoff time in milliseconds to wait before the first 
+     * retry of a failed batch. Doubles for each subsequent retry.
+     */
+    ShareUsage(final String newDevicesUrl,
+            final NewDeviceDetails newDeviceDetail,
+            final long maxDelay,
+            final long initialBackoff) {
         // Set TimeZone to UTC
         dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
         this.newDevicesUrl = newDevicesUrl;
         this.newDeviceDetail = newDeviceDetail;
-        this.queue = new LinkedBlockingQueue<String>();
+        this.maxDelay = maxDelay;
+        this.initialBackoff = initialBackoff;
+        this.queue = new RingBuffer<UsageRecord>(
+                Constants.SHARE_USAGE_BUFFER_SIZE);
+        this.recentUserAgents = new AtomicLongArray(
+                Constants.SHARE_USAGE_RECENT_USER_AGENTS);
     }
 
     /**
@@ -116,161 +180,279 @@ class ShareUsage implements Runnable, Closeable {
     public void close() {
         logger.debug("Closing ShareUsage");
         stop = true;
-        synchronized (wait) {
-            wait.notifyAll();
-        }
+        signal();
         logger.debug("Closed ShareUsage");
     }
 
     /**
-     * Runs the thread. Used to send the devices data back to 51Degrees
-     * after the NewDeviceQueueLength has been reached.
+     * @return number of records added to the queue.
+     */
+    long getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * @return number of records discarded by sampling while the queue was
+     * more than half full.
+     */
+    long getSampled() {
+        return sampled.get();
+    }
+
+    /**
+     * @return number of records dropped as the queue was full.
+     */
+    long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of records sent successfully.
+     */
+    long getSent() {
+        return sent.get();
+    }
+
+    /**
+     * @return number of records abandoned after the maximum number of 
+     * attempts to send them failed.
+     */
+    long getFailed() {
+        return failed.get();
+    }
+
+    /**
+     * @return number of requests to the URL which failed.
+     */
+    long getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    /**
+     * Runs the thread. Records are sent in batches when 
+     * {@link Constants#NEW_DEVICE_QUEUE_LENGTH} are waiting or the oldest 
+     * has waited for the maximum delay. A batch which fails to send is 
+     * retried with an exponentially increasing delay, up to 
+     * {@link Constants#SHARE_USAGE_MAX_ATTEMPTS} times. Any remaining 
+     * records are sent when the instance is closed.
      */
     @Override
     public void run() {
         logger.debug("Share usage started.");
-        do {
-            try {
-                synchronized (wait) {
-                    // Wait for something to happen.
-                    wait.wait();
-                }
-                // If there are enough items in the queue, or the thread is
-                // being
-                // stopped send the data.
-                if (queue.size() >= Constants.NEW_DEVICE_QUEUE_LENGTH
-                        || (stop == true && queue.size() > 0)) {
-                    // Prepare the request including all currently queued items.
-                    HttpURLConnection request = (HttpURLConnection) new URL(
-                            newDevicesUrl).openConnection();
-                    request.setReadTimeout(Constants.NEW_URL_TIMEOUT);
-                    request.setRequestMethod("POST");
-                    request.setUseCaches(false);
-                    request.setRequestProperty("Content-Type",
-                            "text/xml; charset=utf-8");
-                    request.setRequestProperty("Content-Encoding", "gzip");
-                    request.setDoInput(true);
-                    request.setDoOutput(true);
-                    try {
-                        sendData(request.getOutputStream());
-                    } catch (UnknownHostException ex) {
-                        logger.debug(String.format(
-                                "Stopping usage sharing as remote name '%s' " +
-                                "generated UnknownHostException exception.",
-                                newDevicesUrl));
-                        stop = true;
-                        continue;
-                    } catch (SSLHandshakeException ex) {
-                        logger.debug(String.format(
-                                "Stopping usage sharing as a secure " +
-                                "connection to remote '%s' could not be " +
-                                "establilshed and threw error '%s'",
-                                newDevicesUrl,
-                                ex.getCause().toString()));
-                        stop = true;
-                        continue;
-                    }
-
-                    // Get the response and record the content if it's valid. If
-                    // it's not valid consider turning off the functionality.
-                    InputStreamReader stream = 
-                            new InputStreamReader(request.getInputStream());
-                    if (stream.ready()) {
-                        BufferedReader response = new BufferedReader(stream);
-                        switch (request.getResponseCode()) {
-                            case 200:// OK
-                                // Ok response, do nothing
-                                break;
-                            case 408:// Request Timeout
-                                // Could be temporary, do nothing.
-                                break;
-                            default:
-                                // Turn off functionality.
-                                logger.debug(String.format(
-                                    "Stopping usage sharing as remote " +
-                                    "name '%s' returned status " +
-                                    "description '%s'.",
-                                    newDevicesUrl, 
-                                    response.readLine()));                                    
-                                stop = true;
-                                break;
-                        }
-                        // Release the HttpWebResponse
-                        response.close();
+        thread = Thread.currentThread();
+        List<UsageRecord> batch = new ArrayList<UsageRecord>();
+        int attempts = 0;
+        long nextSend = System.currentTimeMillis() + maxDelay;
+        while (true) {
+            long now = System.currentTimeMillis();
+            if (stop == false && now < nextSend && 
+                (attempts > 0 || 
+                 queue.size() < Constants.NEW_DEVICE_QUEUE_LENGTH)) {
+                // Wait until signalled or the next send is due.
+                LockSupport.parkNanos(this, 
+                        TimeUnit.MILLISECONDS.toNanos(nextSend - now));
+                continue;
+            }
+            
+            // Fill the batch up to the maximum size.
+            UsageRecord record;
+            while (batch.size() < Constants.SHARE_USAGE_MAX_BATCH &&
+                   (record = queue.poll()) != null) {
+                batch.add(record);
+            }
+            
+            if (batch.isEmpty() == false) {
+                if (send(batch)) {
+                    sent.addAndGet(batch.size());
+                    batch.clear();
+                    attempts = 0;
+                } else {
+                    failedRequests.incrementAndGet();
+                    attempts++;
+                    if (attempts >= Constants.SHARE_USAGE_MAX_ATTEMPTS || 
+                        stop) {
+                        failed.addAndGet(batch.size());
+                        batch.clear();
+                        attempts = 0;
                     }
                 }
-            } catch (SecurityException ex) {
-                stop = true;
-                logger.debug("Security Exception: " + ex);
-            } catch (XMLStreamException ex) {
-                stop = true;
-                logger.debug("XML Stream Exception: " + ex);
-            } catch (IOException ex) {
-                stop = true;
-                logger.debug("IO Exception: " + ex);
-            } catch (InterruptedException ex) {
-                stop = true;
-                logger.debug("Interrupted Exception: " + ex);
-            } catch (IllegalStateException ex) {
-                // Probably means that the instance has stopped
-                // so stop any more thread processing.
-                stop = true;
-                logger.debug("Illegal State Exception: " + ex);
             }
-        } while (stop == false);
-        logger.debug("Share usage stopped.");
+            
+            if (stop && (batch.isEmpty() || attempts == 0) && 
+                queue.size() == 0) {
+                break;
+            }
+            nextSend = System.currentTimeMillis() + (attempts > 0 ?
+                    Math.min(initialBackoff << (attempts - 1),
+                             Constants.SHARE_USAGE_MAX_BACKOFF * 1000L) :
+                    maxDelay);
+        }
+        logger.debug(String.format(
+                "Share usage stopped. Queued '%d', sampled '%d', " +
+                "dropped '%d', sent '%d', failed '%d'.",
+                queued.get(),
+                sampled.get(),
+                dropped.get(),
+                sent.get(),
+                failed.get()));
+    }
+    
+    /**
+     * Posts the batch of records to the URL as gzip compressed XML which is
+     * streamed to the connection.
+     *
+     * @param batch records to send.
+     * @return true if the records were accepted.
+     */
+    private boolean send(List<UsageRecord> batch) {
+        HttpURLConnection request = null;
+        try {
+            request = (HttpURLConnection)new URL(
+                    newDevicesUrl).openConnection();
+            request.setConnectTimeout(Constants.NEW_URL_TIMEOUT);
+            request.setReadTimeout(Constants.NEW_URL_TIMEOUT);
+            request.setRequestMethod("POST");
+            request.setUseCaches(false);
+            request.setRequestProperty("Content-Type",
+                    "text/xml; charset=utf-8");
+            request.setRequestProperty("Content-Encoding", "gzip");
+            request.setDoInput(true);
+            request.setDoOutput(true);
+            // Stream the body rather than buffering it to find the length.
+            request.setChunkedStreamingMode(0);
+            sendData(request.getOutputStream(), batch);
+            
+            int code = request.getResponseCode();
+            if (code == 200) {
+                drain(request.getInputStream());
+                return true;
+            }
+            drain(request.getErrorStream());
+            logger.debug(String.format(
+                    "Usage sharing remote '%s' returned status '%d'.",
+                    newDevicesUrl,
+                    code));
+        } catch (IOException ex) {
+            logger.debug(String.format(
+                    "Exception sharing usage with remote '%s'.",
+                    newDevicesUrl),
+                    ex);
+        } catch (XMLStreamException ex) {
+            logger.debug("XML Stream Exception: " + ex);
+        } catch (SecurityException ex) {
+            logger.debug("Security Exception: " + ex);
+        } finally {
+            if (request != null) {
+                request.disconnect();
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Reads and closes the response so the connection can be reused.
+     */
+    private static void drain(InputStream stream) throws IOException {
+        if (stream != null) {
+            try {
+                byte[] buffer = new byte[1024];
+                while (stream.read(buffer) >= 0) {
+                    // Nothing to do with the response.
+                }
+            } finally {
+                stream.close();
+            }
+        }
     }
     
     /**
      * Adds the request details to the queue for processing by the background
-     * thread.
+     * thread if the request's User-Agent has not been recorded recently. 
+     * When the queue is more than half full only one in 
+     * {@link Constants#SHARE_USAGE_SAMPLE_RATE} requests is added. If the 
+     * queue is full the details are dropped.
      *
      * @param request The current server request.
-     * @throws XMLStreamException
-     * @throws IOException
      */
-    void recordNewDevice(final HttpServletRequest request)
-            throws XMLStreamException, IOException {
-        if (stop == false) {
-            String xml = getContent(request, newDeviceDetail);
-            if (xml != null && xml.length() > 0) {
-                // Add the new details to the queue for later processing.
-                queue.add(xml);
-                synchronized (wait) {
-                    // Signal the background thread to check to see if it should
-                    // send queued data.
-                    wait.notify();
+    void recordNewDevice(final HttpServletRequest request) {
+        if (stop == false && isNewUserAgent(request.getHeader("User-Agent"))) {
+            if (queue.size() > Constants.SHARE_USAGE_BUFFER_SIZE / 2 &&
+                congested.incrementAndGet() % 
+                    Constants.SHARE_USAGE_SAMPLE_RATE != 0) {
+                sampled.incrementAndGet();
+                return;
+            }
+            UsageRecord record = UsageRecord.create(request, newDeviceDetail);
+            if (record != null) {
+                if (queue.offer(record)) {
+                    queued.incrementAndGet();
+                    if (queue.size() >= Constants.NEW_DEVICE_QUEUE_LENGTH) {
+                        // Signal the background thread to send the queued 
+                        // data.
+                        signal();
+                    }
+                } else {
+                    dropped.incrementAndGet();
                 }
-            }            
+            }
+        }
+    }
+    
+    /**
+     * Wakes the usage sharing thread.
+     */
+    private void signal() {
+        Thread localThread = thread;
+        if (localThread != null) {
+            LockSupport.unpark(localThread);
+        }
+    }
+    
+    /**
+     * Returns true if the User-Agent is not one of those recorded recently.
+     * Each User-Agent's hash is held in a slot of a fixed size table so a
+     * User-Agent may be recorded again once another has replaced it.
+     *
+     * @param userAgent from the request.
+     * @return true if the User-Agent should be recorded.
+     */
+    private boolean isNewUserAgent(String userAgent) {
+        long hash = userAgent == null ? 1 : 
+                ((long)userAgent.hashCode() << 32) | userAgent.length() | 1;
+        int slot = (int)((hash ^ (hash >>> 29)) & 
+                (recentUserAgents.length() - 1));
+        if (recentUserAgents.get(slot) == hash) {
+            return false;
         }
+        recentUserAgents.set(slot, hash);
+        return true;
     }
 
     /**
-     * Sends all the data on the queue.
+     * Writes the batch of records as XML compressed with gzip.
      *
      * @param stream Output stream to send data to.
+     * @param batch records to write.
      * @throws IOException
      * @throws XMLStreamException
      */
-    private void sendData(OutputStream stream) throws IOException,
-            XMLStreamException {
+    private void sendData(OutputStream stream, List<UsageRecord> batch) 
+            throws IOException, XMLStreamException {
         GZIPOutputStream compressed = new GZIPOutputStream(stream);
         try {
-            PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+            Writer writer = new BufferedWriter(new OutputStreamWriter(
                     compressed,
-                    "UTF-8"), true);
+                    "UTF-8"));
             try {
-                pw.print("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-                pw.print("<Devices>");
-                String fragment = queue.poll();
-                while (fragment != null) {
-                    pw.print(fragment);
-                    fragment = queue.poll();
+                writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+                writer.write("<Devices>");
+                for (UsageRecord record : batch) {
+                    writer.write(getContent(record));
                 }
-                pw.print("</Devices>");
+                writer.write("</Devices>");
             }
             finally {
-                pw.close();
+                writer.close();
             }
         }
         finally {
@@ -311,97 +493,140 @@ class ShareUsage implements Runnable, Closeable {
 
     /**
      * Records the information as XML data and converts to a String for
-     * storage.
+     * sending.
      *
-     * @param request The current server request.
-     * @param newDeviceDetail How much information to be recorded.
+     * @param record details of the request.
      * @return The XML data as a String.
      * @throws XMLStreamException
-     * @throws IOException if there was a problem accessing data file.
-     */
-    private static String getContent(final HttpServletRequest request, 
-                                     NewDeviceDetails newDeviceDetail)
-            throws XMLStreamException, IOException {
-        String uri = request.getRequestURI();
-        
-        // If the headers contain 51D as a setting or the request is to a web
-        // service then do not send the data.
-        boolean ignore = 
-                request.getHeader("51D") != null || 
-                uri.endsWith("asmx");
+     */
+    private String getContent(final UsageRecord record)
+            throws XMLStreamException {
+        XMLOutputFactory factory = XMLOutputFactory.newFactory();
+        StringWriter result = new StringWriter();
+        XMLStreamWriter writer = factory.createXMLStreamWriter(result);
 
-        if (ignore == false) {
-            XMLOutputFactory factory = XMLOutputFactory.newFactory();
-            StringWriter result = new StringWriter();
-            XMLStreamWriter writer = factory.createXMLStreamWriter(result);
+        // Start writing the device
+        writer.writeStartElement("Device");
+        // Write the date and time of the request
+        writer.writeStartElement("DateSent");
+        writer.writeCharacters(dateFormat.format(new Date(record.time)));
+        writer.writeEndElement();
 
-            // Start writing the device
-            writer.writeStartElement("Device");
-            // Write the current date and time
-            writer.writeStartElement("DateSent");
-            writer.writeCharacters(dateFormat.format(new Date()));
-            writer.writeEndElement();
+        writer.writeStartElement("Version");
+        // this info is available from the Manifest in the JAR file
+        // however, if you build locally using an IDE rather than using
+        // Maven it may not be present
+        try {
+            writer.writeCharacters(
+                    ShareUsage.class.getPackage().getImplementationVersion());
+        } catch (Exception e) {
+            writer.writeCharacters("Not set");
+        }
+        writer.writeEndElement();
 
-            writer.writeStartElement("Version");
-            // this info is available from the Manifest in the JAR file
-            // however, if you build locally using an IDE rather than using
-            // Maven it may not be present
-            try {
-                writer.writeCharacters(
-                        ShareUsage.class.getPackage().getImplementationVersion());
-            } catch (Exception e) {
-                writer.writeCharacters("Not set");
-            }
+        writer.writeStartElement("Product");
+        try {
+            // as above
+            writer.writeCharacters(
+                    ShareUsage.class.getPackage().getImplementationTitle());
+        } catch (Exception e) {
+            writer.writeCharacters("Not set");
+        }
+        writer.writeEndElement();
+
+        // Record either the IP address of the client if not local or the IP
+        // address of the machine.
+        if (isLocal(record.remoteAddress) == false) {
+            writer.writeStartElement("ClientIP");
+            writer.writeCharacters(record.remoteAddress);
             writer.writeEndElement();
+        }
 
-            writer.writeStartElement("Product");
-            try {
-                // as above
-                writer.writeCharacters(
-                        ShareUsage.class.getPackage().getImplementationTitle());
-            } catch (Exception e) {
-                writer.writeCharacters("Not set");
+        writer.writeStartElement("ServerIP");
+        writer.writeCharacters(record.localAddress);
+        writer.writeEndElement();
+
+        for (int i = 0; i < record.headerNames.length; i++) {
+            // Record the header content if it's not a blank field.
+            writer.writeStartElement("Header");
+            writer.writeAttribute("Name", record.headerNames[i]);
+            if (record.headerValues[i] != null) {
+                writer.writeCData(record.headerValues[i]);
             }
             writer.writeEndElement();
+        }
+        writer.writeEndElement();
+        writer.close();
+        return result.toString();
+    }
 
-            // Record either the IP address of the client if not local or the IP
-            // address of the machine.
-            final String remoteAddress = request.getRemoteAddr();
-            if (isLocal(remoteAddress) == false) {
-                writer.writeStartElement("ClientIP");
-                writer.writeCharacters(remoteAddress);
-                writer.writeEndElement();
+    /**
+     * Details of a request copied by the request thread so that the XML can 
+     * be created later by the usage sharing thread.
+     */
+    static class UsageRecord {
+
+        final long time;
+        final String remoteAddress;
+        final String localAddress;
+        final String[] headerNames;
+        final String[] headerValues;
+
+        private UsageRecord(long time, String remoteAddress, 
+                String localAddress, List<String> headerNames, 
+                List<String> headerValues) {
+            this.time = time;
+            this.remoteAddress = remoteAddress;
+            this.localAddress = localAddress;
+            this.headerNames = headerNames.toArray(
+                    new String[headerNames.size()]);
+            this.headerValues = headerValues.toArray(
+                    new String[headerValues.size()]);
+        }
+
+        /**
+         * Copies the details to be shared from the request.
+         *
+         * @param request The current server request.
+         * @param newDeviceDetail How much information to be recorded.
+         * @return the details, or null if the request should not be shared.
+         */
+        static UsageRecord create(final HttpServletRequest request, 
+                NewDeviceDetails newDeviceDetail) {
+            String uri = request.getRequestURI();
+
+            // If the headers contain 51D as a setting or the request is to a 
+            // web service then do not send the data.
+            if (request.getHeader("51D") != null || 
+                (uri != null && uri.endsWith("asmx"))) {
+                return null;
             }
-            
-            writer.writeStartElement("ServerIP");
-            writer.writeCharacters(request.getLocalAddr());
-            writer.writeEndElement();
-            
+
+            List<String> names = new ArrayList<String>();
+            List<String> values = new ArrayList<String>();
             final Enumeration<String> headerNames = request.getHeaderNames();
             while (headerNames.hasMoreElements()) {
                 // Include all header values if maximumDetail is enabled, or
                 // header values related to the useragent or any header
-                // key containing profile or information helpful to determining
-                // mobile devices.
+                // key containing profile or information helpful to 
+                // determining mobile devices.
                 final String name = (String)headerNames.nextElement();
                 if (newDeviceDetail == NewDeviceDetails.MAXIMUM ||
                         name.equals("user-agent") || 
                         name.equals("host") ||
                         name.contains("profile")) {
-                    // Record the header content if it's not a cookie header.
-                    writer.writeStartElement("Header");
-                    writer.writeAttribute("Name", name);
-                    if (isBlankField(name) == false) {
-                        writer.writeCData(request.getHeader(name));
-                    }
-                    writer.writeEndElement();
-                }                
-            }            
-            
-            writer.writeEndElement();
-            writer.close();
-            return result.toString();
+                    names.add(name);
+                    values.add(isBlankField(name) ? 
+                            null : 
+                            request.getHeader(name));
+                }
+            }
+            return new UsageRecord(
+                    System.currentTimeMillis(),
+                    request.getRemoteAddr(),
+                    request.getLocalAddr(),
+                    names,
+                    values);
         }
-        return null;
     }
 }
@@ -21,8 +21,6 @@
 package fiftyone.mobile.detection.webapp;
 
 import java.io.IOException;
-import java.util.Enumeration;
-import java.util.HashMap;
 import java.util.Map;
 
 import javax.servlet.http.HttpServletRequest;
@@ -30,6 +28,7 @@ import javax.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import fiftyone.mobile.detection.CacheReplay;
 import fiftyone.mobile.detection.Dataset;
 import fiftyone.mobile.detection.Match;
 import fiftyone.mobile.detection.Provider;
@@ -45,8 +44,6 @@ import java.util.Date;
 import java.util.UUID;
 import java.util.logging.Level;
 import javax.servlet.ServletContext;
-import javax.servlet.http.HttpSession;
-import javax.xml.stream.XMLStreamException;
 
 /**
  * Web version of the 51Degrees {@link Provider} class.
@@ -69,7 +66,7 @@ public class WebProvider extends Provider implements Closeable {
     /**
      * The currently active web provider.
      */
-    private static WebProvider activeProvider;
+    private static volatile WebProvider activeProvider;
     /**
      * Used to log information about activity.
      */
@@ -95,6 +92,16 @@ public class WebProvider extends Provider implements Closeable {
      * Instance of a class used to encapsulate share usage functionality.
      */
     private ShareUsage shareUsageWorker;
+    /**
+     * The servlet context used to create the provider. Used to create the
+     * replacement provider when the cache is replayed.
+     */
+    private ServletContext servletContext;
+    /**
+     * Set while the User-Agents cached by the previous provider are being
+     * replayed against this provider's data set.
+     */
+    private volatile CacheReplay replay;
 
     /**
      * Constructs a new instance of the web provider connected to the dataset
@@ -124,6 +131,9 @@ public class WebProvider extends Provider implements Closeable {
      */
     @Override
     public void close() throws IOException {
+        // Close the previous provider if its cache is still being replayed.
+        finishReplay();
+        
         // Dispose of the data set if it exists.
         if (super.dataSet != null) {
             super.dataSet.close();
@@ -183,7 +193,6 @@ public class WebProvider extends Provider implements Closeable {
      * @param sc Servlet context for the request.
      * @return a reference to the active provider.
      */
-    @SuppressWarnings("DoubleCheckedLocking")
     public static WebProvider getActiveProvider(ServletContext sc) {
         if (activeProvider == null) {
             synchronized (lock) {
@@ -212,6 +221,27 @@ public class WebProvider extends Provider implements Closeable {
                 value));
     }
 
+    /**
+     * Returns the number of User-Agents to cache from the configuration.
+     * 
+     * @param sc current ServletContext.
+     * @return the cache size, or 0 if not configured or invalid.
+     */
+    private static int getCacheSize(ServletContext sc) {
+        String value = sc.getInitParameter(Constants.CACHE_SIZE);
+        if (value != null) {
+            try {
+                return Math.max(0, Integer.parseInt(value.trim()));
+            } catch (NumberFormatException ex) {
+                logger.warn(String.format(
+                        "Invalid value '%s' for '%s'. No cache will be used.",
+                        value,
+                        Constants.CACHE_SIZE));
+            }
+        }
+        return 0;
+    }
+
     /**
      * Cleans up any temporary files that remain from previous providers.
      */
@@ -253,7 +283,7 @@ public class WebProvider extends Provider implements Closeable {
                 source.getAbsolutePath());
         final FileOutputStream outStream = new FileOutputStream(
                 destination);
-        final byte[] buffer = new byte[1024 ^ 2];
+        final byte[] buffer = new byte[1024 * 1024];
         int length;
         while ((length = inStream.read(buffer)) > 0) {
             outStream.write(buffer, 0, length);
@@ -378,6 +408,19 @@ public class WebProvider extends Provider implements Closeable {
      * @return
      */
     private static WebProvider create(ServletContext sc) {
+        return create(sc, true);
+    }
+
+    /**
+     * Creates a new provider from the configuration.
+     *
+     * @param sc
+     * @param cleanTempFiles true if temporary files from previous providers 
+     * should be removed. False if a previous provider is still in use.
+     * @return
+     */
+    static WebProvider create(ServletContext sc, 
+            boolean cleanTempFiles) {
         WebProvider provider = null;
 
         // Use the web-inf folder as the temporary folder.
@@ -392,31 +435,38 @@ public class WebProvider extends Provider implements Closeable {
         // otherwise null.
         final File binaryFile = getBinaryFilePath(sc);
 
+        // The number of User-Agents to cache, or 0 if no cache is used.
+        final int cacheSize = getCacheSize(sc);
+
         // If the binary file path exists then try and clear previous
         // temporary files.
         if (binaryFile != null) {
 
             // Removes any old temporary files from previous providers.
-            cleanTemporaryFiles(tempDirectory.listFiles(new FilenameFilter() {
-                /**
-                 * The regular expression used to evaluate temporary files.
-                 */
-                private final String filterRegex =
-                        String.format("%s\\..+\\.tmp", binaryFile.getName());
-
-                /**
-                 * Returns true if the name of the file is a temporary file
-                 * related to the master binary data file.
-                 *
-                 * @param dir
-                 * @param name
-                 * @return
-                 */
-                @Override
-                public boolean accept(File dir, String name) {
-                    return name.matches(filterRegex);
-                }
-            }));
+            if (cleanTempFiles) {
+                cleanTemporaryFiles(tempDirectory.listFiles(
+                        new FilenameFilter() {
+                    /**
+                     * The regular expression used to evaluate temporary files.
+                     */
+                    private final String filterRegex =
+                            String.format("%s\\..+\\.tmp", 
+                                    binaryFile.getName());
+
+                    /**
+                     * Returns true if the name of the file is a temporary file
+                     * related to the master binary data file.
+                     *
+                     * @param dir
+                     * @param name
+                     * @return
+                     */
+                    @Override
+                    public boolean accept(File dir, String name) {
+                        return name.matches(filterRegex);
+                    }
+                }));
+            }
 
             try {
                 // Does a binary file exist?
@@ -427,7 +477,7 @@ public class WebProvider extends Provider implements Closeable {
                                 "file '%s'.",
                                 binaryFile.getAbsolutePath()));
                         provider = new WebProvider(MemoryFactory.create(
-                                binaryFile.getAbsolutePath()));
+                                binaryFile.getAbsolutePath()), cacheSize);
                     } else {
                         String tempFile = getTempWorkingFile(
                                 tempDirectory,
@@ -438,10 +488,11 @@ public class WebProvider extends Provider implements Closeable {
                                 tempFile));
                         provider = new WebProvider(StreamFactory.create(
                                 tempFile, 
-                                false));
+                                false), cacheSize);
                         
                         provider.sourceDataFile = tempFile;
                     }
+                    provider.servletContext = sc;
                     logger.info(String.format(
                             "Created provider from binary data file '%s'.",
                             binaryFile.getAbsolutePath()));
@@ -507,6 +558,17 @@ public class WebProvider extends Provider implements Closeable {
         return match;
     }
 
+    /**
+     * Returns true if device detection has already been performed for the 
+     * request.
+     * 
+     * @param request details of the HTTP request
+     * @return true if the request's attributes contain a match.
+     */
+    static boolean hasMatch(final HttpServletRequest request) {
+        return request.getAttribute(MATCH_ATTRIBUTE) != null;
+    }
+    
     /**
      * Obtains the match result from the request container, then the session and
      * then if not matched before performs a new match for the request storing
@@ -551,27 +613,140 @@ public class WebProvider extends Provider implements Closeable {
     }
 
     /**
-     * Forces a new active provider to be created by setting the current one to
-     * null.
+     * Forces a new active provider to be created. If a {@link DataSetManager}
+     * is running the new provider is created by the manager's thread and 
+     * published when ready, otherwise the current one is set to null.
      * 
      * @throws java.io.IOException if there was a problem accessing data file.
      */
     public static void refresh() throws IOException {
-        if (activeProvider != null) {
+        DataSetManager manager = DataSetManager.getCurrent();
+        if (manager != null) {
+            manager.reload();
+        } else if (activeProvider != null) {
             synchronized (lock) {
                 if (activeProvider != null) {
                     WebProvider oldProvider = activeProvider;
-                    activeProvider = null;
-                    oldProvider.close();
+                    if (oldProvider.isReplayEnabled()) {
+                        refreshWithReplay(oldProvider);
+                    } else {
+                        activeProvider = null;
+                        oldProvider.close();
+                    }
                 }
             }
         }
     }
+    
+    /**
+     * @return true if the configuration requires the cached User-Agents to 
+     * be replayed when the provider is refreshed.
+     */
+    private boolean isReplayEnabled() {
+        return servletContext != null &&
+               "True".equalsIgnoreCase(servletContext.getInitParameter(
+                       Constants.CACHE_REPLAY));
+    }
+    
+    /**
+     * Creates a new active provider and replays the User-Agents cached by 
+     * the current provider against it in a background thread. The current 
+     * provider continues to serve the results it has cached until the replay
+     * completes, when it is closed.
+     * 
+     * @param oldProvider the current active provider.
+     * @throws IOException if there was a problem accessing data file.
+     */
+    private static void refreshWithReplay(WebProvider oldProvider) 
+            throws IOException {
+        // Close any provider still being replayed from a previous refresh.
+        oldProvider.finishReplay();
+        
+        final WebProvider newProvider = create(
+                oldProvider.servletContext, false);
+        activeProvider = newProvider;
+        startReplay(oldProvider, newProvider);
+    }
+    
+    /**
+     * Replaces the active provider with the new provider which has already 
+     * been created. If replay is enabled the replaced provider is closed when
+     * the replay completes, otherwise it is returned to the caller to close.
+     * 
+     * @param newProvider to become the active provider.
+     * @return the replaced provider which the caller must close, or null.
+     */
+    static WebProvider publish(WebProvider newProvider) {
+        synchronized (lock) {
+            WebProvider oldProvider = activeProvider;
+            activeProvider = newProvider;
+            if (oldProvider != null && oldProvider.isReplayEnabled()) {
+                // Close any provider still being replayed from a previous 
+                // refresh.
+                oldProvider.finishReplay();
+                startReplay(oldProvider, newProvider);
+                return null;
+            }
+            return oldProvider;
+        }
+    }
+    
+    /**
+     * Replays the User-Agents cached by the old provider against the new 
+     * provider in a background thread. The old provider continues to serve 
+     * the results it has cached until the replay completes, when it is 
+     * closed.
+     * 
+     * @param oldProvider the replaced provider.
+     * @param newProvider the active provider.
+     */
+    private static void startReplay(WebProvider oldProvider, 
+            final WebProvider newProvider) {
+        final CacheReplay localReplay = new CacheReplay(
+                oldProvider, newProvider);
+        newProvider.replay = localReplay;
+        logger.info(String.format(
+                "Replaying '%d' cached User-Agents against the new data file.",
+                localReplay.getCount()));
+        
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                localReplay.run();
+                newProvider.finishReplay();
+            }
+        }, "51Degrees-CacheReplay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Stops any replay of the previous provider's cached User-Agents and
+     * closes the previous provider.
+     */
+    private synchronized void finishReplay() {
+        CacheReplay localReplay = replay;
+        if (localReplay != null) {
+            replay = null;
+            localReplay.cancel();
+            logger.info(String.format(
+                    "Replayed '%d' of '%d' cached User-Agents against the new " +
+                    "data file. '%d' returned different profiles.",
+                    localReplay.getReplayed(),
+                    localReplay.getCount(),
+                    localReplay.getChanged()));
+            try {
+                ((WebProvider)localReplay.oldProvider).close();
+            } catch (IOException ex) {
+                logger.warn("Exception closing the replaced provider", ex);
+            }
+        }
+    }
 
     /**
-     * Function retrieves the relevant HTTP headers from the HttpServletRequest 
+     * Function provides the relevant HTTP headers from the HttpServletRequest 
      * object and returns the result of device detection in the form of a Match 
-     * object.
+     * object. The headers are not copied and no session is created.
      * 
      * @param request HttpServletRequest containing HTTP headers.
      * @return FiftyOne Match instance populated with detection results.
@@ -579,45 +754,26 @@ public class WebProvider extends Provider implements Closeable {
      */
     private Match getMatchFromProvider(final HttpServletRequest request) 
             throws IOException {
-        HashMap headers = new HashMap<String, String>();
-        for (String header : super.dataSet.getHttpHeaders()) {
-            Enumeration<String> headerValues = request.getHeaders(header);
-            if (headerValues != null &&
-                headerValues.hasMoreElements()) {
-                String hv = headerValues.nextElement();
-                headers.put(header, hv);
-            }
-        }
+        // The headers used for detection, including the cookie string which
+        // is used to override static values with dynamic values retrieved 
+        // via JavaScript, are read from the request when needed.
+        Map<String, String> headers = new RequestHeaders(
+                request, 
+                super.dataSet.getHttpHeaders());
         
-        // Add the cookie string if it's available. This is used to override
-        // static values with dynamic values retrieved via JavaScript and 
-        // passed to the server via cookies.
-        Enumeration<String> headerValues = request.getHeaders("Cookie");
-        if (headerValues != null &&
-            headerValues.hasMoreElements()) {
-            String hv = headerValues.nextElement();
-            headers.put("Cookie", hv);
-        }
-        
-        // If usage sharing is enabled for this WebProvider and the session is
-        // new indicating this is the first request then submit usage sharing
-        // data to the queue.
+        // If usage sharing is enabled for this WebProvider submit usage 
+        // sharing data to the queue. The worker only records User-Agents it 
+        // has not seen recently, and sessions are not used so that they are 
+        // not created for stateless requests.
         if (shareUsageThread != null && shareUsageWorker != null) {
-            HttpSession session = request.getSession();
-            if (session != null && session.isNew()) {
-                try {
-                    shareUsageWorker.recordNewDevice(request);
-                } catch (XMLStreamException ex) {
-                    java.util.logging.Logger.getLogger(
-                            WebProvider.class.getName()).log(
-                                    Level.INFO, 
-                                    "Failed to submit usage sharing data: {0}",
-                                    ex);
-                }
-            }
+            shareUsageWorker.recordNewDevice(request);
         }
         
-        // Calculate the match result in the core implementation.
-        return super.match(headers);
+        // Calculate the match result in the core implementation, using the 
+        // previous provider's cache if it is still being replayed.
+        CacheReplay localReplay = replay;
+        return localReplay != null ? 
+                localReplay.match(headers) : 
+                super.match(headers);
     }
 }
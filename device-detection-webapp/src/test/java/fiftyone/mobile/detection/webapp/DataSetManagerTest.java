@@ -0,0 +1,137 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import fiftyone.mobile.detection.Match;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.servlet.ServletContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static fiftyone.mobile.detection.webapp.WebTestSupport.assumeLiteExists;
+import static fiftyone.mobile.detection.webapp.WebTestSupport.servletContext;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the validation of new providers and the replacement of the active
+ * provider when a new one is published.
+ */
+public class DataSetManagerTest {
+
+    private final Map<String, String> parameters =
+            new HashMap<String, String>();
+
+    /**
+     * Providers created by the test. Closing the active provider also
+     * clears it.
+     */
+    private final List<WebProvider> providers = new ArrayList<WebProvider>();
+
+    @Before
+    public void setUp() {
+        assumeLiteExists();
+        parameters.put(Constants.MEMORY_MODE, "True");
+        parameters.put(Constants.CACHE_SIZE, "100");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        for (WebProvider provider : providers) {
+            provider.close();
+        }
+    }
+
+    private WebProvider create(ServletContext sc) {
+        WebProvider provider = WebProvider.create(sc, false);
+        providers.add(provider);
+        return provider;
+    }
+
+    @Test
+    public void validateMatched() throws IOException {
+        DataSetManager.validate(create(servletContext(parameters)));
+    }
+
+    /**
+     * A provider returning a profile for only one component fails
+     * validation.
+     */
+    @Test(expected = IOException.class)
+    public void validateUnmatched() throws IOException {
+        WebProvider provider = create(servletContext(parameters));
+        final ArrayList<Integer> profileIds = new ArrayList<Integer>();
+        profileIds.add(provider.dataSet.profiles.get(0).profileId);
+        WebProvider unmatched = new WebProvider(provider.dataSet) {
+            @Override
+            public Match match(String userAgent, Match match)
+                    throws IOException {
+                return matchForDeviceId(profileIds, match);
+            }
+        };
+        DataSetManager.validate(unmatched);
+    }
+
+    /**
+     * Without cache replay the replaced provider is returned to the caller
+     * to close.
+     */
+    @Test
+    public void publishReturnsOldProvider() throws IOException {
+        ServletContext sc = servletContext(parameters);
+        WebProvider oldProvider = create(sc);
+        WebProvider newProvider = create(sc);
+        WebProvider.publish(oldProvider);
+        assertTrue(WebProvider.publish(newProvider) == oldProvider);
+        assertTrue(WebProvider.getActiveProvider(sc) == newProvider);
+        assertFalse(oldProvider.dataSet.getDisposed());
+    }
+
+    /**
+     * With cache replay the replaced provider is not returned and is closed
+     * once the cached User-Agents have been replayed.
+     */
+    @Test
+    public void publishRetiresOldProvider() throws Exception {
+        parameters.put(Constants.CACHE_REPLAY, "True");
+        ServletContext sc = servletContext(parameters);
+        WebProvider oldProvider = create(sc);
+        for (String userAgent : DataSetManager.SMOKE_TEST_USER_AGENTS) {
+            oldProvider.match(userAgent);
+        }
+        WebProvider newProvider = create(sc);
+        WebProvider.publish(oldProvider);
+        assertNull(WebProvider.publish(newProvider));
+        assertTrue(WebProvider.getActiveProvider(sc) == newProvider);
+        long timeout = System.currentTimeMillis() + 10000;
+        while (oldProvider.dataSet.getDisposed() == false &&
+               System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertTrue(oldProvider.dataSet.getDisposed());
+    }
+}
@@ -0,0 +1,204 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import org.junit.Test;
+
+import static fiftyone.mobile.detection.webapp.WebTestSupport.assumeLiteExists;
+import static fiftyone.mobile.detection.webapp.WebTestSupport.request;
+import static fiftyone.mobile.detection.webapp.WebTestSupport.servletContext;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the excluded URL patterns and the requests for which lazy detection
+ * avoided device detection.
+ */
+public class FiftyOneDegreesFilterTest {
+
+    private static final String PATTERNS = "/health, /static/*, *.css";
+
+    /**
+     * Passes the request on, optionally using the deferred match.
+     */
+    private static class Chain implements FilterChain {
+
+        final boolean useMatch;
+        boolean called = false;
+
+        Chain(boolean useMatch) {
+            this.useMatch = useMatch;
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response)
+                throws IOException, ServletException {
+            called = true;
+            if (useMatch) {
+                assertNotNull(((DeferredMatch)request.getAttribute(
+                        Constants.DEFERRED_MATCH_ATTRIBUTE)).getMatch());
+            }
+        }
+    }
+
+    @Test
+    public void exactPath() throws Exception {
+        assertExcluded("", "/health");
+        assertNotExcluded("", "/health/status");
+        assertNotExcluded("", "/healthy");
+    }
+
+    @Test
+    public void pathPrefix() throws Exception {
+        assertExcluded("", "/static/site.js");
+        assertExcluded("", "/static/images/logo.png");
+        assertExcluded("", "/static");
+        assertNotExcluded("", "/statics/site.js");
+    }
+
+    @Test
+    public void extension() throws Exception {
+        assertExcluded("", "/site.css");
+        assertExcluded("", "/styles/site.css");
+        assertNotExcluded("", "/site.cssx");
+        assertNotExcluded("", "/site.js");
+    }
+
+    @Test
+    public void contextPathRemoved() throws Exception {
+        assertExcluded("/app", "/app/health");
+        assertExcluded("/app", "/app/static/site.js");
+        assertNotExcluded("/app", "/app/app/health");
+    }
+
+    /**
+     * A request which does not use the deferred match is counted as a
+     * detection avoided, including one with cookies when lazy bandwidth
+     * monitoring is not enabled.
+     */
+    @Test
+    public void avoided() throws Exception {
+        FiftyOneDegreesFilter filter = filter(true, null);
+        long avoided = FiftyOneDegreesFilter.getDetectionsAvoided();
+        filter.doFilter(request("", "/index.jsp", 
+                new HashMap<String, String>()), null, new Chain(false));
+        filter.doFilter(request("", "/index.jsp", 
+                new HashMap<String, String>(), 
+                new Cookie[] { new Cookie("name", "value") }), 
+                null, new Chain(false));
+        assertEquals(avoided + 2, FiftyOneDegreesFilter.getDetectionsAvoided());
+    }
+
+    /**
+     * A request which uses the deferred match is not counted as a detection
+     * avoided.
+     */
+    @Test
+    public void notAvoided() throws Exception {
+        assumeLiteExists();
+        Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(Constants.MEMORY_MODE, "True");
+        WebProvider provider = WebProvider.create(
+                servletContext(parameters), false);
+        WebProvider.publish(provider);
+        try {
+            FiftyOneDegreesFilter filter = filter(true, null);
+            Map<String, String> headers = new HashMap<String, String>();
+            headers.put("user-agent", DataSetManager.SMOKE_TEST_USER_AGENTS[0]);
+            long avoided = FiftyOneDegreesFilter.getDetectionsAvoided();
+            Chain chain = new Chain(true);
+            filter.doFilter(request("", "/index.jsp", headers), null, chain);
+            assertTrue(chain.called);
+            assertEquals(avoided, FiftyOneDegreesFilter.getDetectionsAvoided());
+        } finally {
+            provider.close();
+        }
+    }
+
+    private static void assertExcluded(String contextPath, String uri) 
+            throws Exception {
+        FiftyOneDegreesFilter filter = filter(true, PATTERNS);
+        HttpServletRequest request = request(contextPath, uri, 
+                new HashMap<String, String>());
+        long excluded = FiftyOneDegreesFilter.getExcludedRequests();
+        Chain chain = new Chain(false);
+        filter.doFilter(request, null, chain);
+        assertTrue(chain.called);
+        assertEquals(uri, excluded + 1, 
+                FiftyOneDegreesFilter.getExcludedRequests());
+        assertTrue(uri, request.getAttribute(
+                Constants.DEFERRED_MATCH_ATTRIBUTE) == null);
+    }
+
+    private static void assertNotExcluded(String contextPath, String uri) 
+            throws Exception {
+        FiftyOneDegreesFilter filter = filter(true, PATTERNS);
+        HttpServletRequest request = request(contextPath, uri, 
+                new HashMap<String, String>());
+        long excluded = FiftyOneDegreesFilter.getExcludedRequests();
+        Chain chain = new Chain(false);
+        filter.doFilter(request, null, chain);
+        assertTrue(chain.called);
+        assertEquals(uri, excluded, 
+                FiftyOneDegreesFilter.getExcludedRequests());
+        assertFalse(uri, request.getAttribute(
+                Constants.DEFERRED_MATCH_ATTRIBUTE) == null);
+    }
+
+    /**
+     * Returns a filter initialised with the parameters provided.
+     */
+    private static FiftyOneDegreesFilter filter(boolean lazy, 
+            String patterns) throws ServletException {
+        final Map<String, String> parameters = new HashMap<String, String>();
+        parameters.put(Constants.LAZY_DETECTION, Boolean.toString(lazy));
+        parameters.put(Constants.EXCLUDE_URL_PATTERNS, patterns);
+        FiftyOneDegreesFilter filter = new FiftyOneDegreesFilter();
+        filter.init((FilterConfig)Proxy.newProxyInstance(
+                FilterConfig.class.getClassLoader(),
+                new Class<?>[] { FilterConfig.class },
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getInitParameter".equals(method.getName())) {
+                    return parameters.get((String)args[0]);
+                }
+                return null;
+            }
+        }));
+        return filter;
+    }
+}
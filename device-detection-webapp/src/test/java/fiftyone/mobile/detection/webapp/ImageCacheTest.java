@@ -0,0 +1,136 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ImageCacheTest {
+
+    private static final byte[] IMAGE = new byte[] { 1, 2, 3, 4 };
+    
+    private File folder;
+    
+    private File source;
+    
+    private File cached;
+    
+    @Before
+    public void createFiles() throws IOException {
+        folder = File.createTempFile("ImageCacheTest", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdir());
+        source = new File(folder, "source.png");
+        FileOutputStream output = new FileOutputStream(source);
+        try {
+            output.write(IMAGE);
+        } finally {
+            output.close();
+        }
+        cached = new File(folder, "cached.png");
+    }
+    
+    @After
+    public void deleteFiles() {
+        ImageCache.close();
+        cached.delete();
+        source.delete();
+        folder.delete();
+    }
+    
+    @Test
+    public void resizedOnce() throws IOException {
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<byte[]> resizer = new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                calls.incrementAndGet();
+                return IMAGE;
+            }
+        };
+        long memoryHits = ImageCache.getMemoryHits();
+        for (int i = 0; i < 3; i++) {
+            byte[] image = ImageCache.get(source, cached, 1024, resizer);
+            assertEquals(IMAGE.length, image.length);
+        }
+        assertEquals(1, calls.get());
+        assertEquals(memoryHits + 2, ImageCache.getMemoryHits());
+        assertTrue(cached.isFile());
+    }
+    
+    @Test
+    public void resizeFailed() throws IOException {
+        final AtomicInteger calls = new AtomicInteger();
+        Callable<byte[]> resizer = new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                if (calls.incrementAndGet() == 1) {
+                    throw new IllegalStateException();
+                }
+                return IMAGE;
+            }
+        };
+        try {
+            ImageCache.get(source, cached, 1024, resizer);
+            fail("Expected IOException");
+        } catch (IOException ex) {
+            assertTrue(ex.getCause() instanceof IllegalStateException);
+        }
+        
+        // The failed load must not be returned to later requests.
+        byte[] image = ImageCache.get(source, cached, 1024, resizer);
+        assertEquals(IMAGE.length, image.length);
+        assertEquals(2, calls.get());
+    }
+    
+    @Test
+    public void rejectedRunInline() throws Exception {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(1),
+                new ImageCache.LoadInline());
+        executor.shutdown();
+        FutureTask<byte[]> task = new FutureTask<byte[]>(
+                new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                return IMAGE;
+            }
+        });
+        executor.execute(task);
+        assertTrue(task.isDone());
+        assertEquals(IMAGE.length, task.get().length);
+    }
+}
@@ -0,0 +1,151 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class ImageOptimizerTest {
+
+    private static final byte[] NOT_AN_IMAGE = "not an image".getBytes();
+    
+    private File folder;
+    
+    private File source;
+    
+    @Before
+    public void createFiles() throws IOException {
+        folder = File.createTempFile("ImageOptimizerTest", "");
+        assertTrue(folder.delete());
+        assertTrue(folder.mkdir());
+        source = new File(folder, "source.png");
+        FileOutputStream output = new FileOutputStream(source);
+        try {
+            output.write(NOT_AN_IMAGE);
+        } finally {
+            output.close();
+        }
+    }
+    
+    @After
+    public void deleteFiles() {
+        ImageCache.close();
+        File cache = new File(folder, "WEB-INF/cache");
+        File[] files = cache.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        cache.delete();
+        new File(folder, "WEB-INF").delete();
+        source.delete();
+        folder.delete();
+    }
+    
+    /**
+     * An image that can not be resized is sent unchanged rather than 
+     * failing the request.
+     */
+    @Test
+    public void resizeFailedSendsSource() throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        final int[] error = new int[1];
+        HttpServletResponse response = (HttpServletResponse) 
+                Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { HttpServletResponse.class },
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getOutputStream")) {
+                    return new ServletOutputStream() {
+                        @Override
+                        public void write(int b) {
+                            body.write(b);
+                        }
+                    };
+                }
+                if (method.getName().equals("sendError")) {
+                    error[0] = (Integer) args[0];
+                }
+                return null;
+            }
+        });
+        
+        ImageOptimizer.sendImage(request("/source.png", "w=10"), response);
+        
+        assertTrue(error[0] == 0);
+        assertTrue(Arrays.equals(NOT_AN_IMAGE, body.toByteArray()));
+    }
+    
+    private HttpServletRequest request(final String pathInfo, 
+            final String queryString) {
+        final ServletContext context = (ServletContext) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { ServletContext.class },
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getRealPath")) {
+                    return new File(folder, (String) args[0]).getPath();
+                }
+                if (method.getName().equals("getMimeType")) {
+                    return "image/png";
+                }
+                return null;
+            }
+        });
+        return (HttpServletRequest) Proxy.newProxyInstance(
+                getClass().getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getPathInfo")) {
+                    return pathInfo;
+                }
+                if (method.getName().equals("getQueryString")) {
+                    return queryString;
+                }
+                if (method.getName().equals("getServletContext")) {
+                    return context;
+                }
+                return null;
+            }
+        });
+    }
+}
@@ -0,0 +1,73 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import java.io.IOException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the ETags of the feature JavaScript in each content encoding.
+ */
+public class JavascriptProviderTest {
+
+    private static final String JAVASCRIPT = "var FODF={IsMobile:true};";
+
+    @Test
+    public void eTagPerEncoding() throws IOException {
+        FeatureJavascript javascript = new FeatureJavascript(JAVASCRIPT);
+        String identity = javascript.getETag(null);
+        String gzip = javascript.getETag("gzip");
+        String deflate = javascript.getETag("deflate");
+        assertTrue(identity.startsWith("\"") && identity.endsWith("\""));
+        String hash = identity.substring(1, identity.length() - 1);
+        assertEquals("\"" + hash + "-gzip\"", gzip);
+        assertEquals("\"" + hash + "-deflate\"", deflate);
+        assertFalse(identity.startsWith("W/"));
+        assertEquals(identity, 
+                new FeatureJavascript(JAVASCRIPT).getETag(null));
+    }
+
+    @Test
+    public void notModifiedForSameEncoding() throws IOException {
+        FeatureJavascript javascript = new FeatureJavascript(JAVASCRIPT);
+        String gzip = javascript.getETag("gzip");
+        assertTrue(JavascriptProvider.isNotModified(gzip, gzip));
+        assertTrue(JavascriptProvider.isNotModified("W/" + gzip, gzip));
+        assertTrue(JavascriptProvider.isNotModified(
+                "\"other\", " + gzip, gzip));
+        assertTrue(JavascriptProvider.isNotModified("*", gzip));
+    }
+
+    @Test
+    public void modifiedForOtherEncoding() throws IOException {
+        FeatureJavascript javascript = new FeatureJavascript(JAVASCRIPT);
+        String gzip = javascript.getETag("gzip");
+        assertFalse(JavascriptProvider.isNotModified(null, gzip));
+        assertFalse(JavascriptProvider.isNotModified(
+                javascript.getETag(null), gzip));
+        assertFalse(JavascriptProvider.isNotModified(
+                javascript.getETag("deflate"), gzip));
+    }
+}
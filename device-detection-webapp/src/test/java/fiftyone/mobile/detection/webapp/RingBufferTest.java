@@ -0,0 +1,99 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingBufferTest {
+
+    @Test
+    public void capacityRoundedUp() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidCapacity() {
+        new RingBuffer<Integer>(0);
+    }
+
+    @Test
+    public void empty() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+        assertNull(buffer.poll());
+        assertEquals(0, buffer.size());
+    }
+
+    /**
+     * Items are rejected when the buffer is full and accepted again once
+     * an item has been removed.
+     */
+    @Test
+    public void full() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+        assertEquals(Integer.valueOf(0), buffer.poll());
+        assertTrue(buffer.offer(4));
+        assertFalse(buffer.offer(5));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(Integer.valueOf(i), buffer.poll());
+        }
+        assertNull(buffer.poll());
+    }
+
+    /**
+     * Items are returned in order as the positions wrap around the slots
+     * many times.
+     */
+    @Test
+    public void wrapAround() {
+        RingBuffer<Integer> buffer = new RingBuffer<Integer>(4);
+        int next = 0;
+        int expected = 0;
+        for (int i = 0; i < 100; i++) {
+            while (buffer.offer(next)) {
+                next++;
+            }
+            assertEquals(4, buffer.size());
+            for (int j = 0; j < 1 + i % 4; j++) {
+                assertEquals(Integer.valueOf(expected++), buffer.poll());
+            }
+        }
+        Integer item;
+        while ((item = buffer.poll()) != null) {
+            assertEquals(Integer.valueOf(expected++), item);
+        }
+        assertEquals(next, expected);
+        assertEquals(0, buffer.size());
+    }
+}
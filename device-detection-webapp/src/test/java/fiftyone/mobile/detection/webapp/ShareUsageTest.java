@@ -0,0 +1,260 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static fiftyone.mobile.detection.webapp.WebTestSupport.request;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests the batching, compression and retrying of usage data sent to a local
+ * HTTP server.
+ */
+public class ShareUsageTest {
+
+    /**
+     * Decompressed bodies of the requests which were accepted.
+     */
+    private final List<String> bodies = new CopyOnWriteArrayList<String>();
+
+    /**
+     * Number of requests received, including those that failed.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Number of requests to fail with status 500 before accepting requests.
+     */
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private HttpServer server;
+
+    private ShareUsage shareUsage;
+
+    private Thread thread;
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                String body = "gzip".equals(exchange.getRequestHeaders()
+                        .getFirst("Content-Encoding")) ?
+                        read(new GZIPInputStream(exchange.getRequestBody())) :
+                        null;
+                if (failures.getAndDecrement() > 0 || body == null) {
+                    exchange.sendResponseHeaders(500, -1);
+                } else {
+                    bodies.add(body);
+                    exchange.sendResponseHeaders(200, -1);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() throws InterruptedException {
+        if (shareUsage != null) {
+            shareUsage.close();
+        }
+        if (thread != null) {
+            thread.join(10000);
+        }
+        server.stop(0);
+    }
+
+    /**
+     * The queued records are sent as soon as there are enough for a batch,
+     * and a User-Agent which has just been recorded is not recorded again.
+     */
+    @Test
+    public void batchBySize() throws Exception {
+        start(60000, 50);
+        for (int i = 0; i < Constants.NEW_DEVICE_QUEUE_LENGTH; i++) {
+            record("UserAgent" + i);
+        }
+        record("UserAgent0");
+        waitForSent(Constants.NEW_DEVICE_QUEUE_LENGTH);
+        assertEquals(Constants.NEW_DEVICE_QUEUE_LENGTH, 
+                shareUsage.getQueued());
+        assertEquals(1, bodies.size());
+        String body = bodies.get(0);
+        assertTrue(body.startsWith("<?xml"));
+        assertEquals(Constants.NEW_DEVICE_QUEUE_LENGTH, 
+                count(body, "<Device>"));
+        assertTrue(body.contains("<![CDATA[UserAgent0]]>"));
+        assertTrue(body.contains("<ClientIP>10.0.0.1</ClientIP>"));
+    }
+
+    /**
+     * Fewer records than a batch are sent once the maximum delay has passed.
+     */
+    @Test
+    public void batchByTime() throws Exception {
+        start(200, 50);
+        for (int i = 0; i < 3; i++) {
+            record("UserAgent" + i);
+        }
+        waitForSent(3);
+        assertEquals(1, bodies.size());
+        assertEquals(3, count(bodies.get(0), "<Device>"));
+    }
+
+    /**
+     * A batch which fails is retried until it is accepted.
+     */
+    @Test
+    public void retryAfterServerError() throws Exception {
+        failures.set(2);
+        start(100, 50);
+        for (int i = 0; i < 3; i++) {
+            record("UserAgent" + i);
+        }
+        waitForSent(3);
+        assertEquals(3, requests.get());
+        assertEquals(2, shareUsage.getFailedRequests());
+        assertEquals(0, shareUsage.getFailed());
+    }
+
+    /**
+     * A batch is abandoned after the maximum number of attempts.
+     */
+    @Test
+    public void failedAfterMaxAttempts() throws Exception {
+        failures.set(Integer.MAX_VALUE);
+        start(100, 10);
+        for (int i = 0; i < 3; i++) {
+            record("UserAgent" + i);
+        }
+        long timeout = System.currentTimeMillis() + 10000;
+        while (shareUsage.getFailed() < 3 &&
+               System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(3, shareUsage.getFailed());
+        assertEquals(0, shareUsage.getSent());
+        assertEquals(Constants.SHARE_USAGE_MAX_ATTEMPTS, 
+                shareUsage.getFailedRequests());
+    }
+
+    /**
+     * Records waiting to be sent are sent when the instance is closed.
+     */
+    @Test
+    public void sentOnClose() throws Exception {
+        start(60000, 50);
+        for (int i = 0; i < 3; i++) {
+            record("UserAgent" + i);
+        }
+        shareUsage.close();
+        thread.join(10000);
+        assertEquals(3, shareUsage.getSent());
+    }
+
+    /**
+     * Once the queue is half full only some records are queued, and once
+     * it is full records are dropped.
+     */
+    @Test
+    public void sampledAndDropped() {
+        shareUsage = new ShareUsage(url(), NewDeviceDetails.MINIMUM, 
+                60000, 50);
+        int count = Constants.SHARE_USAGE_BUFFER_SIZE * 4;
+        for (int i = 0; i < count; i++) {
+            record("UserAgent" + i);
+        }
+        assertEquals(Constants.SHARE_USAGE_BUFFER_SIZE, 
+                shareUsage.getQueued());
+        assertTrue(shareUsage.getSampled() > 0);
+        assertTrue(shareUsage.getDropped() > 0);
+        assertEquals(count, shareUsage.getQueued() + 
+                shareUsage.getSampled() + shareUsage.getDropped());
+    }
+
+    private void start(long maxDelay, long initialBackoff) {
+        shareUsage = new ShareUsage(url(), NewDeviceDetails.MINIMUM, 
+                maxDelay, initialBackoff);
+        thread = new Thread(shareUsage);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    private void record(String userAgent) {
+        Map<String, String> headers = new HashMap<String, String>();
+        headers.put("user-agent", userAgent);
+        headers.put("host", "localhost");
+        shareUsage.recordNewDevice(request("", "/index.jsp", headers));
+    }
+
+    private void waitForSent(long count) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while (shareUsage.getSent() < count &&
+               System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, shareUsage.getSent());
+    }
+
+    private static int count(String text, String value) {
+        int count = 0;
+        int index = 0;
+        while ((index = text.indexOf(value, index)) >= 0) {
+            count++;
+            index += value.length();
+        }
+        return count;
+    }
+
+    private static String read(InputStream stream) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int length;
+        while ((length = stream.read(buffer)) >= 0) {
+            output.write(buffer, 0, length);
+        }
+        return output.toString("UTF-8");
+    }
+}
@@ -0,0 +1,186 @@
+/* *********************************************************************
+ * This Source Code Form is copyright of 51Degrees Mobile Experts Limited. 
+ * Copyright © 2017 51Degrees Mobile Experts Limited, 5 Charlotte Close,
+ * Caversham, Reading, Berkshire, United Kingdom RG4 7BY
+ * 
+ * This Source Code Form is the subject of the following patent 
+ * applications, owned by 51Degrees Mobile Experts Limited of 5 Charlotte
+ * Close, Caversham, Reading, Berkshire, United Kingdom RG4 7BY: 
+ * European Patent Application No. 13192291.6; and
+ * United States Patent Application Nos. 14/085,223 and 14/085,301.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, v. 2.0.
+ * 
+ * If a copy of the MPL was not distributed with this file, You can obtain
+ * one at http://mozilla.org/MPL/2.0/.
+ * 
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, v. 2.0.
+ * ********************************************************************* */
+package fiftyone.mobile.detection.webapp;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.servlet.ServletContext;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Supporting methods for web application tests which create providers from
+ * the Lite data file and requests without a servlet container.
+ */
+class WebTestSupport {
+
+    /**
+     * Lite data file in the data folder of the repository.
+     */
+    static final File LITE_V32 = new File("../data/51Degrees-LiteV3.2.dat");
+
+    /**
+     * Start of the pointer file left in place of the data file when the 
+     * repository is cloned without Git LFS.
+     */
+    private static final byte[] LFS_POINTER = 
+            "version https://git-lfs".getBytes();
+
+    /**
+     * Skips the test if the Lite data file is not present, or is only a Git
+     * LFS pointer to the data file.
+     */
+    static void assumeLiteExists() {
+        assumeTrue("Data file " + LITE_V32 + " does not exist, skipping " +
+                "test.", LITE_V32.exists());
+        assumeTrue("Data file " + LITE_V32 + " is a Git LFS pointer, " +
+                "skipping test.", isLfsPointer(LITE_V32) == false);
+    }
+
+    private static boolean isLfsPointer(File file) {
+        byte[] start = new byte[LFS_POINTER.length];
+        try {
+            DataInputStream input = new DataInputStream(
+                    new FileInputStream(file));
+            try {
+                input.readFully(start);
+            } finally {
+                input.close();
+            }
+        } catch (IOException ex) {
+            return false;
+        }
+        return Arrays.equals(LFS_POINTER, start);
+    }
+
+    /**
+     * Returns a servlet context for the Lite data file with the init
+     * parameters provided. The data folder is used as the WEB-INF folder.
+     *
+     * @param parameters init parameters in addition to the binary file path.
+     * @return a servlet context which only provides init parameters and the
+     * real path.
+     */
+    static ServletContext servletContext(Map<String, String> parameters) {
+        final Map<String, String> initParameters =
+                new HashMap<String, String>(parameters);
+        initParameters.put(Constants.BINARY_FILE_PATH, LITE_V32.getName());
+        initParameters.put(Constants.SHARE_USAGE, "False");
+        final String realPath = LITE_V32.getAbsoluteFile().getParent();
+        return (ServletContext)Proxy.newProxyInstance(
+                ServletContext.class.getClassLoader(),
+                new Class<?>[] { ServletContext.class },
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if ("getInitParameter".equals(method.getName())) {
+                    return initParameters.get((String)args[0]);
+                }
+                if ("getRealPath".equals(method.getName())) {
+                    return realPath;
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Returns a request for the URI with the headers provided.
+     *
+     * @param contextPath of the web application.
+     * @param uri requested including the context path.
+     * @param headers of the request with lower case names.
+     * @return a request which only provides the URI, headers, attributes 
+     * and addresses.
+     */
+    static HttpServletRequest request(String contextPath, String uri, 
+            Map<String, String> headers) {
+        return request(contextPath, uri, headers, null);
+    }
+
+    /**
+     * Returns a request for the URI with the headers and cookies provided.
+     *
+     * @param contextPath of the web application.
+     * @param uri requested including the context path.
+     * @param headers of the request with lower case names.
+     * @param cookies of the request, or null.
+     * @return a request which only provides the URI, headers, cookies, 
+     * attributes and addresses.
+     */
+    static HttpServletRequest request(final String contextPath,
+            final String uri, final Map<String, String> headers,
+            final Cookie[] cookies) {
+        final Map<String, Object> attributes = new HashMap<String, Object>();
+        return (HttpServletRequest)Proxy.newProxyInstance(
+                HttpServletRequest.class.getClassLoader(),
+                new Class<?>[] { HttpServletRequest.class },
+                new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("getHeader".equals(name)) {
+                    return headers.get(((String)args[0]).toLowerCase());
+                }
+                if ("getHeaderNames".equals(name)) {
+                    return Collections.enumeration(headers.keySet());
+                }
+                if ("getContextPath".equals(name)) {
+                    return contextPath;
+                }
+                if ("getRequestURI".equals(name)) {
+                    return uri;
+                }
+                if ("getServletPath".equals(name)) {
+                    return uri.substring(contextPath.length());
+                }
+                if ("getCookies".equals(name)) {
+                    return cookies;
+                }
+                if ("getAttribute".equals(name)) {
+                    return attributes.get((String)args[0]);
+                }
+                if ("setAttribute".equals(name)) {
+                    attributes.put((String)args[0], args[1]);
+                    return null;
+                }
+                if ("getRemoteAddr".equals(name)) {
+                    return "10.0.0.1";
+                }
+                if ("getLocalAddr".equals(name)) {
+                    return "10.0.0.2";
+                }
+                return null;
+            }
+        });
+    }
+}